@@ -270,6 +270,7 @@ public class ChartsDownloadActivity extends Activity {
         }
         
         mDownload = new Download(mPref.getRoot(), mHandler, mPref.getCycleAdjust());
+        mDownload.setRawTiles(mPref.useRawTiles());
         mDownload.start((new Preferences(getApplicationContext())).mapsFolder(), mName, mChartAdapter.isStatic(mName));
         
         mProgressDialog = new ProgressDialog(ChartsDownloadActivity.this);
@@ -403,6 +404,8 @@ public class ChartsDownloadActivity extends Activity {
              *  
              */
             mService.getTiles().forceReload();
+            mService.getDBResource().forceReload();
+            mService.getTerrain().forceReload();
         }
         
     }
@@ -479,7 +482,9 @@ public class ChartsDownloadActivity extends Activity {
                         
                     }
                     Toast.makeText(ChartsDownloadActivity.this, getString(R.string.download) + " " 
-                            + getString(R.string.Success), Toast.LENGTH_SHORT).show();
+                            + getString(R.string.Success)
+                            + (mDownload.isVerified() ? "" : ", " + getString(R.string.DownloadNotVerified)),
+                            Toast.LENGTH_SHORT).show();
     
                     /*
                      * If TFR fetched, parse it. 
@@ -23,7 +23,7 @@ import android.os.Handler;
 import android.os.IBinder;
 import android.os.Message;
 
-import com.ds.avare.instruments.CDI;
+import com.ds.avare.gps.NavState;
 import com.ds.avare.place.Destination;
 import com.ds.avare.place.Plan;
 import com.ds.avare.utils.Helper;
@@ -128,7 +128,7 @@ public class IHelperService extends Service {
                 
                 Destination d = mService.getDestination();
                 Plan p = mService.getPlan();
-                CDI c = mService.getCDI();
+                NavState s = mService.getNavState();
                 double distance = 0;
                 double bearing = 0;
                 double lon = 0;
@@ -149,9 +149,9 @@ public class IHelperService extends Service {
                         idNext = p.findNextNotPassed() + 1;
                         idOrig = idNext - 1;
                     }
-                    if(c != null) {
-                        deviation = c.getDeviation();
-                        if(!c.isLeft()) {
+                    if(s != null) {
+                        deviation = s.getDeviation();
+                        if(!s.isLeft()) {
                             deviation = -deviation;
                         }
                     }
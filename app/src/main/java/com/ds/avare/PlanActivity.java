@@ -12,12 +12,11 @@ Redistribution and use in source and binary forms, with or without modification,
 package com.ds.avare;
 
 
-import java.util.Timer;
-import java.util.TimerTask;
 
 import com.ds.avare.gps.GpsInterface;
 import com.ds.avare.utils.GenericCallback;
 import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.Scheduler;
 import com.ds.avare.webinfc.WebAppPlanInterface;
 
 import android.app.Activity;
@@ -62,7 +61,7 @@ public class PlanActivity extends Activity {
     private boolean mInited;
 
     // A timer object to handle things when we are in sim mode
-    private Timer mTimer;
+    private Scheduler.Task mTimer;
     
     /**
      * Service that keeps state even when activity is dead
@@ -283,9 +282,8 @@ public class PlanActivity extends Activity {
              * When both service and page loaded then proceed.
              * The plan will be loaded either from here or from page load end event
              */
-            mTimer = new Timer();
-            TimerTask sim = new UpdateTask();
-            mTimer.scheduleAtFixedRate(sim, 0, 1000);
+            mTimer = Scheduler.getInstance().scheduleAtFixedRate("Plan Page", Scheduler.PRIORITY_NORMAL,
+                    0, 1000, new UpdateTask());
         }
 
         /*
@@ -389,7 +387,7 @@ public class PlanActivity extends Activity {
     * A background timer class to send off messages if we are in simulation mode
     * @author zkhan
     */
-    private class UpdateTask extends TimerTask {
+    private class UpdateTask implements Runnable {
 	    // Called whenever the timer fires.
 	    public void run() {
 	    	if(mService != null && mIsPageLoaded && !mInited) {
@@ -43,6 +43,7 @@ import com.ds.avare.place.Destination;
 import com.ds.avare.place.Plan;
 import com.ds.avare.plan.Cifp;
 import com.ds.avare.storage.Preferences;
+import com.ds.avare.storage.ProductCatalog;
 import com.ds.avare.storage.StringPreference;
 import com.ds.avare.utils.Helper;
 import com.ds.avare.views.PlatesView;
@@ -919,7 +920,7 @@ public class PlatesActivity extends Activity implements Observer, Chronometer.On
      * @return
      */
     public static boolean doesAirportHavePlates(String mapFolder, String id) {
-        return new File(mapFolder + "/plates/" + id).exists() || new File(mapFolder + "/area/" + id).exists();
+        return ProductCatalog.getInstance(mapFolder).hasPlates(id);
     }
     
     /**
@@ -929,7 +930,7 @@ public class PlatesActivity extends Activity implements Observer, Chronometer.On
      * @return
      */
     public static boolean doesAirportHaveAirportDiagram(String mapFolder, String id) {
-        return new File(mapFolder + "/plates/" + id + "/" + AD + Preferences.IMAGE_EXTENSION).exists();
+        return ProductCatalog.getInstance(mapFolder).hasDiagram(id);
     }
     
     
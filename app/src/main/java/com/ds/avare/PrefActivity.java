@@ -11,9 +11,13 @@ Redistribution and use in source and binary forms, with or without modification,
 */
 
 package com.ds.avare;
+import java.io.File;
+
 import com.ds.avare.gps.GpsInterface;
+import com.ds.avare.shapes.RawTile;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.TaskExecutor;
 
 import android.content.ComponentName;
 import android.content.Context;
@@ -21,6 +25,7 @@ import android.content.Intent;
 import android.content.ServiceConnection;
 import android.location.GpsStatus;
 import android.location.Location;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.IBinder;
 import android.preference.PreferenceActivity;
@@ -32,6 +37,7 @@ import android.preference.PreferenceActivity;
  */
 public class PrefActivity extends PreferenceActivity {
     private StorageService mService;
+    private boolean mRawTiles;
 
     /*
      * Start GPS
@@ -63,6 +69,7 @@ public class PrefActivity extends PreferenceActivity {
         addPreferencesFromResource(R.xml.preferences);
         setContentView(R.layout.preferences);
         mService = null;        
+        mRawTiles = new Preferences(this).useRawTiles();
     }
 
     /** Defines callbacks for service binding, passed to bindService() */
@@ -119,7 +126,11 @@ public class PrefActivity extends PreferenceActivity {
         /*
          * This should update preferences in static memory
          */
-        new Preferences(this);
+        Preferences pref = new Preferences(this);
+        if(pref.useRawTiles() != mRawTiles) {
+            mRawTiles = pref.useRawTiles();
+            convertTiles(new File(pref.mapsFolder() + "/tiles"), mRawTiles);
+        }
 
         getApplicationContext().unbindService(mConnection);
         
@@ -134,4 +145,25 @@ public class PrefActivity extends PreferenceActivity {
             mService.getExternalPlanMgr().forceReload(); // Reload plans too
         }
     }
+
+    /**
+     * Make raw tiles of all charts when fast tiles are turned on, delete them when turned off.
+     * @param dir
+     * @param raw
+     */
+    private void convertTiles(final File dir, final boolean raw) {
+        final String extensions[] = getResources().getStringArray(R.array.ChartFileExtesion);
+        TaskExecutor.execute(new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                if(raw) {
+                    RawTile.convertAll(dir, extensions);
+                }
+                else {
+                    RawTile.deleteAll(dir);
+                }
+                return null;
+            }
+        }, TaskExecutor.BULK, "rawtiles");
+    }
 }
@@ -19,6 +19,7 @@ import android.content.Intent;
 import android.content.ServiceConnection;
 import android.location.GpsStatus;
 import android.location.Location;
+import android.location.LocationManager;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Debug;
@@ -33,9 +34,14 @@ import android.widget.SeekBar.OnSeekBarChangeListener;
 import android.widget.TextView;
 
 import com.ds.avare.gps.GpsInterface;
+import com.ds.avare.gps.GpsParams;
+import com.ds.avare.gps.NavBenchmark;
+import com.ds.avare.gps.NavState;
+import com.ds.avare.shapes.RawTile;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.MemoryGovernor;
 import com.ds.avare.views.MemView;
 import com.ds.avare.views.SatelliteView;
 
@@ -59,6 +65,8 @@ public class SatelliteActivity extends Activity  {
     private TextView mMapAreaText;
     
     private StorageService mService;
+    private NavBenchmark mBenchmark;
+    private String mBenchmarkText = "";
     
     private SeekBar mBrightnessBar;
     
@@ -127,7 +135,8 @@ public class SatelliteActivity extends Activity  {
 
 		long max = rt.maxMemory() / (1024 * 1024);
 
-		mMemText.setText(totalAlloc + "MB/" + max + "MB");
+		mMemText.setText(totalAlloc + "MB/" + max + "MB\n" + MemoryGovernor.getInstance().getStats() + "\n" + RawTile.getStats()
+		        + "\n" + mBenchmarkText);
         mMemView.updateMemStatus((float)totalAlloc / (float)max);
     }
 
@@ -179,6 +188,17 @@ public class SatelliteActivity extends Activity  {
         mMemText = (TextView)view.findViewById(R.id.satellite_text_mem_details);
         mMapAreaText = (TextView)view.findViewById(R.id.satellite_text_map_details);
 
+        /*
+         * Long press on memory runs position processing benchmark, in simulation mode
+         */
+        mMemText.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                startBenchmark();
+                return true;
+            }
+        });
+
         /*
          * Set brightness bar
          */        
@@ -294,6 +314,49 @@ public class SatelliteActivity extends Activity  {
 
     }
     
+    /**
+     * Feed made up fixes at 10 and 20 Hz and show processing times
+     */
+    private void startBenchmark() {
+        if(null == mService || null != mBenchmark) {
+            return;
+        }
+        if(!new Preferences(this).isSimulationMode()) {
+            mBenchmarkText = getString(R.string.NavBenchmarkSimulation);
+            updateMem();
+            return;
+        }
+        Location start;
+        NavState state = mService.getNavState();
+        GpsParams params = mService.getGpsParams();
+        if(null != state) {
+            start = state.getLocation();
+        }
+        else if(null != params) {
+            start = new Location(LocationManager.GPS_PROVIDER);
+            start.setLongitude(params.getLongitude());
+            start.setLatitude(params.getLatitude());
+        }
+        else {
+            return;
+        }
+        mBenchmark = new NavBenchmark(mService.getNavPipeline(), start, new NavBenchmark.Listener() {
+            @Override
+            public void onProgress(String status) {
+                mBenchmarkText = status;
+                updateMem();
+            }
+
+            @Override
+            public void onDone(String result) {
+                mBenchmarkText = result;
+                mBenchmark = null;
+                updateMem();
+            }
+        });
+        mBenchmark.start();
+    }
+
     /* (non-Javadoc)
      * @see android.app.Activity#onPause()
      */
@@ -301,6 +364,11 @@ public class SatelliteActivity extends Activity  {
     protected void onPause() {
         super.onPause();
         getApplicationContext().unbindService(mConnection);
+
+        if(null != mBenchmark) {
+            mBenchmark.cancel();
+            mBenchmark = null;
+        }
         
         if(null != mService) {
             mService.unregisterGpsListener(mGpsInfc);
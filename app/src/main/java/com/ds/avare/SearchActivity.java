@@ -24,6 +24,7 @@ import com.ds.avare.place.Destination;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.storage.StringPreference;
 import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.TaskExecutor;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -426,7 +427,7 @@ public class SearchActivity extends Activity implements Observer {
                 mProgressBar.setVisibility(ProgressBar.VISIBLE);
 
                 mSearchTask = new SearchTask();
-                mSearchTask.execute(s.toString());
+                TaskExecutor.execute(mSearchTask, TaskExecutor.INTERACTIVE, "search", s.toString());
 
             }
         });
@@ -29,6 +29,9 @@ import com.ds.avare.flightLog.KMLRecorder;
 import com.ds.avare.gps.Gps;
 import com.ds.avare.gps.GpsInterface;
 import com.ds.avare.gps.GpsParams;
+import com.ds.avare.gps.NavPipeline;
+import com.ds.avare.gps.NavRoute;
+import com.ds.avare.gps.NavState;
 import com.ds.avare.instruments.CDI;
 import com.ds.avare.instruments.DistanceRings;
 import com.ds.avare.instruments.EdgeDistanceTape;
@@ -37,7 +40,6 @@ import com.ds.avare.instruments.FuelTimer;
 import com.ds.avare.instruments.Odometer;
 import com.ds.avare.instruments.UpTimer;
 import com.ds.avare.instruments.VNAV;
-import com.ds.avare.instruments.VSI;
 import com.ds.avare.network.ShapeFetcher;
 import com.ds.avare.network.TFRFetcher;
 import com.ds.avare.place.Area;
@@ -46,19 +48,23 @@ import com.ds.avare.place.Plan;
 import com.ds.avare.position.Movement;
 import com.ds.avare.position.Pan;
 import com.ds.avare.shapes.Draw;
-import com.ds.avare.shapes.ElevationTile;
 import com.ds.avare.shapes.MetarLayer;
 import com.ds.avare.shapes.PixelDraw;
 import com.ds.avare.shapes.RadarLayer;
 import com.ds.avare.shapes.ShapeFileShape;
 import com.ds.avare.shapes.TFRShape;
-import com.ds.avare.shapes.Tile;
 import com.ds.avare.shapes.TileMap;
 import com.ds.avare.storage.DataSource;
+import com.ds.avare.storage.Preferences;
+import com.ds.avare.terrain.LookAhead;
+import com.ds.avare.terrain.TerrainService;
 import com.ds.avare.userDefinedWaypoints.UDWMgr;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.InfoLines;
+import com.ds.avare.utils.MemoryGovernor;
 import com.ds.avare.utils.Mutex;
+import com.ds.avare.utils.Scheduler;
+import com.ds.avare.utils.Startup;
 import com.ds.avare.utils.NavComments;
 import com.ds.avare.utils.ShadowedText;
 import com.ds.avare.weather.AdsbWeatherCache;
@@ -67,8 +73,6 @@ import com.ds.avare.weather.InternetWeatherCache;
 import java.net.URI;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * @author zkhan
@@ -89,11 +93,11 @@ public class StorageService extends Service {
     /**
      * Store this
      */
-    private Destination mDestination;
+    private volatile Destination mDestination;
     /**
      * Store this
      */
-    private GpsParams mGpsParams;
+    private volatile GpsParams mGpsParams;
     /**
      * Store this
      */
@@ -120,7 +124,7 @@ public class StorageService extends Service {
      * Last location and its sem for sending NMEA to the world
      */
     private Mutex mLocationSem;
-    private Location mLocation;
+    private volatile Location mLocation;
     
     private boolean mDownloading;
     
@@ -165,13 +169,32 @@ public class StorageService extends Service {
     /**
      * For performing periodic activities.
      */
-    private Timer mTimer;
+    private Scheduler.Task mTimer;
     
     /*
      * A list of GPS listeners
      */
     private LinkedList<GpsInterface> mGpsCallbacks;
 
+    /*
+     * Starts components, and traces how long each took
+     */
+    private Startup mStartup;
+
+    private static final String STARTUP_DATA = "Data";
+    private static final String STARTUP_TILES = "Tiles";
+    private static final String STARTUP_WEATHER = "Weather";
+    private static final String STARTUP_TERRAIN = "Terrain";
+    private static final String STARTUP_INSTRUMENTS = "Instruments";
+    private static final String STARTUP_UDW = "UDW";
+    private static final String STARTUP_PLANS = "Plans";
+
+    /*
+     * Makes navigation state from fixes
+     */
+    private NavPipeline mNavPipeline;
+    private Preferences mPref;
+
     /*
      * A diagram bitmap
      */
@@ -188,7 +211,16 @@ public class StorageService extends Service {
     
     private TileMap mTiles;
     
-    private ElevationTile mElevTile;
+    /*
+     * Terrain heights from DEM tiles
+     */
+    private TerrainService mTerrain;
+
+    /*
+     * Terrain and obstacles ahead
+     */
+    private LookAhead mLookAhead;
+    private Scheduler.Task mLookAheadTask;
     
     // Handler for the top two lines of status information
     private InfoLines mInfoLines;
@@ -224,9 +256,6 @@ public class StorageService extends Service {
     // The vertical approach slope indicator
     private VNAV mVNAV;
     
-    // Vertical speed indicator
-    private VSI mVSI;
-    
     // User defined points of interest
     private UDWMgr mUDWMgr;
 
@@ -295,111 +324,192 @@ public class StorageService extends Service {
           
         super.onCreate();
 
-        mImageDataSource = new DataSource(getApplicationContext());
-        
-        mArea = new Area(mImageDataSource, this);
-        mPlan = new Plan(this, this);
         mDownloading = false;
-        
-        /*
-         * All tiles
-         */
-        mTiles = new TileMap(getApplicationContext());
-
-        mInternetWeatherCache = new InternetWeatherCache();
-        mInternetWeatherCache.parse(this);
-        mTFRFetcher = new TFRFetcher(getApplicationContext());
-        mTFRFetcher.parse();
-        mShapeFetcher = new ShapeFetcher(getApplicationContext());
-        mShapeFetcher.parse();
-        mTimer = new Timer();
-        TimerTask gpsTime = new UpdateTask();
         mIsGpsOn = false;
         mGpsCallbacks = new LinkedList<GpsInterface>();
         mDiagramBitmap = null;
         mAfdIndex = 0;
         mTrafficCache = new TrafficCache();
         mLocationSem = new Mutex();
-        mAdsbWeatherCache = new AdsbWeatherCache(getApplicationContext(), this);
         mLastPlateAirport = null;
         mLastPlateIndex = 0;
-        mElevTile = new ElevationTile(getApplicationContext());
         mCheckLists = null;
-        
-        mCap = new DrawCapLines(this, getApplicationContext(), getResources().getDimension(R.dimen.distanceRingNumberTextSize));
-        
-        mInfoLines = new InfoLines(this);
-
-        mShadowedText = new ShadowedText(getApplicationContext());
-        
-        mDraw = new Draw();
-        mPixelDraw = new PixelDraw();
-        
         mElev = -1;
         mThreshold = 0;
-        
-        mChecklist = new Checklist("");
-        
-        /*
-         * Allocate a flight timer object
-         */
-        mFlightTimer = new FlightTimer();
 
         /*
-         * Start up the KML recorder feature
-         */
-        mKMLRecorder = new KMLRecorder();
-        
-        /*
-         * Internet nexrad
+         * Plate is on screen when loaded, so it is only counted
          */
-        mRadarLayer = new RadarLayer(getApplicationContext());
+        MemoryGovernor.getInstance().register("Plate", MemoryGovernor.PRIORITY_HIGH, new MemoryGovernor.Cache() {
+            @Override
+            public long getBytes() {
+                BitmapHolder b = mDiagramBitmap;
+                return null == b ? 0 : MemoryGovernor.getBytes(b.getBitmap());
+            }
+
+            @Override
+            public long trim(long bytes) {
+                return 0;
+            }
+        });
 
         /*
-         * Internet metar
+         * Components in order of what they need. Trace of each launch goes in startup.csv
          */
-        mMetarLayer = new MetarLayer(getApplicationContext());
+        mStartup = new Startup(new Preferences(getApplicationContext()).mapsFolder() + "/startup.csv");
+
+        mStartup.add(STARTUP_DATA, false, new Runnable() {
+            @Override
+            public void run() {
+                mImageDataSource = new DataSource(getApplicationContext());
+                mArea = new Area(mImageDataSource, StorageService.this);
+                mPlan = new Plan(StorageService.this, StorageService.this);
+            }
+        });
+
+        mStartup.add(STARTUP_TILES, false, new Runnable() {
+            @Override
+            public void run() {
+                /*
+                 * All tiles
+                 */
+                mTiles = new TileMap(getApplicationContext());
+            }
+        }, STARTUP_DATA);
+
+        mStartup.add(STARTUP_WEATHER, false, new Runnable() {
+            @Override
+            public void run() {
+                // these start their own background tasks, from main
+                mInternetWeatherCache = new InternetWeatherCache();
+                mInternetWeatherCache.parse(StorageService.this);
+                mTFRFetcher = new TFRFetcher(getApplicationContext());
+                mTFRFetcher.parse();
+                mShapeFetcher = new ShapeFetcher(getApplicationContext());
+                mShapeFetcher.parse();
+                mAdsbWeatherCache = new AdsbWeatherCache(getApplicationContext(), StorageService.this);
+                MemoryGovernor.getInstance().register("NEXRAD", MemoryGovernor.PRIORITY_LOW, mAdsbWeatherCache.getNexrad());
+                MemoryGovernor.getInstance().register("NEXRAD CONUS", MemoryGovernor.PRIORITY_LOW, mAdsbWeatherCache.getNexradConus());
+
+                /*
+                 * Internet nexrad
+                 */
+                mRadarLayer = new RadarLayer(getApplicationContext());
+
+                /*
+                 * Internet metar
+                 */
+                mMetarLayer = new MetarLayer(getApplicationContext());
+            }
+        }, STARTUP_DATA);
+
+        mStartup.add(STARTUP_TERRAIN, false, new Runnable() {
+            @Override
+            public void run() {
+                mTerrain = new TerrainService(getApplicationContext());
+                mLookAhead = new LookAhead(StorageService.this);
+                mLookAheadTask = Scheduler.getInstance().scheduleAtFixedRate("LookAhead", Scheduler.PRIORITY_NORMAL,
+                        0, LookAhead.PERIOD_MS, mLookAhead);
+            }
+        }, STARTUP_DATA);
+
+        mStartup.add(STARTUP_INSTRUMENTS, false, new Runnable() {
+            @Override
+            public void run() {
+                mCap = new DrawCapLines(StorageService.this, getApplicationContext(),
+                        getResources().getDimension(R.dimen.distanceRingNumberTextSize));
+
+                mInfoLines = new InfoLines(StorageService.this);
+
+                mShadowedText = new ShadowedText(getApplicationContext());
+
+                mDraw = new Draw();
+                mPixelDraw = new PixelDraw();
+
+                mChecklist = new Checklist("");
+
+                /*
+                 * Allocate a flight timer object
+                 */
+                mFlightTimer = new FlightTimer();
+
+                /*
+                 * Start up the KML recorder feature
+                 */
+                mKMLRecorder = new KMLRecorder();
+
+                /*
+                 * Start the odometer now
+                 */
+                mOdometer = new Odometer();
+
+                // Allocate the Course Deviation Indicator
+                mCDI = new CDI();
+
+                // Allocate the VNAV
+                mVNAV = new VNAV();
+
+                // Allocate a new DistanceRing instrument
+                mDistanceRings = new DistanceRings(StorageService.this, getApplicationContext(),
+                        getResources().getDimension(R.dimen.distanceRingNumberTextSize));
+
+                mFlightStatus = new FlightStatus(mGpsParams);
+
+                // Allocate the nav comments object
+                mNavComments = new NavComments();
+
+                mEdgeDistanceTape = new EdgeDistanceTape();
+
+                // Declare a fuel tank switching timer. Default to 30
+                // minutes per tank
+                mFuelTimer = new FuelTimer(getApplicationContext());
+                mUpTimer = new UpTimer();
+            }
+        }, STARTUP_DATA);
 
         /*
-         * Start the odometer now
+         * These parse every file in their folder, so off main. Getters wait for them.
          */
-        mOdometer = new Odometer();
-
-        // Allocate the Course Deviation Indicator
-        mCDI = new CDI();
+        mStartup.add(STARTUP_UDW, true, new Runnable() {
+            @Override
+            public void run() {
+                // Allocate a handler for PointsOfInterest
+                mUDWMgr = new UDWMgr(StorageService.this, getApplicationContext());
+            }
+        });
 
-        // Allocate the VNAV
-        mVNAV = new VNAV();
-        
-        // Allocate the VSI
-        mVSI = new VSI();
-        
-        // Allocate a handler for PointsOfInterest
-        mUDWMgr = new UDWMgr(this, getApplicationContext()); 
-      
-        // Allocate a new DistanceRing instrument
-        mDistanceRings = new DistanceRings(this, getApplicationContext(), getResources().getDimension(R.dimen.distanceRingNumberTextSize));
-        
-        mFlightStatus = new FlightStatus(mGpsParams);
-        
-        // For handling external flight plans
-        mExternalPlanMgr = new ExternalPlanMgr(this, getApplicationContext());
+        mStartup.add(STARTUP_PLANS, true, new Runnable() {
+            @Override
+            public void run() {
+                // For handling external flight plans
+                mExternalPlanMgr = new ExternalPlanMgr(StorageService.this, getApplicationContext());
+            }
+        });
 
-        // Allocate the nav comments object
-        mNavComments = new NavComments();
-        
-        mEdgeDistanceTape = new EdgeDistanceTape();
-        
-        // Declare a fuel tank switching timer. Default to 30
-        // minutes per tank
-        mFuelTimer = new FuelTimer(getApplicationContext());
-        mUpTimer = new UpTimer();
+        mStartup.start();
 
         /*
          * Monitor TFR every hour.
          */
-        mTimer.scheduleAtFixedRate(gpsTime, 0, 60 * 1000);
+        mTimer = Scheduler.getInstance().scheduleAtFixedRate("Service", Scheduler.PRIORITY_LOW,
+                0, 60 * 1000, new UpdateTask());
         
+        /*
+         * Position processing on a worker thread, results applied here on main thread
+         */
+        mPref = new Preferences(getApplicationContext());
+        mNavPipeline = new NavPipeline(new NavPipeline.Listener() {
+            @Override
+            public void onFix(NavState state) {
+                recordLocation(state);
+            }
+
+            @Override
+            public void onNavState(NavState state) {
+                applyLocation(state);
+            }
+        });
+
         /*
          * Start GPS, and call all activities registered to listen to GPS
          */
@@ -442,62 +552,23 @@ public class StorageService extends Service {
                     return;
                 }
                 
-                LinkedList<GpsInterface> list = extracted();
-                Iterator<GpsInterface> it = list.iterator();
-                while (it.hasNext()) {
-                    GpsInterface infc = it.next();
-                    infc.locationCallback(location);
+                if(null == location) {
+                    notifyLocation(null);
+                    return;
                 }
-                
-                /*
-                 * Update the service objects with location
-                 */
-                if(null != location) {
-                    if(!location.getProvider().equals(LocationManager.GPS_PROVIDER)) {
-                        /*
-                         * Getting location from somewhere other than built in GPS.
-                         * Update timeout so we do not timeout on GPS timer.
-                         */
-                        mGps.updateTimeout();
-                    }
-                    setGpsParams(new GpsParams(location));
-                    mLocation = location;
-                    mLocationSem.unlock();
-                    mArea.updateLocation(getGpsParams());
-                    mPlan.updateLocation(getGpsParams());
-
-                    // Adjust the flight timer
-                    getFlightTimer().setSpeed(mGpsParams.getSpeed());
-                    
-                    // Tell the KML recorder a new point to potentially plot
-                    getKMLRecorder().setGpsParams(mGpsParams);
-                    
-                    // Let the odometer know how far we traveled
-                    getOdometer().updateValue(mGpsParams);
-                    
-                    // Vertical descent rate calculation
-                    getVNAV().calcGlideSlope(mGpsParams, mDestination);
-                    
-                    // Tell the VSI where we are.
-                    getVSI().updateValue(mGpsParams);
-                    
-                    getFlightStatus().updateLocation(mGpsParams);
-                    
-                    if(mPlan.hasDestinationChanged()) {
-                        /*
-                         * If plan active then set destination to next not passed way point
-                         */
-                        setDestinationPlanNoChange(mPlan.getDestination(mPlan.findNextNotPassed()));
-                    }
 
-                    if(mDestination != null) {
-                        mDestination.updateTo(getGpsParams());
-                    }
-                    
-                    // Calculate course line deviation - this must be AFTER the destination update
-                    // since the CDI uses the destination in its calculations
-                    getCDI().calcDeviation(mDestination, getPlan());
+                if(!location.getProvider().equals(LocationManager.GPS_PROVIDER)) {
+                    /*
+                     * Getting location from somewhere other than built in GPS.
+                     * Update timeout so we do not timeout on GPS timer.
+                     */
+                    mGps.updateTimeout();
                 }
+
+                /*
+                 * Update the service objects with location, listeners are called when it is done
+                 */
+                mNavPipeline.submit(location);
             }
 
             /*
@@ -532,6 +603,24 @@ public class StorageService extends Service {
         mGps = new Gps(this, intf);
     }
         
+    /* (non-Javadoc)
+     * @see android.app.Service#onTrimMemory(int)
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        MemoryGovernor.getInstance().onTrimMemory(level);
+    }
+
+    /* (non-Javadoc)
+     * @see android.app.Service#onLowMemory()
+     */
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        MemoryGovernor.getInstance().onLowMemory();
+    }
+
     /* (non-Javadoc)
      * @see android.app.Service#onDestroy()
      */
@@ -541,7 +630,6 @@ public class StorageService extends Service {
          * If we ever exit, reclaim memory
          */
         mTiles.recycleBitmaps();
-        mElevTile.recycleBitmaps();
         
         if(null != mDiagramBitmap) {
             mDiagramBitmap.recycle();
@@ -554,6 +642,12 @@ public class StorageService extends Service {
         if(mTimer != null) {
             mTimer.cancel();
         }
+        if(mLookAheadTask != null) {
+            mLookAheadTask.cancel();
+        }
+        Scheduler.shutdown();
+        mNavPipeline.quit();
+
         if(mGps != null) {
             mGps.stop();
         }
@@ -638,6 +732,7 @@ public class StorageService extends Service {
         if(null != mPlan){
         	mPlan.makeInactive();
         }
+        updateNavRoute();
     }
 
     /**
@@ -652,6 +747,7 @@ public class StorageService extends Service {
         if(null != destination) {
         	mNavComments.setRight(destination.getCmt());
         }
+        updateNavRoute();
     }
 
     /**
@@ -694,6 +790,97 @@ public class StorageService extends Service {
         mLastAfdAirport = airport;
     }
 
+    /**
+     * Call all GPS listeners with a location
+     * @param location
+     */
+    private void notifyLocation(Location location) {
+        LinkedList<GpsInterface> list = (LinkedList<GpsInterface>)mGpsCallbacks.clone();
+        Iterator<GpsInterface> it = list.iterator();
+        while (it.hasNext()) {
+            GpsInterface infc = it.next();
+            infc.locationCallback(location);
+        }
+    }
+
+    /**
+     * Every fix in order, on main thread. Things that add up fixes, and plan way point passage.
+     * @param state made from fix
+     */
+    private void recordLocation(NavState state) {
+        GpsParams params = state.getParams();
+
+        // Adjust the flight timer
+        getFlightTimer().setSpeed(params.getSpeed());
+
+        // Tell the KML recorder a new point to potentially plot
+        getKMLRecorder().setGpsParams(params);
+
+        // Let the odometer know how far we traveled
+        getOdometer().updateValue(params);
+
+        Plan plan = mPlan;
+        if(state.isEarlyPass()) {
+            plan.earlyPass();
+        }
+        if(state.getPlanPassed() >= 0 && plan.pass(state.getPlanPassed())) {
+            /*
+             * Plan active, set destination to next not passed way point
+             */
+            setDestinationPlanNoChange(plan.getDestination(plan.findNextNotPassed()));
+        }
+    }
+
+    /**
+     * Latest fix, on main thread. Update what views show from position.
+     * @param state made from fix
+     */
+    private void applyLocation(NavState state) {
+        GpsParams params = state.getParams();
+        setGpsParams(params);
+        mLocation = state.getLocation();
+        mLocationSem.unlock();
+
+        // Distance, bearing and ETE of each way point and destination, as shown
+        mPlan.updateLocation(params);
+        Destination destination = mDestination;
+        if(destination != null) {
+            destination.updateTo(params);
+        }
+
+        mArea.updateLocation(params);
+        getFlightStatus().updateLocation(params);
+
+        // Plan may have moved on, or been changed since last fix
+        updateNavRoute();
+
+        notifyLocation(state.getLocation());
+    }
+
+    /**
+     * Copy of destination and plan that fixes are processed against, on main thread
+     */
+    private void updateNavRoute() {
+        if(null != mNavPipeline && null != mPlan) {
+            mNavPipeline.setRoute(new NavRoute(mDestination, mPlan, mPref.isSimulationMode()));
+        }
+    }
+
+    /**
+     * Latest navigation state, safe to read on any thread
+     * @return null if no fix yet
+     */
+    public NavState getNavState() {
+        return mNavPipeline.getState();
+    }
+
+    /**
+     * @return Position processing times
+     */
+    public NavPipeline getNavPipeline() {
+        return mNavPipeline;
+    }
+
     /**
      * @return
      */
@@ -756,6 +943,7 @@ public class StorageService extends Service {
      */
     public void newPlan() {
         mPlan = new Plan(this, this);
+        updateNavRoute();
     }
 
     /**
@@ -763,6 +951,7 @@ public class StorageService extends Service {
      */
     public void newPlanFromStorage(String storage, boolean reverse) {
         mPlan = new Plan(this, this, storage, reverse);
+        updateNavRoute();
     }
 
     /**
@@ -803,10 +992,10 @@ public class StorageService extends Service {
      * @author zkhan
      *
      */
-    private class UpdateTask extends TimerTask {
+    private class UpdateTask implements Runnable {
         
         /* (non-Javadoc)
-         * @see java.util.TimerTask#run()
+         * @see java.lang.Runnable#run()
          */
         public void run() {
 
@@ -947,10 +1136,6 @@ public class StorageService extends Service {
     	return mVNAV;
     }
     
-    public VSI getVSI() {
-    	return mVSI;
-    }
-    
     public FlightStatus getFlightStatus() {
         return mFlightStatus;
     }
@@ -1059,18 +1244,18 @@ public class StorageService extends Service {
  
     /**
      * 
-     * @param t
+     * @return
      */
-    public void setElevationTile(Tile t) {
-        mElevTile.setElevationTile(t);
+    public TerrainService getTerrain() {
+        return mTerrain;
     }
 
     /**
      * 
      * @return
      */
-    public BitmapHolder getElevationBitmap() {
-        return mElevTile.getElevationBitmap();
+    public LookAhead getLookAhead() {
+        return mLookAhead;
     }
     
     /**
@@ -1132,15 +1317,31 @@ public class StorageService extends Service {
     	return mShadowedText;
     }
     
+    /**
+     * @return Startup of components, and its trace
+     */
+    public Startup getStartup() {
+        return mStartup;
+    }
+
     public UDWMgr getUDWMgr() {
+        mStartup.await(STARTUP_UDW);
     	return mUDWMgr;
     }
+
+    /**
+     * @return true when user defined waypoints are parsed, so getUDWMgr() will not wait
+     */
+    public boolean isUDWLoaded() {
+        return mStartup.isDone(STARTUP_UDW);
+    }
     
     public DistanceRings getDistanceRings() {
     	return mDistanceRings;
     }
     
     public ExternalPlanMgr getExternalPlanMgr() {
+        mStartup.await(STARTUP_PLANS);
     	return mExternalPlanMgr;
     }
     
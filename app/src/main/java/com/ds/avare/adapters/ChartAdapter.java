@@ -23,13 +23,10 @@ import android.widget.TextView;
 
 import com.ds.avare.R;
 import com.ds.avare.storage.Preferences;
+import com.ds.avare.storage.ProductCatalog;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.NetworkHelper;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import com.ds.avare.utils.TaskExecutor;
 
 /**
  * @author zkhan
@@ -54,8 +51,6 @@ public class ChartAdapter extends BaseExpandableListAdapter {
     private int[][] mChecked;
     private String[][] mVers;
     
-    static final int blocksize = 128;
-    
     private static final int GROUP_DATABASE = 0;
     private static final int GROUP_WEATHER = 1;
     private static final int GROUP_OTHER = 2;
@@ -197,7 +192,7 @@ public class ChartAdapter extends BaseExpandableListAdapter {
         /*
          * Update versions
          */
-        new ViewTask().execute();        
+        TaskExecutor.execute(new ViewTask(), TaskExecutor.BACKGROUND, null);
     }
     
     /**
@@ -220,27 +215,31 @@ public class ChartAdapter extends BaseExpandableListAdapter {
              */
             
             /*
-             * Load versions
+             * Versions from catalog of installed products.
+             * First time, make the catalog from version files on disk.
              */
+            ProductCatalog catalog = ProductCatalog.getInstance(mPref.mapsFolder());
+            if(!catalog.isBuilt()) {
+                int count = 0;
+                for(int group = GROUP_DATABASE; group < GROUP_NUM; group++) {
+                    count += mChildrenFiles[group].length;
+                }
+                String names[] = new String[count];
+                count = 0;
+                for(int group = GROUP_DATABASE; group < GROUP_NUM; group++) {
+                    for(int child = 0; child < mChildrenFiles[group].length; child++) {
+                        names[count++] = mChildrenFiles[group][child];
+                    }
+                }
+                catalog.build(names);
+            }
+
             for(int group = GROUP_DATABASE; group < GROUP_NUM; group++) {
                 for(int child = 0; child < vers[group].length; child++) {
                     /*
-                     * Read version from file and if it exists.
+                     * Preferably do assignment on UI thread in postExecute()
                      */
-                    File file = new File(mPref.mapsFolder() + "/" + mChildrenFiles[group][child]);
-                    vers[group][child] = null;
-                    if(file.exists()) {
-                        try {
-                            BufferedReader br = new BufferedReader(new FileReader(file), blocksize);
-                            /*
-                             * Preferably do assignment on UI thread in postExecute()
-                             */
-                            vers[group][child] = br.readLine();
-                            br.close();
-                        }
-                        catch (IOException e) {
-                        }
-                    }
+                    vers[group][child] = catalog.getCycle(mChildrenFiles[group][child]);
                 }
             }
             return true;
@@ -257,7 +256,7 @@ public class ChartAdapter extends BaseExpandableListAdapter {
      * Just update the version numbers.
      */
     public void refresh() {
-        new ViewTask().execute();
+        TaskExecutor.execute(new ViewTask(), TaskExecutor.BACKGROUND, null);
     }
 
     /**
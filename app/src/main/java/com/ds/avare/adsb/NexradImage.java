@@ -15,7 +15,9 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 
+import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.MemoryGovernor;
 
 import android.util.SparseArray;
 
@@ -24,7 +26,7 @@ import android.util.SparseArray;
  * @author zkhan
  *
  */
-public class NexradImage {
+public class NexradImage implements MemoryGovernor.Cache {
     
     private static final long EXPIRES = 1000 * 60 * 60 * 2; // 2 hours
 
@@ -90,8 +92,50 @@ public class NexradImage {
             }
             mImg.put(block, new NexradBitmap(time, data, block, isConus, cols, rows));
             mUpdated = time;
+            MemoryGovernor.getInstance().check();
         }
     }
+
+    /**
+     * @return bytes of all block bitmaps
+     */
+    @Override
+    public long getBytes() {
+        long bytes = 0;
+        for(int i = 0; i < mImg.size(); i++) {
+            BitmapHolder b = mImg.valueAt(i).getBitmap();
+            if(null != b) {
+                bytes += MemoryGovernor.getBytes(b.getBitmap());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Drop oldest blocks first
+     * @param bytes
+     * @return bytes freed
+     */
+    @Override
+    public long trim(long bytes) {
+        long freed = 0;
+        while(freed < bytes && mImg.size() > 0) {
+            int oldest = 0;
+            for(int i = 1; i < mImg.size(); i++) {
+                if(mImg.valueAt(i).timestamp < mImg.valueAt(oldest).timestamp) {
+                    oldest = i;
+                }
+            }
+            NexradBitmap n = mImg.valueAt(oldest);
+            BitmapHolder b = n.getBitmap();
+            if(null != b) {
+                freed += MemoryGovernor.getBytes(b.getBitmap());
+            }
+            n.discard();
+            mImg.delete(mImg.keyAt(oldest));
+        }
+        return freed;
+    }
     
     /**
      * 
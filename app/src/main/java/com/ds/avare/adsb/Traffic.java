@@ -18,6 +18,13 @@ public class Traffic {
     public float mHeading;
     public String mCallSign;
     private long mLastUpdate;
+
+    /*
+     * Label is made again only when what it shows changes, not every frame
+     */
+    private String mLabel;
+    private int mLabelDiff;
+    private boolean mLabelPressure;
     
 
     public static final double TRAFFIC_ALTITUDE_DIFF_DANGEROUS = 1000; //ft 300m required minimum
@@ -146,17 +153,17 @@ public class Traffic {
             if(altitude == -Integer.MAX_VALUE) {
                 // This is when we do not have our own altitude set with ownship
                 diff = (int)t.mAltitude;
-                text = diff + "PA'"; // show that this is pressure altitude
+                text = t.getLabel(diff, true); // show that this is pressure altitude
                 // do not filter when own PA is not known
             }
             else {
                 // Own PA is known, show height difference
                 diff = (int)(t.mAltitude - altitude);
-                text = (diff > 0 ? "+" : "") + diff + "'";
                 // filter
                 if(Math.abs(diff) > filterAltitude) {
                     continue;
                 }
+                text = t.getLabel(diff, false);
             }
 
 
@@ -188,6 +195,20 @@ public class Traffic {
 
     }
 
+    /**
+     * @param diff height to show
+     * @param pressure diff is pressure altitude
+     * @return
+     */
+    private String getLabel(int diff, boolean pressure) {
+        if(null == mLabel || diff != mLabelDiff || pressure != mLabelPressure) {
+            mLabel = pressure ? diff + "PA'" : (diff > 0 ? "+" : "") + diff + "'";
+            mLabelDiff = diff;
+            mLabelPressure = pressure;
+        }
+        return mLabel;
+    }
+
     /*
      * Determine if shape belong to a screen based on Screen longitude and latitude
      * and shape max/min longitude latitude
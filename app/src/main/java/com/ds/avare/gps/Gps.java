@@ -12,10 +12,9 @@ Redistribution and use in source and binary forms, with or without modification,
 package com.ds.avare.gps;
 
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import com.ds.avare.storage.Preferences;
+import com.ds.avare.utils.Scheduler;
 
 import android.content.Context;
 import android.location.GpsStatus;
@@ -57,7 +56,7 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
     /**
      * A timer that clicks to check GPS status
      */
-    private Timer mTimer;
+    private Scheduler.Task mTimer;
 
     /*
      * GPS manager
@@ -170,13 +169,11 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
          */
         if(null == mTimer) {
             updateTimeout();
-            mTimer = new Timer();
-            TimerTask gpsTime = new UpdateGps();
             /*
              * Give some delay for check start
              */
-            mTimer.scheduleAtFixedRate(gpsTime, (GPS_PERIOD_LONG_MS * 2),
-                    GPS_PERIOD_LONG_MS / 4);
+            mTimer = Scheduler.getInstance().scheduleAtFixedRate("GPS", Scheduler.PRIORITY_HIGH,
+                    (GPS_PERIOD_LONG_MS * 2), GPS_PERIOD_LONG_MS / 4, new UpdateGps());
         }
     }
     
@@ -283,10 +280,10 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
      * @author zkhan
      *
      */ 
-    private class UpdateGps extends TimerTask {
+    private class UpdateGps implements Runnable {
         
         /* (non-Javadoc)
-         * @see java.util.TimerTask#run()
+         * @see java.lang.Runnable#run()
          */
         @Override
         public void run() {
@@ -0,0 +1,161 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.gps;
+
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.ds.avare.utils.Scheduler;
+
+/**
+ * Feeds made up fixes through the position pipeline at 10 then 20 Hz, like ADS-B or a fast GPS,
+ * and reports processing time of each stage, fix to state latency, and states main was too busy to show at each rate.
+ * Fixes move the aircraft on its track, so only run this in simulation mode where real fixes are not used.
+ */
+public class NavBenchmark {
+
+    public static final int RATES[] = {10, 20};
+
+    /*
+     * Time at each rate, ms
+     */
+    private static final long DURATION = 10000;
+
+    private static final double DEFAULT_SPEED = 60; // m/s, about 120 knots
+    private static final double METERS_PER_DEGREE = 111120;
+
+    /**
+     * Gets result, on main thread
+     */
+    public interface Listener {
+        void onProgress(String status);
+        void onDone(String result);
+    }
+
+    private NavPipeline mPipeline;
+    private Listener mListener;
+    private Handler mMain;
+    private Scheduler.Task mTask;
+    private StringBuilder mResult;
+    private boolean mCancelled;
+
+    /*
+     * Made up aircraft, touched only by the feeding task
+     */
+    private double mLon;
+    private double mLat;
+    private double mAltitude;
+    private double mSpeed;
+    private double mBearing;
+
+    /**
+     * @param pipeline
+     * @param start where made up fixes start, its speed and bearing are kept
+     * @param listener
+     */
+    public NavBenchmark(NavPipeline pipeline, Location start, Listener listener) {
+        mPipeline = pipeline;
+        mListener = listener;
+        mMain = new Handler(Looper.getMainLooper());
+        mResult = new StringBuilder();
+        mLon = start.getLongitude();
+        mLat = start.getLatitude();
+        mAltitude = start.getAltitude();
+        mSpeed = start.getSpeed() > 0 ? start.getSpeed() : DEFAULT_SPEED;
+        mBearing = start.getBearing();
+    }
+
+    /**
+     * Run all rates, listener is called when done
+     */
+    public void start() {
+        run(0);
+    }
+
+    /**
+     * Stop feeding fixes, listener is not called
+     */
+    public synchronized void cancel() {
+        mCancelled = true;
+        if(null != mTask) {
+            mTask.cancel();
+        }
+    }
+
+    /**
+     * @param index of rate to run
+     */
+    private synchronized void run(final int index) {
+        if(mCancelled) {
+            return;
+        }
+        if(index >= RATES.length) {
+            mListener.onDone(mResult.toString());
+            return;
+        }
+        final int rate = RATES[index];
+        final long period = 1000 / rate;
+        final long end = System.currentTimeMillis() + DURATION;
+        mListener.onProgress("Nav benchmark " + rate + "Hz...");
+        mPipeline.resetStats();
+        mTask = Scheduler.getInstance().scheduleAtFixedRate("NavBenchmark", Scheduler.PRIORITY_HIGH, 0, period,
+                new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                if(now < end) {
+                    mPipeline.submit(makeFix(now, period));
+                    return;
+                }
+                mTask.cancel();
+                // let the last fix be processed before reading stats
+                mMain.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized(NavBenchmark.this) {
+                            if(mCancelled) {
+                                return;
+                            }
+                            mResult.append(rate).append("Hz ").append(mPipeline.getStats());
+                        }
+                        NavBenchmark.this.run(index + 1);
+                    }
+                }, period);
+            }
+        });
+    }
+
+    /**
+     * Next made up fix along the track
+     * @param time
+     * @param period ms since last fix
+     * @return
+     */
+    private Location makeFix(long time, long period) {
+        double d = mSpeed * period / 1000.0;
+        double b = Math.toRadians(mBearing);
+        mLat += d * Math.cos(b) / METERS_PER_DEGREE;
+        mLon += d * Math.sin(b) / (METERS_PER_DEGREE * Math.cos(Math.toRadians(mLat)));
+
+        Location l = new Location(LocationManager.GPS_PROVIDER);
+        l.setLongitude(mLon);
+        l.setLatitude(mLat);
+        l.setAltitude(mAltitude);
+        l.setSpeed((float)mSpeed);
+        l.setBearing((float)mBearing);
+        l.setTime(time);
+        return l;
+    }
+}
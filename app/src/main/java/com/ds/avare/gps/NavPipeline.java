@@ -0,0 +1,362 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.gps;
+import android.location.Location;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import com.ds.avare.instruments.VSI;
+import com.ds.avare.place.Passage;
+import com.ds.avare.position.Projection;
+import com.ds.avare.storage.Preferences;
+import com.ds.avare.utils.Helper;
+
+import java.util.LinkedList;
+
+/**
+ * Every fix from any thread is processed in order on a worker thread into a NavState:
+ * plan progress and way point passage, destination distance and bearing, CDI, VNAV and VSI.
+ * The worker reads destination and plan only from a NavRoute copy made on the main thread, so nothing views read is changed off main.
+ * Each new state is published to any thread by one reference swap, then handed to the main thread.
+ * On main, every state is given to the listener in order, so track and odometer get every fix.
+ * If main falls behind, only the latest of the states waiting is applied to what views show.
+ * Keeps time taken by each stage of processing, and from fix to state applied on main.
+ */
+public class NavPipeline {
+
+    public static final int STAGE_PLAN = 0;
+    public static final int STAGE_DESTINATION = 1;
+    public static final int STAGE_VERTICAL = 2;
+    public static final int STAGE_RECORD = 3;
+    public static final int STAGE_APPLY = 4;
+    public static final int STAGE_LATENCY = 5;
+    private static final int STAGES = 6;
+
+    private static final String NAMES[] = {"Plan", "Destination", "Vertical", "Record", "Apply", "Latency"};
+
+    /**
+     * Gets states, on main thread
+     */
+    public interface Listener {
+        /**
+         * Every state in order, to record fix
+         */
+        void onFix(NavState state);
+
+        /**
+         * Latest state, after onFix for it and all before it
+         */
+        void onNavState(NavState state);
+    }
+
+    private Listener mListener;
+    private HandlerThread mThread;
+    private Handler mWorker;
+    private Handler mMain;
+
+    private volatile NavRoute mRoute;
+    private volatile NavState mState;
+    private LinkedList<NavState> mApply;
+    private boolean mQuit;
+
+    /*
+     * Worker thread only
+     */
+    private VSI mVsi;
+    private Passage mPassage;
+    private double mPassageLon;
+    private double mPassageLat;
+
+    /*
+     * Per stage, ns
+     */
+    private long mCount[];
+    private long mTotal[];
+    private long mMax[];
+    private long mCoalesced;
+    private long mFirstFix;
+    private long mLastFix;
+    private long mFixes;
+
+    /**
+     * @param listener
+     */
+    public NavPipeline(Listener listener) {
+        mListener = listener;
+        mApply = new LinkedList<NavState>();
+        mVsi = new VSI();
+        mPassage = new Passage();
+        mCount = new long[STAGES];
+        mTotal = new long[STAGES];
+        mMax = new long[STAGES];
+        mThread = new HandlerThread("NavPipeline");
+        mThread.start();
+        mWorker = new Handler(mThread.getLooper());
+        mMain = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Destination and plan that fixes after this are processed against. Call from main thread when they change.
+     * @param route
+     */
+    public void setRoute(NavRoute route) {
+        mRoute = route;
+    }
+
+    /**
+     * A new fix. Call from any thread.
+     * @param location
+     */
+    public void submit(final Location location) {
+        final long now = System.nanoTime();
+        synchronized(this) {
+            if(mQuit) {
+                return;
+            }
+            if(0 == mFixes) {
+                mFirstFix = now;
+            }
+            mLastFix = now;
+            mFixes++;
+        }
+        mWorker.post(new Runnable() {
+            @Override
+            public void run() {
+                process(location, now);
+            }
+        });
+    }
+
+    /**
+     * @return Latest state, null if no fix yet
+     */
+    public NavState getState() {
+        return mState;
+    }
+
+    /**
+     * Time a stage
+     * @param stage
+     * @param start System.nanoTime() when stage started
+     * @return now, start of next stage
+     */
+    private long record(int stage, long start) {
+        long now = System.nanoTime();
+        long t = now - start;
+        synchronized(this) {
+            mCount[stage]++;
+            mTotal[stage] += t;
+            if(t > mMax[stage]) {
+                mMax[stage] = t;
+            }
+        }
+        return now;
+    }
+
+    /**
+     * Fix rate, and average / max us of each stage since last reset
+     * @return
+     */
+    public synchronized String getStats() {
+        StringBuilder sb = new StringBuilder();
+        double seconds = (mLastFix - mFirstFix) / 1e9;
+        sb.append("Fixes ").append(mFixes).append(' ');
+        if(mFixes > 1 && seconds > 0) {
+            sb.append(Math.round((mFixes - 1) * 10 / seconds) / 10.0).append("Hz ");
+        }
+        sb.append("coalesced ").append(mCoalesced).append('\n');
+        for(int i = 0; i < STAGES; i++) {
+            long avg = mCount[i] == 0 ? 0 : mTotal[i] / mCount[i];
+            sb.append(NAMES[i]).append(' ').append(avg / 1000).append('/').append(mMax[i] / 1000).append("us\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Start stats again
+     */
+    public synchronized void resetStats() {
+        for(int i = 0; i < STAGES; i++) {
+            mCount[i] = 0;
+            mTotal[i] = 0;
+            mMax[i] = 0;
+        }
+        mCoalesced = 0;
+        mFixes = 0;
+    }
+
+    /**
+     * Drop waiting fixes and states, process no more, and stop worker
+     */
+    public void quit() {
+        synchronized(this) {
+            mQuit = true;
+            mApply.clear();
+        }
+        mMain.removeCallbacks(mApplyTask);
+        mThread.quit();
+    }
+
+    /**
+     * Make state from fix, on worker
+     * @param location
+     * @param time when fix came
+     */
+    private void process(Location location, long time) {
+        GpsParams params = new GpsParams(location);
+        double lon = params.getLongitude();
+        double lat = params.getLatitude();
+        NavRoute route = mRoute;
+
+        long t = System.nanoTime();
+        int planNext = -1;
+        int planPassed = -1;
+        boolean earlyPass = false;
+        double planDistance = 0;
+        double planBearing = 0;
+        int num = null == route ? 0 : route.getNum();
+        if(num > 0) {
+            planNext = route.findNextNotPassed();
+            double nextLon = route.getPlanLongitude(planNext);
+            double nextLat = route.getPlanLatitude(planNext);
+            Projection p = new Projection(lon, lat, nextLon, nextLat);
+            if(route.isActive()) {
+                planDistance = p.getDistance() + route.getDistanceAfter(planNext);
+            }
+            else {
+                /*
+                 * As if standing still at previous way point for all but first
+                 */
+                for(int id = 0; id < num; id++) {
+                    if(!route.isPassed(id)) {
+                        planDistance += 0 == id ? p.getDistance() : route.getLegDistance(id);
+                    }
+                }
+            }
+
+            if(!route.isSuspended()) {
+                planBearing = route.isActive() || 0 == planNext ? p.getBearing() : route.getLegBearing(planNext);
+                if(nextLon != mPassageLon || nextLat != mPassageLat) {
+                    // new way point, start looking for its passage
+                    mPassage = new Passage();
+                    mPassageLon = nextLon;
+                    mPassageLat = nextLat;
+                }
+                if(mPassage.updateLocation(params, nextLon, nextLat,
+                        route.getPlanLongitude(num - 1), route.getPlanLatitude(num - 1), route.isSimulation())) {
+                    /*
+                     * Passed. Go to next. Only when active
+                     */
+                    if(route.isActive()) {
+                        planPassed = planNext;
+                    }
+                }
+                earlyPass = mPassage.isEarlyPass();
+            }
+        }
+        t = record(STAGE_PLAN, t);
+
+        boolean destination = null != route && route.hasDestination();
+        double distance = 0;
+        double bearing = 0;
+        double deviation = 0;
+        double difference = 0;
+        boolean left = false;
+        if(destination) {
+            Projection p = new Projection(lon, lat, route.getLongitude(), route.getLatitude());
+            distance = p.getDistance();
+            bearing = p.getBearing();
+
+            /*
+             * CDI. If there is an active plan and we are past its first way point, the course line is
+             * from the previous way point to destination.
+             * Otherwise it is from where we were when destination was set.
+             */
+            double course;
+            if(route.isActive() && planNext > 0) {
+                course = Projection.getStaticBearing(
+                        route.getPlanLongitude(planNext - 1), route.getPlanLatitude(planNext - 1),
+                        route.getLongitude(), route.getLatitude());
+            }
+            else {
+                course = Projection.getStaticBearing(
+                        route.getInitLongitude(), route.getInitLatitude(),
+                        route.getLongitude(), route.getLatitude());
+            }
+            difference = Helper.angularDifference(course, bearing);
+            deviation = distance * Math.sin(Math.toRadians(difference));
+
+            // Account for reverse sensing if we are already beyond the target (>90deg)
+            boolean leftOfCourseLine = Helper.leftOfCourseLine(bearing, course);
+            left = (leftOfCourseLine && difference <= 90) || (!leftOfCourseLine && difference >= 90);
+        }
+        t = record(STAGE_DESTINATION, t);
+
+        /*
+         * VNAV, glide slope from our height above destination and distance to it
+         */
+        double glideSlope = Double.NaN;
+        if(destination && -200 != route.getElevation()) {
+            double relativeAGL = params.getAltitude() - route.getElevation();
+            glideSlope = Math.toDegrees(Math.atan(relativeAGL / (Preferences.feetConversion * distance)));
+        }
+
+        mVsi.updateValue(params);
+        record(STAGE_VERTICAL, t);
+
+        NavState state = new NavState(location, params, destination, distance, bearing,
+                planNext, planPassed, earlyPass, planDistance, planBearing,
+                deviation, difference, left, glideSlope, mVsi.getValue(), time);
+        mState = state;
+
+        boolean post;
+        synchronized(this) {
+            if(mQuit) {
+                return;
+            }
+            post = mApply.isEmpty();
+            mApply.add(state);
+        }
+        if(post) {
+            mMain.post(mApplyTask);
+        }
+    }
+
+    /*
+     * On main, all states made since last run
+     */
+    private Runnable mApplyTask = new Runnable() {
+        @Override
+        public void run() {
+            LinkedList<NavState> states;
+            synchronized(NavPipeline.this) {
+                if(mQuit || mApply.isEmpty()) {
+                    return;
+                }
+                states = mApply;
+                mApply = new LinkedList<NavState>();
+                mCoalesced += states.size() - 1;
+            }
+            long t = System.nanoTime();
+            for(NavState state : states) {
+                mListener.onFix(state);
+                t = record(STAGE_RECORD, t);
+            }
+            NavState state = states.getLast();
+            mListener.onNavState(state);
+            record(STAGE_APPLY, t);
+            record(STAGE_LATENCY, state.getTime());
+        }
+    };
+}
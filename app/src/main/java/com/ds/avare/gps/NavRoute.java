@@ -0,0 +1,199 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.gps;
+
+import com.ds.avare.place.Destination;
+import com.ds.avare.place.Plan;
+import com.ds.avare.place.PlanLegs;
+
+/**
+ * Copy of destination and plan that fixes are processed against off the main thread.
+ * Made on the main thread where destination and plan are changed, and never changes once made.
+ */
+public class NavRoute {
+
+    /*
+     * Destination
+     */
+    private final boolean mDestination;
+    private final double mLon;
+    private final double mLat;
+    private final double mInitLon;
+    private final double mInitLat;
+    private final double mElevation;
+
+    /*
+     * Plan way points, and legs between them
+     */
+    private final int mNum;
+    private final boolean mActive;
+    private final boolean mSuspended;
+    private final boolean mSimulation;
+    private final double mPlanLon[];
+    private final double mPlanLat[];
+    private final double mLegDistance[];
+    private final double mLegBearing[];
+    private final double mDistanceAfter[];
+    private final boolean mPassed[];
+
+    /**
+     * Call on main thread
+     * @param dest null if none
+     * @param plan
+     * @param simulation
+     */
+    public NavRoute(Destination dest, Plan plan, boolean simulation) {
+        mDestination = null != dest && dest.isFound();
+        if(mDestination) {
+            mLon = dest.getLongitude();
+            mLat = dest.getLatitude();
+            mInitLon = dest.getLocationInit().getLongitude();
+            mInitLat = dest.getLocationInit().getLatitude();
+            mElevation = dest.getElevation();
+        }
+        else {
+            mLon = 0;
+            mLat = 0;
+            mInitLon = 0;
+            mInitLat = 0;
+            mElevation = -200;
+        }
+
+        mNum = plan.getDestinationNumber();
+        mActive = plan.isActive();
+        mSuspended = plan.isSuspended();
+        mSimulation = simulation;
+        mPlanLon = new double[mNum];
+        mPlanLat = new double[mNum];
+        mLegDistance = new double[mNum];
+        mLegBearing = new double[mNum];
+        mDistanceAfter = new double[mNum];
+        mPassed = new boolean[mNum];
+        PlanLegs legs = plan.getLegs();
+        for(int id = 0; id < mNum; id++) {
+            mPlanLon[id] = legs.getLongitude(id);
+            mPlanLat[id] = legs.getLatitude(id);
+            mLegDistance[id] = legs.getDistance(id);
+            mLegBearing[id] = legs.getBearing(id);
+            mDistanceAfter[id] = legs.getDistanceAfter(id);
+            mPassed[id] = plan.isPassed(id);
+        }
+    }
+
+    /**
+     * @return true if there is a destination that was found
+     */
+    public boolean hasDestination() {
+        return mDestination;
+    }
+
+    public double getLongitude() {
+        return mLon;
+    }
+
+    public double getLatitude() {
+        return mLat;
+    }
+
+    /**
+     * @return Longitude of where we were when destination was set
+     */
+    public double getInitLongitude() {
+        return mInitLon;
+    }
+
+    /**
+     * @return Latitude of where we were when destination was set
+     */
+    public double getInitLatitude() {
+        return mInitLat;
+    }
+
+    /**
+     * @return -200 if not known
+     */
+    public double getElevation() {
+        return mElevation;
+    }
+
+    /**
+     * @return Number of plan way points
+     */
+    public int getNum() {
+        return mNum;
+    }
+
+    public boolean isActive() {
+        return mActive;
+    }
+
+    /**
+     * @return true if passing way points is not looked for
+     */
+    public boolean isSuspended() {
+        return mSuspended;
+    }
+
+    public boolean isSimulation() {
+        return mSimulation;
+    }
+
+    public double getPlanLongitude(int id) {
+        return mPlanLon[id];
+    }
+
+    public double getPlanLatitude(int id) {
+        return mPlanLat[id];
+    }
+
+    /**
+     * @param id
+     * @return Distance from way point id - 1 to id
+     */
+    public double getLegDistance(int id) {
+        return mLegDistance[id];
+    }
+
+    /**
+     * @param id
+     * @return Bearing from way point id - 1 to id
+     */
+    public double getLegBearing(int id) {
+        return mLegBearing[id];
+    }
+
+    /**
+     * @param id
+     * @return Sum of distances of all legs after leg id
+     */
+    public double getDistanceAfter(int id) {
+        return mDistanceAfter[id];
+    }
+
+    public boolean isPassed(int id) {
+        return mPassed[id];
+    }
+
+    /**
+     * Same as Plan.findNextNotPassed()
+     * @return
+     */
+    public int findNextNotPassed() {
+        for(int id = 0; id < mNum; id++) {
+            if(!mPassed[id]) {
+                return id;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.gps;
+
+import android.location.Location;
+
+/**
+ * Navigation state made from one fix. Never changes once made, so it can be read from any thread.
+ */
+public class NavState {
+
+    private final Location mLocation;
+    private final GpsParams mParams;
+    private final boolean mDestination;
+    private final double mDestinationDistance;
+    private final double mDestinationBearing;
+    private final int mPlanNext;
+    private final int mPlanPassed;
+    private final boolean mEarlyPass;
+    private final double mPlanDistance;
+    private final double mPlanBearing;
+    private final double mDeviation;
+    private final double mCourseDifference;
+    private final boolean mLeft;
+    private final double mGlideSlope;
+    private final double mVsi;
+    private final long mTime;
+
+    /**
+     * @param location
+     * @param params
+     * @param destination true if there is a destination
+     * @param destinationDistance
+     * @param destinationBearing
+     * @param planNext next way point not passed, -1 if no plan
+     * @param planPassed way point passed with this fix, -1 if none
+     * @param earlyPass close to next way point with this fix
+     * @param planDistance
+     * @param planBearing
+     * @param deviation CDI deviation
+     * @param courseDifference CDI degrees between course line and bearing to destination
+     * @param left CDI left of course
+     * @param glideSlope VNAV degrees, NaN if destination elevation is not known
+     * @param vsi
+     * @param time System.nanoTime() when fix came
+     */
+    public NavState(Location location, GpsParams params,
+                    boolean destination, double destinationDistance, double destinationBearing,
+                    int planNext, int planPassed, boolean earlyPass, double planDistance, double planBearing,
+                    double deviation, double courseDifference, boolean left,
+                    double glideSlope, double vsi, long time) {
+        mLocation = location;
+        mParams = params;
+        mDestination = destination;
+        mDestinationDistance = destinationDistance;
+        mDestinationBearing = destinationBearing;
+        mPlanNext = planNext;
+        mPlanPassed = planPassed;
+        mEarlyPass = earlyPass;
+        mPlanDistance = planDistance;
+        mPlanBearing = planBearing;
+        mDeviation = deviation;
+        mCourseDifference = courseDifference;
+        mLeft = left;
+        mGlideSlope = glideSlope;
+        mVsi = vsi;
+        mTime = time;
+    }
+
+    public Location getLocation() {
+        return mLocation;
+    }
+
+    public GpsParams getParams() {
+        return mParams;
+    }
+
+    public boolean hasDestination() {
+        return mDestination;
+    }
+
+    public double getDestinationDistance() {
+        return mDestinationDistance;
+    }
+
+    public double getDestinationBearing() {
+        return mDestinationBearing;
+    }
+
+    public int getPlanNext() {
+        return mPlanNext;
+    }
+
+    public int getPlanPassed() {
+        return mPlanPassed;
+    }
+
+    public boolean isEarlyPass() {
+        return mEarlyPass;
+    }
+
+    public double getPlanDistance() {
+        return mPlanDistance;
+    }
+
+    public double getPlanBearing() {
+        return mPlanBearing;
+    }
+
+    public double getDeviation() {
+        return mDeviation;
+    }
+
+    public double getCourseDifference() {
+        return mCourseDifference;
+    }
+
+    public boolean isLeft() {
+        return mLeft;
+    }
+
+    public double getGlideSlope() {
+        return mGlideSlope;
+    }
+
+    public double getVsi() {
+        return mVsi;
+    }
+
+    public long getTime() {
+        return mTime;
+    }
+}
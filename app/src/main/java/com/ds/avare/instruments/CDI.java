@@ -12,10 +12,7 @@ Redistribution and use in source and binary forms, with or without modification,
 
 package com.ds.avare.instruments;
 
-import com.ds.avare.place.Destination;
-import com.ds.avare.place.Plan;
-import com.ds.avare.position.Projection;
-import com.ds.avare.utils.Helper;
+import com.ds.avare.gps.NavState;
 
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -38,33 +35,10 @@ public class CDI {
 	int 	mInstLeft;	// Left position of the CDI
 	final int mColorLeft   = Color.RED;
 	final int mColorRight  = Color.rgb(0x00,0xa0,0x00);
-	private double mBarDegrees = BAR_DEGREES_VOR;
 
-	// Calc'd instrument values
-	int		mDspOffset;	// Display offset value for deviation
-	double 	mDeviation;	// How far off course are we
-	int		mBackColor;	// Background color of inst
-	
     private static final double BAR_DEGREES_VOR = 2f;
     private static final double BAR_DEGREES_LOC = 0.5f;
 
-	/***
-	 * Return the actual course deviation value. It's an absolute
-	 * number without any direction information
-	 * @return How many miles/km/hm off the course line
-	 */
-	public double getDeviation() {
-		return mDeviation;
-	}
-	
-	/**
-	 * If we are left of course
-	 * @return
-	 */
-	public boolean isLeft() {
-	    return mBackColor == mColorLeft;
-	}
-	
 	/***
 	 * Course Deviation Indicator
 	 */
@@ -117,13 +91,46 @@ public class CDI {
 	 * @param canvas What to draw upon
 	 * @param screenX Total width of the display canvas
 	 * @param screenY Total height of the display canvas
+	 * @param state Deviation found from latest fix
 	 */
-	public void drawCDI(Canvas canvas, int screenX, int screenY)
+	public void drawCDI(Canvas canvas, int screenX, int screenY, NavState state)
 	{
 		if(mCDIPaint == null) {
 			// In case paint is not inited yet
 			return;
 		}
+
+		// If we have no destination there there is nothing to do
+		if(state == null || (!state.hasDestination())) {
+			return;
+		}
+
+		/*
+		 * Within given miles convert to Localizer
+		 * This must match the distance for Glide slope.
+		 */
+		double barDegrees;
+		if(state.getDestinationDistance() > VNAV.APPROACH_DISTANCE) {
+		    barDegrees = BAR_DEGREES_VOR;
+		}
+		else {
+		    barDegrees = BAR_DEGREES_LOC;
+		}
+
+		// The amount of display offset varies depending upon how large the deviation is
+		double brgDif = state.getCourseDifference();
+		double maxDeflection = barDegrees * (double)(mBarCount - 1) / 2f; 
+		if(brgDif > maxDeflection) {
+		    brgDif = maxDeflection;
+		}
+		int dspOffset = (int) ((mBarWidth + mBarSpace) * (brgDif / barDegrees));
+
+		// Left of course dictates the color of the shadow and the side of the needle
+		int backColor = mColorRight;
+		if(state.isLeft()) {
+			backColor = mColorLeft;
+			dspOffset = -dspOffset;
+		}
 		
 		// Calculate the left position of the instrument
         mInstLeft = (screenX - mInstWidth) / 2;
@@ -132,7 +139,7 @@ public class CDI {
         mInstTop  = screenY * 3 / 4;
 	    
         // Draw the background
-	    mCDIPaint.setColor(mBackColor);	// Color
+	    mCDIPaint.setColor(backColor);	// Color
 	    mCDIPaint.setAlpha(0x7F);		// Make it see-thru
 	    mCDIPaint.setStrokeWidth(mInstHeight);	// How tall the inst is
 	    mCDIPaint.setStyle(Paint.Style.STROKE);	// Type of brush
@@ -143,7 +150,7 @@ public class CDI {
         canvas.drawLine(mInstLeft, instCenterY, mInstLeft + mInstWidth, instCenterY, mCDIPaint);
 
         // Draw all of the vertical bars
-        if(mBarDegrees == BAR_DEGREES_LOC) {
+        if(barDegrees == BAR_DEGREES_LOC) {
             mCDIPaint.setColor(Color.CYAN);        // cyan for localizer            
         }
         else {
@@ -159,7 +166,7 @@ public class CDI {
 	    }
 	    
 	    // Now draw the needle indicator at the horizontal center
-	    drawIndicator(canvas, screenX / 2 - mDspOffset);
+	    drawIndicator(canvas, screenX / 2 - dspOffset);
 	    
 	}
 	
@@ -191,98 +198,4 @@ public class CDI {
 	    canvas.drawLine(X3, Y3, X1, Y1, mCDIPaint); // Left leg
 		
 	}
-
-	/***
-	 * Calculate the deviation of our current position from
-	 * the plotted course
-	 * @param dest what our destination is
-	 * @param plan the current flight plan (if any)
-	 */
-	public void calcDeviation(Destination dest, Plan plan)
-	{
-		// If we have no destination there there is nothing to do
-		if(dest == null) {
-			return;
-		}
-
-		// Assume an on-course display
-		mDspOffset = 0;
-		mBackColor = mColorLeft;
-		
-		// If there is no plan, then use a bearing based upon the
-		// destination object only. The "init location" of the destination will
-		// be set with the lat/lon of where we were when this was set as our 
-		// destination.
-		//
-		// If there is an active plan, then the bearing used is from the PREVIOUS
-		// waypoint in the plan to the current destination as long as we are passed
-		// the first waypoint.
-		double brgOrg;
-		int nnp;
-
-		// Are we passed the first waypoint on an active plan ?  
-		if ((null != plan) && (true == plan.isActive()) && ((nnp = plan.findNextNotPassed()) > 0)) {
-			// We have an active plan and beyond the first waypoint. 
-			// Calc our deviation using the
-			// previous waypoint and our current destination
-			Destination prevDest = plan.getDestination(nnp - 1);
-			brgOrg = Projection.getStaticBearing(
-					prevDest.getLocation().getLongitude(),
-					prevDest.getLocation().getLatitude(),
-					dest.getLocation().getLongitude(),
-					dest.getLocation().getLatitude());
-		} else {
-			// There is no active plan after the first waypoint, 
-			// so figure out our deviation using
-			// solely the information in the destination
-			brgOrg = Projection.getStaticBearing(
-				dest.getLocationInit().getLongitude(),
-				dest.getLocationInit().getLatitude(),
-				dest.getLocation().getLongitude(),
-				dest.getLocation().getLatitude());
-		}
-		
-		// The bearing from our CURRENT location to the target
-		double brgCur = dest.getBearing();
-
-		// Relative bearing we are FROM destination is the difference
-		// of these two
-		double brgDif = Helper.angularDifference(brgOrg, brgCur);
-
-		// Distance from our CURRENT position to the destination
-		double dstCur = dest.getDistance();
-		
-		/*
-		 * Within given miles convert to Localizer
-		 * This must match the distance for Glide slope.
-		 */
-		if(dstCur > VNAV.APPROACH_DISTANCE) {
-		    mBarDegrees = BAR_DEGREES_VOR;
-		}
-		else {
-            mBarDegrees = BAR_DEGREES_LOC;		    
-		}
-
-		// Distance we are from the direct course line
-		mDeviation = dstCur * Math.sin(Math.toRadians(brgDif));
-
-		// The amount of display offset varies depending upon how large the deviation is
-		double maxDeflection = mBarDegrees * (double)(mBarCount - 1) / 2f; 
-		if(brgDif > maxDeflection) {
-		    brgDif = maxDeflection;
-		}
-        mDspOffset = (int) ((mBarWidth + mBarSpace) * (brgDif / mBarDegrees));
-
-		// Assume we are to the RIGHT of the courseline
-		mBackColor = mColorRight;
-		
-		// Now determine whether we are LEFT. That will
-		// dictate the color of the shadow and the sign of the mDeviation.
-		// Account for REVERSE SENSING if we are already BEYOND the target (>90deg)
-		boolean bLeftOfCourseLine = Helper.leftOfCourseLine(brgCur,  brgOrg); 
-		if ((bLeftOfCourseLine && brgDif <= 90) || (!bLeftOfCourseLine && brgDif >= 90)) {
-			mBackColor = mColorLeft;
-			mDspOffset = -mDspOffset;
-		}
-	}
 }
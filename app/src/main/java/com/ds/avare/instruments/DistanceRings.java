@@ -60,6 +60,9 @@ public class DistanceRings {
     
     private static float mRings[]      = {0, 0, 0, 0};
     private static String mRingsText[] = {null, null, null, null};
+    private static int mRingsTextScale = -1;
+    private static String mSpeedText = null;
+    private static int mSpeedTextSize = 0;
 
     // Members that get set at object construction
     private StorageService mService;
@@ -172,8 +175,13 @@ public class DistanceRings {
             mPaint.setStyle(Style.FILL);
             mPaint.setColor(Color.WHITE);
 
+            int size = mPref.getTimerRingSize();
+            if(null == mSpeedText || size != mSpeedTextSize) {
+                mSpeedText = String.format("%d", size);
+                mSpeedTextSize = size;
+            }
             mService.getShadowedText().draw(canvas, mPaint, 
-            		String.format("%d", mPref.getTimerRingSize()), Color.BLACK, 
+            		mSpeedText, Color.BLACK, 
             		x + mRings[DistanceRings.RING_SPEED] * adjX, 
             		y - mRings[DistanceRings.RING_SPEED] * adjY);
         }
@@ -254,8 +262,11 @@ public class DistanceRings {
         mRings[RING_MIDDLE] = (float)(origin.getPixelsInNmAtLatitude(RING_MIDDLE_SIZE[ringScale] / fac, lat));
         mRings[RING_OUTER]  = (float)(origin.getPixelsInNmAtLatitude(RING_OUTER_SIZE[ringScale] / fac, lat));
         
-        mRingsText[RING_INNER]  = String.format("%d", RING_INNER_SIZE[ringScale]);
-        mRingsText[RING_MIDDLE] = String.format("%d", RING_MIDDLE_SIZE[ringScale]);
-        mRingsText[RING_OUTER]  = String.format("%d", RING_OUTER_SIZE[ringScale]);
+        if(ringScale != mRingsTextScale) {
+            mRingsText[RING_INNER]  = String.format("%d", RING_INNER_SIZE[ringScale]);
+            mRingsText[RING_MIDDLE] = String.format("%d", RING_MIDDLE_SIZE[ringScale]);
+            mRingsText[RING_OUTER]  = String.format("%d", RING_OUTER_SIZE[ringScale]);
+            mRingsTextScale = ringScale;
+        }
     }
 }
@@ -36,6 +36,8 @@ public class EdgeDistanceTape {
 	private int mTextWidth;
 	private int mTextHeight;
 	private Rect mTextBounds;
+	private String mLabels[];	// tape labels, made again only when the step changes
+	private double mLabelStep;
 	
 	/***
 	 * The distance tape object. Allocate objects that we use during the draw cycle in here
@@ -43,6 +45,8 @@ public class EdgeDistanceTape {
 	 */
 	public EdgeDistanceTape() {
 	    mTextBounds = new Rect();
+	    mLabels = new String[21];
+	    mLabelStep = -1;
 	}
 	
 	/***
@@ -128,6 +132,13 @@ public class EdgeDistanceTape {
 
 	    // The interval values for the scale indicator
 	    double step = scale.getStep();
+	    if(step != mLabelStep) {
+	    	for(int idx = 0; idx < 21; idx++) {
+	    		double inc = idx * step;
+	    		mLabels[idx] = String.format(inc < 10 ? "%1.1f" : "%.0f", inc);
+	    	}
+	    	mLabelStep = step;
+	    }
 
 	    // text is white in color
 	    mPaint.setColor(Color.WHITE);
@@ -139,9 +150,8 @@ public class EdgeDistanceTape {
 	    // Display the tape values for 20 distances
 	    for(int idx = 0; idx < 21; idx++) {
 	    	
-	    	// The current range. Make its label. Calc its display offset
-	    	double inc = idx * step;
-	    	String strLabel = String.format(inc < 10 ? "%1.1f" : "%.0f", inc);
+	    	// The current range label. Calc its display offset
+	    	String strLabel = mLabels[idx];
 	    	float offset = (float)step * idx * pixPerUnit;
 
 	    	// vertical tape on the left side. Show if on the screen
@@ -11,8 +11,7 @@ Redistribution and use in source and binary forms, with or without modification,
 */
 package com.ds.avare.instruments;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import com.ds.avare.utils.Scheduler;
 
 /**
  * Flight timer class. Extension of the HobbsMeter. It starts/stops the hobbs meter when
@@ -22,7 +21,7 @@ import java.util.TimerTask;
  *
  */
 public class FlightTimer extends HobbsMeter {
-	private Timer		 mTimer;
+	private Scheduler.Task mTimer;
 	private double 		 mMinFlightSpeed = 20;	// 20 mph/kph/kts is fast enough to say we intend to fly
 	private double		 mSpeed = 0;
 	
@@ -30,15 +29,15 @@ public class FlightTimer extends HobbsMeter {
 	 * 
 	 */
 	public FlightTimer() {
-        mTimer = new Timer();							// Create a timer for a thread to monitor the GPS speed
-        TimerTask timerTask = new FlightTimerTask();	// The task thread that does the work
-        mTimer.scheduleAtFixedRate(timerTask, 0, 1000);	// Set to run once per second
+        // Monitor the GPS speed once per second
+        mTimer = Scheduler.getInstance().scheduleAtFixedRate("Flight Timer", Scheduler.PRIORITY_NORMAL,
+                0, 1000, new FlightTimerTask());
 	}
 
 	/**
      * Fires once per second to see if we need to turn the hobbs on or off
      */
-    private class FlightTimerTask extends TimerTask {
+    private class FlightTimerTask implements Runnable {
         public void run() {
     		if(mSpeed >= mMinFlightSpeed) {	// Are we flying ?
         		if(isRunning() == true)		// If hobbs already running... 
@@ -15,14 +15,13 @@ package com.ds.avare.instruments;
 import android.content.Context;
 
 import com.ds.avare.storage.Preferences;
+import com.ds.avare.utils.Scheduler;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Fuel tank timer instrument. Implemented as a display field for the
@@ -38,7 +37,7 @@ import java.util.TimerTask;
 public class FuelTimer extends Observable {
 	private int 			mInterval;
 	private int 			mCurrentValue;
-	private Timer 			mTimer;
+	private Scheduler.Task	mTimer;
 	private boolean 		mCounting;
 	private List<Observer> mObservers;
 
@@ -94,9 +93,8 @@ public class FuelTimer extends Observable {
 	 * once per second.
 	 */
 	private void start() {
-        mTimer = new Timer();
-        TimerTask taskHobbs = new FuelTimerTask();
-        mTimer.scheduleAtFixedRate(taskHobbs, 1000, 1000);
+        mTimer = Scheduler.getInstance().scheduleAtFixedRate("Fuel Timer", Scheduler.PRIORITY_NORMAL,
+                1000, 1000, new FuelTimerTask());
         mCounting = true;
 	}
 
@@ -142,7 +140,7 @@ public class FuelTimer extends Observable {
 	 * @author Ron
 	 *
 	 */
-	private class FuelTimerTask extends TimerTask {
+	private class FuelTimerTask implements Runnable {
 		public void run() {
 			if(0 < mCurrentValue) {
 				mCurrentValue--;
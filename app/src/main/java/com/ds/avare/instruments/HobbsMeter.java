@@ -12,8 +12,8 @@ Redistribution and use in source and binary forms, with or without modification,
 package com.ds.avare.instruments;
 
 import java.util.Locale;
-import java.util.Timer;
-import java.util.TimerTask;
+
+import com.ds.avare.utils.Scheduler;
 
 /**
  * author : rwalker
@@ -26,14 +26,14 @@ public class HobbsMeter {
 	int		mHundredths = 0;
 	int		mTenths = 0;
 	int		mHours = 0;
-	Timer	mTimer = null;
+	Scheduler.Task	mTimer = null;
 	
     /** 
      * Fires every second, and after 36 seconds, will adjust the hobbs counter up by 1/100 of an hour.
      * We need the one second resolution in order to "blink" the middle period character when the
      * timer is active.
      */
-    private class HobbsTask extends TimerTask {
+    private class HobbsTask implements Runnable {
 
         public void run() {
         	synchronized(this) {
@@ -99,9 +99,9 @@ public class HobbsMeter {
 	 * Start this meter running. 
 	 */
 	public void start() {
-        mTimer = new Timer();					// Create a timer for the hobbs meter
-        TimerTask taskHobbs = new HobbsTask();	// The task thread that does the work
-        mTimer.scheduleAtFixedRate(taskHobbs, 1, 36 * 1000);	// Set to run every 1/100 of an hour
+        // Set to run every 1/100 of an hour
+        mTimer = Scheduler.getInstance().scheduleAtFixedRate("Hobbs", Scheduler.PRIORITY_NORMAL,
+                1, 36 * 1000, new HobbsTask());
 	}
 	
 	/**
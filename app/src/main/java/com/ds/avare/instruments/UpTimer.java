@@ -12,13 +12,13 @@ Redistribution and use in source and binary forms, with or without modification,
 
 package com.ds.avare.instruments;
 
+import com.ds.avare.utils.Scheduler;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Timer instrument. Implemented as a display field for the
@@ -30,7 +30,7 @@ import java.util.TimerTask;
  */
 public class UpTimer extends Observable {
 	private int 			mCurrentValue;
-	private Timer 			mTimer;
+	private Scheduler.Task	mTimer;
 	private boolean 		mCounting;
     private List<Observer> mObservers;
 
@@ -84,9 +84,8 @@ public class UpTimer extends Observable {
 	 * once per second.
 	 */
 	private void start() {
-        mTimer = new Timer();
-        TimerTask taskHobbs = new UpTimerTask();
-        mTimer.scheduleAtFixedRate(taskHobbs, 1000, 1000);
+        mTimer = Scheduler.getInstance().scheduleAtFixedRate("Up Timer", Scheduler.PRIORITY_NORMAL,
+                1000, 1000, new UpTimerTask());
         mCounting = true;
 	}
 
@@ -126,7 +125,7 @@ public class UpTimer extends Observable {
 	 * @author Ron
 	 *
 	 */
-	private class UpTimerTask extends TimerTask {
+	private class UpTimerTask implements Runnable {
 		public void run() {
 			if(mCurrentValue < 60 * 60) {
 				mCurrentValue++;
@@ -12,9 +12,7 @@ Redistribution and use in source and binary forms, with or without modification,
 
 package com.ds.avare.instruments;
 
-import com.ds.avare.gps.GpsParams;
-import com.ds.avare.place.Destination;
-import com.ds.avare.storage.Preferences;
+import com.ds.avare.gps.NavState;
 
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -34,13 +32,6 @@ public class VNAV {
 	float mInstHeight;	// Total height of the instrument
 	float mInstTop;		// The top line of the CDI
 	float mInstLeft;	// Left position of the CDI
-	double mConvertToFt; // Factor to convert units to feet
-	boolean mShow;
-	
-	// Calc'd instrument values
-	int		mDspOffset;		// Display offset of pointer
-	double 	mGlideSlope;	// Vertical glideslope angle
-	int		mBackColor;	// Background color of inst
 
 	final int mColorLow = Color.RED;
 	final int mColorHigh = Color.rgb(0xEE, 0xEE, 0x00); // YELLOW
@@ -53,7 +44,6 @@ public class VNAV {
 	 * Course Deviation Indicator
 	 */
 	public VNAV() {
-	    mConvertToFt = Preferences.feetConversion;
 	}
 	
 	/***
@@ -101,29 +91,52 @@ public class VNAV {
 	 * @param canvas What to draw upon
 	 * @param screenX Total width of the display canvas
 	 * @param screenY Total height of the display canvas
-	 * @param dest The target destination
+	 * @param state Glide slope found from latest fix
 	 */
-	public void drawVNAV(Canvas canvas, float screenX, float screenY, Destination dest)
+	public void drawVNAV(Canvas canvas, float screenX, float screenY, NavState state)
 	{
 		// Ensure we have been initialized before trying to paint
 		if(null == mVNAVPaint) {
 			return;
 		}
 		
-		// If we have no destination set, then do not draw anything
-		if(dest == null || (!mShow)) {
-		    mShow = false;
+		// If we have no destination set, or we can't find its elevation,
+		// then do not draw anything
+		if(state == null || Double.isNaN(state.getGlideSlope())) {
 			return;
 		}
 		
 		// If we are more than 30 miles from our target, then do not
 		// draw anything
-		double destDist = dest.getDistance(); 
+		double destDist = state.getDestinationDistance(); 
 		if(destDist > APPROACH_DISTANCE) {
-		    mShow = false;
 			return;
 		}
 
+		// Set the color of the glide slope background. According to the AIM,
+		// 
+		double glideSlope = state.getGlideSlope();
+		int backColor = mColorOn;
+		if(glideSlope < (3 - BAR_DEGREES)) {
+			backColor = mColorLow;
+		} else if(glideSlope > (3 + BAR_DEGREES)) {
+			backColor = mColorHigh;
+		}
+			
+		// Calculate the vertical display offset of the indicator
+		// Anything greater/equal to 3.7 pegs at the top
+		// Anything less/equal to 2.3 pegs at the bottom
+		// all others scale in between based upon instrument height
+		int dspOffset;
+		double fullDeflection = mInstHeight / 2 - mBarHeight * 1.5;
+		if(glideSlope >= 3.7) {
+			dspOffset = -(int)fullDeflection;
+		} else if(glideSlope <= 2.3) {
+			dspOffset = (int)fullDeflection;
+		} else {
+			dspOffset = -(int)((((glideSlope - 3) / BAR_DEGREES)) * (fullDeflection / ((mBarCount - 1) / 2)));
+		}
+
 		// Calculate the top position of the instrument
         mInstTop = (screenY - mInstHeight) / 2;
 
@@ -131,7 +144,7 @@ public class VNAV {
         mInstLeft  = screenX - (int) (mInstWidth * 1.75); // Right side of display
 	    
         // Draw the background
-	    mVNAVPaint.setColor(mBackColor);// Color
+	    mVNAVPaint.setColor(backColor);// Color
 	    mVNAVPaint.setAlpha(0x7F);		// Make it see-thru
 	    mVNAVPaint.setStrokeWidth(mInstWidth);	// How tall the inst is
 	    mVNAVPaint.setStyle(Paint.Style.STROKE);	// Type of brush
@@ -151,7 +164,7 @@ public class VNAV {
 	    }
 	    
 	    // Now draw the needle indicator at the vertical center adjusted by the offset
-	    drawIndicator(canvas, screenY / 2 - mDspOffset);
+	    drawIndicator(canvas, screenY / 2 - dspOffset);
 	}
 
 	/***
@@ -182,66 +195,4 @@ public class VNAV {
 	    canvas.drawLine(X3, Y3, X1, Y1, mVNAVPaint); // Bottom leg
 		
 	}
-
-	/***
-	 * Calculate the glideslope given our current position/altitude
-	 * and the position/elevation of the target airport
-	 * @param gpsParams where we are
-	 * @param dest what our destination is
-	 */
-	public void calcGlideSlope(GpsParams gpsParams, Destination dest)
-	{
-		// Show no vertical offset by default
-		
-		mDspOffset = 0;
-		mBackColor = mColorOn;
-		
-		// If either of these objects are null, there is nothing
-		// we can do
-		if(dest == null || gpsParams == null) {
-		    mShow = false;
-			return;
-		}
-		
-		// Fetch the elevation of our destination. If we can't find it
-		// then we don't want to display any vertical information
-		double destElev = dest.getElevation();
-		if(destElev == -200) {
-		    mShow = false;
-			return;
-		}
-		
-		// Calculate our relative AGL compared to destination. If we are 
-		// lower then no display info
-		double relativeAGL = gpsParams.getAltitude() - destElev;
-		
-		// Convert the destination distance to feet.
-		double destDist = dest.getDistance(); 
-		double destInFeet = mConvertToFt * destDist;
-
-		// Figure out our glide slope now based on our AGL height and distance
-		mGlideSlope = Math.toDegrees(Math.atan(relativeAGL / destInFeet));
-
-		// Set the color of the glide slope background. According to the AIM,
-		// 
-		if(mGlideSlope < (3 - BAR_DEGREES)) {
-			mBackColor = mColorLow;
-		} else if(mGlideSlope > (3 + BAR_DEGREES)) {
-			mBackColor = mColorHigh;
-		}
-			
-		// Calculate the vertical display offset of the indicator
-		// Anything greater/equal to 3.7 pegs at the top
-		// Anything less/equal to 2.3 pegs at the bottom
-		// all others scale in between based upon instrument height
-		double fullDeflection = mInstHeight / 2 - mBarHeight * 1.5;
-		if(mGlideSlope >= 3.7) {
-			mDspOffset = -(int)fullDeflection;
-		} else if(mGlideSlope <= 2.3) {
-			mDspOffset = (int)fullDeflection;
-		} else {
-			mDspOffset = -(int)((((mGlideSlope - 3) / BAR_DEGREES)) * (fullDeflection / ((mBarCount - 1) / 2)));
-		}
-		mShow = true;
-	}
 }
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.util.LinkedList;
 import java.util.Observable;
 
+import com.ds.avare.storage.ProductCatalog;
 import com.ds.avare.utils.Helper;
 
 import android.os.Handler;
@@ -125,6 +126,8 @@ public class Delete extends Observable {
                 }
             }
 
+            ProductCatalog.getInstance(path).remove(chart);
+
             Message m = mHandler.obtainMessage(Download.SUCCESS, Delete.this);
             mHandler.sendMessage(m);
         }      
@@ -21,10 +21,15 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Enumeration;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HashSet;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
 
+import com.ds.avare.shapes.RawTile;
+import com.ds.avare.storage.ProductCatalog;
 import com.ds.avare.utils.Helper;
 import com.ds.avare.utils.NetworkHelper;
 
@@ -45,14 +50,27 @@ public class Download {
     private String mRoot;
     private Handler mHandler;
     private Thread mThread;
+    private SegmentedDownload mSegments;
+    private long mTime;
+    private long mPeakDisk;
+    private boolean mVerified;
     private String mCode;
     private int mCycleAdjust;
+    private boolean mRawTiles;
    
     public static final int FAILED = -2;
     public static final int SUCCESS = -1;
     public static final int NONEED = -3;
     
     private static final int blocksize = 8192;
+    private static final int unzipblocksize = 65536;
+
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    /*
+     * Hash files are small, like md5sum output
+     */
+    private static final int HASH_MAX = 1024;
        
     /**
      * 
@@ -68,6 +86,13 @@ public class Download {
         mCycleAdjust = cycleAdjust;
     }
     
+    /**
+     * @param raw true to also write raw tiles of the chart tiles downloaded
+     */
+    public void setRawTiles(boolean raw) {
+        mRawTiles = raw;
+    }
+
     /**
      * 
      * @return
@@ -76,11 +101,37 @@ public class Download {
         return(mVersion);
     }
     
+    /**
+     * @return ms from start to all files in place, of last successful download
+     */
+    public long getUpdateTime() {
+        return mTime;
+    }
+
+    /**
+     * @return true if last successful download matched a hash from server.
+     * Server may not have a hash for every file, then it is installed but not verified.
+     */
+    public boolean isVerified() {
+        return mVerified;
+    }
+
+    /**
+     * @return Most flash used by the download, zip and unzipped files, bytes
+     */
+    public long getPeakDisk() {
+        return mPeakDisk;
+    }
+
     /**
      * 
      */
     public void cancel() {
         mStop = true;
+        SegmentedDownload segments = mSegments;
+        if(segments != null) {
+            segments.cancel();
+        }
         if(mThread != null) {
             mThread.interrupt();
         }
@@ -97,10 +148,61 @@ public class Download {
         mDt.path = path;
         mDt.mName = filename;
         mDt.mStatic = isStatic;
+        mVerified = false;
         mThread = new Thread(mDt);
         mThread.start();
     }
 
+    /**
+     * Get hash published next to a file, in md5sum format
+     * @param netfile
+     * @return Hex hash, null if server has none
+     */
+    private static String getHash(String netfile) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(netfile).openConnection();
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(10000);
+            if(connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+            InputStream in = connection.getInputStream();
+            byte buffer[] = new byte[HASH_MAX];
+            int len = 0;
+            int count;
+            while(len < HASH_MAX && (count = in.read(buffer, len, HASH_MAX - len)) > 0) {
+                len += count;
+            }
+            in.close();
+            String tokens[] = new String(buffer, 0, len, "US-ASCII").trim().split("\\s+");
+            if(tokens.length < 1 || !tokens[0].matches("[0-9a-fA-F]{32}")) {
+                return null;
+            }
+            return tokens[0];
+        }
+        catch (Exception e) {
+            return null;
+        }
+        finally {
+            if(null != connection) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * @param bytes
+     * @return
+     */
+    private static String toHex(byte bytes[]) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
     /**
      * 
      * @author zkhan
@@ -112,23 +214,12 @@ public class Download {
         String mName;
         boolean mStatic;
 
-        /**
-         * 
-         * @param in
-         * @param out
-         * @throws IOException
+        /*
+         * Folders replaced whole, and A/FD regions replaced, by the new files
          */
-        public final void copyInputStream(InputStream in, OutputStream out) throws IOException {
-            byte[] buffer = new byte[blocksize];
-            int len;
-        
-            while((len = in.read(buffer)) >= 0) {
-                out.write(buffer, 0, len);
-            }
-        
-            in.close();
-            out.close();
-        }
+        private HashSet<String> mReplace = new HashSet<String>();
+        private HashSet<String> mRegions = new HashSet<String>();
+        private int mFiles;
 
         /**
          * 
@@ -149,12 +240,9 @@ public class Download {
 
             Thread.currentThread().setName("Download");
 
-            BufferedInputStream input;
-            BufferedOutputStream output;
-            int count;
             byte data[] = new byte[blocksize];
-            long fileLength;
             boolean flags[] = new boolean[1];
+            long time = System.currentTimeMillis();
 
             mVersion = NetworkHelper.getVersion(mRoot, mName, flags);
 
@@ -204,210 +292,291 @@ public class Download {
                 URL url = new URL(netfile);
                 
                 File zfile = new File(zipfile);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                if(zfile.exists()) {
-                    // if file exists, resume download
-                    connection.setRequestProperty("Range", "bytes=" + (zfile.length()) + "-");
-                }
                 mCode = "code unable to download the file from this cycle ";
-                connection.connect();
-                int code = connection.getResponseCode();
-                if (code != 206 && code != 200) {
-                    zfile.delete();
+                SegmentedDownload segments = new SegmentedDownload(url, zfile);
+                mSegments = segments;
+                if(mStop) {
+                    mCode = "code stopped by user during download";
                     sendFailure();
                     return;
                 }
-                
-                
-                String connectionField = connection.getHeaderField("content-range");
-                long downloadedSize = 0;
-                if (connectionField != null) {
-                    String[] connectionRanges = connectionField.substring("bytes=".length()).split("-");
-                    downloadedSize = Long.valueOf(connectionRanges[0]);
+                segments.start();
+
+                /*
+                 * Unzip as the file comes in, in order, while segments download in parallel.
+                 * Files go in a temp folder, and are moved in place only when all is good.
+                 */
+                mCode = "code unable to create temp folder ";
+                File temp = new File(path + "/" + mName + TEMP_EXTENSION);
+                Helper.deleteDir(temp);
+                if(!temp.mkdirs()) {
+                    segments.cancel();
+                    sendFailure();
+                    return;
                 }
-                
-                mCode = "code unable to get file from server ";
-                fileLength = connection.getContentLength() + downloadedSize;
-                
-                input = new BufferedInputStream(connection.getInputStream(), blocksize);
-                mCode = "code unable to store the zip file ";
-                output = new BufferedOutputStream(new FileOutputStream(zipfile, true), blocksize);
-    
-                long total = downloadedSize;
-                int lastp = FAILED;
-                int newp;
-                while(true) {
+
+                mCode = "code unable to read zip file from server ";
+                MessageDigest digest = MessageDigest.getInstance("MD5");
+                InputStream input = new BufferedInputStream(
+                        new DigestInputStream(segments.openStream(), digest), unzipblocksize);
+                long extracted;
+                try {
+                    extracted = extract(input, temp, segments);
+                    // rest of zip after entries, for hash
                     mCode = "code unable to read zip file from server ";
-                    count = input.read(data, 0, blocksize);
-                    if(count <= 0) {
-                        break;
+                    while(input.read(data, 0, blocksize) >= 0) {
                     }
-                    total += count;
-                    newp = (int) (total * 50 / fileLength);
-                    /* 
-                     * publishing the progress....
-                     */
-                    if(lastp != newp) {
-                        lastp = newp;
-                        Message m = mHandler.obtainMessage(newp, Download.this);
-                        mHandler.sendMessage(m);
-                    }
-                    mCode = "code unable to write zip file to flash, disk full";
-                    output.write(data, 0, count);
+                }
+                catch (IOException e) {
+                    segments.cancel();
+                    Helper.deleteDir(temp);
                     if(mStop) {
                         mCode = "code stopped by user during download";
-                        output.flush();
-                        output.close();
                         sendFailure();
-                        input.close();
                         return;
                     }
+                    if(e instanceof ZipException) {
+                        // bad file, do not resume it
+                        segments.discard();
+                    }
+                    throw e;
                 }
-    
-                mCode = "code unable to close retrieved file ";
-                output.flush();
-                output.close();
-                input.close();
-                
+                finally {
+                    input.close();
+                }
+                segments.join();
+
+                /*
+                 * Check with hash from server when it has one, else it is reported not verified
+                 */
+                mCode = "code downloaded file does not match server ";
+                String expected = getHash(netfile + ".md5");
+                String hash = toHex(digest.digest());
+                if(null != expected && !expected.equalsIgnoreCase(hash)) {
+                    segments.discard();
+                    Helper.deleteDir(temp);
+                    sendFailure();
+                    return;
+                }
+                boolean verified = null != expected;
+                if(mStop) {
+                    mCode = "code stopped by user during unzip";
+                    Helper.deleteDir(temp);
+                    sendFailure();
+                    return;
+                }
+
+                /*
+                 * Zip and all its files are on flash now
+                 */
+                mPeakDisk = zfile.length() + extracted;
+
+                /*
+                 * Swap new files in
+                 */
+                install(temp);
+                Helper.deleteDir(temp);
+                ProductCatalog.getInstance(path).put(mName, mFiles, extracted, hash, verified);
+                mVerified = verified;
+
+                /*
+                 * Delete the downloaded file to save space
+                 */
+                mCode = "code unable to delete downloaded zip file";
+                segments.finish();
+                zfile.delete();
+
                 mCode = "";
+                mTime = System.currentTimeMillis() - time;
+                Message m = mHandler.obtainMessage(Download.SUCCESS, Download.this);
+                mHandler.sendMessage(m);
+                return;
+
+            } catch (Exception e) {
+                mCode += e.getCause();
+            }
+            sendFailure();
+            return;
+        }
+
+        /**
+         * Unzip entries to temp folder as they come.
+         * Notes which old folders and A/FD regions the new files replace.
+         * @param input
+         * @param temp
+         * @param segments
+         * @return bytes written
+         * @throws IOException
+         */
+        private long extract(InputStream input, File temp, SegmentedDownload segments) throws IOException {
+            ZipInputStream zin = new ZipInputStream(input);
+            String root = temp.getCanonicalPath() + "/";
+            byte buffer[] = new byte[unzipblocksize];
+            String lastName = "";
+            long written = 0;
+            int lastp = FAILED;
+            int newp;
+            ZipEntry entry;
+
+            mReplace.clear();
+            mRegions.clear();
+            mFiles = 0;
+            while(true) {
+                mCode = "code stopped by unzip, corrupt file";
+                entry = zin.getNextEntry();
+                if(null == entry) {
+                    break;
+                }
+                if(mStop) {
+                    throw new IOException("stopped");
+                }
+
+                String entryName = entry.getName();
+                File outf = new File(temp, entryName);
+                mCode = "code invalid overwrite folder";
+                if(!outf.getCanonicalPath().startsWith(root)) {
+                    throw new IOException("entry outside folder " + entryName);
+                }
+                if(entry.isDirectory()) {
+                    outf.mkdirs();
+                    continue;
+                }
+
                 /*
-                 * Now unzip
+                 * This is a new folder, do something with it.
+                 * Mostly needed for delete
                  */
-                try {
-                    mCode = "code unable to start unzip process ";
-                    ZipFile zipFile = new ZipFile(zipfile);
-                    int filenum = zipFile.size();
-                    int totalnum = 0;
-
-                    mCode = "code corrupt zip file ";
-                    Enumeration<? extends ZipEntry> entries = zipFile.entries();
-
-                    String lastName = "";
-                    while(entries.hasMoreElements()) {
-                        mCode = "code unzip file error, disk full";
-                        if(mStop) {
-                            mCode = "code stopped by user during unzip";
-                            zipFile.close();
-                            new File(zipfile).delete();
-                            sendFailure();
-                            return;
-                        }
+                String tokens[] = entryName.split("/");
+                String folder = tokens[0];
+                int slash = entryName.lastIndexOf("/");
+                String dirName = slash < 0 ? "" : entryName.substring(0, slash);
+                File dir = outf.getParentFile();
+                if(!lastName.equals(dirName)) {
+                    if(folder.equals("plates") || folder.equals("minimums")) {
+                        // older plates, minimums are replaced whole
+                        mReplace.add(dirName);
+                    }
+                    else if(folder.equals("afd") && tokens.length > 1) {
+                        // older A/FD of the region are deleted
+                        mRegions.add((tokens[1].split("_"))[0]);
+                    }
+                    lastName = dirName;
 
-                        mCode = "code stopped by unzip, corrupt file";
-                        ZipEntry entry = (ZipEntry)entries.nextElement();
-
-                        /*
-                         * Keep un-zipping and creating folders
-                         */
-                        String entryName = entry.getName();
-                        String fn = path + "/" + entryName;
-                        String tokens[] = entryName.split("/");
-                        String folder = tokens[0];
-                        
-                        /*
-                         * This is a new folder, do something with it.
-                         * Mostly needed for delete
-                         */
-                        mCode = "code invalid overwrite folder";
-                        File dir = new File(fn.substring(0, fn.lastIndexOf("/")));
-
-                        if(!lastName.equals(dir.getCanonicalPath())) {
-                            /*
-                             * Delete older plates
-                             */
-                            if(folder.equals("plates") && dir.exists()) {
-                                mCode = "code unable to delete/replace plates";
-                                Helper.deleteDir(dir);
-                            }
-
-                            /*
-                             * Delete older minimums
-                             */
-                            else if(folder.equals("minimums") && dir.exists()) {
-                                mCode = "code unable to delete/replace minimums";
-                                Helper.deleteDir(dir);
-                            }
-
-                            /*
-                             * Delete older A/FD
-                             */
-                            else if(folder.equals("afd") && dir.exists()) {
-                                mCode = "code unable to delete/replace A/FD";
-                                String newRegion = (tokens[1].split("_"))[0];
-                                String[] info = dir.list();
-                                for(int i = 0; i < info.length; i++) {
-                                    if(info[i].startsWith(newRegion)) {
-                                        (new File(path + "/afd/" + info[i])).delete();
-                                    }
-                                }
-                            }
-
-                            lastName = dir.getCanonicalPath();
-                        }
+                    dir.mkdirs();
 
-                        dir.mkdirs();
-                        
-                        
-                        /*
-                         * Make sure someone does not index avare's images.
-                         */
-                        if(dir.isDirectory()) {
-                            String nomedia = dir.getAbsolutePath() + "/.nomedia";
-                            f = new File(nomedia);
-                            mCode = "code unable to create file " + f.getAbsolutePath();
-                            if(!f.exists()) {
-                                f.createNewFile();
-                            } 
-                        }
+                    /*
+                     * Make sure someone does not index avare's images.
+                     */
+                    mCode = "code unable to create file " + dir.getAbsolutePath() + "/.nomedia";
+                    new File(dir, ".nomedia").createNewFile();
+                }
 
+                mCode = "code unable to unzip file, disk full";
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(outf), unzipblocksize);
+                try {
+                    int len;
+                    while((len = zin.read(buffer)) >= 0) {
+                        out.write(buffer, 0, len);
+                        written += len;
+                    }
+                }
+                finally {
+                    out.close();
+                }
+                mFiles++;
 
-                        mCode = "code unable to delete old file";
-                        File outf = new File(path + "/" + entry.getName());
-                        
-                        // Skip dir creation, its already created above
-                        if(outf.isDirectory()) {
-                            continue;
-                        }
-                        
-                        if(outf.exists()) {
-                            outf.delete();
-                        }
-                        
-                        mCode = "code unable to unzip file, disk full";
-                        copyInputStream(zipFile.getInputStream(entry),
-                                new BufferedOutputStream(new FileOutputStream(path + "/" + entry.getName()), blocksize));
-                        totalnum++;
-                        newp = (int)(50 + totalnum * 50 / filenum);
-                        if(lastp != newp) {
-                            lastp = newp;
-                            Message m = mHandler.obtainMessage(newp, Download.this);
-                            mHandler.sendMessage(m);
-                        }
+                if(mRawTiles && folder.equals("tiles") && !entryName.endsWith(RawTile.EXTENSION)) {
+                    mCode = "code unable to write raw tile, disk full";
+                    if(RawTile.convert(outf)) {
+                        written += RawTile.getFile(outf).length();
                     }
+                    else {
+                        // raw tile of the old chart would be shown in place of the new one
+                        RawTile.getFile(new File(path, entryName)).delete();
+                    }
+                }
 
-                    mCode = "code unable to close zip file";
-                    zipFile.close();
-                    
+                long length = segments.getLength();
+                if(length > 0) {
+                    newp = (int) (segments.getDownloaded() * 95 / length);
                     /*
-                     * Delete the downloaded file to save space
+                     * publishing the progress....
                      */
-                    mCode = "code unable to delete downloaded zip file";
-                    new File(zipfile).delete();
+                    if(lastp != newp) {
+                        lastp = newp;
+                        Message m = mHandler.obtainMessage(newp, Download.this);
+                        mHandler.sendMessage(m);
+                    }
+                }
+            }
+            return written;
+        }
 
-                    mCode = "";
-                    Message m = mHandler.obtainMessage(Download.SUCCESS, Download.this);
-                    mHandler.sendMessage(m);
-                    return;
-                    
-                } catch (Exception e) {
-                    mCode += e.getCause();
-                    zfile.delete();
+        /**
+         * Move unzipped files from temp folder in place.
+         * Each folder and file goes in with a rename, so charts are never seen half written.
+         * @param temp
+         * @throws IOException
+         */
+        private void install(File temp) throws IOException {
+            for(String name : mReplace) {
+                File dir = new File(path + "/" + name);
+                mCode = "code unable to delete/replace " + name;
+                if(dir.exists()) {
+                    Helper.deleteDir(dir);
                 }
-            } catch (Exception e) {
-                mCode += e.getCause();
+                dir.getParentFile().mkdirs();
+                // whole folder at once if it can, else file by file below
+                new File(temp, name).renameTo(dir);
             }
-            sendFailure();
-            return;
-        }        
+
+            File afd = new File(path + "/afd");
+            String info[] = afd.list();
+            if(null != info) {
+                mCode = "code unable to delete/replace A/FD";
+                for(String name : info) {
+                    for(String region : mRegions) {
+                        if(name.startsWith(region)) {
+                            (new File(afd, name)).delete();
+                            break;
+                        }
+                    }
+                }
+            }
+
+            move(temp, new File(path));
+        }
+
+        /**
+         * @param from
+         * @param to
+         * @throws IOException
+         */
+        private void move(File from, File to) throws IOException {
+            File files[] = from.listFiles();
+            if(null == files) {
+                return;
+            }
+            for(File f : files) {
+                File dest = new File(to, f.getName());
+                if(f.isDirectory()) {
+                    mCode = "code unable to create folder " + dest.getAbsolutePath();
+                    dest.mkdirs();
+                    move(f, dest);
+                    continue;
+                }
+                if(!mRawTiles) {
+                    // raw tile of the old chart would be shown in place of the new one
+                    RawTile.getFile(dest).delete();
+                }
+                mCode = "code unable to move file " + dest.getAbsolutePath();
+                if(!f.renameTo(dest)) {
+                    dest.delete();
+                    if(!f.renameTo(dest)) {
+                        throw new IOException(mCode);
+                    }
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,644 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.network;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Semaphore;
+
+import com.ds.avare.utils.TaskExecutor;
+
+/**
+ * Download of one file in parallel ranged segments.
+ * Segments resume from where they stopped, across runs, from a state file next to the file.
+ * From a server without ranges, the file comes in one go, and starts over on a retry.
+ * A segment that fails is retried with back off. Connections of all downloads are limited together.
+ * The file can be read as it comes, in order, with openStream().
+ */
+public class SegmentedDownload {
+
+    /**
+     * Connections at a time, for all downloads. Same as threads of TaskExecutor.NETWORK.
+     */
+    public static final int MAX_CONNECTIONS = 4;
+
+    private static final int MAX_SEGMENTS = 4;
+    private static final long MIN_SEGMENT = 1024 * 1024;
+    private static final int RETRIES = 5;
+    private static final long RETRY_WAIT_MS = 1000;
+    private static final int BLOCK = 65536;
+    private static final int TIMEOUT_MS = 30000;
+
+    /*
+     * State is saved after this many bytes in a segment
+     */
+    private static final long SAVE_EVERY = 1024 * 1024;
+
+    private static final String STATE_EXTENSION = ".state";
+
+    private static final Semaphore sConnections = new Semaphore(MAX_CONNECTIONS, true);
+
+    private URL mUrl;
+    private File mFile;
+    private File mState;
+    private long mLength;
+    private String mValidator;
+    private boolean mRanges;
+
+    private long mStart[];
+    private long mEnd[];
+    private long mDone[];
+    private Thread mWorkers[];
+    private int mRunning;
+
+    private volatile boolean mStop;
+    private IOException mError;
+    private final Object mLock = new Object();
+
+    /**
+     * @param url
+     * @param file where to put it
+     */
+    public SegmentedDownload(URL url, File file) {
+        mUrl = url;
+        mFile = file;
+        mState = new File(file.getAbsolutePath() + STATE_EXTENSION);
+        mStop = false;
+        mError = null;
+    }
+
+    /**
+     * Find size, resume or make segments, and start them.
+     * @throws IOException if server cannot be reached
+     */
+    public void start() throws IOException {
+        mRanges = probe();
+
+        if(!mRanges) {
+            // all in one go, cannot resume
+            makeSegments(1);
+            mFile.delete();
+            mState.delete();
+        }
+        else if(!readState()) {
+            makeSegments((int)Math.min(MAX_SEGMENTS, Math.max(1, mLength / MIN_SEGMENT)));
+            mFile.delete();
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        try {
+            if(mLength > 0) {
+                raf.setLength(mLength);
+            }
+        }
+        finally {
+            raf.close();
+        }
+        saveState();
+
+        synchronized(mLock) {
+            mWorkers = new Thread[mStart.length];
+            mRunning = mWorkers.length;
+        }
+        for(int i = 0; i < mStart.length; i++) {
+            final int segment = i;
+            TaskExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // thread is the lane's, known only while this segment runs on it, for cancel
+                    synchronized(mLock) {
+                        mWorkers[segment] = Thread.currentThread();
+                    }
+                    try {
+                        runSegment(segment);
+                    }
+                    finally {
+                        synchronized(mLock) {
+                            mWorkers[segment] = null;
+                            mRunning--;
+                            mLock.notifyAll();
+                        }
+                    }
+                }
+            }, TaskExecutor.NETWORK);
+        }
+    }
+
+    /**
+     * Stop all segments. State is kept for resume.
+     */
+    public void cancel() {
+        mStop = true;
+        synchronized(mLock) {
+            if(null != mWorkers) {
+                for(Thread t : mWorkers) {
+                    if(null != t) {
+                        t.interrupt();
+                    }
+                }
+            }
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Forget resume state, like when the file is found bad
+     */
+    public void discard() {
+        mState.delete();
+        mFile.delete();
+    }
+
+    /**
+     * Call when done with file
+     */
+    public void finish() {
+        mState.delete();
+    }
+
+    /**
+     * @return Size of file, -1 if not known
+     */
+    public long getLength() {
+        return mLength;
+    }
+
+    /**
+     * @return Bytes down so far, in all segments
+     */
+    public long getDownloaded() {
+        synchronized(mLock) {
+            long total = 0;
+            for(int i = 0; i < mDone.length; i++) {
+                total += mDone[i];
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Bytes from start of file that are all down
+     * @return
+     */
+    private long getContiguous() {
+        for(int i = 0; i < mStart.length; i++) {
+            if(!isComplete(i)) {
+                return mStart[i] + mDone[i];
+            }
+        }
+        return mStart[mStart.length - 1] + mDone[mDone.length - 1];
+    }
+
+    /**
+     * @return true when all segments are down
+     */
+    private boolean isComplete() {
+        for(int i = 0; i < mStart.length; i++) {
+            if(!isComplete(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param segment
+     * @return
+     */
+    private boolean isComplete(int segment) {
+        // end < 0 is a segment of unknown size, complete when its worker says so by setting end
+        return mEnd[segment] >= 0 && mStart[segment] + mDone[segment] > mEnd[segment];
+    }
+
+    /**
+     * File as it comes in, in order. Reads wait for bytes to come.
+     * Read fails if download fails or is cancelled.
+     * @return
+     * @throws IOException
+     */
+    public InputStream openStream() throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(mFile, "r");
+        return new InputStream() {
+            private long mPosition = 0;
+
+            @Override
+            public int read() throws IOException {
+                byte b[] = new byte[1];
+                int n = read(b, 0, 1);
+                return n <= 0 ? -1 : (b[0] & 0xFF);
+            }
+
+            @Override
+            public int read(byte b[], int off, int len) throws IOException {
+                long available;
+                synchronized(mLock) {
+                    while(true) {
+                        if(null != mError) {
+                            throw mError;
+                        }
+                        if(mStop) {
+                            throw new IOException("stopped");
+                        }
+                        available = getContiguous() - mPosition;
+                        if(available > 0) {
+                            break;
+                        }
+                        if(isComplete()) {
+                            return -1;
+                        }
+                        try {
+                            mLock.wait(1000);
+                        }
+                        catch (InterruptedException e) {
+                            throw new IOException("stopped");
+                        }
+                    }
+                }
+                int n = (int)Math.min(len, available);
+                raf.seek(mPosition);
+                n = raf.read(b, off, n);
+                if(n > 0) {
+                    mPosition += n;
+                }
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                raf.close();
+            }
+        };
+    }
+
+    /**
+     * Wait for all segments to end
+     * @throws IOException if download failed
+     */
+    public void join() throws IOException {
+        synchronized(mLock) {
+            while(mRunning > 0) {
+                try {
+                    mLock.wait();
+                }
+                catch (InterruptedException e) {
+                    throw new IOException("stopped");
+                }
+            }
+            if(null != mError) {
+                throw mError;
+            }
+        }
+        if(mStop) {
+            throw new IOException("stopped");
+        }
+    }
+
+    /**
+     * Ask for first byte to find size and if server does ranges
+     * @return true if ranges work
+     * @throws IOException
+     */
+    private boolean probe() throws IOException {
+        HttpURLConnection c = open();
+        try {
+            c.setRequestProperty("Range", "bytes=0-0");
+            c.connect();
+            int code = c.getResponseCode();
+            mValidator = c.getHeaderField("ETag");
+            if(null == mValidator) {
+                mValidator = c.getHeaderField("Last-Modified");
+            }
+            if(null == mValidator) {
+                mValidator = "";
+            }
+            if(code == HttpURLConnection.HTTP_PARTIAL) {
+                // bytes 0-0/12345
+                String range = c.getHeaderField("Content-Range");
+                mLength = -1;
+                if(null != range && range.lastIndexOf('/') >= 0) {
+                    try {
+                        mLength = Long.parseLong(range.substring(range.lastIndexOf('/') + 1).trim());
+                    }
+                    catch (NumberFormatException e) {
+                    }
+                }
+                return mLength > 0;
+            }
+            if(code == HttpURLConnection.HTTP_OK) {
+                mLength = getContentLength(c);
+                return false;
+            }
+            throw new IOException("server code " + code);
+        }
+        finally {
+            c.disconnect();
+        }
+    }
+
+    /**
+     * @param c
+     * @return
+     */
+    private static long getContentLength(HttpURLConnection c) {
+        String len = c.getHeaderField("Content-Length");
+        if(null == len) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(len.trim());
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return
+     * @throws IOException
+     */
+    private HttpURLConnection open() throws IOException {
+        HttpURLConnection c = (HttpURLConnection)mUrl.openConnection();
+        c.setConnectTimeout(TIMEOUT_MS);
+        c.setReadTimeout(TIMEOUT_MS);
+        return c;
+    }
+
+    /**
+     * @param num
+     */
+    private void makeSegments(int num) {
+        mStart = new long[num];
+        mEnd = new long[num];
+        mDone = new long[num];
+        if(mLength <= 0) {
+            mStart[0] = 0;
+            mEnd[0] = -1;
+            return;
+        }
+        long size = mLength / num;
+        for(int i = 0; i < num; i++) {
+            mStart[i] = i * size;
+            mEnd[i] = (i == num - 1) ? mLength - 1 : (i + 1) * size - 1;
+        }
+    }
+
+    /**
+     * Resume state of same file from server
+     * @return false if none or not same file
+     */
+    private boolean readState() {
+        if(!mFile.exists()) {
+            return false;
+        }
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(new FileReader(mState));
+            long length = Long.parseLong(br.readLine());
+            String validator = br.readLine();
+            int num = Integer.parseInt(br.readLine());
+            if(length != mLength || !mValidator.equals(validator) || num <= 0 || num > MAX_SEGMENTS) {
+                return false;
+            }
+            long start[] = new long[num];
+            long end[] = new long[num];
+            long done[] = new long[num];
+            for(int i = 0; i < num; i++) {
+                String tokens[] = br.readLine().split(",");
+                start[i] = Long.parseLong(tokens[0]);
+                end[i] = Long.parseLong(tokens[1]);
+                done[i] = Long.parseLong(tokens[2]);
+            }
+            mStart = start;
+            mEnd = end;
+            mDone = done;
+            return true;
+        }
+        catch (Exception e) {
+            return false;
+        }
+        finally {
+            try {
+                if(null != br) {
+                    br.close();
+                }
+            }
+            catch (Exception e) {
+            }
+        }
+    }
+
+    /**
+     * Save where segments are, written to a temp file then renamed
+     */
+    private void saveState() {
+        if(!mRanges) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        synchronized(mLock) {
+            sb.append(mLength).append('\n').append(mValidator).append('\n').append(mStart.length).append('\n');
+            for(int i = 0; i < mStart.length; i++) {
+                sb.append(mStart[i]).append(',').append(mEnd[i]).append(',').append(mDone[i]).append('\n');
+            }
+        }
+        File tmp = new File(mState.getAbsolutePath() + ".tmp");
+        FileWriter fw = null;
+        try {
+            fw = new FileWriter(tmp);
+            fw.write(sb.toString());
+            fw.close();
+            fw = null;
+            tmp.renameTo(mState);
+        }
+        catch (Exception e) {
+        }
+        finally {
+            try {
+                if(null != fw) {
+                    fw.close();
+                }
+            }
+            catch (Exception e) {
+            }
+        }
+    }
+
+    /**
+     * Get a segment, retrying on errors
+     * @param segment
+     */
+    private void runSegment(int segment) {
+        int tries = 0;
+        while(!mStop && !isComplete(segment)) {
+            long before = mDone[segment];
+            IOException error = null;
+            boolean acquired = false;
+            try {
+                sConnections.acquire();
+                acquired = true;
+                fetch(segment);
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            catch (IOException e) {
+                error = e;
+            }
+            finally {
+                if(acquired) {
+                    sConnections.release();
+                }
+                saveState();
+            }
+            if(mRanges && mDone[segment] > before) {
+                // made progress that a retry keeps, start counting again
+                tries = 0;
+            }
+            else {
+                tries++;
+            }
+            if(null != error && (tries > RETRIES || mEnd[segment] < 0)) {
+                // a segment of unknown size cannot tell a short file from a dropped connection
+                fail(error);
+                break;
+            }
+            if(tries > RETRIES) {
+                fail(new IOException("no progress"));
+                break;
+            }
+            if(tries > 0 && !mStop) {
+                try {
+                    Thread.sleep(RETRY_WAIT_MS * tries);
+                }
+                catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        synchronized(mLock) {
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * One connection for rest of a segment
+     * @param segment
+     * @throws IOException
+     */
+    private void fetch(int segment) throws IOException {
+        if(!mRanges) {
+            // no resume, start over
+            synchronized(mLock) {
+                mDone[segment] = 0;
+            }
+        }
+        long from = mStart[segment] + mDone[segment];
+        HttpURLConnection c = open();
+        RandomAccessFile raf = null;
+        InputStream in = null;
+        try {
+            if(mRanges) {
+                c.setRequestProperty("Range", "bytes=" + from + "-" + mEnd[segment]);
+                if(mValidator.length() > 0) {
+                    c.setRequestProperty("If-Range", mValidator);
+                }
+            }
+            c.connect();
+            int code = c.getResponseCode();
+            if(mRanges && code != HttpURLConnection.HTTP_PARTIAL) {
+                // file changed on server, or ranges stopped working
+                throw new IOException("server code " + code + " for range");
+            }
+            if(!mRanges && code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("server code " + code);
+            }
+
+            in = c.getInputStream();
+            raf = new RandomAccessFile(mFile, "rw");
+            raf.seek(from);
+            byte buffer[] = new byte[BLOCK];
+            long unsaved = 0;
+            while(!mStop) {
+                int want = BLOCK;
+                if(mEnd[segment] >= 0) {
+                    want = (int)Math.min(BLOCK, mEnd[segment] + 1 - (mStart[segment] + mDone[segment]));
+                    if(want <= 0) {
+                        break;
+                    }
+                }
+                int n = in.read(buffer, 0, want);
+                if(n < 0) {
+                    break;
+                }
+                raf.write(buffer, 0, n);
+                unsaved += n;
+                synchronized(mLock) {
+                    mDone[segment] += n;
+                    mLock.notifyAll();
+                }
+                if(unsaved >= SAVE_EVERY) {
+                    unsaved = 0;
+                    saveState();
+                }
+            }
+            if(mEnd[segment] < 0 && !mStop) {
+                // unknown size, done at end of stream
+                synchronized(mLock) {
+                    mLength = mDone[segment];
+                    mEnd[segment] = mDone[segment] - 1;
+                    mLock.notifyAll();
+                }
+            }
+            else if(!mStop && !isComplete(segment)) {
+                throw new IOException("connection closed early");
+            }
+        }
+        finally {
+            try {
+                if(null != in) {
+                    in.close();
+                }
+            }
+            catch (Exception e) {
+            }
+            try {
+                if(null != raf) {
+                    raf.close();
+                }
+            }
+            catch (Exception e) {
+            }
+            c.disconnect();
+        }
+    }
+
+    /**
+     * @param e
+     */
+    private void fail(IOException e) {
+        synchronized(mLock) {
+            if(null == mError) {
+                mError = e;
+            }
+            mLock.notifyAll();
+        }
+        mStop = true;
+    }
+}
@@ -17,6 +17,7 @@ import android.os.AsyncTask;
 
 import com.ds.avare.shapes.ShapeFileShape;
 import com.ds.avare.storage.Preferences;
+import com.ds.avare.utils.TaskExecutor;
 
 import java.util.LinkedList;
 
@@ -57,7 +58,7 @@ public class ShapeFetcher {
          * Start the task
          */
         mTask = new ShapeTask();
-        mTask.execute();
+        TaskExecutor.execute(mTask, TaskExecutor.BULK, null);
     }
     
     /**
@@ -16,6 +16,7 @@ import java.util.LinkedList;
 
 import com.ds.avare.shapes.TFRShape;
 import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.TaskExecutor;
 
 
 import android.content.Context;
@@ -58,7 +59,7 @@ public class TFRFetcher {
          * Start the task
          */
         mTask = new TFRTask();
-        mTask.execute();
+        TaskExecutor.execute(mTask, TaskExecutor.BULK, null);
     }
     
     /**
@@ -27,36 +27,23 @@ public class Airway extends Observable {
 	// Max segment length is 500NM this is to keep airways in AK/HI separated from US48
 	public static final double MAX_SEGMENT_LENGTH = 500;
 	
-	// If coordinates are same
-	private static boolean isSame(Coordinate c0, Coordinate c1) {
-		return c0.getLatitude() == c1.getLatitude() && c0.getLongitude() == c1.getLongitude();
-	}
-	
 	/**
 	 * Test case BOS V16 V167 V44 CMK DXR
 	 * Find where two airways intersect.
-	 * @param aw1
-	 * @param aw2
-	 * @return
+	 * @param graph All airways
+	 * @param airway Airway looked at in order
+	 * @param name Name of other airway
+	 * @return Point of intersection, -1 if none
 	 */
-	public static Coordinate findIntersectionOfAirways(StorageService service, String name, LinkedList<Coordinate> coords0) {
+	public static int findIntersectionOfAirways(AirwayGraph graph, int airway, String name) {
 
-		LinkedList<Coordinate> coords1 = service.getDBResource().findAirway(name);
-		if(coords1.size() <= 0) {
-			return null;
+		int other = graph.getAirway(name);
+		if(other < 0) {
+			return -1;
 		}
 
-		// Find the point that intersects. This is a complex operation that works on 2 dimension.
-		// XXX need speed improvement
-		for(Coordinate c0 : coords0) {
-			for(Coordinate c1 : coords1) {
-				if(isSame(c0, c1)) {
-					return c0;
-				}
-			}
-		}
-		
-		return null;
+		// Airways through each point are known, so only points of one airway are looked at
+		return graph.findIntersection(airway, other);
 	}
 	
 	/**
@@ -79,72 +66,21 @@ public class Airway extends Observable {
 		}
 		
 		// Now find airway
-		LinkedList<Coordinate> coords = service.getDBResource().findAirway(name);
-		if(coords.size() <= 0) {
+		AirwayGraph graph = service.getDBResource().getAirwayGraph();
+		int airway = graph.getAirway(name);
+		if(airway < 0) {
 			return null;
 		}
 
-		Coordinate startCoord;
-		if(start.matches(match)) {
-			startCoord = findIntersectionOfAirways(service, start, coords);
-		}
-		else {
-			// Find airway start point from navaid
-			startCoord = service.getDBResource().findNavaid(start);
-		}
-		if(startCoord == null) {
-			return null;
-		}
-
-		// Find airway end point
-		Coordinate endCoord;
-		if(end.matches(match)) {
-			endCoord = findIntersectionOfAirways(service, end, coords);
-		}
-		else {
-			// Find airway end point from navaid
-			endCoord = service.getDBResource().findNavaid(end);
-		}
-		if(endCoord == null) {
-			return null;
-		}
-		
-		// Now find start to end of an airway
-		int startIndex = -1;
-		int endIndex = -1;
-		
-		int i;
-		double minD;
-		
-		// find where we start
-		i = 0;
-		minD = Double.MAX_VALUE;
-		for(Coordinate c : coords) {
-			double dist = Projection.getStaticDistance(c.getLongitude(), c.getLatitude(), startCoord.getLongitude(), startCoord.getLatitude());
-			if(dist < minD) {
-				startIndex = i;
-				minD = dist;
-			}
-			i++;
-		}
-		
+		// Find where we start
+		int startIndex = findIndex(service, graph, airway, start, match);
 		// Some sort of error
 		if(startIndex < 0) {
 			return null;
 		}
 
-		// find where we end
-		i = 0;
-		minD = Double.MAX_VALUE;
-		for(Coordinate c : coords) {
-			double dist = Projection.getStaticDistance(c.getLongitude(), c.getLatitude(), endCoord.getLongitude(), endCoord.getLatitude());
-			if(dist < minD) {
-				endIndex = i;
-				minD = dist;
-			}
-			i++;
-		}
-
+		// Find where we end
+		int endIndex = findIndex(service, graph, airway, end, match);
 		// Some sort of error
 		if(endIndex < 0) {
 			return null;
@@ -156,33 +92,30 @@ public class Airway extends Observable {
 		}
 
 		// Add all of them on the route
+		int i;
 		if(startIndex < endIndex) {
-			Coordinate lastcoord = coords.get(startIndex);
+			int last = graph.getAirwayPoint(airway, startIndex);
 			for(i = startIndex; i < endIndex; i++) {
-				Coordinate c = coords.get(i);
+				int c = graph.getAirwayPoint(airway, i);
 				// Keep far away airways out
-				if(Projection.getStaticDistance(c.getLongitude(), c.getLatitude(), lastcoord.getLongitude(), lastcoord.getLatitude()) > MAX_SEGMENT_LENGTH) {
+				if(isFar(graph, c, last)) {
 					continue;
 				}
-				lastcoord = c;
-				String s = (new StringPreference(Destination.GPS, Destination.GPS, Destination.GPS,
-						name + "@" + Helper.truncGeo(c.getLatitude()) + "&" + Helper.truncGeo(c.getLongitude()))).getHashedName();
-				ret.add(s);
+				last = c;
+				ret.add(getName(graph, name, c));
 			}
 		}
 		else {
 			// Flying it reverse
-			Coordinate lastcoord = coords.get(startIndex);
+			int last = graph.getAirwayPoint(airway, startIndex);
 			for(i = startIndex; i >= endIndex; i--) {
-				Coordinate c = coords.get(i);
+				int c = graph.getAirwayPoint(airway, i);
 				// Keep far away airways out
-				if(Projection.getStaticDistance(c.getLongitude(), c.getLatitude(), lastcoord.getLongitude(), lastcoord.getLatitude()) > MAX_SEGMENT_LENGTH) {
+				if(isFar(graph, c, last)) {
 					continue;
 				}
-				lastcoord = c;
-				String s = (new StringPreference(Destination.GPS, Destination.GPS, Destination.GPS,
-						name + "@" + Helper.truncGeo(c.getLatitude()) + "&" + Helper.truncGeo(c.getLongitude()))).getHashedName();
-				ret.add(s);
+				last = c;
+				ret.add(getName(graph, name, c));
 			}			
 		}
 
@@ -195,4 +128,54 @@ public class Airway extends Observable {
 		
 		return ret;
 	}
+
+	/**
+	 * Where on airway a navaid / fix, or intersection with another airway is
+	 * @param service
+	 * @param graph
+	 * @param airway
+	 * @param at Name of navaid, fix or airway
+	 * @param match Airway name pattern
+	 * @return Index on airway, -1 if not found
+	 */
+	private static int findIndex(StorageService service, AirwayGraph graph, int airway, String at, String match) {
+		if(at.matches(match)) {
+			int point = findIntersectionOfAirways(graph, airway, at);
+			if(point < 0) {
+				return -1;
+			}
+			return graph.getIndexOnAirway(airway, point);
+		}
+
+		// Find airway point from navaid
+		Coordinate c = service.getDBResource().findNavaid(at);
+		if(c == null) {
+			return -1;
+		}
+		return graph.findIndexOnAirway(airway, (float)c.getLongitude(), (float)c.getLatitude());
+	}
+
+	/**
+	 * Segments longer than this are not flown
+	 * @param graph
+	 * @param p0
+	 * @param p1
+	 * @return
+	 */
+	private static boolean isFar(AirwayGraph graph, int p0, int p1) {
+		return Projection.getStaticDistance(graph.getLongitude(p0), graph.getLatitude(p0),
+				graph.getLongitude(p1), graph.getLatitude(p1)) > MAX_SEGMENT_LENGTH;
+	}
+
+	/**
+	 * Storage name of an airway point
+	 * @param graph
+	 * @param name
+	 * @param point
+	 * @return
+	 */
+	static String getName(AirwayGraph graph, String name, int point) {
+		return (new StringPreference(Destination.GPS, Destination.GPS, Destination.GPS,
+				name + "@" + Helper.truncGeo(graph.getLatitude(point)) + "&" + Helper.truncGeo(graph.getLongitude(point)))).getHashedName();
+	}
 }
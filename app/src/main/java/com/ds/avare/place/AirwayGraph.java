@@ -0,0 +1,443 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.place;
+
+import com.ds.avare.position.Projection;
+
+import java.util.HashMap;
+
+/**
+ * All airways in memory, made once from the airways table.
+ * Airway points are interned, so a fix / navaid on several airways is one point.
+ * Points, airways, and which airways go through a point are in primitive arrays,
+ * so intersection of airways and finding a point on an airway need no database query or distance scan.
+ *
+ * Add rows with add() in airway name then sequence order, then call build().
+ */
+public class AirwayGraph {
+
+    private static final int INITIAL = 1024;
+
+    /*
+     * Points
+     */
+    private int mNumPoints;
+    private float mLon[];
+    private float mLat[];
+    private HashMap<Long, Integer> mPointIds;
+
+    /*
+     * Airways. Points of airway n are mAirwayPoints[mAirwayStart[n]] to mAirwayPoints[mAirwayStart[n + 1] - 1]
+     */
+    private int mNumAirways;
+    private String mAirwayNames[];
+    private HashMap<String, Integer> mAirwayIds;
+    private int mAirwayStart[];
+    private int mAirwayPoints[];
+    private int mNumAirwayPoints;
+
+    /*
+     * Airways through a point, and where on that airway the point is.
+     * For point n, mPointAirway[mPointAirwayStart[n]] to mPointAirway[mPointAirwayStart[n + 1] - 1]
+     */
+    private int mPointAirwayStart[];
+    private int mPointAirway[];
+    private int mPointAirwayIndex[];
+
+    /*
+     * Points connected by an airway segment, and segment length.
+     * For point n, mEdge[mEdgeStart[n]] to mEdge[mEdgeStart[n + 1] - 1]
+     */
+    private int mEdgeStart[];
+    private int mEdge[];
+    private int mEdgeAirway[];
+    private float mEdgeDistance[];
+
+    private boolean mBuilt;
+
+    /**
+     *
+     */
+    public AirwayGraph() {
+        mNumPoints = 0;
+        mLon = new float[INITIAL];
+        mLat = new float[INITIAL];
+        mPointIds = new HashMap<Long, Integer>();
+        mNumAirways = 0;
+        mAirwayNames = new String[INITIAL];
+        mAirwayIds = new HashMap<String, Integer>();
+        mAirwayStart = new int[INITIAL + 1];
+        mAirwayPoints = new int[INITIAL];
+        mNumAirwayPoints = 0;
+        mBuilt = false;
+    }
+
+    /**
+     * Key of a point from its location
+     * @param lon
+     * @param lat
+     * @return
+     */
+    private static long key(float lon, float lat) {
+        return (((long)Float.floatToIntBits(lat)) << 32) | (Float.floatToIntBits(lon) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Add next point of an airway
+     * @param name airway name
+     * @param lon
+     * @param lat
+     */
+    public void add(String name, float lon, float lat) {
+        /*
+         * New airway?
+         */
+        if(0 == mNumAirways || !mAirwayNames[mNumAirways - 1].equals(name)) {
+            if(mNumAirways + 1 >= mAirwayNames.length) {
+                String names[] = new String[mAirwayNames.length * 2];
+                System.arraycopy(mAirwayNames, 0, names, 0, mNumAirways);
+                mAirwayNames = names;
+                mAirwayStart = grow(mAirwayStart, mAirwayNames.length + 1, mNumAirways + 1);
+            }
+            mAirwayNames[mNumAirways] = name;
+            mAirwayIds.put(name, mNumAirways);
+            mAirwayStart[mNumAirways] = mNumAirwayPoints;
+            mNumAirways++;
+        }
+
+        /*
+         * Intern point
+         */
+        long k = key(lon, lat);
+        Integer id = mPointIds.get(k);
+        if(null == id) {
+            if(mNumPoints >= mLon.length) {
+                mLon = grow(mLon, mLon.length * 2, mNumPoints);
+                mLat = grow(mLat, mLat.length * 2, mNumPoints);
+            }
+            mLon[mNumPoints] = lon;
+            mLat[mNumPoints] = lat;
+            id = mNumPoints;
+            mPointIds.put(k, id);
+            mNumPoints++;
+        }
+
+        if(mNumAirwayPoints >= mAirwayPoints.length) {
+            mAirwayPoints = grow(mAirwayPoints, mAirwayPoints.length * 2, mNumAirwayPoints);
+        }
+        mAirwayPoints[mNumAirwayPoints++] = id;
+        mAirwayStart[mNumAirways] = mNumAirwayPoints;
+    }
+
+    /**
+     *
+     * @param in
+     * @param size
+     * @param used
+     * @return
+     */
+    private static int[] grow(int in[], int size, int used) {
+        int out[] = new int[size];
+        System.arraycopy(in, 0, out, 0, used);
+        return out;
+    }
+
+    /**
+     *
+     * @param in
+     * @param size
+     * @param used
+     * @return
+     */
+    private static float[] grow(float in[], int size, int used) {
+        float out[] = new float[size];
+        System.arraycopy(in, 0, out, 0, used);
+        return out;
+    }
+
+    /**
+     * Make point to airway and adjacency arrays after all rows are added
+     */
+    public void build() {
+        mAirwayStart[mNumAirways] = mNumAirwayPoints;
+
+        /*
+         * Count airways through each point, then fill
+         */
+        mPointAirwayStart = new int[mNumPoints + 1];
+        for(int i = 0; i < mNumAirwayPoints; i++) {
+            mPointAirwayStart[mAirwayPoints[i] + 1]++;
+        }
+        for(int p = 0; p < mNumPoints; p++) {
+            mPointAirwayStart[p + 1] += mPointAirwayStart[p];
+        }
+        mPointAirway = new int[mNumAirwayPoints];
+        mPointAirwayIndex = new int[mNumAirwayPoints];
+        int fill[] = new int[mNumPoints];
+        for(int aw = 0; aw < mNumAirways; aw++) {
+            for(int i = mAirwayStart[aw]; i < mAirwayStart[aw + 1]; i++) {
+                int p = mAirwayPoints[i];
+                int at = mPointAirwayStart[p] + fill[p]++;
+                mPointAirway[at] = aw;
+                mPointAirwayIndex[at] = i - mAirwayStart[aw];
+            }
+        }
+
+        /*
+         * Segments in both directions. Leave out long segments, those join airways in AK/HI to US48.
+         */
+        mEdgeStart = new int[mNumPoints + 1];
+        for(int aw = 0; aw < mNumAirways; aw++) {
+            for(int i = mAirwayStart[aw] + 1; i < mAirwayStart[aw + 1]; i++) {
+                int p0 = mAirwayPoints[i - 1];
+                int p1 = mAirwayPoints[i];
+                if(p0 == p1) {
+                    continue;
+                }
+                mEdgeStart[p0 + 1]++;
+                mEdgeStart[p1 + 1]++;
+            }
+        }
+        for(int p = 0; p < mNumPoints; p++) {
+            mEdgeStart[p + 1] += mEdgeStart[p];
+        }
+        int edges = mEdgeStart[mNumPoints];
+        mEdge = new int[edges];
+        mEdgeAirway = new int[edges];
+        mEdgeDistance = new float[edges];
+        fill = new int[mNumPoints];
+        for(int aw = 0; aw < mNumAirways; aw++) {
+            for(int i = mAirwayStart[aw] + 1; i < mAirwayStart[aw + 1]; i++) {
+                int p0 = mAirwayPoints[i - 1];
+                int p1 = mAirwayPoints[i];
+                if(p0 == p1) {
+                    continue;
+                }
+                float d = (float)Projection.getStaticDistance(mLon[p0], mLat[p0], mLon[p1], mLat[p1]);
+                if(d > Airway.MAX_SEGMENT_LENGTH) {
+                    // mark as not connected
+                    d = Float.MAX_VALUE;
+                }
+                int at0 = mEdgeStart[p0] + fill[p0]++;
+                mEdge[at0] = p1;
+                mEdgeAirway[at0] = aw;
+                mEdgeDistance[at0] = d;
+                int at1 = mEdgeStart[p1] + fill[p1]++;
+                mEdge[at1] = p0;
+                mEdgeAirway[at1] = aw;
+                mEdgeDistance[at1] = d;
+            }
+        }
+        mBuilt = true;
+    }
+
+    /**
+     * @return true if built and has airways
+     */
+    public boolean isValid() {
+        return mBuilt && mNumAirways > 0;
+    }
+
+    /**
+     * @param name
+     * @return Airway id, -1 if no such airway
+     */
+    public int getAirway(String name) {
+        Integer id = mAirwayIds.get(name);
+        if(null == id) {
+            return -1;
+        }
+        return id;
+    }
+
+    /**
+     * @param airway
+     * @return
+     */
+    public String getAirwayName(int airway) {
+        return mAirwayNames[airway];
+    }
+
+    /**
+     * @return
+     */
+    public int getNumAirways() {
+        return mNumAirways;
+    }
+
+    /**
+     * @param airway
+     * @return Number of points on airway
+     */
+    public int getAirwayLength(int airway) {
+        return mAirwayStart[airway + 1] - mAirwayStart[airway];
+    }
+
+    /**
+     * @param airway
+     * @param index
+     * @return Point at index on airway
+     */
+    public int getAirwayPoint(int airway, int index) {
+        return mAirwayPoints[mAirwayStart[airway] + index];
+    }
+
+    /**
+     * @return
+     */
+    public int getNumPoints() {
+        return mNumPoints;
+    }
+
+    /**
+     * @param lon
+     * @param lat
+     * @return Point at exactly this location, -1 if none
+     */
+    public int getPoint(float lon, float lat) {
+        Integer id = mPointIds.get(key(lon, lat));
+        if(null == id) {
+            return -1;
+        }
+        return id;
+    }
+
+    /**
+     * @param point
+     * @return
+     */
+    public float getLongitude(int point) {
+        return mLon[point];
+    }
+
+    /**
+     * @param point
+     * @return
+     */
+    public float getLatitude(int point) {
+        return mLat[point];
+    }
+
+    /**
+     * Where on an airway a point is
+     * @param airway
+     * @param point
+     * @return First index of point on airway, -1 if not on it
+     */
+    public int getIndexOnAirway(int airway, int point) {
+        int index = -1;
+        for(int i = mPointAirwayStart[point]; i < mPointAirwayStart[point + 1]; i++) {
+            if(mPointAirway[i] == airway) {
+                if(index < 0 || mPointAirwayIndex[i] < index) {
+                    index = mPointAirwayIndex[i];
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Where on an airway is closest to a location
+     * @param airway
+     * @param lon
+     * @param lat
+     * @return Index on airway, -1 if none
+     */
+    public int findIndexOnAirway(int airway, float lon, float lat) {
+        /*
+         * Navaids and fixes are almost always airway points
+         */
+        int point = getPoint(lon, lat);
+        if(point >= 0) {
+            int index = getIndexOnAirway(airway, point);
+            if(index >= 0) {
+                return index;
+            }
+        }
+
+        /*
+         * Not a point of this airway, find closest
+         */
+        int index = -1;
+        double minD = Double.MAX_VALUE;
+        int len = getAirwayLength(airway);
+        for(int i = 0; i < len; i++) {
+            int p = getAirwayPoint(airway, i);
+            double dist = Projection.getStaticDistance(mLon[p], mLat[p], lon, lat);
+            if(dist < minD) {
+                index = i;
+                minD = dist;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Find where two airways intersect.
+     * @param airway0 Airway looked at in order
+     * @param airway1
+     * @return First point of airway0 that is also on airway1, -1 if none
+     */
+    public int findIntersection(int airway0, int airway1) {
+        int len = getAirwayLength(airway0);
+        for(int i = 0; i < len; i++) {
+            int p = getAirwayPoint(airway0, i);
+            for(int j = mPointAirwayStart[p]; j < mPointAirwayStart[p + 1]; j++) {
+                if(mPointAirway[j] == airway1) {
+                    return p;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param point
+     * @return First edge of point
+     */
+    public int getEdgeStart(int point) {
+        return mEdgeStart[point];
+    }
+
+    /**
+     * @param point
+     * @return One past last edge of point
+     */
+    public int getEdgeEnd(int point) {
+        return mEdgeStart[point + 1];
+    }
+
+    /**
+     * @param edge
+     * @return Point at other end of edge
+     */
+    public int getEdgePoint(int edge) {
+        return mEdge[edge];
+    }
+
+    /**
+     * @param edge
+     * @return Airway of edge
+     */
+    public int getEdgeAirway(int edge) {
+        return mEdgeAirway[edge];
+    }
+
+    /**
+     * @param edge
+     * @return Length of edge, Float.MAX_VALUE if not to be flown
+     */
+    public float getEdgeDistance(int edge) {
+        return mEdgeDistance[edge];
+    }
+}
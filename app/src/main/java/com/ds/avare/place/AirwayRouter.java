@@ -0,0 +1,414 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ds.avare.place;
+
+import java.util.LinkedList;
+
+import com.ds.avare.StorageService;
+import com.ds.avare.position.Coordinate;
+import com.ds.avare.position.GeoPoints;
+import com.ds.avare.weather.WindsAloft;
+
+/**
+ * Finds the shortest, or quickest with winds, route on airways between two points.
+ * A* on the airway graph, with great circle distance to destination as the estimate.
+ * Departure and destination connect to all airway points within MAX_ENTRY_DISTANCE.
+ *
+ * Not thread safe. Make one for each search thread.
+ */
+public class AirwayRouter {
+
+    /**
+     * Word between two points in plan create to route on airways, like "KBOS AIRWAYS KSFO"
+     */
+    public static final String KEYWORD = "AIRWAYS";
+
+    /**
+     * How far from departure / destination an airway can be joined / left
+     */
+    public static final double MAX_ENTRY_DISTANCE = 50;
+
+    private AirwayGraph mGraph;
+
+    /*
+     * Airway points, then departure, then destination
+     */
+    private GeoPoints mPoints;
+    private int mStart;
+    private int mGoal;
+    private double mFromStart[];
+
+    /*
+     * Search state. A point is in this search only if its stamp is the search stamp,
+     * so nothing needs clearing between searches.
+     */
+    private int mStamp;
+    private int mSeen[];
+    private boolean mClosed[];
+    private double mCost[];
+    private int mParent[];
+    private int mParentAirway[];
+
+    /*
+     * Binary heap of open points. Points are added again when cheaper, old entries are skipped.
+     */
+    private int mHeap[];
+    private double mHeapKey[];
+    private int mHeapSize;
+
+    /*
+     * Wind for quickest route, speed 0 for shortest
+     */
+    private double mSpeed;
+    private double mWindSpeed;
+    private double mWindDirection;
+
+    private int mExpanded;
+
+    /**
+     * @param graph
+     */
+    public AirwayRouter(AirwayGraph graph) {
+        mGraph = graph;
+        int num = graph.getNumPoints();
+        mStart = num;
+        mGoal = num + 1;
+        mPoints = new GeoPoints(num + 2);
+        for(int p = 0; p < num; p++) {
+            mPoints.add(graph.getLongitude(p), graph.getLatitude(p));
+        }
+        mPoints.add(0, 0);
+        mPoints.add(0, 0);
+        mFromStart = new double[num + 2];
+        mStamp = 0;
+        mSeen = new int[num + 2];
+        mClosed = new boolean[num + 2];
+        mCost = new double[num + 2];
+        mParent = new int[num + 2];
+        mParentAirway = new int[num + 2];
+        mHeap = new int[num + 2];
+        mHeapKey = new double[num + 2];
+    }
+
+    /**
+     * Shortest route
+     * @param lon0
+     * @param lat0
+     * @param lon1
+     * @param lat1
+     * @return Airway points to fly in order, not including departure and destination. null if no route.
+     */
+    public int[] findRoute(double lon0, double lat0, double lon1, double lat1) {
+        return findRoute(lon0, lat0, lon1, lat1, 0, 0, 0);
+    }
+
+    /**
+     * Quickest route with a wind. Same as shortest when speed is 0.
+     * @param lon0
+     * @param lat0
+     * @param lon1
+     * @param lat1
+     * @param speed true air speed
+     * @param windSpeed
+     * @param windDirection from, true
+     * @return Airway points to fly in order, not including departure and destination. null if no route.
+     */
+    public int[] findRoute(double lon0, double lat0, double lon1, double lat1,
+                           double speed, double windSpeed, double windDirection) {
+
+        if(speed <= windSpeed) {
+            // Cannot make way against wind, go shortest
+            speed = 0;
+        }
+        mSpeed = speed;
+        mWindSpeed = windSpeed;
+        mWindDirection = windDirection;
+        mExpanded = 0;
+
+        mPoints.set(mStart, lon0, lat0);
+        mPoints.set(mGoal, lon1, lat1);
+        mPoints.getDistances(lon0, lat0, mFromStart);
+
+        mStamp++;
+        mHeapSize = 0;
+        open(mStart, -1, -1, 0);
+
+        while(mHeapSize > 0) {
+            int p = pop();
+            if(mClosed[p]) {
+                // Old entry
+                continue;
+            }
+            mClosed[p] = true;
+            mExpanded++;
+
+            if(p == mGoal) {
+                return path();
+            }
+
+            if(p == mStart) {
+                // Join any airway close by
+                for(int q = 0; q < mStart; q++) {
+                    if(mFromStart[q] <= MAX_ENTRY_DISTANCE) {
+                        relax(p, q, -1, mFromStart[q]);
+                    }
+                }
+                continue;
+            }
+
+            for(int e = mGraph.getEdgeStart(p); e < mGraph.getEdgeEnd(p); e++) {
+                float d = mGraph.getEdgeDistance(e);
+                if(d == Float.MAX_VALUE) {
+                    continue;
+                }
+                relax(p, mGraph.getEdgePoint(e), mGraph.getEdgeAirway(e), d);
+            }
+
+            // Leave airway for destination
+            double d = mPoints.getDistance(p, mGoal);
+            if(d <= MAX_ENTRY_DISTANCE) {
+                relax(p, mGoal, -1, d);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Points looked at in last search
+     */
+    public int getExpanded() {
+        return mExpanded;
+    }
+
+    /**
+     * Airway used to get to a point in last route
+     * @param point
+     * @return Airway, -1 if joined directly from departure
+     */
+    public int getAirwayTo(int point) {
+        return mParentAirway[point];
+    }
+
+    /**
+     * Cost of flying from one point to another, distance or hours
+     * @param p
+     * @param q
+     * @param distance
+     * @return
+     */
+    private double cost(int p, int q, double distance) {
+        if(mSpeed <= 0) {
+            return distance;
+        }
+        // same formula as plan with winds
+        double hd = mPoints.getBearing(p, q);
+        double a = Math.toRadians(hd - mWindDirection);
+        double gs = Math.sqrt(mWindSpeed * mWindSpeed + mSpeed * mSpeed - 2 * mWindSpeed * mSpeed * Math.cos(a));
+        return distance / gs;
+    }
+
+    /**
+     * Lower bound of cost to destination
+     * @param p
+     * @return
+     */
+    private double estimate(int p) {
+        double d = mPoints.getDistance(p, mGoal);
+        if(mSpeed <= 0) {
+            return d;
+        }
+        return d / (mSpeed + mWindSpeed);
+    }
+
+    /**
+     * @param p from
+     * @param q to
+     * @param airway
+     * @param distance
+     */
+    private void relax(int p, int q, int airway, double distance) {
+        double c = mCost[p] + cost(p, q, distance);
+        if(mSeen[q] == mStamp) {
+            if(mClosed[q] || c >= mCost[q]) {
+                return;
+            }
+        }
+        open(q, p, airway, c);
+    }
+
+    /**
+     * @param q
+     * @param parent
+     * @param airway
+     * @param cost
+     */
+    private void open(int q, int parent, int airway, double cost) {
+        if(mSeen[q] != mStamp) {
+            mSeen[q] = mStamp;
+            mClosed[q] = false;
+        }
+        mCost[q] = cost;
+        mParent[q] = parent;
+        mParentAirway[q] = airway;
+        push(q, cost + estimate(q));
+    }
+
+    /**
+     * @return
+     */
+    private int[] path() {
+        int num = 0;
+        for(int p = mParent[mGoal]; p != mStart; p = mParent[p]) {
+            num++;
+        }
+        int ret[] = new int[num];
+        for(int p = mParent[mGoal]; p != mStart; p = mParent[p]) {
+            ret[--num] = p;
+        }
+        return ret;
+    }
+
+    /**
+     * @param p
+     * @param key
+     */
+    private void push(int p, double key) {
+        if(mHeapSize >= mHeap.length) {
+            int heap[] = new int[mHeap.length * 2];
+            double keys[] = new double[mHeap.length * 2];
+            System.arraycopy(mHeap, 0, heap, 0, mHeapSize);
+            System.arraycopy(mHeapKey, 0, keys, 0, mHeapSize);
+            mHeap = heap;
+            mHeapKey = keys;
+        }
+        int i = mHeapSize++;
+        while(i > 0) {
+            int up = (i - 1) / 2;
+            if(mHeapKey[up] <= key) {
+                break;
+            }
+            mHeap[i] = mHeap[up];
+            mHeapKey[i] = mHeapKey[up];
+            i = up;
+        }
+        mHeap[i] = p;
+        mHeapKey[i] = key;
+    }
+
+    /**
+     * @return
+     */
+    private int pop() {
+        int ret = mHeap[0];
+        mHeapSize--;
+        int p = mHeap[mHeapSize];
+        double key = mHeapKey[mHeapSize];
+        int i = 0;
+        while(true) {
+            int down = 2 * i + 1;
+            if(down >= mHeapSize) {
+                break;
+            }
+            if(down + 1 < mHeapSize && mHeapKey[down + 1] < mHeapKey[down]) {
+                down++;
+            }
+            if(key <= mHeapKey[down]) {
+                break;
+            }
+            mHeap[i] = mHeap[down];
+            mHeapKey[i] = mHeapKey[down];
+            i = down;
+        }
+        mHeap[i] = p;
+        mHeapKey[i] = key;
+        return ret;
+    }
+
+    /**
+     * Location of departure / destination by name. Airport, navaid, or fix.
+     * @param service
+     * @param name
+     * @return
+     */
+    private static Coordinate findCoordinate(StorageService service, String name) {
+        Coordinate c = service.getDBResource().getCoordinate(name);
+        if(null == c && name.length() == 4 && name.startsWith("K")) {
+            // FAA database does not have K in it
+            c = service.getDBResource().getCoordinate(name.substring(1));
+        }
+        if(null == c) {
+            c = service.getDBResource().findNavaid(name);
+        }
+        return c;
+    }
+
+    /**
+     * Find a route on airways between two points, quickest with winds at departure if known.
+     * Call from background.
+     * @param service
+     * @param start Name of departure airport / navaid / fix
+     * @param end Name of destination airport / navaid / fix
+     * @param speed true air speed
+     * @param altitude for winds
+     * @return Airway points as GPS way points in plan create format, null if no route
+     */
+    public static LinkedList<String> find(StorageService service, String start, String end, double speed, double altitude) {
+
+        Coordinate c0 = findCoordinate(service, start);
+        Coordinate c1 = findCoordinate(service, end);
+        if(null == c0 || null == c1) {
+            return null;
+        }
+
+        AirwayGraph graph = service.getDBResource().getAirwayGraph();
+        if(!graph.isValid()) {
+            return null;
+        }
+
+        double ws = 0;
+        double wd = 0;
+        WindsAloft wa = service.getDBResource().getWindsAloft(c0.getLongitude(), c0.getLatitude());
+        if(null != wa) {
+            try {
+                double winds[] = wa.getWindAtAltitude(altitude);
+                ws = winds[0];
+                wd = winds[1];
+            }
+            catch (Exception e) {
+                ws = 0;
+                wd = 0;
+            }
+        }
+
+        AirwayRouter router = new AirwayRouter(graph);
+        int route[] = router.findRoute(c0.getLongitude(), c0.getLatitude(), c1.getLongitude(), c1.getLatitude(),
+                speed, ws, wd);
+        if(null == route || route.length <= 0) {
+            return null;
+        }
+
+        LinkedList<String> ret = new LinkedList<String>();
+        for(int i = 0; i < route.length; i++) {
+            /*
+             * Name with airway it is flown on. First point is named with airway it is left on.
+             */
+            int airway = router.getAirwayTo(route[i]);
+            if(airway < 0 && route.length > 1) {
+                airway = router.getAirwayTo(route[1]);
+            }
+            String name = airway < 0 ? KEYWORD : graph.getAirwayName(airway);
+            ret.add(Airway.getName(graph, name, route[i]));
+        }
+        return ret;
+    }
+}
@@ -15,6 +15,7 @@ package com.ds.avare.place;
 import com.ds.avare.gps.GpsParams;
 import com.ds.avare.storage.DataSource;
 import com.ds.avare.storage.Preferences;
+import com.ds.avare.utils.TaskExecutor;
 
 import android.content.Context;
 import android.os.AsyncTask;
@@ -118,7 +119,7 @@ public class Area {
             }
         }
         mDt = new DataBaseAreaTask();
-        mDt.execute();
+        TaskExecutor.execute(mDt, TaskExecutor.INTERACTIVE, "area");
     }
 
     /**
@@ -30,6 +30,7 @@ import com.ds.avare.userDefinedWaypoints.UDWMgr;
 import com.ds.avare.userDefinedWaypoints.Waypoint;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.TaskExecutor;
 import com.ds.avare.utils.TwilightCalculator;
 import com.ds.avare.weather.WindsAloft;
 
@@ -78,7 +79,7 @@ public class Destination extends Observable {
      * ETA at destination
      */
     private String mEte;
-    private Long mEteSec;
+    private long mEteSec;
     private String mEta;
 
     private WindsAloft mWinds;
@@ -193,6 +194,7 @@ public class Destination extends Observable {
         mTrackShape = new TrackShape();
         mEte = new String("--:--");
         mEta = new String("--:--");
+        mEteSec = Long.MAX_VALUE;
         mLond = lon;
         mLatd = lat;
         mParams = new LinkedHashMap<String, String>();
@@ -287,28 +289,51 @@ public class Destination extends Observable {
 	     */
         double mLon = params.getLongitude();
         double mLat = params.getLatitude();
-        double speed = params.getSpeed();
         mDeclination = params.getDeclinition();
 
 		if(!mFound) {
 			return;
 		}
 
-        if(!mInited) {
-            mLonInit = mLon;
-            mLatInit = mLat;
-            mInited = true;
-        }
-        
 		/*
 		 * Project and find distance
 		 */
 		Projection p = new Projection(mLon, mLat, mLond, mLatd);
 		
-    	mDistance = p.getDistance();
+		updateLeg(mLon, mLat, p.getDistance(), p.getBearing(), params.getSpeed(), params.getAltitude(),
+		        params.getBearing(), params.getDeclinition());
+	}
 
-    	mBearing = p.getBearing();
+    /**
+     * Same as updateTo but with distance and bearing to this destination already known.
+     * Used by plan for legs whose geometry does not change between fixes, so no projection is done here.
+     * Display strings are not made here, they are made on demand.
+     * @param lon where we are coming from
+     * @param lat where we are coming from
+     * @param distance to this destination
+     * @param bearing to this destination
+     * @param speed ground speed
+     * @param altitude
+     * @param heading current track
+     * @param declination
+     */
+    void updateLeg(double lon, double lat, double distance, double bearing, double speed,
+                   double altitude, double heading, double declination) {
+
+        mDeclination = declination;
 
+        if(!mFound) {
+            return;
+        }
+
+        if(!mInited) {
+            mLonInit = lon;
+            mLatInit = lat;
+            mInited = true;
+        }
+
+        mDistance = distance;
+        mBearing = bearing;
 
         // in flying mode, calculate time based on ground speed from GPS
         mGroundSpeed = speed;
@@ -318,7 +343,7 @@ public class Destination extends Observable {
             double ws = 0;
             double wd = 0;
             if(mWinds != null) {
-                double winds[] = mWinds.getWindAtAltitude(params.getAltitude());
+                double winds[] = mWinds.getWindAtAltitude(altitude);
                 ws = winds[0];
                 wd = winds[1];
             }
@@ -336,7 +361,7 @@ public class Destination extends Observable {
             // We can't assume that we are heading DIRECTLY for the destination, so
             // we need to figure out the multiply factor by taking the COS of the difference
             // between the bearing and the heading.
-            double angDif = Helper.angularDifference(params.getBearing(), mBearing);
+            double angDif = Helper.angularDifference(heading, mBearing);
             double xFactor = 1;
 
             // If the difference is 90 or greater, then ETE means nothing as we are not
@@ -348,10 +373,6 @@ public class Destination extends Observable {
             mGroundSpeed *= xFactor;
         }
 
-    	/*
-    	 * ETA when speed != 0
-    	 */
-    	mEte = Helper.calculateEte(mDistance, mGroundSpeed, 0, true);
         if(mGroundSpeed == 0) {
             mEteSec = Long.MAX_VALUE;
         }
@@ -359,16 +380,21 @@ public class Destination extends Observable {
             mEteSec = (long)(mDistance / mGroundSpeed * 3600);
         }
 
-    	// Calculate the time of arrival at our destination. We SHOULD be taking in to account
-    	// the timezone at that location
-    	mEta = Helper.calculateEta(Calendar.getInstance().getTimeZone(), mDistance, mGroundSpeed);
-	}
+        /*
+         * ETE/ETA strings are made when asked for
+         */
+        mEte = null;
+        mEta = null;
+    }
 
 	/**
 	 * 
 	 * @return
 	 */
 	public String getEte() {
+	    if(null == mEte) {
+	        mEte = Helper.calculateEte(mDistance, mGroundSpeed, 0, true);
+	    }
 		return mEte;
 	}
 
@@ -397,6 +423,11 @@ public class Destination extends Observable {
 	 * @return
 	 */
 	public String getEta() {
+	    if(null == mEta) {
+	        // Calculate the time of arrival at our destination. We SHOULD be taking in to account
+	        // the timezone at that location
+	        mEta = Helper.calculateEta(Calendar.getInstance().getTimeZone(), mDistance, mGroundSpeed);
+	    }
 		return mEta;
 	}
 
@@ -422,7 +453,7 @@ public class Destination extends Observable {
 			return(mName + "? ");
 		}
 		else {
-			return Helper.makeLine(mDistance, Preferences.distanceConversionUnit, mEte, mBearing, mDeclination); 
+			return Helper.makeLine(mDistance, Preferences.distanceConversionUnit, getEte(), mBearing, mDeclination); 
 		}
 	}
 
@@ -435,7 +466,7 @@ public class Destination extends Observable {
          */
         mLooking = true;
         DataBaseLocationTask locmDataBaseTask = new DataBaseLocationTask();
-        locmDataBaseTask.execute(true, "");
+        TaskExecutor.execute(locmDataBaseTask, TaskExecutor.INTERACTIVE, null, true, "");
     }
     
     /**
@@ -447,7 +478,7 @@ public class Destination extends Observable {
          */
         mLooking = true;
         DataBaseLocationTask locmDataBaseTask = new DataBaseLocationTask();
-        locmDataBaseTask.execute(false, "");
+        TaskExecutor.execute(locmDataBaseTask, TaskExecutor.INTERACTIVE, null, false, "");
     }
 
 	/**
@@ -460,9 +491,289 @@ public class Destination extends Observable {
 	     */
         mLooking = true;
         DataBaseLocationTask locmDataBaseTask = new DataBaseLocationTask();
-        locmDataBaseTask.execute(false, dbType);
+        TaskExecutor.execute(locmDataBaseTask, TaskExecutor.INTERACTIVE, null, false, dbType);
 	}
 	
+    /**
+     * Find destination, in background as database queries are disruptive.
+     * @param guess If we dont know type, find with a guess
+     * @param dbType
+     * @return true if found
+     */
+    boolean lookup(boolean guess, String dbType) {
+
+        /*
+         * If we dont know type, find with a guess.
+         */
+        if(guess) {
+            StringPreference s = mService.getDBResource().searchOne(mName);
+            if(null == s) {
+                return false;
+            }
+            mDestType = s.getType();
+            mName = s.getId();
+        }
+
+        /*
+         * If GPS/Maps, parse
+         */
+        if(mName.contains("&")) {
+            parseGps(mName, mDestType);
+        }
+
+        mWinds = mService.getDBResource().getWindsAloft(mLond, mLatd);
+
+        if(mDestType.equals(UDW)){
+        	Waypoint p = mService.getUDWMgr().get(mName);
+        	if(null != p) {
+        		mLatd = p.getLat();
+        		mLond = p.getLon();
+        		mCmt  = p.getCmt();
+                mParams.put(DataBaseHelper.LONGITUDE, "" + mLond);
+                mParams.put(DataBaseHelper.LATITUDE, "" + mLatd);
+                mParams.put(DataBaseHelper.FACILITY_NAME, UDWMgr.UDWDESCRIPTION);
+                addTime();
+                mAfdFound = null;
+                mFound = true;
+                mLooking = false;
+                mDbType = UDW;
+                mTrackShape.updateShape(new GpsParams(getLocationInit()), Destination.this);
+            	return true;
+        	}
+        	return false;
+        }
+
+        if(mDestType.equals(GPS)) {
+            /*
+             * For GPS coordinates, simply put parsed lon/lat in params
+             * No need to query database
+             */
+            mParams = new LinkedHashMap<String, String>();
+            mFreq = new LinkedHashMap<String, String>();
+            mAwos = new LinkedList<Awos> ();
+            mParams.put(DataBaseHelper.LONGITUDE, "" + mLond);
+            mParams.put(DataBaseHelper.LATITUDE, "" + mLatd);
+            mParams.put(DataBaseHelper.FACILITY_NAME, GPS);
+            addTime();
+            mAfdFound = null;
+            mFound = true;
+            mLooking = false;
+            mDbType = GPS;
+            mTrackShape.updateShape(new GpsParams(getLocationInit()), Destination.this);
+            if(!isGPSValid(mName)) {
+                mFound = false;
+            }
+            if(!mName.contains("&")) {
+                /*
+                 * This comes from MAPS to GPS for user edited
+                 */
+                mName += "@" + mLatd + "&" + mLond;
+            }
+            return true;
+        }
+
+        if(null == mDataSource) {
+            return false;
+        }
+            
+
+        /*
+         * For Google maps address, if we have already geo decoded it using internet,
+         * then no need to do again because internet may not be available on flight.
+         * It could be coming from storage and not google maps.
+         */
+        if(mDestType.equals(MAPS)) {
+
+            if(mLond == 0 && mLatd == 0) {
+                /*
+                 * We have already decomposed it?
+                 * No.
+                 */
+                String strAddress = mName;
+                
+                Geocoder coder = new Geocoder(mService);
+                Address location = null;
+
+                /*
+                 * Decompose
+                 */
+                try {
+                    List<Address> address = coder.getFromLocationName(strAddress, 1);
+                    if (address != null) {
+                        location = address.get(0);
+                    }
+                }
+                catch (Exception e) {
+                    return false;
+                }
+                
+                if(null == location) {
+                    return false;
+                }
+                                        
+                /*
+                 * Decomposed it
+                 * 
+                 */
+                try {
+                mLond = Helper.truncGeo(location.getLongitude());
+                mLatd = Helper.truncGeo(location.getLatitude());
+                }
+                catch (Exception e) {
+                    
+                }
+                if((!Helper.isLatitudeSane(mLatd)) || (!Helper.isLongitudeSane(mLond))) {
+                    return false;  
+                }
+
+            }
+            /*
+             * Common stuff
+             */
+            mParams = new LinkedHashMap<String, String>();
+            mFreq = new LinkedHashMap<String, String>();
+            mAwos = new LinkedList<Awos> ();
+            mAfdFound = null;
+            mDbType = mDestType;
+            mParams.put(DataBaseHelper.TYPE, mDestType);
+            mParams.put(DataBaseHelper.FACILITY_NAME, mName);
+            mParams.put(DataBaseHelper.LONGITUDE, "" + mLond);
+            mParams.put(DataBaseHelper.LATITUDE, "" + mLatd);
+            addTime();
+            mName += "@" + mLatd + "&" + mLond;
+            return true;                    
+        }
+        
+        /*
+         * For all others, find in DB
+         */
+        mDataSource.findDestination(mName, mDestType, dbType, mParams, mRunways, mFreq, mAwos);
+
+        if(mDestType.equals(BASE)) {
+
+            /*
+             * Find A/FD
+             */
+            findAfdFiles(mDataSource.findAFD(mName));
+        }
+
+        return(!mParams.isEmpty());
+    }
+
+    /**
+     * Same as lookup, but for destination whose params, runways, frequencies and AWOS were already
+     * filled in by a bulk database query, like when a plan is loaded.
+     * @param afdName A/FD names of this destination, if airport
+     * @param winds winds aloft at this destination
+     * @return true if found
+     */
+    boolean lookupFilled(LinkedList<String> afdName, WindsAloft winds) {
+        mWinds = winds;
+        if(mDestType.equals(BASE) && null != afdName) {
+            findAfdFiles(afdName);
+        }
+        return(!mParams.isEmpty());
+    }
+
+    /**
+     * Finding is done elsewhere, like for all way points of a plan together
+     */
+    void startLooking() {
+        mLooking = true;
+    }
+
+    /**
+     * Is this destination found in database tables of airports, navaids, or fixes
+     * @return
+     */
+    boolean isInDataBase() {
+        if(mName.contains("&")) {
+            return false;
+        }
+        return mDestType.equals(BASE) || mDestType.equals(NAVAID) || mDestType.equals(FIX);
+    }
+
+    /**
+     * Find A/FD files from A/FD names
+     * @param afdName
+     */
+    private void findAfdFiles(final LinkedList<String> afdName) {
+        mAfdFound = null;
+        if(afdName.size() > 0) {
+            FilenameFilter filter = new FilenameFilter() {
+                public boolean accept(File directory, String fileName) {
+                    boolean match = false;
+                    for(final String name : afdName) {
+                        match |= fileName.matches(name + Preferences.IMAGE_EXTENSION) ||
+                                fileName.matches(name + "-[0-9]+" + Preferences.IMAGE_EXTENSION);
+                    }
+                    return match;
+                }
+            };
+            String afd[] = null;
+            afd = new File(mPref.mapsFolder() + "/afd/").list(filter);
+            if(null != afd) {
+                java.util.Arrays.sort(afd);
+                int len1 = afd.length;
+                String tmp1[] = new String[len1];
+                for(int count = 0; count < len1; count++) {
+                    /*
+                     * Add A/FD
+                     */
+                    String tokens[] = afd[count].split(Preferences.IMAGE_EXTENSION);
+                    tmp1[count] = mPref.mapsFolder() + "/afd/" +
+                            tokens[0];
+                }
+                if(len1 > 0) {
+                    mAfdFound = tmp1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Done finding. This runs on UI.
+     * @param result
+     */
+    void found(boolean result) {
+    	/*
+    	 * This runs on UI
+    	 */
+        mFound = result;
+        if(mDbType.equals(GPS) || mDbType.equals(UDW) || mDbType.equals(MAPS)) {
+            /*
+             * These dont come from db so dont assign from params.
+             */
+        }
+        else {
+        if(mFound) {
+                mDbType = mParams.get(DataBaseHelper.TYPE);
+                try {
+        		    mLond = Double.parseDouble(mParams.get(DataBaseHelper.LONGITUDE));
+        		    mLatd = Double.parseDouble(mParams.get(DataBaseHelper.LATITUDE));
+                }
+                catch(Exception e) {
+                    mFound = false;
+                }
+        }
+        }
+        /**
+         * 
+         */
+        addTime();
+
+        /*
+         * Anyone watching if destination found?
+         */
+        mTrackShape.updateShape(new GpsParams(getLocationInit()), Destination.this);
+        Destination.this.setChanged();
+        Destination.this.notifyObservers(Boolean.valueOf(mFound));
+        // Save last known good location
+        mPref.setLastLocation(getLocation().getLongitude(), getLocation().getLatitude());
+
+        mLooking = false;
+    }
+
     /**
      * @author zkhan
      * Query for destination task
@@ -486,194 +797,8 @@ public class Destination extends Observable {
 
             Boolean guess = (Boolean)vals[0];
             String dbType = (String)vals[1];
-            
-            /*
-             * If we dont know type, find with a guess.
-             */
-            if(guess) {
-                StringPreference s = mService.getDBResource().searchOne(mName);
-                if(null == s) {
-                    return false;
-                }
-                mDestType = s.getType();
-                mName = s.getId();
-            }
 
-            /*
-             * If GPS/Maps, parse
-             */
-            if(mName.contains("&")) {
-                parseGps(mName, mDestType);
-            }
-
-            mWinds = mService.getDBResource().getWindsAloft(mLond, mLatd);
-
-	        if(mDestType.equals(UDW)){
-	        	Waypoint p = mService.getUDWMgr().get(mName);
-	        	if(null != p) {
-	        		mLatd = p.getLat();
-	        		mLond = p.getLon();
-	        		mCmt  = p.getCmt();
-		            mParams.put(DataBaseHelper.LONGITUDE, "" + mLond);
-		            mParams.put(DataBaseHelper.LATITUDE, "" + mLatd);
-		            mParams.put(DataBaseHelper.FACILITY_NAME, UDWMgr.UDWDESCRIPTION);
-		            addTime();
-		            mAfdFound = null;
-		            mFound = true;
-		            mLooking = false;
-		            mDbType = UDW;
-		            mTrackShape.updateShape(new GpsParams(getLocationInit()), Destination.this);
-		        	return true;
-	        	}
-	        	return false;
-	        }
-
-	        if(mDestType.equals(GPS)) {
-	            /*
-	             * For GPS coordinates, simply put parsed lon/lat in params
-	             * No need to query database
-	             */
-	            mParams = new LinkedHashMap<String, String>();
-	            mFreq = new LinkedHashMap<String, String>();
-	            mAwos = new LinkedList<Awos> ();
-	            mParams.put(DataBaseHelper.LONGITUDE, "" + mLond);
-	            mParams.put(DataBaseHelper.LATITUDE, "" + mLatd);
-	            mParams.put(DataBaseHelper.FACILITY_NAME, GPS);
-	            addTime();
-	            mAfdFound = null;
-	            mFound = true;
-	            mLooking = false;
-	            mDbType = GPS;
-	            mTrackShape.updateShape(new GpsParams(getLocationInit()), Destination.this);
-	            if(!isGPSValid(mName)) {
-	                mFound = false;
-	            }
-	            if(!mName.contains("&")) {
-	                /*
-	                 * This comes from MAPS to GPS for user edited
-	                 */
-	                mName += "@" + mLatd + "&" + mLond;
-	            }
-	            return true;
-	        }
-
-            if(null == mDataSource) {
-                return false;
-            }
-	            
-
-	        /*
-	         * For Google maps address, if we have already geo decoded it using internet,
-	         * then no need to do again because internet may not be available on flight.
-	         * It could be coming from storage and not google maps.
-	         */
-	        if(mDestType.equals(MAPS)) {
-
-	            if(mLond == 0 && mLatd == 0) {
-	                /*
-	                 * We have already decomposed it?
-	                 * No.
-	                 */
-	                String strAddress = mName;
-	                
-	                Geocoder coder = new Geocoder(mService);
-	                Address location = null;
-
-	                /*
-	                 * Decompose
-	                 */
-	                try {
-	                    List<Address> address = coder.getFromLocationName(strAddress, 1);
-	                    if (address != null) {
-	                        location = address.get(0);
-	                    }
-	                }
-	                catch (Exception e) {
-	                    return false;
-	                }
-	                
-	                if(null == location) {
-	                    return false;
-	                }
-	                                        
-	                /*
-	                 * Decomposed it
-	                 * 
-	                 */
-	                try {
-    	                mLond = Helper.truncGeo(location.getLongitude());
-    	                mLatd = Helper.truncGeo(location.getLatitude());
-	                }
-	                catch (Exception e) {
-	                    
-	                }
-	                if((!Helper.isLatitudeSane(mLatd)) || (!Helper.isLongitudeSane(mLond))) {
-	                    return false;  
-	                }
-
-	            }
-                /*
-                 * Common stuff
-                 */
-                mParams = new LinkedHashMap<String, String>();
-                mFreq = new LinkedHashMap<String, String>();
-                mAwos = new LinkedList<Awos> ();
-                mAfdFound = null;
-                mDbType = mDestType;
-                mParams.put(DataBaseHelper.TYPE, mDestType);
-                mParams.put(DataBaseHelper.FACILITY_NAME, mName);
-                mParams.put(DataBaseHelper.LONGITUDE, "" + mLond);
-                mParams.put(DataBaseHelper.LATITUDE, "" + mLatd);
-                addTime();
-                mName += "@" + mLatd + "&" + mLond;
-                return true;                    
-	        }
-	        
-	        /*
-	         * For all others, find in DB
-	         */
-	        mDataSource.findDestination(mName, mDestType, dbType, mParams, mRunways, mFreq, mAwos);
-
-	        if(mDestType.equals(BASE)) {
-
-                /*
-                 * Find A/FD
-                 */
-                mAfdFound = null;
-                final LinkedList<String> afdName = mDataSource.findAFD(mName);
-                if(afdName.size() > 0) {
-                    FilenameFilter filter = new FilenameFilter() {
-                        public boolean accept(File directory, String fileName) {
-                            boolean match = false;
-                            for(final String name : afdName) {
-                                match |= fileName.matches(name + Preferences.IMAGE_EXTENSION) ||
-                                        fileName.matches(name + "-[0-9]+" + Preferences.IMAGE_EXTENSION);
-                            }
-                            return match;
-                        }
-                    };
-                    String afd[] = null;
-                    afd = new File(mPref.mapsFolder() + "/afd/").list(filter);
-                    if(null != afd) {
-                        java.util.Arrays.sort(afd);
-                        int len1 = afd.length;
-                        String tmp1[] = new String[len1];
-                        for(int count = 0; count < len1; count++) {
-                            /*
-                             * Add A/FD
-                             */
-                            String tokens[] = afd[count].split(Preferences.IMAGE_EXTENSION);
-                            tmp1[count] = mPref.mapsFolder() + "/afd/" +
-                                    tokens[0];             
-                        }
-                        if(len1 > 0) {
-                            mAfdFound = tmp1;
-                        }
-                    }
-                }
-	        }
-
-            return(!mParams.isEmpty());
+            return lookup(guess, dbType);
         }
         
 
@@ -682,42 +807,7 @@ public class Destination extends Observable {
          */
         @Override
         protected void onPostExecute(Boolean result) {
-        	/*
-        	 * This runs on UI
-        	 */
-            mFound = result;
-            if(mDbType.equals(GPS) || mDbType.equals(UDW) || mDbType.equals(MAPS)) {
-                /*
-                 * These dont come from db so dont assign from params.
-                 */
-            }
-            else {
-    			if(mFound) {
-                    mDbType = mParams.get(DataBaseHelper.TYPE);
-                    try {
-            		    mLond = Double.parseDouble(mParams.get(DataBaseHelper.LONGITUDE));
-            		    mLatd = Double.parseDouble(mParams.get(DataBaseHelper.LATITUDE));
-                    }
-                    catch(Exception e) {
-                        mFound = false;
-                    }
-    			}
-            }
-            /**
-             * 
-             */
-            addTime();
-
-			/*
-			 * Anyone watching if destination found?
-			 */
-            mTrackShape.updateShape(new GpsParams(getLocationInit()), Destination.this);
-			Destination.this.setChanged();
-            Destination.this.notifyObservers(Boolean.valueOf(mFound));
-            // Save last known good location
-            mPref.setLastLocation(getLocation().getLongitude(), getLocation().getLatitude());
-
-            mLooking = false;
+            found(result);
 	    }
     }
     
@@ -809,6 +899,22 @@ public class Destination extends Observable {
         return l;
     }    
 
+    /**
+     * Longitude without making a Location
+     * @return
+     */
+    public double getLongitude() {
+        return mLond;
+    }
+
+    /**
+     * Latitude without making a Location
+     * @return
+     */
+    public double getLatitude() {
+        return mLatd;
+    }
+
     /**
      * 
      * @return
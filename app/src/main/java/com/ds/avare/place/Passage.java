@@ -0,0 +1,148 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.place;
+
+import com.ds.avare.gps.GpsParams;
+import com.ds.avare.position.Projection;
+
+/**
+ * A class that finds a station passage.
+ * Keeps distance to next way point between fixes, so keep one per stream of fixes.
+ */
+public class Passage {
+
+    private double mLastDistance;
+    private double mLastBearing;
+    private double mCurrentDistance;
+    private double mCurrentBearing;
+    private double mSpeed;
+    private boolean mEarlyPass;
+    private boolean mEarlyPassEvent;
+
+    // Use this to set early pass flag, meaning we are close to our dest.
+    private static final double EARLY_PASS_THRESHOLD = 23; // seconds
+
+    // The idea is to adjust the passage distance to lower value near the
+    // airport to
+    // have the approaches work properly.
+    // For enroute 8+ NM, your pass zone is 2 NM
+    private static final double PASSAGE_ENROUTE_DISTANCE_MIN = 2;
+
+    // For approach (<8NM) your pass zone is 0.4 miles
+    private static final double PASSAGE_APPROACH_MIN = 0.4;
+    private static final double PASSAGE_APPROACH_DISTANCE = 8;
+
+    public Passage() {
+        mLastDistance = -1;
+        mLastBearing = -1;
+        mSpeed = -1;
+        mEarlyPass = false;
+        mEarlyPassEvent = false;
+    }
+
+    /*
+     * Algorithm to calculate passage.
+     */
+    private boolean hasPassed(double distanceFromLanding, boolean simulation) {
+
+        double max;
+        if (distanceFromLanding < PASSAGE_APPROACH_DISTANCE) {
+            max = PASSAGE_APPROACH_MIN;
+        } else {
+            max = PASSAGE_ENROUTE_DISTANCE_MIN;
+        }
+
+        /*
+         * no passing in sim mode
+         */
+        if (simulation) {
+            return false;
+        }
+
+        /*
+         * Find early pass
+         */
+        double timerem = (mCurrentDistance / mSpeed) * 3600;
+        if (timerem < EARLY_PASS_THRESHOLD) {
+            if (!mEarlyPass) {
+                mEarlyPass = true;
+                mEarlyPassEvent = true;
+            }
+        }
+
+        /*
+         * Distance increases
+         */
+        if (mCurrentDistance > mLastDistance) {
+            /*
+             * We are in passage zone
+             */
+            if (mCurrentDistance < max) {
+                mEarlyPass = false;
+                mEarlyPassEvent = false;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 
+     * @param params
+     * @param lon next way point
+     * @param lat next way point
+     * @param lastLon last way point of plan
+     * @param lastLat last way point of plan
+     * @param simulation
+     * @return true if next way point was passed
+     */
+    public boolean updateLocation(GpsParams params, double lon, double lat,
+                                  double lastLon, double lastLat, boolean simulation) {
+
+        Projection p = new Projection(params.getLongitude(),
+                params.getLatitude(), lon, lat);
+
+        if (mLastBearing < 0) {
+            /*
+             * Init on first input on location
+             */
+            mLastDistance = p.getDistance();
+            mLastBearing = (p.getBearing() + 360) % 360;
+            return false;
+        }
+
+        mCurrentDistance = p.getDistance();
+        mSpeed = params.getSpeed();
+        mCurrentBearing = (p.getBearing() + 360) % 360;
+
+        Projection plast = new Projection(params.getLongitude(),
+                params.getLatitude(), lastLon, lastLat);
+
+        boolean ret = hasPassed(plast.getDistance(), simulation);
+
+        mLastDistance = mCurrentDistance;
+        mLastBearing = mCurrentBearing;
+        return ret;
+    }
+
+    /**
+     * See if early pass was found since last asked
+     * 
+     * @return
+     */
+    public boolean isEarlyPass() {
+        boolean pass = mEarlyPassEvent;
+        mEarlyPassEvent = false;
+        return pass;
+    }
+}
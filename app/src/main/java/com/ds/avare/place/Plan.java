@@ -14,6 +14,8 @@ package com.ds.avare.place;
 
 import android.content.Context;
 import android.location.Location;
+import android.os.AsyncTask;
+import android.os.SystemClock;
 
 import com.ds.avare.StorageService;
 import com.ds.avare.externalFlightPlan.ExternalFlightPlan;
@@ -22,9 +24,13 @@ import com.ds.avare.gps.GpsParams;
 import com.ds.avare.position.Coordinate;
 import com.ds.avare.position.Projection;
 import com.ds.avare.shapes.TrackShape;
+import com.ds.avare.storage.DataBaseHelper;
+import com.ds.avare.storage.DataSource;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.storage.StringPreference;
 import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.TaskExecutor;
+import com.ds.avare.weather.WindsAloft;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -32,6 +38,7 @@ import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.Observable;
 import java.util.Observer;
 
@@ -58,18 +65,28 @@ public class Plan implements Observer {
     private long mEteSec;
     private double mBearing;
     private GpsParams mLastLocation;
-    private Passage mPassage;
-    private boolean mDestChanged;
     private double mDeclination;
     private int mReplaceId;
     private Preferences mPref;
     private StorageService mService;
     private String mName;
-    private boolean mEarlyPass;
     private boolean mEarlyPassEvent;
     private boolean mSuspend = false;
     private int mAltitude = 0;
 
+    /*
+     * Static leg geometry, and what upcoming legs were last found with
+     */
+    private PlanLegs mLegs;
+    private long mEteSecAfter;
+    private int mLastNext;
+    private int mLastLegsVersion;
+    private double mLastSpeed;
+    private double mLastAltitude;
+    private double mLastHeading;
+
+    private long mLoadTime = 0;
+
     /**
      *
      * @param ctx
@@ -92,17 +109,17 @@ public class Plan implements Observer {
         mLastLocation = null;
         mBearing = 0;
         mDeclination = 0;
-        mDestChanged = false;
         mDestination = new Destination[MAX_DESTINATIONS];
         mPassed = new boolean[MAX_DESTINATIONS];
         for (int i = 0; i < MAX_DESTINATIONS; i++) {
             mPassed[i] = false;
         }
         mEte = "--:--";
-        mPassage = new Passage();
-        mEarlyPass = false;
         mEarlyPassEvent = false;
         mName = null;
+        mLegs = new PlanLegs(MAX_DESTINATIONS);
+        mEteSecAfter = 0;
+        mLastNext = -1;
     }
 
     public void setName(String name) {
@@ -209,16 +226,24 @@ public class Plan implements Observer {
     }
 
     /**
-     * 
-     * @return
+     * Next way point was passed, as found from a fix. Only when active.
+     * @param id way point passed
+     * @return true if next way point changed
      */
-    public boolean hasDestinationChanged() {
-        /*
-         * Auto change to next dest.
-         */
-        boolean ret = mDestChanged;
-        mDestChanged = false;
-        return ret;
+    public boolean pass(int id) {
+        if (!mActive || id != findNextNotPassed() || mPassed[id]) {
+            return false;
+        }
+        mPassed[id] = true;
+        mEarlyPassEvent = false;
+        return true;
+    }
+
+    /**
+     * Close to next way point, as found from a fix
+     */
+    public void earlyPass() {
+        mEarlyPassEvent = true;
     }
 
     /**
@@ -298,11 +323,15 @@ public class Plan implements Observer {
         mBearing = 0;
         mDeclination = params.getDeclinition();
         int num = getDestinationNumber();
-        int np = findNextNotPassed();
         if (0 == num) {
-            mPassage = new Passage();
             return;
         }
+        int np = findNextNotPassed();
+
+        /*
+         * Leg geometry between way points only changes when plan changes
+         */
+        mLegs.update(mDestination, num);
 
         /*
          * Depends if it is active or plan
@@ -320,25 +349,43 @@ public class Plan implements Observer {
 
             /*
              * For all upcoming, add distance. Distance is from way point to way
-             * point
+             * point. Only redo legs when what they depend on has changed.
              */
-            for (int id = (np + 1); id < num; id++) {
-                Location l = mDestination[id - 1].getLocation();
-                l.setSpeed((float)GpsParams.speedConvert(params.getSpeed()));
-                l.setAltitude((float)GpsParams.altitudeConvert(params.getAltitude()));
-                l.setBearing((float)params.getBearing());
-                GpsParams p = new GpsParams(l);
-                mDestination[id].updateTo(p);
-                mDistance += mDestination[id].getDistance();
-                mEteSec += mDestination[id].getEteSec();
+            double speed = params.getSpeed();
+            double altitude = params.getAltitude();
+            double heading = params.getBearing();
+            if (np != mLastNext || mLegs.getVersion() != mLastLegsVersion || speed != mLastSpeed
+                    || altitude != mLastAltitude || heading != mLastHeading || mPref.isSimulationMode()) {
+                mEteSecAfter = 0;
+                for (int id = (np + 1); id < num; id++) {
+                    mDestination[id].updateLeg(mLegs.getLongitude(id - 1), mLegs.getLatitude(id - 1),
+                            mLegs.getDistance(id), mLegs.getBearing(id),
+                            speed, altitude, heading, mLegs.getDeclination(id));
+                    mEteSecAfter += mDestination[id].getEteSec();
+                }
+                mLastNext = np;
+                mLastLegsVersion = mLegs.getVersion();
+                mLastSpeed = speed;
+                mLastAltitude = altitude;
+                mLastHeading = heading;
             }
+            mDistance += mLegs.getDistanceAfter(np);
+            mEteSec += mEteSecAfter;
 
         } else {
             mDestination[0].updateTo(params);
             for (int id = 1; id < num; id++) {
-                mDestination[id].updateTo(new GpsParams(mDestination[id - 1]
-                        .getLocation()));
+                /*
+                 * As if standing still at previous way point
+                 */
+                mDestination[id].updateLeg(mLegs.getLongitude(id - 1), mLegs.getLatitude(id - 1),
+                        mLegs.getDistance(id), mLegs.getBearing(id),
+                        0, 0, 0, mLegs.getDeclination(id));
             }
+            /*
+             * Inactive legs do not depend on last active ones
+             */
+            mLastNext = -1;
 
             mDistance = 0;
             mEteSec = 0;
@@ -355,22 +402,10 @@ public class Plan implements Observer {
         }
 
         if(false == mSuspend) {
-	        if (num > 0) {
-	            mBearing = mDestination[findNextNotPassed()].getBearing();
-	            if (mPassage.updateLocation(params,
-	                    mDestination[findNextNotPassed()])) {
-	                /*
-	                 * Passed. Go to next. Only when active
-	                 */
-	                if (mActive) {
-	                    mPassed[findNextNotPassed()] = true;
-	                    mDestChanged = true;
-	                }
-	            }
-	        }
-        }
-        // ETE is sum of all ETE legs
-        mEte = Helper.calculateEte(0, 0, mEteSec, false);
+            mBearing = mDestination[np].getBearing();
+        }
+        // ETE is sum of all ETE legs, made when asked for
+        mEte = null;
         mLastLocation = params;
     }
 
@@ -384,6 +419,9 @@ public class Plan implements Observer {
         /*
          * For display purpose
          */
+        if (null == mEte) {
+            mEte = Helper.calculateEte(0, 0, mEteSec, false);
+        }
         return Helper.makeLine(mDistance, Preferences.distanceConversionUnit,
                 mEte, mBearing, mDeclination);
     }
@@ -653,123 +691,6 @@ public class Plan implements Observer {
         return mAltitude;
     }
 
-    /**
-     * A class that finds a station passage
-     * 
-     * @author zkhan
-     *
-     */
-    private class Passage {
-
-        double mLastDistance;
-        double mLastBearing;
-        double mCurrentDistance;
-        double mCurrentBearing;
-        double mSpeed;
-        
-        // Use this to set early pass flag, meaning we are close to our dest.
-        private static final double EARLY_PASS_THRESHOLD = 23; // seconds
-
-        // The idea is to adjust the passage distance to lower value near the
-        // airport to
-        // have the approaches work properly.
-        // For enroute 8+ NM, your pass zone is 2 NM
-        private static final double PASSAGE_ENROUTE_DISTANCE_MIN = 2;
-
-        // For approach (<8NM) your pass zone is 0.4 miles
-        private static final double PASSAGE_APPROACH_MIN = 0.4;
-        private static final double PASSAGE_APPROACH_DISTANCE = 8;
-
-        public Passage() {
-            mLastDistance = -1;
-            mLastBearing = -1;
-            mSpeed = -1;
-        }
-
-        /*
-         * Algorithm to calculate passage.
-         */
-        private boolean hasPassed(double distanceFromLanding) {
-
-            double max;
-            if (distanceFromLanding < PASSAGE_APPROACH_DISTANCE) {
-                max = PASSAGE_APPROACH_MIN;
-            } else {
-                max = PASSAGE_ENROUTE_DISTANCE_MIN;
-            }
-
-            /*
-             * no passing in sim mode
-             */
-            if (mPref.isSimulationMode()) {
-                return false;
-            }
-
-            /*
-             * Find early pass
-             */
-            double timerem = (mCurrentDistance / mSpeed) * 3600;
-            if (timerem < EARLY_PASS_THRESHOLD) {
-                if (!mEarlyPass) {
-                    mEarlyPass = true;
-                    mEarlyPassEvent = true;
-                }
-            }
-
-            /*
-             * Distance increases
-             */
-            if (mCurrentDistance > mLastDistance) {
-                /*
-                 * We are in passage zone
-                 */
-                if (mCurrentDistance < max) {
-                    mEarlyPass = false;
-                    mEarlyPassEvent = false;
-                    return true;
-                }
-            }
-            return false;
-        }
-
-        /**
-         * 
-         * @param params
-         */
-        public boolean updateLocation(GpsParams params, Destination nextDest) {
-        	
-            Projection p = new Projection(params.getLongitude(),
-                    params.getLatitude(),
-                    nextDest.getLocation().getLongitude(), nextDest
-                            .getLocation().getLatitude());
-
-            if (mLastBearing < 0) {
-                /*
-                 * Init on first input on location
-                 */
-                mLastDistance = p.getDistance();
-                mLastBearing = (p.getBearing() + 360) % 360;
-                return false;
-            }
-
-            mCurrentDistance = p.getDistance();
-            mSpeed = params.getSpeed();
-            mCurrentBearing = (p.getBearing() + 360) % 360;
-
-            Destination lastDest = mDestination[getDestinationNumber() - 1];
-            Projection plast = new Projection(params.getLongitude(),
-                    params.getLatitude(),
-                    lastDest.getLocation().getLongitude(), lastDest
-                            .getLocation().getLatitude());
-
-            boolean ret = hasPassed(plast.getDistance());
-
-            mLastDistance = mCurrentDistance;
-            mLastBearing = mCurrentBearing;
-            return ret;
-        }
-    }
-
     // Regress to the PREVIOUS waypoint in the plan
     // We do this by searching from the end of the plan
     // to find the first waypoint that is marked as passed and changing
@@ -803,6 +724,22 @@ public class Plan implements Observer {
     	return mSuspend;
     }
 
+    /**
+     * @return true if way point passage is not looked for
+     */
+    public boolean isSuspended() {
+        return mSuspend;
+    }
+
+    /**
+     * Leg geometry, found again if way points changed
+     * @return
+     */
+    public PlanLegs getLegs() {
+        mLegs.update(mDestination, getDestinationNumber());
+        return mLegs;
+    }
+
     /**
      * Put this plan in JSON array
      * 
@@ -851,6 +788,7 @@ public class Plan implements Observer {
         }
 
         int num;
+        String dbTypes[] = new String[jsonArr.length()];
         for (int i = 0; i < jsonArr.length(); i++) {
             try {
                 String dest = jsonArr.getString(i);
@@ -867,11 +805,129 @@ public class Plan implements Observer {
                     num = i;
                 }
                 mDestination[num] = new Destination(id, type, mPref, mService);
-                mDestination[num].find(dbtype);
+                mDestination[num].startLooking();
+                dbTypes[num] = dbtype;
             } catch (Exception e) {
                 continue;
             }
         }
+
+        /*
+         * Find all way points together, rather than a database task for each
+         */
+        int count = Math.min(jsonArr.length(), MAX_DESTINATIONS);
+        Destination dests[] = new Destination[count];
+        String types[] = new String[count];
+        for (int i = 0; i < count; i++) {
+            dests[i] = mDestination[i];
+            types[i] = dbTypes[i];
+        }
+        // a plan loaded after this one replaces it
+        TaskExecutor.execute(new PlanLoadTask(dests, types), TaskExecutor.INTERACTIVE, "plan.load");
+    }
+
+    /**
+     * Time it took to find all way points of last loaded plan, -1 if still finding
+     * @return milliseconds
+     */
+    public long getLoadTime() {
+        return mLoadTime;
+    }
+
+    /**
+     * Finds all way points of a plan loaded from storage together.
+     * Airports, navaids, and fixes are found with one query per table for all of them,
+     * instead of a database task with several queries for each way point.
+     */
+    private class PlanLoadTask extends AsyncTask<Void, Void, boolean[]> {
+
+        private Destination mDests[];
+        private String mDbTypes[];
+        private long mStart;
+
+        /**
+         *
+         * @param dests
+         * @param dbTypes
+         */
+        public PlanLoadTask(Destination dests[], String dbTypes[]) {
+            mDests = dests;
+            mDbTypes = dbTypes;
+            mStart = SystemClock.elapsedRealtime();
+            mLoadTime = -1;
+        }
+
+        /* (non-Javadoc)
+         * @see android.os.AsyncTask#doInBackground(Params[])
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        protected boolean[] doInBackground(Void... vals) {
+
+            Thread.currentThread().setName("Plan");
+
+            int num = mDests.length;
+            boolean found[] = new boolean[num];
+            DataSource ds = mService.getDBResource();
+
+            /*
+             * Only those in database go in bulk
+             */
+            Destination inDb[] = new Destination[num];
+            for (int i = 0; i < num; i++) {
+                if (null != ds && null != mDests[i] && mDests[i].isInDataBase()) {
+                    inDb[i] = mDests[i];
+                }
+            }
+
+            LinkedList<String> afds[] = new LinkedList[num];
+            WindsAloft winds[] = new WindsAloft[num];
+            if (null != ds) {
+                ds.findDestinations(inDb, mDbTypes, afds);
+
+                /*
+                 * Winds where way points were found
+                 */
+                double lon[] = new double[num];
+                double lat[] = new double[num];
+                for (int i = 0; i < num; i++) {
+                    if (null != inDb[i]) {
+                        try {
+                            lon[i] = Double.parseDouble(inDb[i].getParams().get(DataBaseHelper.LONGITUDE));
+                            lat[i] = Double.parseDouble(inDb[i].getParams().get(DataBaseHelper.LATITUDE));
+                        } catch (Exception e) {
+                        }
+                    }
+                }
+                winds = ds.getWindsAloft(lon, lat);
+            }
+
+            for (int i = 0; i < num; i++) {
+                if (null == mDests[i]) {
+                    continue;
+                }
+                if (null != inDb[i]) {
+                    found[i] = inDb[i].lookupFilled(afds[i], winds[i]);
+                } else {
+                    // GPS, UDW, maps, as before
+                    found[i] = mDests[i].lookup(false, mDbTypes[i]);
+                }
+            }
+            return found;
+        }
+
+        /* (non-Javadoc)
+         * @see android.os.AsyncTask#onPostExecute(java.lang.Object)
+         */
+        @Override
+        protected void onPostExecute(boolean found[]) {
+            for (int i = 0; i < mDests.length; i++) {
+                if (null != mDests[i]) {
+                    mDests[i].found(found[i]);
+                }
+            }
+            mLoadTime = SystemClock.elapsedRealtime() - mStart;
+        }
     }
 
     /**
@@ -962,6 +1018,15 @@ public class Plan implements Observer {
         return mDistance;
     }
 
+    /**
+     * Get bearing to next way point
+     * 
+     * @return
+     */
+    public double getBearing() {
+        return mBearing;
+    }
+
     /**
      * Move index forward to a given place
      * 
@@ -0,0 +1,170 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.ds.avare.place;
+
+import android.hardware.GeomagneticField;
+
+import com.ds.avare.position.GeoPoints;
+
+/**
+ * Static geometry of plan legs.
+ * Leg n goes from way point n - 1 to way point n. Its distance, bearing and declination do not change
+ * with GPS fixes, so they are found once when the plan changes and looked up after that.
+ */
+public class PlanLegs {
+
+    private int mNum;
+    private int mVersion;
+
+    /*
+     * Way points and their locations these legs were made from
+     */
+    private Destination mDest[];
+    private double mLon[];
+    private double mLat[];
+    private GeoPoints mPoints;
+
+    private double mDistance[];
+    private double mBearing[];
+    private double mDeclination[];
+
+    /*
+     * Sum of distance of all legs after a leg
+     */
+    private double mDistanceAfter[];
+
+    /**
+     * @param max max way points
+     */
+    public PlanLegs(int max) {
+        mNum = 0;
+        mVersion = 0;
+        mDest = new Destination[max];
+        mLon = new double[max];
+        mLat = new double[max];
+        mPoints = new GeoPoints(max);
+        mDistance = new double[max];
+        mBearing = new double[max];
+        mDeclination = new double[max];
+        mDistanceAfter = new double[max];
+    }
+
+    /**
+     * Find legs again if way points moved, or were added, removed, or found from database.
+     * This is cheap when nothing changed.
+     * @param dest way points
+     * @param num number of way points
+     * @return true if legs were found again
+     */
+    public boolean update(Destination dest[], int num) {
+        boolean changed = num != mNum;
+        for(int id = 0; id < num && !changed; id++) {
+            changed = dest[id] != mDest[id] ||
+                    dest[id].getLongitude() != mLon[id] || dest[id].getLatitude() != mLat[id];
+        }
+        if(!changed) {
+            return false;
+        }
+
+        mNum = num;
+        mPoints.setSize(num);
+        for(int id = 0; id < num; id++) {
+            mDest[id] = dest[id];
+            mLon[id] = dest[id].getLongitude();
+            mLat[id] = dest[id].getLatitude();
+            mPoints.set(id, mLon[id], mLat[id]);
+        }
+
+        for(int id = 0; id < num; id++) {
+            if(0 == id) {
+                mDistance[id] = 0;
+                mBearing[id] = 0;
+                mDeclination[id] = 0;
+                continue;
+            }
+            mDistance[id] = mPoints.getDistance(id - 1, id);
+            mBearing[id] = mPoints.getBearing(id - 1, id);
+            /*
+             * Declination is from where the leg starts, same as GPS params made at that way point
+             */
+            GeomagneticField gmf = new GeomagneticField((float)mLat[id - 1],
+                    (float)mLon[id - 1], 0, System.currentTimeMillis());
+            mDeclination[id] = -gmf.getDeclination();
+        }
+
+        double sum = 0;
+        for(int id = num - 1; id >= 0; id--) {
+            mDistanceAfter[id] = sum;
+            sum += mDistance[id];
+        }
+
+        mVersion++;
+        return true;
+    }
+
+    /**
+     * Changes every time legs are found again
+     * @return
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @param id
+     * @return Distance from way point id - 1 to id
+     */
+    public double getDistance(int id) {
+        return mDistance[id];
+    }
+
+    /**
+     * @param id
+     * @return Bearing from way point id - 1 to id
+     */
+    public double getBearing(int id) {
+        return mBearing[id];
+    }
+
+    /**
+     * @param id
+     * @return Declination at way point id - 1
+     */
+    public double getDeclination(int id) {
+        return mDeclination[id];
+    }
+
+    /**
+     * @param id
+     * @return Sum of distances of all legs after leg id
+     */
+    public double getDistanceAfter(int id) {
+        return mDistanceAfter[id];
+    }
+
+    /**
+     * @param id
+     * @return Longitude of way point id when legs were found
+     */
+    public double getLongitude(int id) {
+        return mLon[id];
+    }
+
+    /**
+     * @param id
+     * @return Latitude of way point id when legs were found
+     */
+    public double getLatitude(int id) {
+        return mLat[id];
+    }
+}
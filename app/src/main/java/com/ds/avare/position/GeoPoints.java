@@ -0,0 +1,366 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.position;
+
+import com.ds.avare.storage.Preferences;
+
+/**
+ * A set of points with their trig terms found once, so great circle distances and bearings
+ * to / between them need no sin/cos of latitude or longitude per call.
+ * Same results as Projection, only cheaper when the same points are used over and over
+ * (way points, UDW, airway points, nearest airports).
+ *
+ * Not thread safe. Each user keeps its own.
+ */
+public class GeoPoints {
+
+    /**
+     * Fast (flat earth, mid latitude) distance is within this fraction of great circle distance
+     * for points up to 500 miles apart and below 60 degrees latitude (0.8% to 72 degrees).
+     * Only use it for culling, like what is on screen or what is close.
+     */
+    public static final double FAST_MAX_ERROR = 0.003;
+
+    private int mNum;
+    private double mLon[];
+    private double mLat[];
+
+    /*
+     * Cached trig terms
+     */
+    private double mSinLat[];
+    private double mCosLat[];
+    private double mSinLon[];
+    private double mCosLon[];
+    private double mSinHalfLat[];
+    private double mCosHalfLat[];
+
+    /*
+     * Scratch for origin that is not one of the points
+     */
+    private double mOSinLat;
+    private double mOCosLat;
+    private double mOSinLon;
+    private double mOCosLon;
+    private double mOSinHalfLat;
+    private double mOCosHalfLat;
+
+    /**
+     * @param capacity Number of points to start with, grows when needed
+     */
+    public GeoPoints(int capacity) {
+        if(capacity < 1) {
+            capacity = 1;
+        }
+        mNum = 0;
+        allocate(capacity);
+    }
+
+    /**
+     *
+     * @param capacity
+     */
+    private void allocate(int capacity) {
+        mLon = grow(mLon, capacity);
+        mLat = grow(mLat, capacity);
+        mSinLat = grow(mSinLat, capacity);
+        mCosLat = grow(mCosLat, capacity);
+        mSinLon = grow(mSinLon, capacity);
+        mCosLon = grow(mCosLon, capacity);
+        mSinHalfLat = grow(mSinHalfLat, capacity);
+        mCosHalfLat = grow(mCosHalfLat, capacity);
+    }
+
+    /**
+     *
+     * @param in
+     * @param capacity
+     * @return
+     */
+    private double[] grow(double in[], int capacity) {
+        double out[] = new double[capacity];
+        if(null != in) {
+            System.arraycopy(in, 0, out, 0, mNum);
+        }
+        return out;
+    }
+
+    /**
+     * Remove all points, keep memory
+     */
+    public void clear() {
+        mNum = 0;
+    }
+
+    /**
+     * @return Number of points
+     */
+    public int size() {
+        return mNum;
+    }
+
+    /**
+     * Number of points. Grows or shrinks. New points are at 0, 0.
+     * @param num
+     */
+    public void setSize(int num) {
+        if(num > mLon.length) {
+            allocate(Math.max(num, mLon.length * 2));
+        }
+        for(int i = mNum; i < num; i++) {
+            compute(i, 0, 0);
+        }
+        mNum = num;
+    }
+
+    /**
+     * Add a point
+     * @param lon
+     * @param lat
+     * @return Index of the point
+     */
+    public int add(double lon, double lat) {
+        if(mNum >= mLon.length) {
+            allocate(mLon.length * 2);
+        }
+        compute(mNum, lon, lat);
+        return mNum++;
+    }
+
+    /**
+     * Change a point. Trig terms are only found again if it moved.
+     * @param index
+     * @param lon
+     * @param lat
+     * @return true if the point moved
+     */
+    public boolean set(int index, double lon, double lat) {
+        if(mLon[index] == lon && mLat[index] == lat) {
+            return false;
+        }
+        compute(index, lon, lat);
+        return true;
+    }
+
+    /**
+     *
+     * @param index
+     * @param lon
+     * @param lat
+     */
+    private void compute(int index, double lon, double lat) {
+        mLon[index] = lon;
+        mLat[index] = lat;
+        double lonr = Math.toRadians(lon);
+        double latr = Math.toRadians(lat);
+        mSinLat[index] = Math.sin(latr);
+        mCosLat[index] = Math.cos(latr);
+        mSinLon[index] = Math.sin(lonr);
+        mCosLon[index] = Math.cos(lonr);
+        mSinHalfLat[index] = Math.sin(latr / 2);
+        mCosHalfLat[index] = Math.cos(latr / 2);
+    }
+
+    /**
+     *
+     * @param lon
+     * @param lat
+     */
+    private void origin(double lon, double lat) {
+        double lonr = Math.toRadians(lon);
+        double latr = Math.toRadians(lat);
+        mOSinLat = Math.sin(latr);
+        mOCosLat = Math.cos(latr);
+        mOSinLon = Math.sin(lonr);
+        mOCosLon = Math.cos(lonr);
+        mOSinHalfLat = Math.sin(latr / 2);
+        mOCosHalfLat = Math.cos(latr / 2);
+    }
+
+    /**
+     * @param index
+     * @return
+     */
+    public double getLongitude(int index) {
+        return mLon[index];
+    }
+
+    /**
+     * @param index
+     * @return
+     */
+    public double getLatitude(int index) {
+        return mLat[index];
+    }
+
+    /*
+     * Great circle distance from terms, using chord length of unit vectors.
+     * Well behaved for small and large distances.
+     */
+    private static double distance(double sinLat1, double cosLat1, double sinLon1, double cosLon1,
+                                   double sinLat2, double cosLat2, double sinLon2, double cosLon2) {
+        double dx = cosLat2 * cosLon2 - cosLat1 * cosLon1;
+        double dy = cosLat2 * sinLon2 - cosLat1 * sinLon1;
+        double dz = sinLat2 - sinLat1;
+        double chord = Math.sqrt(dx * dx + dy * dy + dz * dz) / 2;
+        if(chord > 1) {
+            chord = 1;
+        }
+        return Preferences.earthRadiusConversion * 2 * Math.asin(chord);
+    }
+
+    /*
+     * Initial great circle bearing from 1 to 2, same as Projection
+     */
+    private static double bearing(double sinLat1, double cosLat1, double sinLon1, double cosLon1,
+                                  double sinLat2, double cosLat2, double sinLon2, double cosLon2) {
+        // sin and cos of lon2 - lon1
+        double sinDLon = sinLon2 * cosLon1 - cosLon2 * sinLon1;
+        double cosDLon = cosLon2 * cosLon1 + sinLon2 * sinLon1;
+        double y = sinDLon * cosLat2;
+        double x = cosLat1 * sinLat2 - sinLat1 * cosLat2 * cosDLon;
+        return (Math.toDegrees(Math.atan2(y, x)) + 360) % 360;
+    }
+
+    /*
+     * Flat earth distance at mid latitude. No trig, one sqrt.
+     */
+    private static double distanceFast(double lon1, double lat1, double sinHalfLat1, double cosHalfLat1,
+                                       double lon2, double lat2, double sinHalfLat2, double cosHalfLat2) {
+        double dLon = lon2 - lon1;
+        if(dLon > 180) {
+            dLon -= 360;
+        }
+        else if(dLon < -180) {
+            dLon += 360;
+        }
+        // cos of mid latitude
+        double cosMid = cosHalfLat1 * cosHalfLat2 - sinHalfLat1 * sinHalfLat2;
+        double x = Math.toRadians(dLon) * cosMid;
+        double y = Math.toRadians(lat2 - lat1);
+        return Preferences.earthRadiusConversion * Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Distance between two points
+     * @param from
+     * @param to
+     * @return
+     */
+    public double getDistance(int from, int to) {
+        return distance(mSinLat[from], mCosLat[from], mSinLon[from], mCosLon[from],
+                mSinLat[to], mCosLat[to], mSinLon[to], mCosLon[to]);
+    }
+
+    /**
+     * Bearing between two points
+     * @param from
+     * @param to
+     * @return
+     */
+    public double getBearing(int from, int to) {
+        return bearing(mSinLat[from], mCosLat[from], mSinLon[from], mCosLon[from],
+                mSinLat[to], mCosLat[to], mSinLon[to], mCosLon[to]);
+    }
+
+    /**
+     * Distances from a location to all points
+     * @param lon
+     * @param lat
+     * @param out Distances, at least size() long
+     */
+    public void getDistances(double lon, double lat, double out[]) {
+        origin(lon, lat);
+        for(int i = 0; i < mNum; i++) {
+            out[i] = distance(mOSinLat, mOCosLat, mOSinLon, mOCosLon,
+                    mSinLat[i], mCosLat[i], mSinLon[i], mCosLon[i]);
+        }
+    }
+
+    /**
+     * Bearings from a location to all points
+     * @param lon
+     * @param lat
+     * @param out Bearings, at least size() long
+     */
+    public void getBearings(double lon, double lat, double out[]) {
+        origin(lon, lat);
+        for(int i = 0; i < mNum; i++) {
+            out[i] = bearing(mOSinLat, mOCosLat, mOSinLon, mOCosLon,
+                    mSinLat[i], mCosLat[i], mSinLon[i], mCosLon[i]);
+        }
+    }
+
+    /**
+     * Approximate distances from a location to all points, see FAST_MAX_ERROR
+     * @param lon
+     * @param lat
+     * @param out Distances, at least size() long
+     */
+    public void getDistancesFast(double lon, double lat, double out[]) {
+        origin(lon, lat);
+        for(int i = 0; i < mNum; i++) {
+            out[i] = distanceFast(lon, lat, mOSinHalfLat, mOCosHalfLat,
+                    mLon[i], mLat[i], mSinHalfLat[i], mCosHalfLat[i]);
+        }
+    }
+
+    /**
+     * Distances from one of the points to all points
+     * @param from
+     * @param out
+     */
+    public void getDistances(int from, double out[]) {
+        for(int i = 0; i < mNum; i++) {
+            out[i] = getDistance(from, i);
+        }
+    }
+
+    /**
+     * Closest point to a location
+     * @param lon
+     * @param lat
+     * @return Index of point, -1 if none
+     */
+    public int findClosest(double lon, double lat) {
+        return findClosest(lon, lat, 0, mNum);
+    }
+
+    /**
+     * Closest point to a location in a range of points
+     * @param lon
+     * @param lat
+     * @param start first point
+     * @param end one past last point
+     * @return Index of point, -1 if none
+     */
+    public int findClosest(double lon, double lat, int start, int end) {
+        origin(lon, lat);
+        int index = -1;
+        double min = Double.MAX_VALUE;
+        for(int i = start; i < end; i++) {
+            /*
+             * Chord length is monotonic with distance, no need of asin
+             */
+            double dx = mCosLat[i] * mCosLon[i] - mOCosLat * mOCosLon;
+            double dy = mCosLat[i] * mSinLon[i] - mOCosLat * mOSinLon;
+            double dz = mSinLat[i] - mOSinLat;
+            double d = dx * dx + dy * dy + dz * dz;
+            if(d < min) {
+                min = d;
+                index = i;
+            }
+        }
+        return index;
+    }
+}
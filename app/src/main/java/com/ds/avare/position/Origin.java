@@ -63,6 +63,44 @@ public class Origin {
         mLatScreenBot = mLatScreenTop - (mLatScreenTop - mLatScreenCenter) * 2;
     }
 
+    /**
+     * Same projection as another origin, with top left moved by whole screen pixels.
+     * Offsets in this are offsets in the other less dx, dy, so areas drawn with either line up.
+     * @param from
+     * @param dx pixels to move left edge
+     * @param dy pixels to move top edge
+     * @param width
+     * @param height
+     */
+    public void update(Origin from, int dx, int dy, int width, int height) {
+        double lonLeft = from.getLongitudeOf(dx);
+        double latTop = from.getLatitudeOf(dy);
+        double lonCenter = from.getLongitudeOf(dx + width / 2.0);
+        double latCenter = from.getLatitudeOf(dy + height / 2.0);
+        mScale = from.mScale;
+        mZoom = from.mZoom;
+        mLonScreenLeft = lonLeft;
+        mLatScreenTop = latTop;
+        mLonScreenCenter = lonCenter;
+        mLatScreenCenter = latCenter;
+        mLonScreenRight= mLonScreenLeft - (mLonScreenLeft - mLonScreenCenter) * 2;
+        mLatScreenBot = mLatScreenTop - (mLatScreenTop - mLatScreenCenter) * 2;
+    }
+
+    /**
+     * @return zoom of projection
+     */
+    public double getZoom() {
+        return mZoom;
+    }
+
+    /**
+     * @return scale factor of projection
+     */
+    public double getScale() {
+        return mScale;
+    }
+
     public double getLonScreenLeft(){
         return mLonScreenLeft;
     }
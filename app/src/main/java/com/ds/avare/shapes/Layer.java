@@ -17,7 +17,6 @@ import android.graphics.Paint;
 
 import com.ds.avare.position.Coordinate;
 import com.ds.avare.position.Origin;
-import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.Helper;
 
 import java.io.BufferedReader;
@@ -32,8 +31,8 @@ import java.util.Locale;
  */
 public class Layer {
 
-    // Layers can hog memory, show only one hence static bitmap
-    private static BitmapHolder mBitmap;
+    // Layers can hog memory, so image is drawn from tiles of what is on screen
+    private LayerTiles mTiles;
     private float mLonL;
     private float mLatU;
     private float mLonR;
@@ -106,9 +105,9 @@ public class Layer {
      *
      */
     public void flush() {
-        if(mBitmap != null) {
-            mBitmap.recycle();
-            mBitmap = null;
+        if(mTiles != null) {
+            mTiles.recycle();
+            mTiles = null;
         }
         mLonR = mLatU = mLonL = mLatD = 0;
         mDate = 0;
@@ -119,10 +118,7 @@ public class Layer {
      */
     public void draw(Canvas canvas, Paint paint, Origin origin) {
 
-        if(null == mBitmap) {
-            return;
-        }
-        if(null == mBitmap.getBitmap()) {
+        if(null == mTiles) {
             return;
         }
 
@@ -134,12 +130,7 @@ public class Layer {
         /*
          * Stretch out the image to fit the projection
          */
-        float scalex = (float)(x1 - x0) / mBitmap.getWidth();
-        float scaley = (float)(y1 - y0) / mBitmap.getHeight();
-        mBitmap.getTransform().setScale(scalex, scaley);
-        mBitmap.getTransform().postTranslate(x0, y0);
-
-        canvas.drawBitmap(mBitmap.getBitmap(), mBitmap.getTransform(), paint);
+        mTiles.draw(canvas, paint, x0, y0, x1, y1);
     }
 
     /**
@@ -179,7 +170,9 @@ public class Layer {
                 String dateText = br.readLine();
                 br.close();
 
-                mBitmap = new BitmapHolder(mImage);
+                // tiles are made in background
+                mTiles = new LayerTiles(mImage);
+                mTiles.build();
 
                 /*
                  * Date format YYYYMMDD_HHmm
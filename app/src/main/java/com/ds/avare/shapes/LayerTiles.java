@@ -0,0 +1,664 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.shapes;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import com.ds.avare.utils.BitmapHolder;
+import com.ds.avare.utils.MemoryGovernor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+
+/**
+ * A large weather image as a pyramid of tiles, so only tiles on screen, at screen resolution, are in memory.
+ * Level 0 is the image cut in tiles, each level up is half the resolution of the one below, until one tile.
+ * The pyramid is made in background once per image, in a folder next to it. Tiles with nothing in them are not kept.
+ * Tiles are loaded in background as they are needed. Until a tile loads, part of a tile above it is shown.
+ *
+ * Draw from UI thread only.
+ */
+public class LayerTiles {
+
+    private static final int TILE = BitmapHolder.WIDTH;
+
+    private static final String EXTENSION = ".tiles";
+    private static final String DONE = "done";
+
+    /*
+     * Tiles in memory, shared by all layers as only one layer shows at a time
+     */
+    private static final int CACHE_TILES = 16;
+    private static final int MAX_PENDING = 32;
+
+    private static class Entry {
+        LayerTiles owner;
+        int level;
+        int col;
+        int row;
+        BitmapHolder tile;
+        long lastUsed;
+    }
+
+    private static Entry sCache[];
+    private static long sPending[];
+    private static LayerTiles sPendingOwner[];
+    private static long sTick;
+    private static Handler sHandler;
+    private static Handler sMainHandler;
+
+    private String mImage;
+    private File mDir;
+    private int mWidth;
+    private int mHeight;
+    private int mLevels;
+    private boolean mExists[][];
+    private volatile boolean mReady;
+    private volatile boolean mClosed;
+
+    private Rect mSrc;
+    private RectF mDst;
+
+    /**
+     * @param image path of image
+     */
+    public LayerTiles(String image) {
+        mImage = image;
+        mDir = new File(image + EXTENSION);
+        mReady = false;
+        mClosed = false;
+        mSrc = new Rect();
+        mDst = new RectF();
+        if(null == sCache) {
+            sCache = new Entry[CACHE_TILES];
+            sPending = new long[MAX_PENDING];
+            sPendingOwner = new LayerTiles[MAX_PENDING];
+            HandlerThread thread = new HandlerThread("LayerTiles");
+            thread.start();
+            sHandler = new Handler(thread.getLooper());
+            sMainHandler = new Handler(Looper.getMainLooper());
+            MemoryGovernor.getInstance().register("Layers", MemoryGovernor.PRIORITY_NORMAL, new MemoryGovernor.Cache() {
+                @Override
+                public long getBytes() {
+                    long bytes = 0;
+                    for(int i = 0; i < CACHE_TILES; i++) {
+                        Entry e = sCache[i];
+                        if(null != e) {
+                            bytes += MemoryGovernor.getBytes(e.tile.getBitmap());
+                        }
+                    }
+                    return bytes;
+                }
+
+                @Override
+                public long trim(long bytes) {
+                    return trimCache(bytes);
+                }
+            });
+        }
+    }
+
+    /**
+     * Make pyramid in background if image is newer than it
+     */
+    public void build() {
+        sHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if(mClosed) {
+                    return;
+                }
+                if(!readPyramid()) {
+                    makePyramid();
+                }
+            }
+        });
+    }
+
+    /**
+     * Free tiles of this layer
+     */
+    public void recycle() {
+        mClosed = true;
+        for(int i = 0; i < CACHE_TILES; i++) {
+            Entry e = sCache[i];
+            if(null != e && e.owner == this) {
+                e.tile.recycle();
+                sCache[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Draw the part of image on screen
+     * @param canvas
+     * @param paint
+     * @param x0 screen x of image left
+     * @param y0 screen y of image top
+     * @param x1 screen x of image right
+     * @param y1 screen y of image bottom
+     */
+    public void draw(Canvas canvas, Paint paint, float x0, float y0, float x1, float y1) {
+        if(!mReady || mClosed) {
+            return;
+        }
+        float sx = (x1 - x0) / mWidth;
+        float sy = (y1 - y0) / mHeight;
+        if(sx <= 0 || sy <= 0) {
+            return;
+        }
+
+        /*
+         * Level where a tile pixel is about a screen pixel
+         */
+        int level = 0;
+        float ipp = 1 / Math.min(sx, sy);
+        while(level < mLevels - 1 && ipp >= 2) {
+            ipp /= 2;
+            level++;
+        }
+
+        /*
+         * Cover a circle around the screen, so a rotated screen is covered too
+         */
+        float cx = canvas.getWidth() / 2.f;
+        float cy = canvas.getHeight() / 2.f;
+        float r = (float)Math.hypot(cx, cy);
+        int span = TILE << level;
+        int c0 = Math.max(0, (int)Math.floor((cx - r - x0) / sx / span));
+        int c1 = Math.min(getCols(level) - 1, (int)Math.floor((cx + r - x0) / sx / span));
+        int r0 = Math.max(0, (int)Math.floor((cy - r - y0) / sy / span));
+        int r1 = Math.min(getRows(level) - 1, (int)Math.floor((cy + r - y0) / sy / span));
+
+        for(int row = r0; row <= r1; row++) {
+            for(int col = c0; col <= c1; col++) {
+                if(!mExists[level][row * getCols(level) + col]) {
+                    continue;
+                }
+                mDst.set(x0 + col * span * sx, y0 + row * span * sy,
+                        x0 + (col + 1) * span * sx, y0 + (row + 1) * span * sy);
+                drawTile(canvas, paint, level, col, row);
+            }
+        }
+    }
+
+    /**
+     * Draw a tile at mDst, or the part of a tile above it that covers it
+     * @param canvas
+     * @param paint
+     * @param level
+     * @param col
+     * @param row
+     */
+    private void drawTile(Canvas canvas, Paint paint, int level, int col, int row) {
+        for(int l = level; l < mLevels; l++) {
+            int up = l - level;
+            int c = col >> up;
+            int r = row >> up;
+            BitmapHolder b = find(l, c, r);
+            if(null == b) {
+                if(l == level) {
+                    request(l, c, r);
+                }
+                continue;
+            }
+            int size = TILE >> up;
+            int left = (col - (c << up)) * size;
+            int top = (row - (r << up)) * size;
+            mSrc.set(left, top, left + size, top + size);
+            canvas.drawBitmap(b.getBitmap(), mSrc, mDst, paint);
+            return;
+        }
+    }
+
+    /**
+     * @param level
+     * @param col
+     * @param row
+     * @return Tile if in memory
+     */
+    private BitmapHolder find(int level, int col, int row) {
+        for(int i = 0; i < CACHE_TILES; i++) {
+            Entry e = sCache[i];
+            if(null != e && e.owner == this && e.level == level && e.col == col && e.row == row) {
+                e.lastUsed = ++sTick;
+                return e.tile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Load tile in background, then put it in memory in UI thread
+     * @param level
+     * @param col
+     * @param row
+     */
+    private void request(final int level, final int col, final int row) {
+        final long key = getKey(level, col, row);
+        int free = -1;
+        for(int i = 0; i < MAX_PENDING; i++) {
+            if(null == sPendingOwner[i]) {
+                free = i;
+            }
+            else if(sPendingOwner[i] == this && sPending[i] == key) {
+                return;
+            }
+        }
+        if(free < 0) {
+            return;
+        }
+        final int slot = free;
+        sPending[slot] = key;
+        sPendingOwner[slot] = this;
+
+        sHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap b = mClosed ? null : decode(getFile(level, col, row));
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        sPendingOwner[slot] = null;
+                        if(null == b) {
+                            return;
+                        }
+                        if(mClosed) {
+                            b.recycle();
+                            return;
+                        }
+                        put(level, col, row, new BitmapHolder(b));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Put in memory, replacing least recently used tile
+     * @param level
+     * @param col
+     * @param row
+     * @param tile
+     */
+    private void put(int level, int col, int row, BitmapHolder tile) {
+        int lru = 0;
+        for(int i = 0; i < CACHE_TILES; i++) {
+            if(null == sCache[i]) {
+                lru = i;
+                break;
+            }
+            if(sCache[i].lastUsed < sCache[lru].lastUsed) {
+                lru = i;
+            }
+        }
+        Entry e = sCache[lru];
+        if(null == e) {
+            e = new Entry();
+            sCache[lru] = e;
+        }
+        else {
+            e.tile.recycle();
+        }
+        e.owner = this;
+        e.level = level;
+        e.col = col;
+        e.row = row;
+        e.tile = tile;
+        e.lastUsed = ++sTick;
+        MemoryGovernor.getInstance().check();
+    }
+
+    /**
+     * Free least recently used tiles, they load again when on screen
+     * @param bytes
+     * @return bytes freed
+     */
+    private static long trimCache(long bytes) {
+        long freed = 0;
+        while(freed < bytes) {
+            int lru = -1;
+            for(int i = 0; i < CACHE_TILES; i++) {
+                if(null != sCache[i] && (lru < 0 || sCache[i].lastUsed < sCache[lru].lastUsed)) {
+                    lru = i;
+                }
+            }
+            if(lru < 0) {
+                break;
+            }
+            freed += MemoryGovernor.getBytes(sCache[lru].tile.getBitmap());
+            sCache[lru].tile.recycle();
+            sCache[lru] = null;
+        }
+        return freed;
+    }
+
+    /**
+     * @param level
+     * @param col
+     * @param row
+     * @return
+     */
+    private static long getKey(int level, int col, int row) {
+        return ((long)level << 48) | ((long)col << 24) | row;
+    }
+
+    /**
+     * @param level
+     * @return
+     */
+    private int getCols(int level) {
+        int span = TILE << level;
+        return (mWidth + span - 1) / span;
+    }
+
+    /**
+     * @param level
+     * @return
+     */
+    private int getRows(int level) {
+        int span = TILE << level;
+        return (mHeight + span - 1) / span;
+    }
+
+    /**
+     * @param level
+     * @param col
+     * @param row
+     * @return
+     */
+    private File getFile(int level, int col, int row) {
+        return new File(mDir, level + "_" + col + "_" + row + ".png");
+    }
+
+    /**
+     * @return Stamp of image, pyramid is remade when it changes
+     */
+    private String getStamp() {
+        File image = new File(mImage);
+        return image.lastModified() + "," + image.length();
+    }
+
+    /**
+     * Set up levels for image size
+     * @param width
+     * @param height
+     */
+    private void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mLevels = 1;
+        while(getCols(mLevels - 1) > 1 || getRows(mLevels - 1) > 1) {
+            mLevels++;
+        }
+        mExists = new boolean[mLevels][];
+        for(int l = 0; l < mLevels; l++) {
+            mExists[l] = new boolean[getCols(l) * getRows(l)];
+        }
+    }
+
+    /**
+     * Use pyramid made before, if made from this image
+     * @return
+     */
+    private boolean readPyramid() {
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(new FileReader(new File(mDir, DONE)));
+            String stamp = br.readLine();
+            int width = Integer.parseInt(br.readLine());
+            int height = Integer.parseInt(br.readLine());
+            if(!getStamp().equals(stamp)) {
+                return false;
+            }
+            setSize(width, height);
+            for(int l = 0; l < mLevels; l++) {
+                for(int r = 0; r < getRows(l); r++) {
+                    for(int c = 0; c < getCols(l); c++) {
+                        mExists[l][r * getCols(l) + c] = getFile(l, c, r).exists();
+                    }
+                }
+            }
+            mReady = true;
+            return true;
+        }
+        catch (Exception e) {
+            return false;
+        }
+        finally {
+            try {
+                if(null != br) {
+                    br.close();
+                }
+            }
+            catch (Exception e) {
+            }
+        }
+    }
+
+    /**
+     * Cut image in tiles, then make each level from four tiles of level below
+     */
+    private void makePyramid() {
+        File image = new File(mImage);
+        if(!image.exists()) {
+            return;
+        }
+        String stamp = getStamp();
+
+        File old[] = mDir.listFiles();
+        if(null != old) {
+            for(File f : old) {
+                f.delete();
+            }
+        }
+        mDir.mkdirs();
+
+        BitmapFactory.Options opt = new BitmapFactory.Options();
+        opt.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(mImage, opt);
+        if(opt.outWidth <= 0 || opt.outHeight <= 0) {
+            return;
+        }
+        setSize(opt.outWidth, opt.outHeight);
+
+        Bitmap tile;
+        try {
+            tile = Bitmap.createBitmap(TILE, TILE, Bitmap.Config.ARGB_8888);
+        }
+        catch (OutOfMemoryError e) {
+            return;
+        }
+        Canvas canvas = new Canvas(tile);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        int pixels[] = new int[TILE];
+
+        try {
+            /*
+             * Level 0, decode part of image for each tile. Decode all of it if parts cannot be decoded.
+             */
+            BitmapRegionDecoder region = null;
+            Bitmap full = null;
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD_MR1) {
+                try {
+                    region = BitmapRegionDecoder.newInstance(mImage, false);
+                }
+                catch (Exception e) {
+                    region = null;
+                }
+            }
+            if(null == region) {
+                full = decode(image);
+                if(null == full) {
+                    return;
+                }
+            }
+            BitmapFactory.Options ropt = new BitmapFactory.Options();
+            ropt.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            Rect rect = new Rect();
+            for(int r = 0; r < getRows(0) && !mClosed; r++) {
+                for(int c = 0; c < getCols(0) && !mClosed; c++) {
+                    rect.set(c * TILE, r * TILE, Math.min(mWidth, (c + 1) * TILE), Math.min(mHeight, (r + 1) * TILE));
+                    tile.eraseColor(0);
+                    if(null != region) {
+                        Bitmap part = region.decodeRegion(rect, ropt);
+                        if(null == part) {
+                            continue;
+                        }
+                        canvas.drawBitmap(part, 0, 0, null);
+                        part.recycle();
+                    }
+                    else {
+                        canvas.drawBitmap(full, rect, new Rect(0, 0, rect.width(), rect.height()), null);
+                    }
+                    mExists[0][r * getCols(0) + c] = write(tile, pixels, getFile(0, c, r));
+                }
+            }
+            if(null != region) {
+                region.recycle();
+            }
+            if(null != full) {
+                full.recycle();
+            }
+
+            /*
+             * Levels above
+             */
+            RectF dst = new RectF();
+            for(int l = 1; l < mLevels && !mClosed; l++) {
+                for(int r = 0; r < getRows(l); r++) {
+                    for(int c = 0; c < getCols(l); c++) {
+                        tile.eraseColor(0);
+                        boolean any = false;
+                        for(int q = 0; q < 4; q++) {
+                            int cc = c * 2 + (q & 1);
+                            int rr = r * 2 + (q >> 1);
+                            if(cc >= getCols(l - 1) || rr >= getRows(l - 1) || !mExists[l - 1][rr * getCols(l - 1) + cc]) {
+                                continue;
+                            }
+                            Bitmap child = decode(getFile(l - 1, cc, rr));
+                            if(null == child) {
+                                continue;
+                            }
+                            dst.set((q & 1) * TILE / 2, (q >> 1) * TILE / 2, (q & 1) * TILE / 2 + TILE / 2, (q >> 1) * TILE / 2 + TILE / 2);
+                            canvas.drawBitmap(child, null, dst, paint);
+                            child.recycle();
+                            any = true;
+                        }
+                        if(any) {
+                            mExists[l][r * getCols(l) + c] = write(tile, pixels, getFile(l, c, r));
+                        }
+                    }
+                }
+            }
+        }
+        catch (Exception e) {
+            return;
+        }
+        catch (OutOfMemoryError e) {
+            return;
+        }
+        finally {
+            tile.recycle();
+        }
+        if(mClosed) {
+            return;
+        }
+
+        FileWriter fw = null;
+        try {
+            fw = new FileWriter(new File(mDir, DONE));
+            fw.write(stamp + "\n" + mWidth + "\n" + mHeight + "\n");
+        }
+        catch (Exception e) {
+        }
+        finally {
+            try {
+                if(null != fw) {
+                    fw.close();
+                }
+            }
+            catch (Exception e) {
+            }
+        }
+        mReady = true;
+    }
+
+    /**
+     * Write tile if it has anything in it
+     * @param tile
+     * @param pixels row buffer
+     * @param file
+     * @return true if written
+     */
+    private static boolean write(Bitmap tile, int pixels[], File file) {
+        boolean empty = true;
+        for(int y = 0; y < TILE && empty; y++) {
+            tile.getPixels(pixels, 0, TILE, 0, y, TILE, 1);
+            for(int x = 0; x < TILE; x++) {
+                if((pixels[x] >>> 24) != 0) {
+                    empty = false;
+                    break;
+                }
+            }
+        }
+        if(empty) {
+            return false;
+        }
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            return tile.compress(Bitmap.CompressFormat.PNG, 100, out);
+        }
+        catch (Exception e) {
+            return false;
+        }
+        finally {
+            try {
+                if(null != out) {
+                    out.close();
+                }
+            }
+            catch (Exception e) {
+            }
+        }
+    }
+
+    /**
+     * @param file
+     * @return
+     */
+    private static Bitmap decode(File file) {
+        BitmapFactory.Options opt = new BitmapFactory.Options();
+        opt.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        try {
+            return BitmapFactory.decodeFile(file.getAbsolutePath(), opt);
+        }
+        catch (OutOfMemoryError e) {
+            return null;
+        }
+    }
+}
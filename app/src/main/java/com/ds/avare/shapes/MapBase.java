@@ -13,12 +13,15 @@ Redistribution and use in source and binary forms, with or without modification,
 package com.ds.avare.shapes;
 
 import android.content.Context;
+import android.graphics.ColorFilter;
 import android.view.Display;
 import android.view.WindowManager;
 
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.GenericCallback;
+import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.MemoryGovernor;
 
 /**
  * Created by zkhan on 9/1/15.
@@ -29,6 +32,17 @@ public class MapBase {
     protected BitmapHolder[] mapA;
     protected BitmapHolder[] mapB;
 
+    /*
+     * Names of tiles in map. For tiles of map A not loaded at flip, cached tiles of
+     * the zoom below (parent) and above (children) to show until they load.
+     */
+    private String[] mNamesA;
+    private String[] mNamesB;
+    private boolean[] mWaitingA;
+    private BitmapHolder[] mParentA;
+    private int[] mQuadrantA;
+    private BitmapHolder[][] mChildA;
+
     protected Context mContext;
 
     protected Preferences mPref;
@@ -41,8 +55,58 @@ public class MapBase {
 
     private int mSize;
 
+    private static final int QUADRANTS = 4;
+
+    /*
+     * Tiles drawn through a color filter: none, inverted for night, or terrain threshold
+     */
+    public static final int VARIANT_NONE = 0;
+    public static final int VARIANT_INVERT = 1;
+    public static final int VARIANT_THRESHOLD = 2;
+
+    // name of variant is name of tile, this, then key of variant
+    private static final char VARIANT = '#';
+
+    /**
+     * Filter that makes variants, and its key in cache
+     */
+    private static class Variant {
+        int type;
+        float threshold;
+        String key;
+        ColorFilter filter;
+    }
+
+    /*
+     * Variants of tiles are made once, in background, and cached with tiles.
+     * Variants of map A tiles, null when not made yet.
+     */
+    private volatile Variant mVariant;
+    private BitmapHolder[] mVariantA;
+
     protected LruCache<String, BitmapHolder> mBitmapCache;
 
+    /*
+     * Tiles not on screen can be given back
+     */
+    private MemoryGovernor.Cache mMemory = new MemoryGovernor.Cache() {
+        @Override
+        public long getBytes() {
+            return mBitmapCache.size();
+        }
+
+        @Override
+        public long trim(long bytes) {
+            int size = mBitmapCache.size();
+            int floor = mSize * mNumTiles * (null == mVariant ? 1 : 2);
+            if(size <= floor) {
+                return 0;
+            }
+            mBitmapCache.trimToSize((int)Math.max(floor, size - bytes));
+            return size - mBitmapCache.size();
+        }
+    };
+
 
     protected MapBase(Context context, int size, int tilesdim[]) {
 
@@ -60,7 +124,14 @@ public class MapBase {
         mNumTiles = mXtiles * mYtiles;
         mapA = new BitmapHolder[mNumTiles];
         mapB = new BitmapHolder[mNumTiles];
-        mBitmapCache = new LruCache<String, BitmapHolder>(mSize * (mNumTiles + getOverhead())) {
+        mNamesA = new String[mNumTiles];
+        mNamesB = new String[mNumTiles];
+        mWaitingA = new boolean[mNumTiles];
+        mParentA = new BitmapHolder[mNumTiles];
+        mQuadrantA = new int[mNumTiles];
+        mChildA = new BitmapHolder[mNumTiles][QUADRANTS];
+        mVariantA = new BitmapHolder[mNumTiles];
+        mBitmapCache = new LruCache<String, BitmapHolder>(getCacheSize()) {
 
             @Override
             protected int sizeOf(String key, BitmapHolder value) {
@@ -72,6 +143,7 @@ public class MapBase {
                 oldValue.recycle();
             }
         };
+        MemoryGovernor.getInstance().register("Tiles", MemoryGovernor.PRIORITY_HIGH, mMemory);
     }
 
     /**
@@ -84,6 +156,115 @@ public class MapBase {
         return mOverhead;
     }
 
+    /**
+     * Extra tiles so that tiles of the last zoom stay cached while tiles of a new zoom load.
+     * Enough for parents of all tiles in map.
+     *
+     * @return
+     */
+    public int getCrossZoom() {
+        return mNumTiles / 4 + 1;
+    }
+
+    /**
+     * @return tiles cache can hold
+     */
+    private int getCacheSize() {
+        return mSize * (mNumTiles * (null == mVariant ? 1 : 2) + getOverhead() + getCrossZoom());
+    }
+
+    /**
+     * Set how tiles are drawn. Call from UI thread.
+     * Variants of tiles on screen are made when they load, call makeVariants() for those cached already.
+     *
+     * @param type VARIANT_NONE, VARIANT_INVERT, or VARIANT_THRESHOLD
+     * @param threshold for VARIANT_THRESHOLD
+     * @return true if changed
+     */
+    public boolean setVariant(int type, float threshold) {
+        Variant v = mVariant;
+        if (null == v ? type == VARIANT_NONE : (v.type == type && (type != VARIANT_THRESHOLD || v.threshold == threshold))) {
+            return false;
+        }
+        if (type == VARIANT_NONE) {
+            v = null;
+        }
+        else {
+            v = new Variant();
+            v.type = type;
+            v.threshold = threshold;
+            if (type == VARIANT_INVERT) {
+                v.key = "invert";
+                v.filter = Helper.getInvertFilter();
+            }
+            else {
+                v.key = "threshold" + threshold;
+                v.filter = Helper.getThresholdFilter(threshold);
+            }
+        }
+        mVariant = v;
+
+        /*
+         * Variants of other filters will not be drawn
+         */
+        for (String name : mBitmapCache.snapshot().keySet()) {
+            if (name.indexOf(VARIANT) >= 0) {
+                mBitmapCache.remove(name);
+            }
+        }
+        mBitmapCache.resize(getCacheSize());
+        for (int tilen = 0; tilen < mNumTiles; tilen++) {
+            mVariantA[tilen] = null;
+        }
+        return true;
+    }
+
+    /**
+     * @param tilen
+     * @return Tile of map A drawn through filter, null if not made yet
+     */
+    public BitmapHolder getVariant(int tilen) {
+        return mVariantA[tilen];
+    }
+
+    /**
+     * Tiles of map A that are loaded and do not have a variant. Call from UI thread.
+     *
+     * @return null if none
+     */
+    public BitmapHolder[] getVariantsMissing() {
+        if (null == mVariant) {
+            return null;
+        }
+        int num = 0;
+        BitmapHolder[] ret = new BitmapHolder[mNumTiles];
+        for (int tilen = 0; tilen < mNumTiles; tilen++) {
+            if (null == mVariantA[tilen] && !mWaitingA[tilen]) {
+                ret[num++] = mapA[tilen];
+            }
+        }
+        return num == 0 ? null : ret;
+    }
+
+    /**
+     * Make variant of a tile, in background
+     *
+     * @param b
+     * @return null if no variant is needed or it could not be made
+     */
+    public BitmapHolder makeVariant(BitmapHolder b) {
+        Variant v = mVariant;
+        String name = b.getName();
+        if (null == v || null == name) {
+            return null;
+        }
+        BitmapHolder ret = new BitmapHolder(b, v.filter, name + VARIANT + v.key);
+        if (null == ret.getBitmap()) {
+            return null;
+        }
+        return ret;
+    }
+
     /**
      * Clear the cache.
      *
@@ -105,28 +286,49 @@ public class MapBase {
      * will load and reuse older tiles.
      *
      * @param tileNames
+     * @param cached called once cached tiles are found, if some are not
+     * @param c called with each tile loaded
      * @return
      */
-    protected int reloadMap(String[] tileNames, GenericCallback c) {
+    protected int reloadMap(String[] tileNames, GenericCallback cached, GenericCallback c) {
 
         // how many tiles missing?
         int showing = 0;
+        boolean missing = false;
 
         /*
-         * For all tiles that will be loaded.
+         * Cached tiles first, so map can flip to them while others load
          */
         for (int tilen = 0; tilen < mNumTiles; tilen++) {
-
+            mNamesB[tilen] = tileNames[tilen];
             mapB[tilen] = mBitmapCache.get(tileNames[tilen]);
+            if (mapB[tilen] == null) {
+                missing = true;
+            } else {
+                showing++;
+            }
+        }
+        if (missing) {
+            cached.callback(this, null);
+        }
+
+        /*
+         * For all tiles that will be loaded.
+         */
+        for (int tilen = 0; tilen < mNumTiles; tilen++) {
 
             if (mapB[tilen] == null) {
-                mapB[tilen] = new BitmapHolder(mContext, mPref, tileNames[tilen], 1);
-                if (mapB[tilen].getBitmap() != null) {
-                    c.callback(this, mapB[tilen]);
+                BitmapHolder b = new BitmapHolder(mContext, mPref, tileNames[tilen], 1);
+                if (b.getBitmap() != null) {
+                    c.callback(this, b);
                     showing++;
+                    // drawn through filter, make it now
+                    BitmapHolder v = makeVariant(b);
+                    if (null != v) {
+                        c.callback(this, v);
+                    }
                 }
-            } else {
-                showing++;
+                mapB[tilen] = b;
             }
         }
         return showing;
@@ -138,13 +340,70 @@ public class MapBase {
     public void flip() {
         for (int tilen = 0; tilen < mNumTiles; tilen++) {
             mapA[tilen] = mapB[tilen];
+            mNamesA[tilen] = mNamesB[tilen];
+            mWaitingA[tilen] = mapA[tilen] == null || mapA[tilen].getBitmap() == null;
+            mParentA[tilen] = null;
+            for (int q = 0; q < QUADRANTS; q++) {
+                mChildA[tilen][q] = null;
+            }
+            mVariantA[tilen] = null;
+            if (!mWaitingA[tilen]) {
+                Variant v = mVariant;
+                if (null != v) {
+                    mVariantA[tilen] = mBitmapCache.get(mNamesA[tilen] + VARIANT + v.key);
+                }
+                continue;
+            }
+            /*
+             * Looked up once here, as a lookup each frame would keep these ahead of tiles on screen in cache.
+             * Quadrant 0 is top left on screen, rows of tiles increase north.
+             */
+            String parent = Tile.getParentName(mNamesA[tilen]);
+            if (null != parent) {
+                mParentA[tilen] = mBitmapCache.get(parent);
+                mQuadrantA[tilen] = Tile.getQuadrant(mNamesA[tilen]);
+            }
+            if (null == mParentA[tilen]) {
+                for (int q = 0; q < QUADRANTS; q++) {
+                    String child = Tile.getChildName(mNamesA[tilen], q & 1, (q & 2) == 0 ? 1 : 0);
+                    if (null != child) {
+                        mChildA[tilen][q] = mBitmapCache.get(child);
+                    }
+                }
+            }
         }
     }
 
+    /**
+     * @param tilen
+     * @return Cached tile of zoom below, with tilen in a quadrant of it, while tilen loads
+     */
+    public BitmapHolder getParent(int tilen) {
+        return mWaitingA[tilen] ? mParentA[tilen] : null;
+    }
+
+    /**
+     * @param tilen
+     * @return Quadrant of parent tilen is in, 0 top left, 1 top right, 2 bottom left, 3 bottom right
+     */
+    public int getParentQuadrant(int tilen) {
+        return mQuadrantA[tilen];
+    }
+
+    /**
+     * @param tilen
+     * @param quadrant 0 top left, 1 top right, 2 bottom left, 3 bottom right
+     * @return Cached tile of zoom above, in a quadrant of tilen, while tilen loads
+     */
+    public BitmapHolder getChild(int tilen, int quadrant) {
+        return mWaitingA[tilen] ? mChildA[tilen][quadrant] : null;
+    }
+
     /**
      *
      */
     public void recycleBitmaps() {
+        MemoryGovernor.getInstance().unregister(mMemory);
         clear();
     }
 
@@ -211,8 +470,45 @@ public class MapBase {
     // then the addInCache will be called by UI thread to add tile in cache, and invalidate view
     // deal with LRU cache in UI thread
     public void addInCache(BitmapHolder h) {
-        if (mBitmapCache.get(h.getName()) == null) {
+        String name = h.getName();
+        int variant = name.indexOf(VARIANT);
+        String key = null;
+        if (variant >= 0) {
+            /*
+             * Drop variants made with a filter no longer used
+             */
+            Variant v = mVariant;
+            key = name.substring(variant + 1);
+            name = name.substring(0, variant);
+            if (null == v || !v.key.equals(key)) {
+                h.recycle();
+                return;
+            }
+        }
+        BitmapHolder cached = mBitmapCache.get(h.getName());
+        if (cached == null) {
             mBitmapCache.put(h.getName(), h);
+            MemoryGovernor.getInstance().check();
+            cached = h;
+        }
+        else if (null != key && cached != h) {
+            // made twice
+            h.recycle();
+        }
+        /*
+         * Show it now if map was flipped before it loaded
+         */
+        for (int tilen = 0; tilen < mNumTiles; tilen++) {
+            if (!name.equals(mNamesA[tilen])) {
+                continue;
+            }
+            if (null != key) {
+                mVariantA[tilen] = cached;
+            }
+            else if (mWaitingA[tilen]) {
+                mapA[tilen] = cached;
+                mWaitingA[tilen] = false;
+            }
         }
     }
 
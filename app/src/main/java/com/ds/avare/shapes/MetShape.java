@@ -27,6 +27,12 @@ import java.util.LinkedList;
  */
 public class MetShape extends Shape {
 
+    /*
+     * Type names and their colors, read once as draw is called every frame
+     */
+    private static String sTypeArray[];
+    private static int sColorArray[];
+
     /**
      * 
      */
@@ -64,21 +70,24 @@ public class MetShape extends Shape {
 
         ctx.paint.setStrokeWidth(2 * ctx.dip2pix);
         ctx.paint.setShadowLayer(0, 0, 0, 0);
-        String typeArray[] = ctx.context.getResources().getStringArray(R.array.AirSig);
-        int colorArray[] = ctx.context.getResources().getIntArray(R.array.AirSigColor);
+        if(null == sTypeArray) {
+            sTypeArray = ctx.context.getResources().getStringArray(R.array.AirSig);
+            sColorArray = ctx.context.getResources().getIntArray(R.array.AirSigColor);
+        }
+        String typeArray[] = sTypeArray;
+        int colorArray[] = sColorArray;
         String storeType = ctx.pref.getAirSigMetType();
 
         for(int i = 0; i < mets.size(); i++) {
             AirSigMet met = mets.get(i);
             int color = 0;
 
-            String type = met.hazard + " " + met.reportType;
             if(storeType.equals("ALL")) {
                 /*
                  * All draw all shapes
                  */
             }
-            else if(!storeType.equals(type)) {
+            else if(!isType(storeType, met)) {
                 /*
                  * This should not be drawn.
                  */
@@ -86,7 +95,7 @@ public class MetShape extends Shape {
             }
 
             for(int j = 0; j < typeArray.length; j++) {
-                if(typeArray[j].equals(type)) {
+                if(isType(typeArray[j], met)) {
                     color = colorArray[j];
                     break;
                 }
@@ -107,4 +116,20 @@ public class MetShape extends Shape {
         }
     }
 
+    /**
+     * Same as type.equals(met.hazard + " " + met.reportType), without making a string
+     * @param type
+     * @param met
+     * @return
+     */
+    private static boolean isType(String type, AirSigMet met) {
+        if(null == met.hazard || null == met.reportType) {
+            return type.equals(met.hazard + " " + met.reportType);
+        }
+        int h = met.hazard.length();
+        return type.length() == h + 1 + met.reportType.length()
+                && type.startsWith(met.hazard)
+                && type.charAt(h) == ' '
+                && type.endsWith(met.reportType);
+    }
 }
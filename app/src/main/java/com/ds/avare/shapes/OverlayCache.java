@@ -0,0 +1,278 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.shapes;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+
+import com.ds.avare.position.Origin;
+import com.ds.avare.utils.MemoryGovernor;
+
+/**
+ * Vector layers that do not change from frame to frame, drawn once into a bitmap a little larger than the screen.
+ * The bitmap is then drawn on the map each frame.
+ * When the screen moves out of the bitmap, the bitmap is moved by whole pixels, and only the strips uncovered are drawn.
+ * Everything is drawn again when layers change (version), or on zoom / scale change.
+ *
+ * Call from the drawing thread only.
+ */
+public class OverlayCache implements MemoryGovernor.Cache {
+
+    /**
+     * Draws the layers kept in cache, with ctx.canvas and ctx.origin
+     */
+    public interface Painter {
+        void paint(DrawingContext ctx);
+    }
+
+    /*
+     * Margin around screen is this part of the smaller screen side
+     */
+    private static final int MARGIN_DIVISOR = 8;
+
+    private Painter mPainter;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private int mRow[];
+    private int mWidth;
+    private int mHeight;
+    private int mMargin;
+    private boolean mFailed;
+
+    /*
+     * Projection of bitmap, and of the strip being drawn
+     */
+    private Origin mOrigin;
+    private Origin mStripOrigin;
+    private DrawingContext mCtx;
+
+    private boolean mValid;
+    private long mVersion;
+    private double mZoom;
+    private double mScale;
+
+    /**
+     * @param painter
+     */
+    public OverlayCache(Painter painter) {
+        mPainter = painter;
+        mOrigin = new Origin();
+        mStripOrigin = new Origin();
+        mCtx = new DrawingContext();
+        mValid = false;
+        mFailed = false;
+    }
+
+    /**
+     * Layers changed in a way version does not show
+     */
+    public void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Free the bitmap
+     */
+    public void recycle() {
+        if(null != mBitmap) {
+            mBitmap.recycle();
+        }
+        mBitmap = null;
+        mCanvas = null;
+        mRow = null;
+        mValid = false;
+    }
+
+    /**
+     * @return bytes of bitmap
+     */
+    @Override
+    public long getBytes() {
+        return MemoryGovernor.getBytes(mBitmap);
+    }
+
+    /**
+     * Free the bitmap, it is made again on next draw
+     * @param bytes
+     * @return bytes freed
+     */
+    @Override
+    public long trim(long bytes) {
+        long freed = getBytes();
+        recycle();
+        return freed;
+    }
+
+    /**
+     * Draw cached layers on ctx.canvas, drawing the cache first if needed.
+     * Canvas should not be rotated, as the cache only covers the screen around it.
+     * @param ctx
+     * @param version changes whenever what layers show changes
+     */
+    public void draw(DrawingContext ctx, long version) {
+        int w = ctx.view.getWidth();
+        int h = ctx.view.getHeight();
+        if(w <= 0 || h <= 0 || !allocate(w, h)) {
+            // no memory, draw direct
+            mPainter.paint(ctx);
+            return;
+        }
+
+        Origin o = ctx.origin;
+        if(!mValid || version != mVersion || o.getZoom() != mZoom || o.getScale() != mScale) {
+            mOrigin.update(o, -mMargin, -mMargin, mWidth, mHeight);
+            render(ctx, 0, 0, mWidth, mHeight);
+            mValid = true;
+            mVersion = version;
+            mZoom = o.getZoom();
+            mScale = o.getScale();
+        }
+        else {
+            double x = o.getOffsetX(mOrigin.getLonScreenLeft());
+            double y = o.getOffsetY(mOrigin.getLatScreenTop());
+            if(x > 0 || y > 0 || x + mWidth < w || y + mHeight < h) {
+                // moved out, center again
+                scroll(ctx, (int)Math.round(x + mMargin), (int)Math.round(y + mMargin));
+            }
+        }
+
+        ctx.canvas.drawBitmap(mBitmap,
+                (float)o.getOffsetX(mOrigin.getLonScreenLeft()),
+                (float)o.getOffsetY(mOrigin.getLatScreenTop()), null);
+    }
+
+    /**
+     * Make the bitmap for this screen size
+     * @param w
+     * @param h
+     * @return false if no bitmap
+     */
+    private boolean allocate(int w, int h) {
+        int margin = Math.min(w, h) / MARGIN_DIVISOR;
+        if(null != mBitmap && mWidth == w + margin * 2 && mHeight == h + margin * 2) {
+            return true;
+        }
+        if(mFailed && null == mBitmap) {
+            return false;
+        }
+        recycle();
+        mMargin = margin;
+        mWidth = w + margin * 2;
+        mHeight = h + margin * 2;
+        try {
+            mBitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+            mRow = new int[mWidth];
+        }
+        catch (OutOfMemoryError e) {
+            recycle();
+            mFailed = true;
+            return false;
+        }
+        mFailed = false;
+        MemoryGovernor.getInstance().check();
+        return true;
+    }
+
+    /**
+     * Move bitmap content, then draw uncovered strips
+     * @param ctx
+     * @param sx pixels to move right
+     * @param sy pixels to move down
+     */
+    private void scroll(DrawingContext ctx, int sx, int sy) {
+        mOrigin.update(mOrigin, -sx, -sy, mWidth, mHeight);
+        if(Math.abs(sx) >= mWidth || Math.abs(sy) >= mHeight) {
+            render(ctx, 0, 0, mWidth, mHeight);
+            return;
+        }
+
+        /*
+         * Row by row, in an order that does not overwrite rows not copied yet
+         */
+        int w = mWidth - Math.abs(sx);
+        int src = sx > 0 ? 0 : -sx;
+        int dst = sx > 0 ? sx : 0;
+        if(sy > 0) {
+            for(int y = mHeight - 1; y >= sy; y--) {
+                copyRow(w, src, y - sy, dst, y);
+            }
+        }
+        else {
+            for(int y = 0; y < mHeight + sy; y++) {
+                copyRow(w, src, y - sy, dst, y);
+            }
+        }
+
+        if(sx > 0) {
+            render(ctx, 0, 0, sx, mHeight);
+        }
+        else if(sx < 0) {
+            render(ctx, mWidth + sx, 0, -sx, mHeight);
+        }
+        if(sy > 0) {
+            render(ctx, 0, 0, mWidth, sy);
+        }
+        else if(sy < 0) {
+            render(ctx, 0, mHeight + sy, mWidth, -sy);
+        }
+    }
+
+    /**
+     * @param w
+     * @param x0
+     * @param y0
+     * @param x1
+     * @param y1
+     */
+    private void copyRow(int w, int x0, int y0, int x1, int y1) {
+        mBitmap.getPixels(mRow, 0, w, x0, y0, w, 1);
+        mBitmap.setPixels(mRow, 0, w, x1, y1, w, 1);
+    }
+
+    /**
+     * Clear and draw an area of the bitmap.
+     * Area is drawn with its own origin so layers skip shapes not in it.
+     * @param ctx
+     * @param x
+     * @param y
+     * @param w
+     * @param h
+     */
+    private void render(DrawingContext ctx, int x, int y, int w, int h) {
+        mStripOrigin.update(mOrigin, x, y, w, h);
+
+        mCtx.service = ctx.service;
+        mCtx.pref = ctx.pref;
+        mCtx.context = ctx.context;
+        mCtx.paint = ctx.paint;
+        mCtx.textPaint = ctx.textPaint;
+        mCtx.runwayPaint = ctx.runwayPaint;
+        mCtx.view = ctx.view;
+        mCtx.scale = ctx.scale;
+        mCtx.pan = ctx.pan;
+        mCtx.movement = ctx.movement;
+        mCtx.dip2pix = ctx.dip2pix;
+        mCtx.canvas = mCanvas;
+        mCtx.origin = mStripOrigin;
+
+        mCanvas.save();
+        mCanvas.clipRect(x, y, x + w, y + h);
+        mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        mCanvas.translate(x, y);
+        mPainter.paint(mCtx);
+        mCanvas.restore();
+    }
+}
@@ -0,0 +1,321 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.shapes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.ds.avare.utils.Lz4;
+
+/**
+ * Raw tile: RGB565 pixels of a chart tile, LZ4 compressed.
+ * Sits next to the jpg/png tile as name + EXTENSION, and loads without an image decoder.
+ * Layout is a header of big endian ints (magic, version, width, height, compressed length), then the LZ4 block.
+ * Pixels are in the device's own RGB565 order, so raw tiles are made on the device that shows them.
+ */
+public class RawTile {
+
+    public static final String EXTENSION = ".r565";
+
+    private static final int MAGIC = 0x52353635; // "R565"
+    private static final int VERSION = 1;
+    private static final int HEADER = 20;
+    private static final int MAX_SIDE = 4096;
+
+    /*
+     * Read and pixel buffers are kept per thread, tiles are decoded over and over at the same size
+     */
+    private static final ThreadLocal<byte[][]> sBuffers = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[2][];
+        }
+    };
+
+    /*
+     * Decode stats, raw against image
+     */
+    private static long sRawCount;
+    private static long sRawNs;
+    private static long sImageCount;
+    private static long sImageNs;
+    private static long sConverted;
+    private static long sImageBytes;
+    private static long sRawBytes;
+
+    /**
+     * @param image jpg / png tile file
+     * @return raw tile file of it
+     */
+    public static File getFile(File image) {
+        return new File(image.getPath() + EXTENSION);
+    }
+
+    /**
+     * @param file raw tile
+     * @return RGB565 bitmap, or null when missing or corrupt
+     */
+    public static Bitmap decode(File file) {
+        InputStream in;
+        try {
+            in = new FileInputStream(file);
+        }
+        catch(IOException e) {
+            return null;
+        }
+
+        try {
+            byte buffers[][] = sBuffers.get();
+            byte header[] = getBuffer(buffers, 0, HEADER);
+            readFully(in, header, HEADER);
+            if(getInt(header, 0) != MAGIC || getInt(header, 4) != VERSION) {
+                return null;
+            }
+            int width = getInt(header, 8);
+            int height = getInt(header, 12);
+            int length = getInt(header, 16);
+            if(width <= 0 || height <= 0 || width > MAX_SIDE || height > MAX_SIDE || length <= 0) {
+                return null;
+            }
+            int pixels = width * height * 2;
+            if(length > Lz4.maxCompressedLength(pixels)) {
+                return null;
+            }
+
+            byte src[] = getBuffer(buffers, 0, length);
+            readFully(in, src, length);
+            byte dst[] = getBuffer(buffers, 1, pixels);
+            Lz4.decompress(src, length, dst, pixels);
+
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(dst, 0, pixels));
+            return bitmap;
+        }
+        catch(IOException e) {
+            return null;
+        }
+        catch(OutOfMemoryError e) {
+            return null;
+        }
+        finally {
+            try {
+                in.close();
+            }
+            catch(IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Write a raw tile, through a temp file so a half written tile is never read.
+     * @param bitmap RGB565
+     * @param file
+     * @return false on failure
+     */
+    public static boolean encode(Bitmap bitmap, File file) {
+        if(bitmap.getConfig() != Bitmap.Config.RGB_565) {
+            return false;
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int pixels = width * height * 2;
+        byte buffers[][] = sBuffers.get();
+        byte src[] = getBuffer(buffers, 1, pixels);
+        bitmap.copyPixelsToBuffer(ByteBuffer.wrap(src, 0, pixels));
+        byte dst[] = getBuffer(buffers, 0, HEADER + Lz4.maxCompressedLength(pixels));
+        int length = Lz4.compress(src, pixels, dst);
+        // compress() wrote from 0, shift to make room for the header
+        System.arraycopy(dst, 0, dst, HEADER, length);
+        putInt(dst, 0, MAGIC);
+        putInt(dst, 4, VERSION);
+        putInt(dst, 8, width);
+        putInt(dst, 12, height);
+        putInt(dst, 16, length);
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(dst, 0, HEADER + length);
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch(IOException e) {
+            tmp.delete();
+            return false;
+        }
+        if(!tmp.renameTo(file)) {
+            file.delete();
+            if(!tmp.renameTo(file)) {
+                tmp.delete();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Make the raw tile of a jpg / png tile, if not already there and newer.
+     * @param image
+     * @return true if a raw tile was written
+     */
+    public static boolean convert(File image) {
+        File raw = getFile(image);
+        if(raw.exists() && raw.lastModified() >= image.lastModified()) {
+            return false;
+        }
+        BitmapFactory.Options opt = new BitmapFactory.Options();
+        opt.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeFile(image.getPath(), opt);
+        }
+        catch(OutOfMemoryError e) {
+            return false;
+        }
+        if(null == bitmap) {
+            return false;
+        }
+        boolean done = encode(bitmap, raw);
+        bitmap.recycle();
+        if(done) {
+            synchronized(RawTile.class) {
+                sConverted++;
+                sImageBytes += image.length();
+                sRawBytes += raw.length();
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Convert all jpg / png tiles under a folder. Runs long, call in background.
+     * @param dir
+     * @param extensions image extensions to convert, like .jpg
+     * @return tiles converted
+     */
+    public static int convertAll(File dir, String extensions[]) {
+        File files[] = dir.listFiles();
+        if(null == files) {
+            return 0;
+        }
+        int count = 0;
+        for(File f : files) {
+            if(Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if(f.isDirectory()) {
+                count += convertAll(f, extensions);
+                continue;
+            }
+            String name = f.getName();
+            for(String ext : extensions) {
+                if(name.endsWith(ext)) {
+                    if(convert(f)) {
+                        count++;
+                    }
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Delete raw tiles under a folder, as when the raw format is turned off.
+     * @param dir
+     */
+    public static void deleteAll(File dir) {
+        File files[] = dir.listFiles();
+        if(null == files) {
+            return;
+        }
+        for(File f : files) {
+            if(f.isDirectory()) {
+                deleteAll(f);
+            }
+            else if(f.getName().endsWith(EXTENSION)) {
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * @param raw true if a raw tile was decoded, false for jpg / png
+     * @param ns time to decode
+     */
+    public static synchronized void record(boolean raw, long ns) {
+        if(raw) {
+            sRawCount++;
+            sRawNs += ns;
+        }
+        else {
+            sImageCount++;
+            sImageNs += ns;
+        }
+    }
+
+    /**
+     * @return Decode time per tile of raw and image tiles, and size of converted tiles
+     */
+    public static synchronized String getStats() {
+        String ret = String.format(Locale.US, "Tile decode raw %d @ %.1f ms, image %d @ %.1f ms",
+                sRawCount, sRawCount == 0 ? 0 : sRawNs / 1e6 / sRawCount,
+                sImageCount, sImageCount == 0 ? 0 : sImageNs / 1e6 / sImageCount);
+        if(sConverted > 0) {
+            ret += String.format(Locale.US, ", converted %d, %d KB image to %d KB raw",
+                    sConverted, sImageBytes >> 10, sRawBytes >> 10);
+        }
+        return ret;
+    }
+
+    private static byte[] getBuffer(byte buffers[][], int index, int size) {
+        if(null == buffers[index] || buffers[index].length < size) {
+            buffers[index] = new byte[size];
+        }
+        return buffers[index];
+    }
+
+    private static void readFully(InputStream in, byte b[], int len) throws IOException {
+        int off = 0;
+        while(off < len) {
+            int n = in.read(b, off, len - off);
+            if(n < 0) {
+                throw new IOException("raw tile truncated");
+            }
+            off += n;
+        }
+    }
+
+    private static int getInt(byte b[], int i) {
+        return ((b[i] & 0xFF) << 24) | ((b[i + 1] & 0xFF) << 16) | ((b[i + 2] & 0xFF) << 8) | (b[i + 3] & 0xFF);
+    }
+
+    private static void putInt(byte b[], int i, int v) {
+        b[i] = (byte)(v >>> 24);
+        b[i + 1] = (byte)(v >>> 16);
+        b[i + 2] = (byte)(v >>> 8);
+        b[i + 3] = (byte)v;
+    }
+}
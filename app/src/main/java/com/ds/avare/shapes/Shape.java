@@ -47,6 +47,11 @@ public abstract class Shape {
     private Polygon mPoly;
 
     private Date mDate;
+
+    /*
+     * Line points scratch for drawShape, grows to the largest shape. Drawing thread only.
+     */
+    private static float sPts[] = new float[256];
     
     /**
      * 
@@ -188,7 +193,10 @@ public abstract class Shape {
              * Draw the shape segment by segment
              */
             if(getNumCoords() > 0) {
-                float pts[] = new float[(getNumCoords()) * 4];
+                if(sPts.length < getNumCoords() * 4) {
+                    sPts = new float[getNumCoords() * 4];
+                }
+                float pts[] = sPts;
                 int i = 0;
                 int coord = 0;
                 float x1 = (float) origin.getOffsetX(mCoords.get(coord).getLongitude());
@@ -208,7 +216,7 @@ public abstract class Shape {
                     x1 = x2;
                     y1 = y2;
                 }
-                c.drawLines(pts, paint);
+                c.drawLines(pts, 0, i, paint);
             }
         }
     }
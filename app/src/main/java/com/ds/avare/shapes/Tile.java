@@ -15,12 +15,16 @@ package com.ds.avare.shapes;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
 
 import com.ds.avare.R;
 import com.ds.avare.position.Epsg900913;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.Startup;
 
 
 /**
@@ -57,6 +61,19 @@ public class Tile {
     private Epsg900913 mProj;
     private String mChartIndex;
 
+    /*
+     * Chart type names, read once as draw is called every frame
+     */
+    private static String sChartTypes[];
+    private static boolean sDrawn;
+
+    /*
+     * Used by draw, in UI thread
+     */
+    private static Matrix sTransform = new Matrix();
+    private static Rect sSrc = new Rect();
+    private static RectF sDst = new RectF();
+
     /**
      * Common function for all tile constructors.
      */
@@ -278,6 +295,86 @@ public class Tile {
         return(name);
     }
 
+    /**
+     * Name of a tile of one zoom lower that has the given tile in one of its quadrants
+     * @param name of a tile, as from getTileNeighbor()
+     * @return null if name is not of a tile
+     */
+    public static String getParentName(String name) {
+        int p[] = parseName(name);
+        if(null == p) {
+            return null;
+        }
+        return makeName(name, p, -1, p[1] >> 1, p[2] >> 1);
+    }
+
+    /**
+     * Name of a tile of one zoom higher that is in a quadrant of the given tile
+     * @param name of a tile, as from getTileNeighbor()
+     * @param dx 0 for west half, 1 for east
+     * @param dy 0 for south half, 1 for north (rows increase north)
+     * @return null if name is not of a tile
+     */
+    public static String getChildName(String name, int dx, int dy) {
+        int p[] = parseName(name);
+        if(null == p) {
+            return null;
+        }
+        return makeName(name, p, 1, p[1] * 2 + dx, p[2] * 2 + dy);
+    }
+
+    /**
+     * @param name of a tile, as from getTileNeighbor()
+     * @return Quadrant of its parent the tile is in, 0 top left, 1 top right, 2 bottom left, 3 bottom right
+     */
+    public static int getQuadrant(String name) {
+        int p[] = parseName(name);
+        if(null == p) {
+            return 0;
+        }
+        // rows increase north
+        return (p[1] & 1) | ((p[2] & 1) == 0 ? 2 : 0);
+    }
+
+    /**
+     * @param name tiles//type/zoom/col/row.ext
+     * @return zoom, col, row, and index of zoom in name, or null
+     */
+    private static int[] parseName(String name) {
+        if(null == name) {
+            return null;
+        }
+        int r = name.lastIndexOf('/');
+        int c = name.lastIndexOf('/', r - 1);
+        int z = name.lastIndexOf('/', c - 1);
+        int e = name.indexOf('.', r);
+        if(z < 0 || e < 0) {
+            return null;
+        }
+        try {
+            return new int[] {
+                    Integer.parseInt(name.substring(z + 1, c)),
+                    Integer.parseInt(name.substring(c + 1, r)),
+                    Integer.parseInt(name.substring(r + 1, e)),
+                    z};
+        }
+        catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @param name
+     * @param p parsed name
+     * @param dzoom
+     * @param col
+     * @param row
+     * @return
+     */
+    private static String makeName(String name, int p[], int dzoom, int col, int row) {
+        return name.substring(0, p[3] + 1) + (p[0] + dzoom) + "/" + col + "/" + row + name.substring(name.indexOf('.', name.lastIndexOf('/')));
+    }
+
     /**
      * @return Name of the tile for db zip name
      */
@@ -316,38 +413,65 @@ public class Tile {
 
         int index = Integer.parseInt(ctx.pref.getChartType());
 
-        String type = ctx.context.getResources().getStringArray(R.array.ChartType)[index];
+        if(null == sChartTypes) {
+            sChartTypes = ctx.context.getResources().getStringArray(R.array.ChartType);
+        }
+        String type = sChartTypes[index];
         boolean IFRinv = ctx.pref.isNightMode() && (type.equals("IFR Low") || type.equals("IFR High") || type.equals("IFR Area"));
         boolean isTerrain = ctx.pref.getChartType().equals(Tile.ELEVATION_INDEX);
         float scaleFactor = ctx.scale.getScaleFactor();
         float scaleCorrected = ctx.scale.getScaleCorrected();
 
+        /*
+         * Tiles drawn through a filter are drawn from copies made with it once, when there is one
+         */
+        tiles.setVariant(IFRinv ? MapBase.VARIANT_INVERT : (isTerrain ? MapBase.VARIANT_THRESHOLD : MapBase.VARIANT_NONE),
+                (float)ctx.service.getThreshold());
+
         for(int tilen = 0; tilen < tn; tilen++) {
 
             BitmapHolder tile = tiles.getTile(tilen);
+            Bitmap b = null == tile ? null : tile.getBitmap();
+            if(null != b && b.isRecycled()) {
+                b = null;
+            }
+
             /*
-             * Scale, then move under the plane which is at center
+             * Tile not loaded yet, show tiles of other zoom in its place
              */
-            boolean nochart = false;
-            if(null == tile) {
-                nochart = true;
-            }
-            else if(null == tile.getBitmap()) {
-                nochart = true;
+            BitmapHolder parent = null;
+            boolean children = false;
+            boolean filter = true;
+            if(null == b) {
+                parent = tiles.getParent(tilen);
+                if(null == parent || null == parent.getBitmap()) {
+                    parent = null;
+                    for(int q = 0; q < 4; q++) {
+                        BitmapHolder child = tiles.getChild(tilen, q);
+                        children |= null != child && null != child.getBitmap();
+                    }
+                    if(!children) {
+                        continue;
+                    }
+                }
             }
 
-            if(nochart) {
-                continue;
+            if(null != b) {
+                BitmapHolder variant = tiles.getVariant(tilen);
+                Bitmap v = null == variant ? null : variant.getBitmap();
+                if(null != v && !v.isRecycled()) {
+                    b = v;
+                    filter = false;
+                }
             }
 
-
-            if(IFRinv) {
+            if(filter && IFRinv) {
                 /*
                  * IFR charts invert color at night
                  */
                 Helper.invertCanvasColors(ctx.paint);
             }
-            else if(isTerrain) {
+            else if(filter && isTerrain) {
                 /*
                  * Terrain
                  */
@@ -358,8 +482,8 @@ public class Tile {
              * Pretty straightforward. Pan and draw individual tiles.
              */
 
-            tile.getTransform().setScale(scaleFactor, scaleCorrected);
-            tile.getTransform().postTranslate(
+            sTransform.setScale(scaleFactor, scaleCorrected);
+            sTransform.postTranslate(
                     ctx.view.getWidth()  / 2.f
                             + ( - BitmapHolder.WIDTH  / 2.f
                             + ((tilen % tiles.getXTilesNum()) * BitmapHolder.WIDTH - BitmapHolder.WIDTH * (int)(tiles.getXTilesNum() / 2))
@@ -374,9 +498,40 @@ public class Tile {
                             + ctx.pan.getTileMoveY() * BitmapHolder.HEIGHT
                             - (float)ctx.movement.getOffsetLatitude() ) * scaleCorrected);
 
-            Bitmap b = tile.getBitmap();
-            if(null != b && (!b.isRecycled())) {
-                ctx.canvas.drawBitmap(b, tile.getTransform(), ctx.paint);
+            if(null != b) {
+                ctx.canvas.drawBitmap(b, sTransform, ctx.paint);
+                if(!sDrawn) {
+                    // for startup trace
+                    sDrawn = true;
+                    ctx.service.getStartup().mark(Startup.FIRST_TILE);
+                }
+            }
+            else {
+                ctx.canvas.save();
+                ctx.canvas.concat(sTransform);
+                if(null != parent) {
+                    // quadrant of parent, scaled up
+                    int q = tiles.getParentQuadrant(tilen);
+                    int w = parent.getWidth() / 2;
+                    int h = parent.getHeight() / 2;
+                    sSrc.set((q & 1) * w, (q >> 1) * h, (q & 1) * w + w, (q >> 1) * h + h);
+                    sDst.set(0, 0, BitmapHolder.WIDTH, BitmapHolder.HEIGHT);
+                    ctx.canvas.drawBitmap(parent.getBitmap(), sSrc, sDst, ctx.paint);
+                }
+                else {
+                    // children in quadrants, scaled down
+                    for(int q = 0; q < 4; q++) {
+                        BitmapHolder child = tiles.getChild(tilen, q);
+                        if(null == child || null == child.getBitmap()) {
+                            continue;
+                        }
+                        float x = (q & 1) * BitmapHolder.WIDTH / 2.f;
+                        float y = (q >> 1) * BitmapHolder.HEIGHT / 2.f;
+                        sDst.set(x, y, x + BitmapHolder.WIDTH / 2.f, y + BitmapHolder.HEIGHT / 2.f);
+                        ctx.canvas.drawBitmap(child.getBitmap(), null, sDst, ctx.paint);
+                    }
+                }
+                ctx.canvas.restore();
             }
 
             Helper.restoreCanvasColors(ctx.paint);
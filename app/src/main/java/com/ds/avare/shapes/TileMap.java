@@ -14,6 +14,8 @@ package com.ds.avare.shapes;
 
 import android.content.Context;
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.ds.avare.place.Boundaries;
 import com.ds.avare.position.Pan;
@@ -22,6 +24,7 @@ import com.ds.avare.storage.Preferences;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.GenericCallback;
 import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.TaskExecutor;
 
 
 /**
@@ -35,6 +38,13 @@ public class TileMap extends MapBase {
     private static final int SIZE = BitmapHolder.HEIGHT * BitmapHolder.WIDTH * 2; // RGB565 = 2
     private int mNumShowing;
 
+    /*
+     * Variants of cached tiles are made when filter has not changed for this long
+     */
+    private static final long VARIANT_DELAY_MS = 1000;
+    private Handler mHandler;
+    private Runnable mMakeVariants;
+
     /**
      * @param context
      */
@@ -42,10 +52,69 @@ public class TileMap extends MapBase {
         super(context, SIZE, (new Preferences(context)).getTilesNumber());
         mNumShowing = 0;
         mTileTask = null;
+        mHandler = new Handler(Looper.getMainLooper());
+        mMakeVariants = new Runnable() {
+            @Override
+            public void run() {
+                makeVariants();
+            }
+        };
     }
 
-    public void reload(String[] tileNames, GenericCallback c) {
-        mNumShowing = super.reloadMap(tileNames, c);
+    @Override
+    public void flip() {
+        super.flip();
+        if(null != getVariantsMissing()) {
+            mHandler.removeCallbacks(mMakeVariants);
+            mHandler.postDelayed(mMakeVariants, VARIANT_DELAY_MS);
+        }
+    }
+
+    /**
+     * Set how tiles are drawn, call every frame from UI thread
+     * @param type
+     * @param threshold
+     * @return true if changed
+     */
+    @Override
+    public boolean setVariant(int type, float threshold) {
+        if(!super.setVariant(type, threshold)) {
+            return false;
+        }
+        mHandler.removeCallbacks(mMakeVariants);
+        mHandler.postDelayed(mMakeVariants, VARIANT_DELAY_MS);
+        return true;
+    }
+
+    /**
+     * Make variants of cached tiles on screen in background. New tiles get their variant when loaded.
+     */
+    private void makeVariants() {
+        final BitmapHolder[] tiles = getVariantsMissing();
+        if(null == tiles) {
+            return;
+        }
+        TaskExecutor.execute(new AsyncTask<Void, BitmapHolder, Void>() {
+            @Override
+            protected Void doInBackground(Void... vals) {
+                for(int i = 0; i < tiles.length && null != tiles[i] && !isCancelled(); i++) {
+                    BitmapHolder v = makeVariant(tiles[i]);
+                    if(null != v) {
+                        publishProgress(v);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void onProgressUpdate(BitmapHolder... v) {
+                addInCache(v[0]);
+            }
+        }, TaskExecutor.RENDER, "variants");
+    }
+
+    public void reload(String[] tileNames, GenericCallback cached, GenericCallback c) {
+        mNumShowing = super.reloadMap(tileNames, cached, c);
     }
 
     private AsyncTask mTileTask;
@@ -68,10 +137,9 @@ public class TileMap extends MapBase {
      */
     public void loadTiles(final double lon, final double lat, final Pan panIn, final float macro, final Scale scale, final double bearing, final GenericCallback callbackDone) {
 
-        if(mTileTask != null && mTileTask.getStatus() == AsyncTask.Status.RUNNING) {
-            mTileTask.cancel(true);
-        }
-
+        /*
+         * Last load, queued or running, is cancelled as it has the same key
+         */
         mTileTask = new AsyncTask<Void, Object, TileUpdate>() {
             double offsets[] = new double[2];
             double p[] = new double[2];
@@ -140,10 +208,28 @@ public class TileMap extends MapBase {
             @Override
             protected TileUpdate doInBackground(Void... vals) {
                 Thread.currentThread().setName("Tile");
+                final TileUpdate t = new TileUpdate();
+                t.movex = movex;
+                t.movey = movey;
+                t.centerTile = centerTile;
+                t.gpsTile = gpsTile;
+                t.offsets = offsets;
+                t.factor = factor;
+                t.chart = chart;
+                t.loading = true;
+
                 /*
                  * Load tiles, draw in UI thread
                  */
                 reload(tileNames,
+                        // Cached tiles found, show them with tiles of other zoom while rest load
+                        new GenericCallback() {
+                            @Override
+                            public Object callback(Object o1, Object o2) {
+                                publishProgress(o1, t);
+                                return null;
+                            }
+                        },
                         // As tiles are loaded, callback to notify us
                         new GenericCallback() {
                             @Override
@@ -155,22 +241,19 @@ public class TileMap extends MapBase {
                 );
                 if(isChartPartial()) {
                     // If tiles not found, find name of chart we are on to show to user
-                    chart = Boundaries.getInstance().findChartOn(centerTile.getChartIndex(), centerTile.getLongitude(), centerTile.getLatitude());
+                    t.chart = Boundaries.getInstance().findChartOn(centerTile.getChartIndex(), centerTile.getLongitude(), centerTile.getLatitude());
                 }
-                TileUpdate t = new TileUpdate();
-                t.movex = movex;
-                t.movey = movey;
-                t.centerTile = centerTile;
-                t.gpsTile = gpsTile;
-                t.offsets = offsets;
-                t.factor = factor;
-                t.chart = chart;
 
                 return t;
             }
 
             @Override
             protected void onProgressUpdate(Object... objs) {
+                if(objs[1] instanceof TileUpdate) {
+                    // Show the new map before all tiles load
+                    callbackDone.callback(TileMap.this, objs[1]);
+                    return;
+                }
                 // Put in bitmap cache a new loaded tile
                 TileMap t = (TileMap)objs[0];
                 BitmapHolder b = (BitmapHolder)objs[1];
@@ -184,11 +267,13 @@ public class TileMap extends MapBase {
                  * UI thread
                  */
                 if(t != null) {
+                    t.loading = false;
                     callbackDone.callback(TileMap.this, t);
                 }
             }
 
-        }.execute(null, null, null);
+        };
+        TaskExecutor.execute(mTileTask, TaskExecutor.RENDER, "tiles");
     }
 
     /**
@@ -204,6 +289,10 @@ public class TileMap extends MapBase {
         public float factor;
         public Tile centerTile;
         public Tile gpsTile;
+        // true when shown before all tiles are loaded; flip and show chart again when false
+        public boolean loading;
+        // set by user, when pan and movement of this update are used
+        public boolean shown;
     }
 
 }
\ No newline at end of file
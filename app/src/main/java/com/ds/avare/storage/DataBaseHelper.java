@@ -21,6 +21,7 @@ import android.hardware.GeomagneticField;
 
 import com.ds.avare.R;
 import com.ds.avare.place.Airport;
+import com.ds.avare.place.AirwayGraph;
 import com.ds.avare.place.Awos;
 import com.ds.avare.place.Destination;
 import com.ds.avare.place.Obstacle;
@@ -793,18 +794,7 @@ public class DataBaseHelper  {
         
         Cursor cursor;
         
-        String types = "";
-        if(type.equals(Destination.BASE)) {
-            types = TABLE_AIRPORTS;
-        }
-        else if(type.equals(Destination.NAVAID)) {
-            types = TABLE_NAV;
-        }
-        else if(type.equals(Destination.FIX)) {
-            types = TABLE_FIX;
-        }
-
-        String qry = "select * from " + types + " where " + LOCATION_ID_DB + "=='" + name + "'";
+        String qry = "select * from " + getDestinationTable(type) + " where " + LOCATION_ID_DB + "=='" + name + "'";
         if(null != dbType && dbType.length() > 0) {
             if(false == dbType.equalsIgnoreCase("null")) {
                 qry += " and " + TYPE_DB + "=='" + dbType + "'";
@@ -820,113 +810,7 @@ public class DataBaseHelper  {
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
-                    
-                    /*
-                     * Put ID and name first
-                     */
-                    params.put(LOCATION_ID, cursor.getString(LOCATION_ID_COL));
-                    params.put(FACILITY_NAME, cursor.getString(FACILITY_NAME_COL));
-                    params.put(LATITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LATITUDE_COL))));
-                    params.put(LONGITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LONGITUDE_COL))));
-                    params.put(TYPE, cursor.getString(TYPE_COL).trim());
-                    if(type.equals(Destination.BASE)) {
-                        String use = cursor.getString(5).trim();
-                        if(use.equals("PU")) {
-                            use = "PUBLIC";
-                        }
-                        else if(use.equals("PR")) {
-                            use = "PRIVATE";                            
-                        }
-                        else  {
-                            use = "MILITARY";                            
-                        }
-                        params.put("Use", use);
-                        params.put("Manager", cursor.getString(7).trim());
-                        params.put(MANAGER_PHONE, cursor.getString(8).trim());
-                        params.put(ELEVATION, cursor.getString(9).trim());
-                        String customs = cursor.getString(CUSTOMS_COL);
-                        if(customs.equals("YN")) {
-                            params.put(CUSTOMS, "Intl. Entry");
-                        }
-                        else if(customs.equals("NY")) {
-                            params.put(CUSTOMS, "Lndg. Rights");
-                        }
-                        else if(customs.equals("YY")) {
-                            params.put(CUSTOMS, "Lndg. Rights, Intl. Entry");
-                        }
-                        else {
-                            params.put(CUSTOMS, mContext.getString(R.string.No));                            
-                        }
-                        String bcn = cursor.getString(BEACON_COL);
-                        if(bcn.equals("")) {
-                            bcn = mContext.getString(R.string.No);
-                        }
-                        params.put(BEACON, bcn);
-                        String sc = cursor.getString(SEGCIRCLE_COL);
-                        if(sc.equals("Y")) {
-                            params.put(SEGCIRCLE, mContext.getString(R.string.Yes));
-                        }
-                        else {
-                            params.put(SEGCIRCLE, mContext.getString(R.string.No));                            
-                        }
-                        String pa = cursor.getString(11).trim();
-                        String paout = "";
-                        if(pa.equals("")) {
-                            try {
-                                paout = "" + (Double.parseDouble(params.get(ELEVATION)) + 1000);
-                            }
-                            catch (Exception e) {
-                                
-                            }
-                        }
-                        else {
-                            try {
-                                paout = "" + (Double.parseDouble(params.get(ELEVATION)) + 
-                                        (Double.parseDouble(pa)));
-                            }
-                            catch (Exception e) {
-                                
-                            }                            
-                        }
-                        params.put("Pattern Altitude", paout);
-                        String fuel = cursor.getString(FUEL_TYPES_COL).trim();
-                        if(fuel.equals("")) {
-                            fuel = mContext.getString(R.string.No);
-                        }
-                        params.put(FUEL_TYPES, fuel);
-                        String ct = cursor.getString(17).trim();
-                        if(ct.equals("Y")) {
-                            ct = mContext.getString(R.string.Yes);
-                        }
-                        else {
-                            ct = mContext.getString(R.string.No);
-                        }
-                        params.put("Control Tower", ct);
-                        
-                        String unicom = cursor.getString(18).trim();
-                        if(!unicom.equals("")) {
-                            freq.put("UNICOM", unicom);
-                        }
-                        String ctaf = cursor.getString(19).trim();
-                        if(!ctaf.equals("")) {
-                            freq.put("CTAF", ctaf);
-                        }
-                        
-                        String fee = cursor.getString(20).trim();
-                        if(fee.equals("Y")) {
-                            fee = mContext.getString(R.string.Yes);
-                        }
-                        else {
-                            fee = mContext.getString(R.string.No);
-                        }
-                        params.put("Landing Fee", fee);
-                        String fss = cursor.getString(FSSPHONE_COL);
-						if (fss.equals("1-800-WX-BRIEF")) {
-							fss = "1-800-992-7433";
-						}
-                        params.put(FSSPHONE, fss);
-
-                    }
+                    putDestination(cursor, type, params, freq);
                 }
             }
         }
@@ -953,35 +837,7 @@ public class DataBaseHelper  {
              */
             if(cursor != null) {
                 while(cursor.moveToNext()) {
-                    String typeof = cursor.getString(1);
-                    typeof = typeof.replace("LCL", "TWR");
-                    /*
-                     * Filter out silly frequencies
-                     */
-                    if(typeof.equals("EMERG") || typeof.contains("GATE") || typeof.equals("EMERGENCY")) {
-                        continue;
-                    }
-                    /*
-                     * Filter out UHF
-                     */
-                    try {
-                        double frequency = Double.parseDouble(cursor.getString(2));
-                        if(Helper.isFrequencyUHF(frequency)) {
-                            continue;
-                        }
-                    }
-                    catch (Exception e) {
-                    }
-                    
-                    if(freq.containsKey(typeof)) {
-                        /*
-                         * Append this string to the existing one if duplicate key
-                         */
-                        freq.put(typeof, freq.get(typeof)+"\n\n"+cursor.getString(2));                                
-                    }
-                    else {
-                        freq.put(typeof, cursor.getString(2));
-                    }
+                    putFrequency(cursor, freq);
                 }
             }
         }
@@ -989,42 +845,26 @@ public class DataBaseHelper  {
         }
         closes(cursor);
         
-		/*
-		 * Get AWOS info
-		 */
-
-		qry = "select * from " + TABLE_AIRPORT_AWOS + " where "
-				+ LOCATION_ID_DB + "=='" + name + "' or " + LOCATION_ID_DB
-				+ "=='K" + name + "';";
-		cursor = doQuery(qry, getMainDb());
-		// 0     1    2          3  4  5    6     7     8    9    10
-		// ident,type,commstatus,lt,ln,elev,freq1,freq2,tel1,tel2,remark
-		try {
-			/*
-			 * Add each AWOS
-			 */
-			if (cursor != null) {
-				while (cursor.moveToNext()) {
-
-					Awos a = new Awos(cursor.getString(0)); // New AWOS instance
-
-					a.setType(cursor.getString(1));
-
-					a.setLat(Helper.removeLeadingZeros(cursor.getString(3)));
-					a.setLon(Helper.removeLeadingZeros(cursor.getString(4)));
-					a.setFreq1(cursor.getString(6));
-					a.setFreq2(cursor.getString(7));
-					a.setPhone1(cursor.getString(8));
-					a.setPhone2(cursor.getString(9));
-					a.setRemark(cursor.getString(10));
-
-					awos.add(a);
+        /*
+         * Get AWOS info
+         */
 
-				}
-			}
-		} catch (Exception e) {
-		}
-		closes(cursor);
+        qry = "select * from " + TABLE_AIRPORT_AWOS + " where "
+                + LOCATION_ID_DB + "=='" + name + "' or " + LOCATION_ID_DB
+                + "=='K" + name + "';";
+        cursor = doQuery(qry, getMainDb());
+        try {
+            /*
+             * Add each AWOS
+             */
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    putAwos(cursor, awos);
+                }
+            }
+        } catch (Exception e) {
+        }
+        closes(cursor);
 
         /*
          *Find runways        
@@ -1040,124 +880,552 @@ public class DataBaseHelper  {
              */
             if(cursor != null) {
                 while(cursor.moveToNext()) {
-                    
-                    String Length = cursor.getString(1);
-                    String Width = cursor.getString(2);
-                    String Surface = cursor.getString(3);
-                    String Variation = params.get(MAGNETIC_VARIATION);
-                    
-                    String run = Helper.removeLeadingZeros(cursor.getString(4));
-                    String lat = Helper.removeLeadingZeros(cursor.getString(6));
-                    String lon = Helper.removeLeadingZeros(cursor.getString(8));
-                    
-                    String Elevation = cursor.getString(10);
-                    if(Elevation.equals("")) {
-                        Elevation = params.get(ELEVATION);
-                    }
-                    String Heading = cursor.getString(12);
-                    String DT = cursor.getString(14);
-                    if(DT.equals("")) {
-                        DT = "0";
-                    }
-                    String Lighted = cursor.getString(16);
-                    if(Lighted.equals("0") || Lighted.equals("")) {
-                        Lighted = mContext.getString(R.string.No);
+                    putRunways(cursor, params, runways);
+                }
+            }
+        }
+        catch (Exception e) {
+        }
+
+        closes(cursor);        
+    }
+
+    /**
+     * Find many destinations at once, like all way points of a plan.
+     * Same as findDestination on each, but airports, navaids, fixes, frequencies, AWOS, runways, and A/FD
+     * are each found with one query for all destinations, with database held open for all queries.
+     * Fills in params, runways, frequencies and AWOS of destinations.
+     * @param dests Destinations, only airports, navaids, and fixes are looked at
+     * @param dbTypes Database type for each destination, may be empty
+     * @param afds A/FD names found for each airport destination
+     */
+    public void findDestinations(Destination dests[], String dbTypes[], LinkedList<String> afds[]) {
+
+        int num = dests.length;
+        boolean filled[] = new boolean[num];
+
+        /*
+         * Hold database open for all queries below
+         */
+        Cursor hold = doQuery("select 1;", getMainDb());
+        if(null == hold) {
+            closes(hold);
+            return;
+        }
+
+        String types[] = {Destination.BASE, Destination.NAVAID, Destination.FIX};
+        for(String type : types) {
+            /*
+             * Names of this type, and which destinations have them
+             */
+            HashMap<String, LinkedList<Integer>> names = new HashMap<String, LinkedList<Integer>>();
+            for(int i = 0; i < num; i++) {
+                if(null != dests[i] && dests[i].getType().equals(type)) {
+                    addIndex(names, dests[i].getID(), i);
+                }
+            }
+            if(names.isEmpty()) {
+                continue;
+            }
+
+            // Same order as findDestination, so first row of each name is the one findDestination would find
+            String qry = "select * from " + getDestinationTable(type) + " where " + LOCATION_ID_DB + " in (" +
+                    inList(names.keySet()) + ") and Type != 'VOT' order by " + TYPE_DB + "," + TYPE_DB + "='OUR-AP' " + "desc;";
+            Cursor cursor = doQuery(qry, getMainDb());
+            try {
+                if(cursor != null) {
+                    while(cursor.moveToNext()) {
+                        LinkedList<Integer> ids = names.get(cursor.getString(LOCATION_ID_COL));
+                        if(null == ids) {
+                            continue;
+                        }
+                        for(int i : ids) {
+                            if(filled[i]) {
+                                continue;
+                            }
+                            String dbType = dbTypes[i];
+                            if(null != dbType && dbType.length() > 0 && false == dbType.equalsIgnoreCase("null")) {
+                                if(!dbType.equals(cursor.getString(TYPE_COL))) {
+                                    continue;
+                                }
+                            }
+                            try {
+                                putDestination(cursor, type, dests[i].getParams(), dests[i].getFrequencies());
+                            }
+                            catch (Exception e) {
+                            }
+                            filled[i] = true;
+                        }
                     }
-                    String ILS = cursor.getString(18);
-                    if(ILS.equals("")) {
-                        ILS = mContext.getString(R.string.No);
+                }
+            }
+            catch (Exception e) {
+            }
+            closes(cursor);
+        }
+
+        /*
+         * Now airport things, airport found with name or K + name
+         */
+        HashMap<String, LinkedList<Integer>> airports = new HashMap<String, LinkedList<Integer>>();
+        HashMap<String, LinkedList<Integer>> afdNames = new HashMap<String, LinkedList<Integer>>();
+        for(int i = 0; i < num; i++) {
+            if(null != dests[i] && dests[i].getType().equals(Destination.BASE)) {
+                addIndex(airports, dests[i].getID(), i);
+                addIndex(airports, "K" + dests[i].getID(), i);
+                addIndex(afdNames, dests[i].getID(), i);
+                afds[i] = new LinkedList<String>();
+            }
+        }
+
+        if(!airports.isEmpty()) {
+            String in = inList(airports.keySet());
+
+            /*
+             * Find frequencies (ATIS, TOWER, GROUND, etc)  Not AWOS
+             */
+            Cursor cursor = doQuery("select * from " + TABLE_AIRPORT_FREQ + " where " + LOCATION_ID_DB + " in (" + in + ");", getMainDb());
+            try {
+                if(cursor != null) {
+                    int col = cursor.getColumnIndex(LOCATION_ID_DB);
+                    while(cursor.moveToNext()) {
+                        LinkedList<Integer> ids = airports.get(cursor.getString(col));
+                        if(null != ids) {
+                            for(int i : ids) {
+                                try {
+                                    putFrequency(cursor, dests[i].getFrequencies());
+                                }
+                                catch (Exception e) {
+                                }
+                            }
+                        }
                     }
-                    String VGSI = cursor.getString(20);
-                    if(VGSI.equals("")) {
-                        VGSI = mContext.getString(R.string.No);
+                }
+            }
+            catch (Exception e) {
+            }
+            closes(cursor);
+
+            /*
+             * Get AWOS info
+             */
+            cursor = doQuery("select * from " + TABLE_AIRPORT_AWOS + " where " + LOCATION_ID_DB + " in (" + in + ");", getMainDb());
+            try {
+                if(cursor != null) {
+                    int col = cursor.getColumnIndex(LOCATION_ID_DB);
+                    while(cursor.moveToNext()) {
+                        LinkedList<Integer> ids = airports.get(cursor.getString(col));
+                        if(null != ids) {
+                            for(int i : ids) {
+                                try {
+                                    putAwos(cursor, dests[i].getAwos());
+                                }
+                                catch (Exception e) {
+                                }
+                            }
+                        }
                     }
-                    String Pattern = cursor.getString(22);
-                    if(Pattern.equals("Y")) {
-                        Pattern = "Right";
+                }
+            }
+            catch (Exception e) {
+            }
+            closes(cursor);
+
+            /*
+             * Find runways
+             */
+            cursor = doQuery("select * from " + TABLE_AIRPORT_RUNWAYS + " where " + LOCATION_ID_DB + " in (" + in + ");", getMainDb());
+            try {
+                if(cursor != null) {
+                    int col = cursor.getColumnIndex(LOCATION_ID_DB);
+                    while(cursor.moveToNext()) {
+                        LinkedList<Integer> ids = airports.get(cursor.getString(col));
+                        if(null != ids) {
+                            for(int i : ids) {
+                                try {
+                                    putRunways(cursor, dests[i].getParams(), dests[i].getRunways());
+                                }
+                                catch (Exception e) {
+                                }
+                            }
+                        }
                     }
-                    else {
-                        Pattern = "Left";                        
+                }
+            }
+            catch (Exception e) {
+            }
+            closes(cursor);
+
+            /*
+             * Find A/FD
+             */
+            cursor = doQuery("select " + LOCATION_ID_DB + ",File from " + TABLE_AFD + " where " + LOCATION_ID_DB + " in (" +
+                    inList(afdNames.keySet()) + ");", getMainDb());
+            try {
+                if(cursor != null) {
+                    while(cursor.moveToNext()) {
+                        LinkedList<Integer> ids = afdNames.get(cursor.getString(0));
+                        if(null != ids) {
+                            for(int i : ids) {
+                                afds[i].add(cursor.getString(1));
+                            }
+                        }
                     }
-                    
-                    Runway r = new Runway(run);
-                    r.setElevation(Elevation);
-                    r.setHeading(Heading);
-                    r.setSurface(Surface);
-                    r.setLength(Length);
-                    r.setWidth(Width);
-                    r.setThreshold(DT);
-                    r.setLights(Lighted);
-                    r.setPattern(Pattern);
-                    r.setLongitude(lon);
-                    r.setLatitude(lat);
-                    r.setVariation(Variation);
-                    r.setILS(ILS);
-                    r.setVGSI(VGSI);
-                    
-                    runways.add(r);
-                   
-                    /*
-                     * If the first runway is a helipad, don't add a second end
-                     */
-					if(!(run.startsWith("H") || run.startsWith("h"))) {
-						run = Helper.removeLeadingZeros(cursor.getString(5));
-						lat = Helper.removeLeadingZeros(cursor.getString(7));
-						lon = Helper.removeLeadingZeros(cursor.getString(9));
-
-						Elevation = cursor.getString(11);
-						if(Elevation.equals("")) {
-							Elevation = params.get(ELEVATION);
-						}
-						Heading = cursor.getString(13);
-						DT = cursor.getString(15);
-						if(DT.equals("")) {
-							DT = "0";
-						}
-						Lighted = cursor.getString(17);
-						if(Lighted.equals("0") || Lighted.equals("")) {
-							Lighted = mContext.getString(R.string.No);
-						}
-						ILS = cursor.getString(19);
-						if(ILS.equals("")) {
-							ILS = mContext.getString(R.string.No);
-						}
-						VGSI = cursor.getString(21);
-						if(VGSI.equals("")) {
-							VGSI = mContext.getString(R.string.No);
-						}
-						Pattern = cursor.getString(23);
-						if(Pattern.equals("Y")) {
-							Pattern = "Right";
-						}else {
-							Pattern = "Left";
-						}
+                }
+            }
+            catch (Exception e) {
+            }
+            closes(cursor);
+        }
 
-						r = new Runway(run);
-						r.setElevation(Elevation);
-						r.setHeading(Heading);
-						r.setSurface(Surface);
-						r.setLength(Length);
-						r.setWidth(Width);
-						r.setThreshold(DT);
-						r.setLights(Lighted);
-						r.setPattern(Pattern);
-						r.setLongitude(lon);
-						r.setLatitude(lat);
-						r.setVariation(Variation);
-						r.setILS(ILS);
-						r.setVGSI(VGSI);
-
-						runways.add(r);
+        closes(hold);
+    }
 
-					}
-    
+    /**
+     * Table where a type of destination is
+     * @param type
+     * @return
+     */
+    private static String getDestinationTable(String type) {
+        if(type.equals(Destination.BASE)) {
+            return TABLE_AIRPORTS;
+        }
+        else if(type.equals(Destination.NAVAID)) {
+            return TABLE_NAV;
+        }
+        else if(type.equals(Destination.FIX)) {
+            return TABLE_FIX;
+        }
+        return "";
+    }
+
+    /**
+     *
+     * @param map
+     * @param name
+     * @param index
+     */
+    private static void addIndex(HashMap<String, LinkedList<Integer>> map, String name, int index) {
+        LinkedList<Integer> ids = map.get(name);
+        if(null == ids) {
+            ids = new LinkedList<Integer>();
+            map.put(name, ids);
+        }
+        ids.add(index);
+    }
+
+    /**
+     * Make 'a','b','c' for sql in
+     * @param names
+     * @return
+     */
+    private static String inList(Iterable<String> names) {
+        String in = "";
+        for(String name : names) {
+            if(in.length() > 0) {
+                in += ",";
+            }
+            in += "'" + name.replace("'", "''") + "'";
+        }
+        return in;
+    }
+
+    /**
+     * Put destination from a row of airports, nav, or fix table
+     * @param cursor
+     * @param type
+     * @param params
+     * @param freq
+     */
+    private void putDestination(Cursor cursor, String type, LinkedHashMap<String, String> params, LinkedHashMap<String, String> freq) {
+
+        /*
+         * Put ID and name first
+         */
+        params.put(LOCATION_ID, cursor.getString(LOCATION_ID_COL));
+        params.put(FACILITY_NAME, cursor.getString(FACILITY_NAME_COL));
+        params.put(LATITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LATITUDE_COL))));
+        params.put(LONGITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LONGITUDE_COL))));
+        params.put(TYPE, cursor.getString(TYPE_COL).trim());
+        if(type.equals(Destination.BASE)) {
+            String use = cursor.getString(5).trim();
+            if(use.equals("PU")) {
+                use = "PUBLIC";
+            }
+            else if(use.equals("PR")) {
+                use = "PRIVATE";                            
+            }
+            else  {
+                use = "MILITARY";                            
+            }
+            params.put("Use", use);
+            params.put("Manager", cursor.getString(7).trim());
+            params.put(MANAGER_PHONE, cursor.getString(8).trim());
+            params.put(ELEVATION, cursor.getString(9).trim());
+            String customs = cursor.getString(CUSTOMS_COL);
+            if(customs.equals("YN")) {
+                params.put(CUSTOMS, "Intl. Entry");
+            }
+            else if(customs.equals("NY")) {
+                params.put(CUSTOMS, "Lndg. Rights");
+            }
+            else if(customs.equals("YY")) {
+                params.put(CUSTOMS, "Lndg. Rights, Intl. Entry");
+            }
+            else {
+                params.put(CUSTOMS, mContext.getString(R.string.No));                            
+            }
+            String bcn = cursor.getString(BEACON_COL);
+            if(bcn.equals("")) {
+                bcn = mContext.getString(R.string.No);
+            }
+            params.put(BEACON, bcn);
+            String sc = cursor.getString(SEGCIRCLE_COL);
+            if(sc.equals("Y")) {
+                params.put(SEGCIRCLE, mContext.getString(R.string.Yes));
+            }
+            else {
+                params.put(SEGCIRCLE, mContext.getString(R.string.No));                            
+            }
+            String pa = cursor.getString(11).trim();
+            String paout = "";
+            if(pa.equals("")) {
+                try {
+                    paout = "" + (Double.parseDouble(params.get(ELEVATION)) + 1000);
+                }
+                catch (Exception e) {
+
+                }
+            }
+            else {
+                try {
+                    paout = "" + (Double.parseDouble(params.get(ELEVATION)) + 
+                            (Double.parseDouble(pa)));
                 }
+                catch (Exception e) {
+
+                }                            
+            }
+            params.put("Pattern Altitude", paout);
+            String fuel = cursor.getString(FUEL_TYPES_COL).trim();
+            if(fuel.equals("")) {
+                fuel = mContext.getString(R.string.No);
+            }
+            params.put(FUEL_TYPES, fuel);
+            String ct = cursor.getString(17).trim();
+            if(ct.equals("Y")) {
+                ct = mContext.getString(R.string.Yes);
+            }
+            else {
+                ct = mContext.getString(R.string.No);
+            }
+            params.put("Control Tower", ct);
+
+            String unicom = cursor.getString(18).trim();
+            if(!unicom.equals("")) {
+                freq.put("UNICOM", unicom);
+            }
+            String ctaf = cursor.getString(19).trim();
+            if(!ctaf.equals("")) {
+                freq.put("CTAF", ctaf);
+            }
+
+            String fee = cursor.getString(20).trim();
+            if(fee.equals("Y")) {
+                fee = mContext.getString(R.string.Yes);
+            }
+            else {
+                fee = mContext.getString(R.string.No);
+            }
+            params.put("Landing Fee", fee);
+            String fss = cursor.getString(FSSPHONE_COL);
+            if (fss.equals("1-800-WX-BRIEF")) {
+                fss = "1-800-992-7433";
+            }
+            params.put(FSSPHONE, fss);
+
+        }
+    }
+
+    /**
+     * Put frequency from a row of airport frequency table
+     * @param cursor
+     * @param freq
+     */
+    private void putFrequency(Cursor cursor, LinkedHashMap<String, String> freq) {
+        String typeof = cursor.getString(1);
+        typeof = typeof.replace("LCL", "TWR");
+        /*
+         * Filter out silly frequencies
+         */
+        if(typeof.equals("EMERG") || typeof.contains("GATE") || typeof.equals("EMERGENCY")) {
+            return;
+        }
+        /*
+         * Filter out UHF
+         */
+        try {
+            double frequency = Double.parseDouble(cursor.getString(2));
+            if(Helper.isFrequencyUHF(frequency)) {
+                return;
             }
         }
         catch (Exception e) {
         }
 
-        closes(cursor);        
+        if(freq.containsKey(typeof)) {
+            /*
+             * Append this string to the existing one if duplicate key
+             */
+            freq.put(typeof, freq.get(typeof)+"\n\n"+cursor.getString(2));                                
+        }
+        else {
+            freq.put(typeof, cursor.getString(2));
+        }
+    }
+
+    /**
+     * Put AWOS from a row of AWOS table
+     * @param cursor
+     * @param awos
+     */
+    private void putAwos(Cursor cursor, LinkedList<Awos> awos) {
+        // 0     1    2          3  4  5    6     7     8    9    10
+        // ident,type,commstatus,lt,ln,elev,freq1,freq2,tel1,tel2,remark
+
+        Awos a = new Awos(cursor.getString(0)); // New AWOS instance
+
+        a.setType(cursor.getString(1));
+
+        a.setLat(Helper.removeLeadingZeros(cursor.getString(3)));
+        a.setLon(Helper.removeLeadingZeros(cursor.getString(4)));
+        a.setFreq1(cursor.getString(6));
+        a.setFreq2(cursor.getString(7));
+        a.setPhone1(cursor.getString(8));
+        a.setPhone2(cursor.getString(9));
+        a.setRemark(cursor.getString(10));
+
+        awos.add(a);
+
+    }
+
+    /**
+     * Put both runway ends from a row of runways table
+     * @param cursor
+     * @param params
+     * @param runways
+     */
+    private void putRunways(Cursor cursor, LinkedHashMap<String, String> params, LinkedList<Runway> runways) {
+        String Length = cursor.getString(1);
+        String Width = cursor.getString(2);
+        String Surface = cursor.getString(3);
+        String Variation = params.get(MAGNETIC_VARIATION);
+
+        String run = Helper.removeLeadingZeros(cursor.getString(4));
+        String lat = Helper.removeLeadingZeros(cursor.getString(6));
+        String lon = Helper.removeLeadingZeros(cursor.getString(8));
+
+        String Elevation = cursor.getString(10);
+        if(Elevation.equals("")) {
+            Elevation = params.get(ELEVATION);
+        }
+        String Heading = cursor.getString(12);
+        String DT = cursor.getString(14);
+        if(DT.equals("")) {
+            DT = "0";
+        }
+        String Lighted = cursor.getString(16);
+        if(Lighted.equals("0") || Lighted.equals("")) {
+            Lighted = mContext.getString(R.string.No);
+        }
+        String ILS = cursor.getString(18);
+        if(ILS.equals("")) {
+            ILS = mContext.getString(R.string.No);
+        }
+        String VGSI = cursor.getString(20);
+        if(VGSI.equals("")) {
+            VGSI = mContext.getString(R.string.No);
+        }
+        String Pattern = cursor.getString(22);
+        if(Pattern.equals("Y")) {
+            Pattern = "Right";
+        }
+        else {
+            Pattern = "Left";                        
+        }
+
+        Runway r = new Runway(run);
+        r.setElevation(Elevation);
+        r.setHeading(Heading);
+        r.setSurface(Surface);
+        r.setLength(Length);
+        r.setWidth(Width);
+        r.setThreshold(DT);
+        r.setLights(Lighted);
+        r.setPattern(Pattern);
+        r.setLongitude(lon);
+        r.setLatitude(lat);
+        r.setVariation(Variation);
+        r.setILS(ILS);
+        r.setVGSI(VGSI);
+
+        runways.add(r);
+
+        /*
+         * If the first runway is a helipad, don't add a second end
+         */
+        if(!(run.startsWith("H") || run.startsWith("h"))) {
+            run = Helper.removeLeadingZeros(cursor.getString(5));
+            lat = Helper.removeLeadingZeros(cursor.getString(7));
+            lon = Helper.removeLeadingZeros(cursor.getString(9));
+
+            Elevation = cursor.getString(11);
+            if(Elevation.equals("")) {
+                Elevation = params.get(ELEVATION);
+            }
+            Heading = cursor.getString(13);
+            DT = cursor.getString(15);
+            if(DT.equals("")) {
+                DT = "0";
+            }
+            Lighted = cursor.getString(17);
+            if(Lighted.equals("0") || Lighted.equals("")) {
+                Lighted = mContext.getString(R.string.No);
+            }
+            ILS = cursor.getString(19);
+            if(ILS.equals("")) {
+                ILS = mContext.getString(R.string.No);
+            }
+            VGSI = cursor.getString(21);
+            if(VGSI.equals("")) {
+                VGSI = mContext.getString(R.string.No);
+            }
+            Pattern = cursor.getString(23);
+            if(Pattern.equals("Y")) {
+                Pattern = "Right";
+            }else {
+                Pattern = "Left";
+            }
+
+            r = new Runway(run);
+            r.setElevation(Elevation);
+            r.setHeading(Heading);
+            r.setSurface(Surface);
+            r.setLength(Length);
+            r.setWidth(Width);
+            r.setThreshold(DT);
+            r.setLights(Lighted);
+            r.setPattern(Pattern);
+            r.setLongitude(lon);
+            r.setLatitude(lat);
+            r.setVariation(Variation);
+            r.setILS(ILS);
+            r.setVGSI(VGSI);
+
+            runways.add(r);
+
+        }
+
     }
 
 
@@ -1744,6 +2012,36 @@ public class DataBaseHelper  {
     }
 
 
+    /**
+     * All obstacles in a 1 degree cell, in latitude order
+     * @param lon west edge
+     * @param lat south edge
+     * @return null if database could not be read
+     */
+    public ObstacleCache.Cell findObstacles(int lon, int lat) {
+
+        String qry = "select * from " + TABLE_OBSTACLES + " where " +
+                "(" + LATITUDE_DB  + " >= " + lat + ") and (" + LATITUDE_DB  + " < " + (lat + 1) + ") and " +
+                "(" + LONGITUDE_DB + " >= " + lon + ") and (" + LONGITUDE_DB + " < " + (lon + 1) + ") order by " + LATITUDE_DB + ";";
+        Cursor cursor = doQuery(qry, getMainDb());
+        if(null == cursor) {
+            return null;
+        }
+
+        ObstacleCache.Cell cell = new ObstacleCache.Cell(lon, lat);
+        try {
+            while(cursor.moveToNext()) {
+                cell.add(cursor.getFloat(1), cursor.getFloat(0), (int)cursor.getFloat(2));
+            }
+        }
+        catch (Exception e) {
+            cell = null;
+        }
+        
+        closes(cursor);
+        return cell;
+    }
+
     /**
      * 
      * @return
@@ -1923,21 +2221,7 @@ public class DataBaseHelper  {
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
-
-                    wa = new WindsAloft();
-                    wa.station = cursor.getString(0);
-                    wa.time = cursor.getString(1);
-                    wa.lon = cursor.getFloat(2);
-                    wa.lat = cursor.getFloat(3);
-                    wa.w3k = cursor.getString(4).replaceAll("[ ]", "");
-                    wa.w6k = cursor.getString(5).replaceAll("[ ]", "");
-                    wa.w9k = cursor.getString(6).replaceAll("[ ]", "");
-                    wa.w12k = cursor.getString(7).replaceAll("[ ]", "");
-                    wa.w18k = cursor.getString(8).replaceAll("[ ]", "");
-                    wa.w24k = cursor.getString(9).replaceAll("[ ]", "");
-                    wa.w30k = cursor.getString(10).replaceAll("[ ]", "");
-                    wa.w34k = cursor.getString(11).replaceAll("[ ]", "");
-                    wa.w39k = cursor.getString(12).replaceAll("[ ]", "");
+                    wa = putWindsAloft(cursor);
                 }
             }
         }
@@ -1948,6 +2232,75 @@ public class DataBaseHelper  {
         return wa;        
     }
 
+    /**
+     * Winds aloft at many places with one query, like all way points of a plan.
+     * Same as getWindsAloft on each.
+     * @param lon
+     * @param lat
+     * @return
+     */
+    public WindsAloft[] getWindsAloft(double lon[], double lat[]) {
+
+        WindsAloft wa[] = new WindsAloft[lon.length];
+        double dist[] = new double[lon.length];
+        for(int i = 0; i < lon.length; i++) {
+            dist[i] = Double.MAX_VALUE;
+        }
+
+        /*
+         * Few stations, so take all and find closest here
+         */
+        Cursor cursor = doQueryWeather("select * from wa;", getWeatherDb());
+
+        try {
+            if(cursor != null) {
+                while(cursor.moveToNext()) {
+                    float slon = cursor.getFloat(2);
+                    float slat = cursor.getFloat(3);
+                    WindsAloft w = null;
+                    for(int i = 0; i < lon.length; i++) {
+                        double d = (slon - lon[i]) * (slon - lon[i]) + (slat - lat[i]) * (slat - lat[i]);
+                        if(d < dist[i]) {
+                            if(null == w) {
+                                w = putWindsAloft(cursor);
+                            }
+                            dist[i] = d;
+                            wa[i] = w;
+                        }
+                    }
+                }
+            }
+        }
+        catch (Exception e) {
+        }
+
+        closesWeather(cursor);
+        return wa;
+    }
+
+    /**
+     * Winds aloft from a row of wa table
+     * @param cursor
+     * @return
+     */
+    private WindsAloft putWindsAloft(Cursor cursor) {
+        WindsAloft wa = new WindsAloft();
+        wa.station = cursor.getString(0);
+        wa.time = cursor.getString(1);
+        wa.lon = cursor.getFloat(2);
+        wa.lat = cursor.getFloat(3);
+        wa.w3k = cursor.getString(4).replaceAll("[ ]", "");
+        wa.w6k = cursor.getString(5).replaceAll("[ ]", "");
+        wa.w9k = cursor.getString(6).replaceAll("[ ]", "");
+        wa.w12k = cursor.getString(7).replaceAll("[ ]", "");
+        wa.w18k = cursor.getString(8).replaceAll("[ ]", "");
+        wa.w24k = cursor.getString(9).replaceAll("[ ]", "");
+        wa.w30k = cursor.getString(10).replaceAll("[ ]", "");
+        wa.w34k = cursor.getString(11).replaceAll("[ ]", "");
+        wa.w39k = cursor.getString(12).replaceAll("[ ]", "");
+        return wa;
+    }
+
     /**
      * 
      * @param station
@@ -2526,6 +2879,30 @@ public class DataBaseHelper  {
         return points;
 	}
 
+    /**
+     * Put all airways in an airway graph
+     * @param graph
+     */
+    public void findAllAirways(AirwayGraph graph) {
+
+        String qry = "select * from " + TABLE_AIRWAYS + " order by name, cast(sequence as integer)";
+        Cursor cursor = doQuery(qry, getMainDb());
+
+        try {
+            if(cursor != null) {
+                int name = cursor.getColumnIndex("name");
+                while(cursor.moveToNext()) {
+                    graph.add(cursor.getString(name), cursor.getFloat(3), cursor.getFloat(2));
+                }
+            }
+        }
+        catch (Exception e) {
+        }
+        closes(cursor);
+
+        graph.build();
+    }
+
 	
 	
     /**
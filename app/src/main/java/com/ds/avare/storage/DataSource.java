@@ -16,6 +16,7 @@ package com.ds.avare.storage;
 import android.content.Context;
 
 import com.ds.avare.place.Airport;
+import com.ds.avare.place.AirwayGraph;
 import com.ds.avare.place.Awos;
 import com.ds.avare.place.Destination;
 import com.ds.avare.place.Obstacle;
@@ -44,11 +45,24 @@ public class DataSource {
      */
     private DataBaseHelper dbHelper;
 
+    /**
+     * All airways, made on first use. Generation changes when database changes.
+     */
+    private volatile AirwayGraph mAirwayGraph;
+    private volatile int mGeneration;
+    private final Object mAirwayLock = new Object();
+
+    /**
+     * Obstacles near where they were asked for
+     */
+    private ObstacleCache mObstacleCache;
+
     /**
      * @param context
      */
     public DataSource(Context context) {
         dbHelper = new DataBaseHelper(context);
+        mObstacleCache = new ObstacleCache(dbHelper);
     }
 
     /**
@@ -67,6 +81,16 @@ public class DataSource {
         dbHelper.findDestination(name, type, dbType, params, runways, freq, awos);
     }
     
+    /**
+     * Find many destinations with few queries
+     * @param dests
+     * @param dbTypes
+     * @param afds
+     */
+    public void findDestinations(Destination dests[], String dbTypes[], LinkedList<String> afds[]) {
+        dbHelper.findDestinations(dests, dbTypes, afds);
+    }
+
     /**
      */
     public Coordinate getCoordinate(String name) {
@@ -166,7 +190,15 @@ public class DataSource {
      * @return Obstacles list that are dangerous
      */
     public LinkedList<Obstacle> findObstacles(double lon, double lat, int height) {
-        return dbHelper.findObstacles(lon, lat, height);
+        return mObstacleCache.findObstacles(lon, lat, height);
+    }
+
+    /**
+     * Obstacles in memory. Call from background.
+     * @return
+     */
+    public ObstacleCache getObstacleCache() {
+        return mObstacleCache;
     }
 
     /**
@@ -234,6 +266,16 @@ public class DataSource {
         return dbHelper.getWindsAloft(lon, lat);          
     }
 
+    /**
+     * 
+     * @param lon
+     * @param lat
+     * @return
+     */
+    public WindsAloft[] getWindsAloft(double lon[], double lat[]) {
+        return dbHelper.getWindsAloft(lon, lat);
+    }
+
     /**
      * 
      * @return
@@ -300,6 +342,38 @@ public class DataSource {
         return  dbHelper.findAirway(name);
     }
     
+    /**
+     * All airways in memory. Made from database on first call, so call from background.
+     * @return
+     */
+    public AirwayGraph getAirwayGraph() {
+        AirwayGraph graph = mAirwayGraph;
+        if(null != graph) {
+            return graph;
+        }
+        synchronized(mAirwayLock) {
+            graph = mAirwayGraph;
+            if(null == graph) {
+                int generation = mGeneration;
+                graph = new AirwayGraph();
+                dbHelper.findAllAirways(graph);
+                if(generation == mGeneration) {
+                    mAirwayGraph = graph;
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Database changed, like after download. Forget what was made from it.
+     */
+    public void forceReload() {
+        mGeneration++;
+        mAirwayGraph = null;
+        mObstacleCache.clear();
+    }
+
     /**
      * 
      * @param name
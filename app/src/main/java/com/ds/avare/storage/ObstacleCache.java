@@ -0,0 +1,321 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.storage;
+
+import com.ds.avare.place.Obstacle;
+
+import java.util.LinkedList;
+
+/**
+ * Obstacles in memory, in 1 degree cells around where they are asked for.
+ * A cell is read from database once, then kept until it is the farthest of too many cells.
+ * Obstacles in a cell are in primitive arrays sorted by latitude.
+ *
+ * Thread safe. Call from background, a cell load is a database query.
+ */
+public class ObstacleCache {
+
+    /*
+     * 3 x 3 cells around aircraft, and a few more on the way
+     */
+    private static final int MAX_CELLS = 12;
+
+    /**
+     * Obstacles of one cell
+     */
+    public static class Cell {
+        private int mLon;
+        private int mLat;
+        private int mNum;
+        private float mLons[];
+        private float mLats[];
+        private int mHeights[];
+
+        /**
+         * @param lon west edge
+         * @param lat south edge
+         */
+        public Cell(int lon, int lat) {
+            mLon = lon;
+            mLat = lat;
+            mNum = 0;
+            mLons = new float[64];
+            mLats = new float[64];
+            mHeights = new int[64];
+        }
+
+        /**
+         * Add obstacles in latitude order
+         * @param lon
+         * @param lat
+         * @param height
+         */
+        public void add(float lon, float lat, int height) {
+            if(mNum >= mLons.length) {
+                float lons[] = new float[mNum * 2];
+                float lats[] = new float[mNum * 2];
+                int heights[] = new int[mNum * 2];
+                System.arraycopy(mLons, 0, lons, 0, mNum);
+                System.arraycopy(mLats, 0, lats, 0, mNum);
+                System.arraycopy(mHeights, 0, heights, 0, mNum);
+                mLons = lons;
+                mLats = lats;
+                mHeights = heights;
+            }
+            mLons[mNum] = lon;
+            mLats[mNum] = lat;
+            mHeights[mNum] = height;
+            mNum++;
+        }
+
+        /**
+         * @return bytes used by arrays
+         */
+        private int getBytes() {
+            return mLons.length * (4 + 4 + 4);
+        }
+
+        /**
+         * First obstacle at or north of a latitude
+         * @param lat
+         * @return
+         */
+        private int lowerBound(double lat) {
+            int lo = 0;
+            int hi = mNum;
+            while(lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if(mLats[mid] < lat) {
+                    lo = mid + 1;
+                }
+                else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private DataBaseHelper mHelper;
+    private Cell mCells[];
+    private long mLookupNanos;
+
+    /**
+     * @param helper
+     */
+    public ObstacleCache(DataBaseHelper helper) {
+        mHelper = helper;
+        mCells = new Cell[MAX_CELLS];
+        mLookupNanos = 0;
+    }
+
+    /**
+     * Forget all cells, like after a download
+     */
+    public synchronized void clear() {
+        for(int i = 0; i < MAX_CELLS; i++) {
+            mCells[i] = null;
+        }
+    }
+
+    /**
+     * Obstacles in a box above a height
+     * @param lon
+     * @param lat
+     * @param radiusLon box half width, degrees
+     * @param radiusLat box half height, degrees
+     * @param minHeight only obstacles higher than this, MSL feet
+     * @param outLon
+     * @param outLat
+     * @param outHeight
+     * @return Number of obstacles put in out arrays, at most their length
+     */
+    public synchronized int find(double lon, double lat, double radiusLon, double radiusLat, double minHeight,
+                                 double outLon[], double outLat[], double outHeight[]) {
+        return find(lon, lat, radiusLon, radiusLat, minHeight, outLon, outLat, outHeight, true);
+    }
+
+    /**
+     * Same as find(), from cells kept only, so it never reads the database
+     * @return Number of obstacles put in out arrays, at most their length. -1 if a cell of the box is not kept.
+     */
+    public synchronized int findLoaded(double lon, double lat, double radiusLon, double radiusLat, double minHeight,
+                                       double outLon[], double outLat[], double outHeight[]) {
+        return find(lon, lat, radiusLon, radiusLat, minHeight, outLon, outLat, outHeight, false);
+    }
+
+    /**
+     * Keep cells of a box that are not kept. Reads database without holding up finds, call in background.
+     * @param lon
+     * @param lat
+     * @param radiusLon box half width, degrees
+     * @param radiusLat box half height, degrees
+     */
+    public void load(double lon, double lat, double radiusLon, double radiusLat) {
+        int lon0 = (int)Math.floor(lon - radiusLon);
+        int lon1 = (int)Math.floor(lon + radiusLon);
+        int lat0 = (int)Math.floor(lat - radiusLat);
+        int lat1 = (int)Math.floor(lat + radiusLat);
+        for(int clon = lon0; clon <= lon1; clon++) {
+            for(int clat = lat0; clat <= lat1; clat++) {
+                synchronized(this) {
+                    if(null != getKept(clon, clat)) {
+                        continue;
+                    }
+                }
+                Cell c = mHelper.findObstacles(clon, clat);
+                synchronized(this) {
+                    if(null == getKept(clon, clat)) {
+                        keep(c, lon, lat);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param load false to not read cells that are not kept
+     * @return -1 if not load and a cell is not kept
+     */
+    private int find(double lon, double lat, double radiusLon, double radiusLat, double minHeight,
+                     double outLon[], double outLat[], double outHeight[], boolean load) {
+        long start = System.nanoTime();
+        int num = 0;
+        int lon0 = (int)Math.floor(lon - radiusLon);
+        int lon1 = (int)Math.floor(lon + radiusLon);
+        int lat0 = (int)Math.floor(lat - radiusLat);
+        int lat1 = (int)Math.floor(lat + radiusLat);
+        for(int clon = lon0; clon <= lon1; clon++) {
+            for(int clat = lat0; clat <= lat1; clat++) {
+                Cell c = getKept(clon, clat);
+                if(null == c) {
+                    if(!load) {
+                        return -1;
+                    }
+                    c = mHelper.findObstacles(clon, clat);
+                    keep(c, lon, lat);
+                }
+                if(null == c) {
+                    continue;
+                }
+                for(int i = c.lowerBound(lat - radiusLat); i < c.mNum && c.mLats[i] <= lat + radiusLat; i++) {
+                    if(c.mHeights[i] <= minHeight || Math.abs(c.mLons[i] - lon) > radiusLon) {
+                        continue;
+                    }
+                    if(num >= outLon.length) {
+                        mLookupNanos = System.nanoTime() - start;
+                        return num;
+                    }
+                    outLon[num] = c.mLons[i];
+                    outLat[num] = c.mLats[i];
+                    outHeight[num] = c.mHeights[i];
+                    num++;
+                }
+            }
+        }
+        mLookupNanos = System.nanoTime() - start;
+        return num;
+    }
+
+    /**
+     * Same as database obstacles query, from memory
+     * @param lon
+     * @param lat
+     * @param height
+     * @return Obstacles list that are dangerous
+     */
+    public LinkedList<Obstacle> findObstacles(double lon, double lat, int height) {
+        LinkedList<Obstacle> list = new LinkedList<Obstacle>();
+        int max = 256;
+        double lons[];
+        double lats[];
+        double heights[];
+        int num;
+        do {
+            max *= 2;
+            lons = new double[max];
+            lats = new double[max];
+            heights = new double[max];
+            num = find(lon, lat, Obstacle.RADIUS, Obstacle.RADIUS, height - Obstacle.HEIGHT_BELOW, lons, lats, heights);
+        } while(num == max);
+
+        for(int i = 0; i < num; i++) {
+            list.add(new Obstacle(lons[i], lats[i], (int)heights[i]));
+        }
+        return list;
+    }
+
+    /**
+     * @return ns taken by last find, includes cell loads
+     */
+    public long getLastLookupNanos() {
+        return mLookupNanos;
+    }
+
+    /**
+     * @return bytes in cells kept
+     */
+    public synchronized int getResidentBytes() {
+        int bytes = 0;
+        for(int i = 0; i < MAX_CELLS; i++) {
+            if(null != mCells[i]) {
+                bytes += mCells[i].getBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @param clon
+     * @param clat
+     * @return Cell if kept, else null
+     */
+    private Cell getKept(int clon, int clat) {
+        for(int i = 0; i < MAX_CELLS; i++) {
+            Cell c = mCells[i];
+            if(null != c && c.mLon == clon && c.mLat == clat) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keep a cell. Evicts cell farthest from where we are.
+     * @param c null if it could not be read, then not kept
+     * @param lon
+     * @param lat
+     */
+    private void keep(Cell c, double lon, double lat) {
+        if(null == c) {
+            return;
+        }
+        int evict = -1;
+        double farthest = -1;
+        for(int i = 0; i < MAX_CELLS; i++) {
+            Cell k = mCells[i];
+            if(null == k) {
+                evict = i;
+                break;
+            }
+            double dlon = k.mLon + 0.5 - lon;
+            double dlat = k.mLat + 0.5 - lat;
+            double d = dlon * dlon + dlat * dlat;
+            if(d > farthest) {
+                evict = i;
+                farthest = d;
+            }
+        }
+        mCells[evict] = c;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.ds.avare.R;
+
+/**
+ * Preferences read often, like every frame or every fix, parsed once.
+ * A new snapshot is made whenever any preference changes, this one never changes.
+ */
+public class PreferenceSnapshot {
+
+    private final boolean mTrackUp;
+    private final boolean mNightMode;
+    private final boolean mSimulationMode;
+    private final boolean mAdsbWeather;
+    private final int mLayer;
+    private final int mExpiryTime;
+    private final String mChartType;
+    private final boolean mDynamicFields;
+    private final boolean mCapGrids;
+    private final boolean mObstacles;
+    private final boolean mDrawTracks;
+    private final boolean mShowCdi;
+    private final boolean mGameTfrs;
+    private final int mTimerRingSize;
+    private final String mAirSigMetType;
+    private final boolean mEdgeTape;
+    private final boolean mProfileFrames;
+    private final boolean mRawTiles;
+    private final int mDistanceRingType;
+    private final boolean mRubberBanding;
+    private final int mAdsbTrafficWithin;
+    private final boolean mBackground;
+    private final String mLayerType;
+
+    /**
+     * @param pref
+     * @param ctx
+     */
+    public PreferenceSnapshot(SharedPreferences pref, Context ctx) {
+        mTrackUp = pref.getBoolean(ctx.getString(R.string.TrackUp), false);
+        mNightMode = pref.getBoolean(ctx.getString(R.string.NightMode), false);
+        mSimulationMode = pref.getBoolean(ctx.getString(R.string.SimulationMode), false);
+        mAdsbWeather = pref.getBoolean(ctx.getString(R.string.ADSBWeather), false);
+        mLayer = parseInt(pref.getString(ctx.getString(R.string.Layer), "255"), 255);
+        mExpiryTime = parseInt(pref.getString(ctx.getString(R.string.Expires), "120"), 120);
+        mChartType = pref.getString(ctx.getString(R.string.ChartType), "0");
+        mDynamicFields = pref.getBoolean(ctx.getString(R.string.prefUseDynamicFields), true);
+        mCapGrids = pref.getBoolean(ctx.getString(R.string.CAPGrid), false);
+        mObstacles = pref.getBoolean(ctx.getString(R.string.Obstacles), false);
+        mDrawTracks = pref.getBoolean(ctx.getString(R.string.TrkUpdShowHistory), false);
+        mShowCdi = pref.getBoolean(ctx.getString(R.string.prefShowCDI), false);
+        mGameTfrs = pref.getBoolean(ctx.getString(R.string.GameTFR), false);
+        mTimerRingSize = parseInt(pref.getString(ctx.getString(R.string.prefTimerRingSize), "5"), 5);
+        mAirSigMetType = pref.getString(ctx.getString(R.string.AirSigType), "ALL");
+        mEdgeTape = pref.getBoolean(ctx.getString(R.string.EdgeTape), false);
+        mProfileFrames = pref.getBoolean(ctx.getString(R.string.FrameProfile), false);
+        mRawTiles = pref.getBoolean(ctx.getString(R.string.RawTiles), false);
+        mDistanceRingType = parseInt(pref.getString(ctx.getString(R.string.prefDistanceRingType), "0"), 0);
+        mRubberBanding = pref.getBoolean(ctx.getString(R.string.rubberBand), true);
+        mAdsbTrafficWithin = parseInt(pref.getString(ctx.getString(R.string.ADSBTrafficFilter), "100000"), 100000);
+        mBackground = pref.getBoolean(ctx.getString(R.string.Background), true);
+        mLayerType = pref.getString(ctx.getString(R.string.LayerType), "No Layer");
+    }
+
+    /**
+     * @param val
+     * @param def
+     * @return
+     */
+    private static int parseInt(String val, int def) {
+        try {
+            return Integer.parseInt(val);
+        }
+        catch (Exception e) {
+            return def;
+        }
+    }
+
+    public boolean isTrackUp() {
+        return mTrackUp;
+    }
+
+    public boolean isNightMode() {
+        return mNightMode;
+    }
+
+    public boolean isSimulationMode() {
+        return mSimulationMode;
+    }
+
+    public boolean useAdsbWeather() {
+        return mAdsbWeather;
+    }
+
+    public int showLayer() {
+        return mLayer;
+    }
+
+    public int getExpiryTime() {
+        return mExpiryTime;
+    }
+
+    public String getChartType() {
+        return mChartType;
+    }
+
+    public boolean useDynamicFields() {
+        return mDynamicFields;
+    }
+
+    public boolean showCAPGrids() {
+        return mCapGrids;
+    }
+
+    public boolean shouldShowObstacles() {
+        return mObstacles;
+    }
+
+    public boolean shouldDrawTracks() {
+        return mDrawTracks;
+    }
+
+    public boolean getShowCDI() {
+        return mShowCdi;
+    }
+
+    public boolean showGameTFRs() {
+        return mGameTfrs;
+    }
+
+    public int getTimerRingSize() {
+        return mTimerRingSize;
+    }
+
+    public String getAirSigMetType() {
+        return mAirSigMetType;
+    }
+
+    public boolean shouldShowEdgeTape() {
+        return mEdgeTape;
+    }
+
+    public boolean shouldProfileFrames() {
+        return mProfileFrames;
+    }
+
+    public boolean useRawTiles() {
+        return mRawTiles;
+    }
+
+    public int getDistanceRingType() {
+        return mDistanceRingType;
+    }
+
+    public boolean allowRubberBanding() {
+        return mRubberBanding;
+    }
+
+    public int showAdsbTrafficWithin() {
+        return mAdsbTrafficWithin;
+    }
+
+    public boolean shouldShowBackground() {
+        return mBackground;
+    }
+
+    public String getLayerType() {
+        return mLayerType;
+    }
+}
@@ -106,6 +106,12 @@ public class Preferences {
     public static double NM_TO_KM = 1.852;
     public static double MS_TO_KT = 1.94384;
 
+    /*
+     * Shared by all instances, made again on any change
+     */
+    private static volatile PreferenceSnapshot sSnapshot;
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
     /**
      * @param ctx
      */
@@ -118,6 +124,7 @@ public class Preferences {
          * Set default prefs.
          */
         mPref = PreferenceManager.getDefaultSharedPreferences(mContext);
+        listen(mPref, mContext.getApplicationContext());
         if (getDistanceUnit().equals(mContext.getString(R.string.UnitKnot))) {
             speedConversion = 1.944; // m/s to kt/hr
             heightConversion = 3.28;
@@ -145,6 +152,34 @@ public class Preferences {
         }
     }
 
+    /**
+     * Make snapshot again whenever a preference changes.
+     * Listener is kept here as preferences only keep a weak reference to it.
+     * @param pref
+     * @param ctx
+     */
+    private static synchronized void listen(final SharedPreferences pref, final Context ctx) {
+        if(null != sListener) {
+            return;
+        }
+        sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                sSnapshot = new PreferenceSnapshot(pref, ctx);
+            }
+        };
+        pref.registerOnSharedPreferenceChangeListener(sListener);
+        sSnapshot = new PreferenceSnapshot(pref, ctx);
+    }
+
+    /**
+     * Preferences read often, parsed once, same for all instances
+     * @return
+     */
+    public PreferenceSnapshot getSnapshot() {
+        return sSnapshot;
+    }
+
     /**
      * @return
      */
@@ -323,7 +358,7 @@ public class Preferences {
      * @return
      */
     public boolean shouldShowBackground() {
-        return (mPref.getBoolean(mContext.getString(R.string.Background), true));
+        return getSnapshot().shouldShowBackground();
     }
 
     /**
@@ -337,7 +372,7 @@ public class Preferences {
      * @return
      */
     public boolean shouldShowObstacles() {
-        return (mPref.getBoolean(mContext.getString(R.string.Obstacles), false));
+        return getSnapshot().shouldShowObstacles();
     }
 
     /**
@@ -372,7 +407,7 @@ public class Preferences {
      * @return
      */
     public boolean isSimulationMode() {
-        return (mPref.getBoolean(mContext.getString(R.string.SimulationMode), false));
+        return getSnapshot().isSimulationMode();
     }
 
     // An int value that represents what ICON is used to show current location on
@@ -432,7 +467,7 @@ public class Preferences {
      * @return
      */
     public boolean isNightMode() {
-        return (mPref.getBoolean(mContext.getString(R.string.NightMode), false));
+        return getSnapshot().isNightMode();
     }
 
     /**
@@ -475,14 +510,14 @@ public class Preferences {
      * @return
      */
     public String getChartType() {
-        return (mPref.getString(mContext.getString(R.string.ChartType), "0"));
+        return getSnapshot().getChartType();
     }
 
     /**
      * @return
      */
     public String getAirSigMetType() {
-        return (mPref.getString(mContext.getString(R.string.AirSigType), "ALL"));
+        return getSnapshot().getAirSigMetType();
     }
 
     /**
@@ -578,48 +613,35 @@ public class Preferences {
      * @return
      */
     public boolean shouldDrawTracks() {
-        return (mPref.getBoolean(mContext.getString(R.string.TrkUpdShowHistory), false));
+        return getSnapshot().shouldDrawTracks();
     }
 
     /**
      * @return
      */
     public boolean useAdsbWeather() {
-        return (mPref.getBoolean(mContext.getString(R.string.ADSBWeather), false));
+        return getSnapshot().useAdsbWeather();
     }
 
     /**
      * @return
      */
     public int showLayer() {
-        String val = mPref.getString(mContext.getString(R.string.Layer), "255");
-        try {
-            return (Integer.parseInt(val));
-        } catch (Exception e) {
-        }
-        return 255;
+        return getSnapshot().showLayer();
     }
 
     /**
      * @return
      */
     public int showAdsbTrafficWithin() {
-        try {
-            return (Integer.parseInt(mPref.getString(mContext.getString(R.string.ADSBTrafficFilter), "100000")));
-        } catch (Exception x) {
-            return 100000;
-        }
+        return getSnapshot().showAdsbTrafficWithin();
     }
 
     /**
      * @return
      */
     public int getTimerRingSize() {
-        try {
-            return (Integer.parseInt(mPref.getString(mContext.getString(R.string.prefTimerRingSize), "5")));
-        } catch (Exception x) {
-            return 5;
-        }
+        return getSnapshot().getTimerRingSize();
     }
 
     /**
@@ -628,11 +650,7 @@ public class Preferences {
      * @return
      */
     public int getDistanceRingType() {
-        try {
-            return (Integer.parseInt(mPref.getString(mContext.getString(R.string.prefDistanceRingType), "0")));
-        } catch (Exception x) {
-            return 0;
-        }
+        return getSnapshot().getDistanceRingType();
     }
 
     /**
@@ -672,7 +690,7 @@ public class Preferences {
      * @return
      */
     public boolean useDynamicFields() {
-        return mPref.getBoolean(mContext.getString(R.string.prefUseDynamicFields), true);
+        return getSnapshot().useDynamicFields();
     }
 
     /**
@@ -739,14 +757,14 @@ public class Preferences {
      * @return
      */
     public boolean getShowCDI() {
-        return mPref.getBoolean(mContext.getString(R.string.prefShowCDI), false);
+        return getSnapshot().getShowCDI();
     }
 
     /**
      * @return
      */
     public boolean shouldShowEdgeTape() {
-        return mPref.getBoolean(mContext.getString(R.string.EdgeTape), false);
+        return getSnapshot().shouldShowEdgeTape();
     }
 
     /**
@@ -795,21 +813,21 @@ public class Preferences {
      * @return
      */
     public boolean allowRubberBanding() {
-        return mPref.getBoolean(mContext.getString(R.string.rubberBand), true);
+        return getSnapshot().allowRubberBanding();
     }
 
     /**
      * @return
      */
     public boolean showGameTFRs() {
-        return mPref.getBoolean(mContext.getString(R.string.GameTFR), false);
+        return getSnapshot().showGameTFRs();
     }
 
     /**
      * @return
      */
     public boolean showCAPGrids() {
-        return mPref.getBoolean(mContext.getString(R.string.CAPGrid), false);
+        return getSnapshot().showCAPGrids();
     }
 
     /**
@@ -1033,19 +1051,34 @@ public class Preferences {
      * @return
      */
     public int getExpiryTime() {
-        String exp = mPref.getString(mContext.getString(R.string.Expires), "120");
-        return Integer.parseInt(exp);
+        return getSnapshot().getExpiryTime();
     }
 
     /**
      * @return
      */
     public String getLayerType() {
-        return mPref.getString(mContext.getString(R.string.LayerType), "No Layer");
+        return getSnapshot().getLayerType();
     }
 
     public boolean isTrackUp() {
-        return mPref.getBoolean(mContext.getString(R.string.TrackUp), false);
+        return getSnapshot().isTrackUp();
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public boolean shouldProfileFrames() {
+        return getSnapshot().shouldProfileFrames();
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public boolean useRawTiles() {
+        return getSnapshot().useRawTiles();
     }
 
     public boolean setTrackUp(boolean trackUp) {
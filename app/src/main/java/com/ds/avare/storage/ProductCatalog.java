@@ -0,0 +1,496 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import android.os.SystemClock;
+
+/**
+ * Catalog of installed products (charts, databases, plates...) in the maps folder.
+ * One small manifest file replaces reading each product's version file, and probing plate folders.
+ * Download and delete update it, each change is written whole to a temp file and renamed in place.
+ * An entry is made again from its version file when that file's time is not the one in the catalog,
+ * as after a crash between install and update of the catalog, or a product copied in by hand.
+ * Plate folders copied by hand, or left by a crash before the catalog was updated, are found by their
+ * folder time, which is looked at every CHECK_MS.
+ */
+public class ProductCatalog {
+
+    private static final String FILE = "products.catalog";
+    private static final int MAGIC = 0x41564354; // "AVCT"
+    private static final int VERSION = 4;
+    private static final int BLOCKSIZE = 128;
+    private static final String AD = "AIRPORT-DIAGRAM"; // same as PlatesActivity.AD
+    private static final String PLATES = "plates";
+    private static final String AREA = "area";
+    private static final long CHECK_MS = 10000;
+
+    private static ProductCatalog sInstance;
+
+    private String mFolder;
+    private HashMap<String, Product> mProducts;
+    private HashSet<String> mPlates;
+    private HashSet<String> mDiagrams;
+    private boolean mBuilt;
+    private boolean mPlatesIndexed;
+    private long mPlatesTime;
+    private long mAreaTime;
+    private long mChecked;
+
+    /**
+     * An installed product
+     */
+    public static class Product {
+        private String mName;
+        private String mCycle;
+        private int mFiles;
+        private long mBytes;
+        private String mHash;
+        private boolean mPlates;
+        private boolean mVerified;
+        private long mTime;
+
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @return First line of the product's version file
+         */
+        public String getCycle() {
+            return mCycle;
+        }
+
+        /**
+         * @return Files installed, -1 if not known as it was not installed by a download
+         */
+        public int getFiles() {
+            return mFiles;
+        }
+
+        /**
+         * @return Bytes installed, -1 if not known as it was not installed by a download
+         */
+        public long getBytes() {
+            return mBytes;
+        }
+
+        /**
+         * @return MD5 of the downloaded zip, empty if not known
+         */
+        public String getHash() {
+            return mHash;
+        }
+
+        /**
+         * @return true if its zip matched a hash from server, false if server had none
+         */
+        public boolean isVerified() {
+            return mVerified;
+        }
+
+        /**
+         * @return true if it has plates or area plates
+         */
+        public boolean hasPlates() {
+            return mPlates;
+        }
+    }
+
+    /**
+     * @param folder maps folder
+     * @return Catalog of this folder, loaded from its manifest
+     */
+    public static synchronized ProductCatalog getInstance(String folder) {
+        if(null == sInstance || !sInstance.mFolder.equals(folder)) {
+            sInstance = new ProductCatalog(folder);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param folder
+     */
+    private ProductCatalog(String folder) {
+        mFolder = folder;
+        mProducts = new HashMap<String, Product>();
+        mPlates = new HashSet<String>();
+        mDiagrams = new HashSet<String>();
+        load();
+    }
+
+    /**
+     * @return false until the catalog has been made from installed files once
+     */
+    public synchronized boolean isBuilt() {
+        return mBuilt;
+    }
+
+    /**
+     * Make the catalog from version files of products already installed. Call in background.
+     * @param names all product names
+     */
+    public void build(String names[]) {
+        HashMap<String, Product> products = new HashMap<String, Product>();
+        for(String name : names) {
+            Product p = read(name);
+            if(null != p) {
+                products.put(name, p);
+            }
+        }
+        synchronized(this) {
+            mProducts = products;
+            mBuilt = true;
+        }
+        reindexPlates();
+    }
+
+    /**
+     * A product was installed.
+     * @param name
+     * @param files number of files installed
+     * @param bytes size of files installed
+     * @param hash of the downloaded zip
+     * @param verified true if hash matched the one from server
+     */
+    public void put(String name, int files, long bytes, String hash, boolean verified) {
+        Product p = read(name);
+        synchronized(this) {
+            if(null != p) {
+                p.mFiles = files;
+                p.mBytes = bytes;
+                p.mHash = null == hash ? "" : hash;
+                p.mVerified = verified;
+                mProducts.put(name, p);
+            }
+            if(null == p || !p.mPlates) {
+                save();
+                return;
+            }
+        }
+        reindexPlates();
+    }
+
+    /**
+     * A product was deleted.
+     * @param name
+     */
+    public void remove(String name) {
+        synchronized(this) {
+            Product p = mProducts.remove(name);
+            // not known, it may have had plates
+            if(null != p && !p.mPlates) {
+                save();
+                return;
+            }
+        }
+        reindexPlates();
+    }
+
+    /**
+     * @param name
+     * @return Product if installed, else null
+     */
+    public Product get(String name) {
+        return check(name);
+    }
+
+    /**
+     * @param name
+     * @return Cycle / version of installed product, null if not installed
+     */
+    public String getCycle(String name) {
+        Product p = check(name);
+        return null == p ? null : p.mCycle;
+    }
+
+    /**
+     * Entry of a product, read again from its version file if the file is not as the catalog has it
+     * @param name
+     * @return null if not installed
+     */
+    private Product check(String name) {
+        // 0 when missing
+        long time = new File(mFolder + "/" + name).lastModified();
+        synchronized(this) {
+            Product p = mProducts.get(name);
+            if(null == p ? 0 == time : p.mTime == time) {
+                return p;
+            }
+        }
+        Product p = read(name);
+        synchronized(this) {
+            if(null == p) {
+                mProducts.remove(name);
+            }
+            else {
+                mProducts.put(name, p);
+            }
+            save();
+        }
+        return p;
+    }
+
+    /**
+     * @param id airport
+     * @return true if there are plates or area plates for this airport
+     */
+    public boolean hasPlates(String id) {
+        checkPlates();
+        synchronized(this) {
+            if(mPlatesIndexed) {
+                return mPlates.contains(id);
+            }
+        }
+        return new File(mFolder + "/" + PLATES + "/" + id).exists() || new File(mFolder + "/" + AREA + "/" + id).exists();
+    }
+
+    /**
+     * @param id airport
+     * @return true if there is an airport diagram for this airport
+     */
+    public boolean hasDiagram(String id) {
+        checkPlates();
+        synchronized(this) {
+            if(mPlatesIndexed) {
+                if(mDiagrams.contains(id)) {
+                    return true;
+                }
+                if(!mPlates.contains(id)) {
+                    return false;
+                }
+                // a diagram may have been added to plates already there, look
+            }
+        }
+        return new File(mFolder + "/" + PLATES + "/" + id + "/" + AD + Preferences.IMAGE_EXTENSION).exists();
+    }
+
+    /**
+     * Product from its version file: cycle on the first line, then its files.
+     * Files and bytes are not known.
+     * @param name
+     * @return null if not installed
+     */
+    private Product read(String name) {
+        File file = new File(mFolder + "/" + name);
+        // time before reading, so a change while reading is found next time
+        long time = file.lastModified();
+        if(0 == time) {
+            return null;
+        }
+        Product p = new Product();
+        p.mName = name;
+        p.mHash = "";
+        p.mFiles = -1;
+        p.mBytes = -1;
+        p.mTime = time;
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(file), BLOCKSIZE);
+            try {
+                p.mCycle = br.readLine();
+                String line;
+                while(null != (line = br.readLine())) {
+                    if(line.startsWith(PLATES + "/") || line.startsWith(AREA + "/")
+                            || line.equals(PLATES) || line.equals(AREA)) {
+                        p.mPlates = true;
+                    }
+                }
+            }
+            finally {
+                br.close();
+            }
+        }
+        catch(IOException e) {
+        }
+        return null == p.mCycle ? null : p;
+    }
+
+    /**
+     * Reindex plates if their folders changed since indexed, not more often than CHECK_MS
+     */
+    private void checkPlates() {
+        long now = SystemClock.elapsedRealtime();
+        synchronized(this) {
+            if(!mPlatesIndexed || (mChecked != 0 && now - mChecked < CHECK_MS)) {
+                return;
+            }
+            mChecked = now;
+            if(new File(mFolder + "/" + PLATES).lastModified() == mPlatesTime
+                    && new File(mFolder + "/" + AREA).lastModified() == mAreaTime) {
+                return;
+            }
+        }
+        reindexPlates();
+    }
+
+    /**
+     * Index plates from folders, and save
+     */
+    private void reindexPlates() {
+        HashSet<String> plates = new HashSet<String>();
+        HashSet<String> diagrams = new HashSet<String>();
+        // times before listing, so a change while listing is found next check
+        long platesTime = new File(mFolder + "/" + PLATES).lastModified();
+        long areaTime = new File(mFolder + "/" + AREA).lastModified();
+        indexPlates(plates, diagrams);
+
+        synchronized(this) {
+            mPlates = plates;
+            mDiagrams = diagrams;
+            mPlatesTime = platesTime;
+            mAreaTime = areaTime;
+            mPlatesIndexed = true;
+            save();
+        }
+    }
+
+    /**
+     * Airports with plates / area plates, and with diagrams
+     * @param plates
+     * @param diagrams
+     */
+    private void indexPlates(HashSet<String> plates, HashSet<String> diagrams) {
+        String ids[] = new File(mFolder + "/" + PLATES).list();
+        if(null != ids) {
+            for(String id : ids) {
+                plates.add(id);
+                if(new File(mFolder + "/" + PLATES + "/" + id + "/" + AD + Preferences.IMAGE_EXTENSION).exists()) {
+                    diagrams.add(id);
+                }
+            }
+        }
+        ids = new File(mFolder + "/" + AREA).list();
+        if(null != ids) {
+            for(String id : ids) {
+                plates.add(id);
+            }
+        }
+    }
+
+    /**
+     * Read manifest, empty catalog if missing or corrupt
+     */
+    private void load() {
+        File file = new File(mFolder + "/" + FILE);
+        if(!file.exists()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return;
+                }
+                boolean built = in.readBoolean();
+                long platesTime = in.readLong();
+                long areaTime = in.readLong();
+                HashMap<String, Product> products = new HashMap<String, Product>();
+                int count = in.readInt();
+                for(int i = 0; i < count; i++) {
+                    Product p = new Product();
+                    p.mName = in.readUTF();
+                    p.mCycle = in.readUTF();
+                    p.mFiles = in.readInt();
+                    p.mBytes = in.readLong();
+                    p.mHash = in.readUTF();
+                    p.mPlates = in.readBoolean();
+                    p.mVerified = in.readBoolean();
+                    p.mTime = in.readLong();
+                    products.put(p.mName, p);
+                }
+                HashSet<String> plates = new HashSet<String>();
+                count = in.readInt();
+                for(int i = 0; i < count; i++) {
+                    plates.add(in.readUTF());
+                }
+                HashSet<String> diagrams = new HashSet<String>();
+                count = in.readInt();
+                for(int i = 0; i < count; i++) {
+                    diagrams.add(in.readUTF());
+                }
+                mProducts = products;
+                mPlates = plates;
+                mDiagrams = diagrams;
+                mPlatesTime = platesTime;
+                mAreaTime = areaTime;
+                mPlatesIndexed = true;
+                mBuilt = built;
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch(IOException e) {
+        }
+    }
+
+    /**
+     * Write manifest to a temp file and rename, so a crash leaves the old one
+     */
+    private void save() {
+        File file = new File(mFolder + "/" + FILE);
+        File tmp = new File(mFolder + "/" + FILE + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeBoolean(mBuilt);
+                out.writeLong(mPlatesTime);
+                out.writeLong(mAreaTime);
+                out.writeInt(mProducts.size());
+                for(Product p : mProducts.values()) {
+                    out.writeUTF(p.mName);
+                    out.writeUTF(p.mCycle);
+                    out.writeInt(p.mFiles);
+                    out.writeLong(p.mBytes);
+                    out.writeUTF(p.mHash);
+                    out.writeBoolean(p.mPlates);
+                    out.writeBoolean(p.mVerified);
+                    out.writeLong(p.mTime);
+                }
+                out.writeInt(mPlates.size());
+                for(String id : mPlates) {
+                    out.writeUTF(id);
+                }
+                out.writeInt(mDiagrams.size());
+                for(String id : mDiagrams) {
+                    out.writeUTF(id);
+                }
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch(IOException e) {
+            tmp.delete();
+            return;
+        }
+        if(!tmp.renameTo(file)) {
+            file.delete();
+            tmp.renameTo(file);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.terrain;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.ds.avare.utils.Helper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A raw elevation tile, memory mapped.
+ * Same tiling as elevation chart tiles. File is a header then rows of 16 bit heights in feet, north row first.
+ *
+ * Header (big endian): int MAGIC, int VERSION, int width, int height
+ */
+public class DemTile {
+
+    public static final String EXTENSION = ".dem";
+
+    public static final int MAGIC = 0x44454D31; // "DEM1"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    /**
+     * Height that is not known
+     */
+    public static final short NO_DATA = Short.MIN_VALUE;
+
+    private int mTx;
+    private int mTy;
+    private int mWidth;
+    private int mHeight;
+    private ByteBuffer mData;
+    private long mLastUsed;
+
+    /**
+     * Map a DEM file
+     * @param file
+     * @param tx tile col
+     * @param ty tile row
+     * @return null if not a valid DEM file
+     */
+    public static DemTile map(File file, int tx, int ty) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel fc = raf.getChannel();
+            MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            if(buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                return null;
+            }
+            int width = buf.getInt(8);
+            int height = buf.getInt(12);
+            if(width <= 0 || height <= 0 || buf.capacity() < HEADER_SIZE + width * height * 2) {
+                return null;
+            }
+            DemTile t = new DemTile();
+            t.mTx = tx;
+            t.mTy = ty;
+            t.mWidth = width;
+            t.mHeight = height;
+            t.mData = buf;
+            return t;
+        }
+        catch (Exception e) {
+            return null;
+        }
+        finally {
+            // Mapping stays valid after close
+            try {
+                if(null != raf) {
+                    raf.close();
+                }
+            }
+            catch (Exception e) {
+            }
+        }
+    }
+
+    /**
+     * Make a DEM file from an elevation chart tile. Written to a temp file then renamed,
+     * so a reader never sees half a file.
+     * @param png elevation chart tile
+     * @param dem DEM file to make
+     * @return true if made
+     */
+    public static boolean convert(File png, File dem) {
+        BitmapFactory.Options opt = new BitmapFactory.Options();
+        opt.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap b;
+        try {
+            b = BitmapFactory.decodeFile(png.getAbsolutePath(), opt);
+        }
+        catch (OutOfMemoryError e) {
+            return false;
+        }
+        if(null == b) {
+            return false;
+        }
+
+        File tmp = new File(dem.getAbsolutePath() + ".tmp");
+        DataOutputStream out = null;
+        boolean ret = false;
+        try {
+            int width = b.getWidth();
+            int height = b.getHeight();
+            int row[] = new int[width];
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 16384));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            for(int y = 0; y < height; y++) {
+                b.getPixels(row, 0, width, 0, y, width, 1);
+                for(int x = 0; x < width; x++) {
+                    out.writeShort((int)Math.round(Helper.findElevationFromPixel(row[x])));
+                }
+            }
+            out.close();
+            out = null;
+            ret = tmp.renameTo(dem);
+        }
+        catch (Exception e) {
+            ret = false;
+        }
+        finally {
+            try {
+                if(null != out) {
+                    out.close();
+                }
+            }
+            catch (Exception e) {
+            }
+            if(!ret) {
+                tmp.delete();
+            }
+            b.recycle();
+        }
+        return ret;
+    }
+
+    /**
+     * @return tile col
+     */
+    public int getTx() {
+        return mTx;
+    }
+
+    /**
+     * @return tile row
+     */
+    public int getTy() {
+        return mTy;
+    }
+
+    /**
+     * @return
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return
+     */
+    public long getLastUsed() {
+        return mLastUsed;
+    }
+
+    /**
+     * @param time
+     */
+    public void setLastUsed(long time) {
+        mLastUsed = time;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return Height at a sample
+     */
+    public short get(int x, int y) {
+        return mData.getShort(HEADER_SIZE + ((y * mWidth + x) << 1));
+    }
+
+    /**
+     * Bilinear height between samples. Sample x, y is at x, y. Outside is clamped to the edge.
+     * @param x
+     * @param y
+     * @return Height in feet, NO_DATA if not known
+     */
+    public double sample(double x, double y) {
+        if(x < 0) {
+            x = 0;
+        }
+        else if(x > mWidth - 1) {
+            x = mWidth - 1;
+        }
+        if(y < 0) {
+            y = 0;
+        }
+        else if(y > mHeight - 1) {
+            y = mHeight - 1;
+        }
+        int x0 = (int)x;
+        int y0 = (int)y;
+        int x1 = Math.min(x0 + 1, mWidth - 1);
+        int y1 = Math.min(y0 + 1, mHeight - 1);
+        double fx = x - x0;
+        double fy = y - y0;
+
+        short h00 = get(x0, y0);
+        short h10 = get(x1, y0);
+        short h01 = get(x0, y1);
+        short h11 = get(x1, y1);
+        if(h00 == NO_DATA || h10 == NO_DATA || h01 == NO_DATA || h11 == NO_DATA) {
+            // Use closest sample then
+            return get(fx < 0.5 ? x0 : x1, fy < 0.5 ? y0 : y1);
+        }
+
+        double top = h00 + (h10 - h00) * fx;
+        double bottom = h01 + (h11 - h01) * fx;
+        return top + (bottom - top) * fy;
+    }
+}
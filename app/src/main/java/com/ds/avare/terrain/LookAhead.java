@@ -0,0 +1,502 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.terrain;
+
+import com.ds.avare.StorageService;
+import com.ds.avare.gps.GpsParams;
+import com.ds.avare.gps.NavState;
+import com.ds.avare.place.Destination;
+import com.ds.avare.place.Plan;
+import com.ds.avare.position.Projection;
+import com.ds.avare.storage.DataSource;
+import com.ds.avare.storage.ObstacleCache;
+import com.ds.avare.storage.Preferences;
+import com.ds.avare.utils.Helper;
+import com.ds.avare.utils.TaskExecutor;
+
+/**
+ * Looks at terrain and obstacles along where the aircraft will be in the next LOOK_AHEAD_SECONDS.
+ * Track is the active plan from the next way point on, or straight ahead on present track.
+ * Altitude follows the present vertical speed.
+ * Runs on the Scheduler every PERIOD_MS, one cycle per run, and stops sampling a cycle at BUDGET_MS.
+ * A cycle only reads terrain tiles and obstacle cells already in memory. What is missing is loaded
+ * on TaskExecutor.TERRAIN for next cycles, and the cycle is marked not complete.
+ * Near the airport of departure or destination, being low is expected and not a conflict.
+ */
+public class LookAhead implements Runnable {
+
+    public static final int LOOK_AHEAD_SECONDS = 120;
+    public static final long PERIOD_MS = 1000;
+    public static final long BUDGET_MS = 50;
+
+    /**
+     * Less than this above terrain / obstacle is a conflict
+     */
+    public static final double MIN_CLEARANCE = 500;
+
+    /*
+     * Obstacles closer than this to track count, nm
+     */
+    private static final double OBSTACLE_RADIUS_NM = 0.5;
+
+    /*
+     * No conflict this close to the departure or destination airport, nm. Pattern and final.
+     */
+    private static final double AIRPORT_RADIUS_NM = 3;
+
+    /*
+     * No look ahead below this speed, knots. Taxi.
+     */
+    private static final double MIN_SPEED_KT = 30;
+
+    /*
+     * Vertical speed used is limited to this, ft/min
+     */
+    private static final double MAX_VSI = 3000;
+
+    private static final int MAX_SAMPLES = 256;
+    private static final int CHUNK = 32;
+
+    /*
+     * About DEM sample spacing, nm
+     */
+    private static final double SPACING_NM = 0.1;
+
+    private static final double EARTH_RADIUS_NM = 3440.069;
+
+    /**
+     * What was found in one cycle. Not changed after it is made.
+     */
+    public static class Result {
+        // when made, ms
+        public final long time;
+        // samples looked at, and all asked for were looked at with their terrain and obstacles known.
+        // A result that is not complete and has no conflict is not clear.
+        public final int samples;
+        public final boolean complete;
+        // ms the cycle took
+        public final long cycleMs;
+        // least feet above terrain / obstacle, Double.MAX_VALUE if no data
+        public final double minClearance;
+        // first point with less than MIN_CLEARANCE
+        public final boolean conflict;
+        public final boolean conflictObstacle;
+        public final double conflictLon;
+        public final double conflictLat;
+        public final int conflictSeconds;
+
+        Result(long time, int samples, boolean complete, long cycleMs, double minClearance,
+               boolean conflict, boolean conflictObstacle, double conflictLon, double conflictLat, int conflictSeconds) {
+            this.time = time;
+            this.samples = samples;
+            this.complete = complete;
+            this.cycleMs = cycleMs;
+            this.minClearance = minClearance;
+            this.conflict = conflict;
+            this.conflictObstacle = conflictObstacle;
+            this.conflictLon = conflictLon;
+            this.conflictLat = conflictLat;
+            this.conflictSeconds = conflictSeconds;
+        }
+    }
+
+    private StorageService mService;
+    private Preferences mPref;
+    private volatile Result mResult;
+
+    /*
+     * Samples of track
+     */
+    private int mNum;
+    private double mLon[];
+    private double mLat[];
+    private double mAlt[];
+    private double mSeconds[];
+    private double mElev[];
+
+    /*
+     * Obstacles near track
+     */
+    private int mNumObstacles;
+    private double mObsLon[];
+    private double mObsLat[];
+    private double mObsHeight[];
+
+    /*
+     * Box of obstacles looked at
+     */
+    private double mBoxLon;
+    private double mBoxLat;
+    private double mBoxRadiusLon;
+    private double mBoxRadiusLat;
+
+    /*
+     * Airports where low is expected
+     */
+    private int mNumAirports;
+    private double mAirportLon[];
+    private double mAirportLat[];
+
+    // a load is queued on the terrain thread
+    private volatile boolean mLoading;
+
+    /**
+     * @param service
+     */
+    public LookAhead(StorageService service) {
+        mService = service;
+        mPref = new Preferences(service.getApplicationContext());
+        mResult = null;
+        mLon = new double[MAX_SAMPLES];
+        mLat = new double[MAX_SAMPLES];
+        mAlt = new double[MAX_SAMPLES];
+        mSeconds = new double[MAX_SAMPLES];
+        mElev = new double[MAX_SAMPLES];
+        mNumObstacles = 0;
+        mObsLon = new double[64];
+        mObsLat = new double[64];
+        mObsHeight = new double[64];
+        mAirportLon = new double[2];
+        mAirportLat = new double[2];
+        mLoading = false;
+    }
+
+    /**
+     * @return Last result, null if not looking ahead (like on ground or no terrain data)
+     */
+    public Result getResult() {
+        return mResult;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        try {
+            mResult = cycle(start);
+        }
+        catch (Exception e) {
+            // Plan changed under us, try next cycle
+            mResult = null;
+        }
+    }
+
+    /**
+     * One look ahead
+     * @param start
+     * @return
+     */
+    private Result cycle(long start) {
+        // position and VSI from the same fix
+        NavState state = mService.getNavState();
+        if(null == state) {
+            return null;
+        }
+        GpsParams params = state.getParams();
+        double speed = Helper.getSpeedInKnots(params.getSpeed());
+        if(speed < MIN_SPEED_KT) {
+            return null;
+        }
+
+        double vsi = state.getVsi();
+        vsi = Math.max(-MAX_VSI, Math.min(MAX_VSI, vsi));
+        makeTrack(params, speed, vsi);
+
+        boolean obstacles = findObstacles(params, speed * LOOK_AHEAD_SECONDS / 3600.0);
+        findAirports();
+
+        /*
+         * Terrain in chunks so budget is checked often
+         */
+        TerrainService terrain = mService.getTerrain();
+        int done = 0;
+        int skipped = 0;
+        while(done < mNum) {
+            int n = Math.min(CHUNK, mNum - done);
+            for(int i = done; i < done + n; i++) {
+                mElev[i] = terrain.getLoadedElevation(mLon[i], mLat[i]);
+                if(TerrainService.NOT_LOADED == mElev[i]) {
+                    skipped++;
+                }
+            }
+            done += n;
+            if(System.currentTimeMillis() - start > BUDGET_MS) {
+                break;
+            }
+        }
+        if(skipped > 0 || !obstacles) {
+            load(terrain, obstacles);
+        }
+        boolean complete = done == mNum && skipped == 0 && obstacles;
+
+        /*
+         * Clearance along track, first conflict.
+         * Not at present position, it is where we are, not where we will be.
+         */
+        double cosLat = Math.cos(Math.toRadians(params.getLatitude()));
+        double min = Double.MAX_VALUE;
+        int conflict = -1;
+        boolean conflictObstacle = false;
+        boolean known = false;
+        for(int i = 1; i < done; i++) {
+            if(isNearAirport(mLon[i], mLat[i], cosLat)) {
+                continue;
+            }
+            if(mElev[i] != TerrainService.NO_DATA && mElev[i] != TerrainService.NOT_LOADED) {
+                known = true;
+                double c = mAlt[i] - mElev[i];
+                if(c < min) {
+                    min = c;
+                }
+                if(c < MIN_CLEARANCE && conflict < 0) {
+                    conflict = i;
+                    conflictObstacle = false;
+                }
+            }
+            for(int o = 0; o < mNumObstacles; o++) {
+                double dx = (mObsLon[o] - mLon[i]) * 60 * cosLat;
+                double dy = (mObsLat[o] - mLat[i]) * 60;
+                if(dx * dx + dy * dy > OBSTACLE_RADIUS_NM * OBSTACLE_RADIUS_NM) {
+                    continue;
+                }
+                known = true;
+                double c = mAlt[i] - mObsHeight[o];
+                if(c < min) {
+                    min = c;
+                }
+                if(c < MIN_CLEARANCE && conflict < 0) {
+                    conflict = i;
+                    conflictObstacle = true;
+                }
+            }
+        }
+
+        if(!known && complete) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if(conflict < 0) {
+            return new Result(now, done, complete, now - start, min, false, false, 0, 0, 0);
+        }
+        return new Result(now, done, complete, now - start, min, true, conflictObstacle,
+                mLon[conflict], mLat[conflict], (int)Math.round(mSeconds[conflict]));
+    }
+
+    /**
+     * Load terrain tiles and obstacle cells along track on the terrain thread, for next cycles.
+     * One load at a time.
+     * @param terrain
+     * @param obstacles true if obstacles are all there
+     */
+    private void load(final TerrainService terrain, boolean obstacles) {
+        if(mLoading) {
+            return;
+        }
+        mLoading = true;
+        final double lon[] = new double[mNum];
+        final double lat[] = new double[mNum];
+        System.arraycopy(mLon, 0, lon, 0, mNum);
+        System.arraycopy(mLat, 0, lat, 0, mNum);
+        final ObstacleCache cache = obstacles ? null : mService.getDBResource().getObstacleCache();
+        final double boxLon = mBoxLon;
+        final double boxLat = mBoxLat;
+        final double radiusLon = mBoxRadiusLon;
+        final double radiusLat = mBoxRadiusLat;
+        TaskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if(null != cache) {
+                        cache.load(boxLon, boxLat, radiusLon, radiusLat);
+                    }
+                    terrain.prefetch(lon, lat, lon.length);
+                }
+                finally {
+                    mLoading = false;
+                }
+            }
+        }, TaskExecutor.TERRAIN);
+    }
+
+    /**
+     * Departure and destination airports of the active plan, else the destination if an airport
+     */
+    private void findAirports() {
+        mNumAirports = 0;
+        Plan plan = mService.getPlan();
+        if(null != plan && plan.isActive() && plan.getDestinationNumber() > 0) {
+            addAirport(plan.getDestination(0));
+            addAirport(plan.getDestination(plan.getDestinationNumber() - 1));
+        }
+        else {
+            addAirport(mService.getDestination());
+        }
+    }
+
+    /**
+     * @param d
+     */
+    private void addAirport(Destination d) {
+        if(null == d || !Destination.BASE.equals(d.getType()) || mNumAirports >= mAirportLon.length) {
+            return;
+        }
+        mAirportLon[mNumAirports] = d.getLongitude();
+        mAirportLat[mNumAirports] = d.getLatitude();
+        mNumAirports++;
+    }
+
+    /**
+     * @param lon
+     * @param lat
+     * @param cosLat
+     * @return true if within AIRPORT_RADIUS_NM of departure or destination
+     */
+    private boolean isNearAirport(double lon, double lat, double cosLat) {
+        for(int a = 0; a < mNumAirports; a++) {
+            double dx = (mAirportLon[a] - lon) * 60 * cosLat;
+            double dy = (mAirportLat[a] - lat) * 60;
+            if(dx * dx + dy * dy < AIRPORT_RADIUS_NM * AIRPORT_RADIUS_NM) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Samples from present position on track, plan or straight ahead
+     * @param params
+     * @param speed knots
+     * @param vsi ft/min
+     */
+    private void makeTrack(GpsParams params, double speed, double vsi) {
+        double total = speed * LOOK_AHEAD_SECONDS / 3600.0;
+        double step = Math.max(SPACING_NM, total / (MAX_SAMPLES - 1));
+
+        double lon = params.getLongitude();
+        double lat = params.getLatitude();
+        double alt = params.getAltitude();
+        mNum = 0;
+        addSample(lon, lat, alt, 0);
+
+        double along = 0;
+        double brg = params.getBearing();
+        Plan plan = mService.getPlan();
+        if(null != plan && plan.isActive()) {
+            int num = plan.getDestinationNumber();
+            for(int id = plan.findNextNotPassed(); id >= 0 && id < num && along < total; id++) {
+                Destination d = plan.getDestination(id);
+                if(null == d) {
+                    break;
+                }
+                along = addLeg(lon, lat, d.getLongitude(), d.getLatitude(), along, total, step, speed, vsi, alt);
+                brg = Projection.getStaticBearing(lon, lat, d.getLongitude(), d.getLatitude());
+                lon = d.getLongitude();
+                lat = d.getLatitude();
+            }
+        }
+
+        if(along < total) {
+            // Straight ahead for rest of time, on present track if no plan, else on past last way point
+            double b = Math.toRadians(brg);
+            double d = (total - along) / EARTH_RADIUS_NM;
+            double lat0 = Math.toRadians(lat);
+            double lon0 = Math.toRadians(lon);
+            double lat1 = Math.asin(Math.sin(lat0) * Math.cos(d) + Math.cos(lat0) * Math.sin(d) * Math.cos(b));
+            double lon1 = lon0 + Math.atan2(Math.sin(b) * Math.sin(d) * Math.cos(lat0), Math.cos(d) - Math.sin(lat0) * Math.sin(lat1));
+            addLeg(lon, lat, Math.toDegrees(lon1), Math.toDegrees(lat1), along, total, step, speed, vsi, alt);
+        }
+    }
+
+    /**
+     * Samples from one point to another. Points are close, so straight in lon / lat.
+     * @return distance along track at end of leg, nm
+     */
+    private double addLeg(double lon0, double lat0, double lon1, double lat1, double along, double total,
+                          double step, double speed, double vsi, double alt) {
+        double cosLat = Math.cos(Math.toRadians((lat0 + lat1) / 2));
+        double dx = (lon1 - lon0) * 60 * cosLat;
+        double dy = (lat1 - lat0) * 60;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if(length <= 0) {
+            return along;
+        }
+
+        // Next sample on the step grid from track start
+        double next = (Math.floor(along / step) + 1) * step;
+        while(next <= along + length && next <= total && mNum < MAX_SAMPLES) {
+            double f = (next - along) / length;
+            double seconds = next / speed * 3600;
+            addSample(lon0 + (lon1 - lon0) * f, lat0 + (lat1 - lat0) * f, alt + vsi * seconds / 60, seconds);
+            next += step;
+        }
+        return along + length;
+    }
+
+    /**
+     * @param lon
+     * @param lat
+     * @param alt
+     * @param seconds
+     */
+    private void addSample(double lon, double lat, double alt, double seconds) {
+        if(mNum >= MAX_SAMPLES) {
+            return;
+        }
+        mLon[mNum] = lon;
+        mLat[mNum] = lat;
+        mAlt[mNum] = alt;
+        mSeconds[mNum] = seconds;
+        mElev[mNum] = TerrainService.NO_DATA;
+        mNum++;
+    }
+
+    /**
+     * Obstacles around track from memory, where they are higher than MIN_CLEARANCE below us
+     * @param params
+     * @param total length of track, nm
+     * @return false if obstacle cells of track are not all in memory
+     */
+    private boolean findObstacles(GpsParams params, double total) {
+        mNumObstacles = 0;
+        if(!mPref.shouldShowObstacles()) {
+            return true;
+        }
+        DataSource ds = mService.getDBResource();
+        if(null == ds) {
+            return true;
+        }
+        mBoxLon = params.getLongitude();
+        mBoxLat = params.getLatitude();
+        mBoxRadiusLat = (total + OBSTACLE_RADIUS_NM) / 60;
+        mBoxRadiusLon = mBoxRadiusLat / Math.max(0.1, Math.cos(Math.toRadians(mBoxLat)));
+        double minHeight = Math.min(params.getAltitude(), mAlt[mNum - 1]) - MIN_CLEARANCE;
+        ObstacleCache cache = ds.getObstacleCache();
+        while(true) {
+            mNumObstacles = cache.findLoaded(mBoxLon, mBoxLat, mBoxRadiusLon, mBoxRadiusLat, minHeight,
+                    mObsLon, mObsLat, mObsHeight);
+            if(mNumObstacles < 0) {
+                mNumObstacles = 0;
+                return false;
+            }
+            if(mNumObstacles < mObsLon.length) {
+                return true;
+            }
+            mObsLon = new double[mObsLon.length * 2];
+            mObsLat = new double[mObsLat.length * 2];
+            mObsHeight = new double[mObsHeight.length * 2];
+        }
+    }
+}
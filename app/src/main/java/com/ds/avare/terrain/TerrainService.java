@@ -0,0 +1,304 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.terrain;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.ds.avare.R;
+import com.ds.avare.position.Epsg900913;
+import com.ds.avare.shapes.Tile;
+import com.ds.avare.storage.Preferences;
+import com.ds.avare.utils.BitmapHolder;
+import com.ds.avare.utils.Helper;
+
+import java.io.File;
+
+/**
+ * Terrain height from raw DEM tiles, for AGL, ground proximity, and profiles.
+ * DEM tiles are made from elevation chart tiles the first time they are needed, or when the chart is newer.
+ * A few tiles are kept mapped. Queries do not allocate once tiles are mapped.
+ * Tiles are mapped and made outside the lock, so a query of mapped tiles never waits on a slow one.
+ */
+public class TerrainService {
+
+    /**
+     * Height that is not known
+     */
+    public static final double NO_DATA = DemTile.NO_DATA;
+
+    /**
+     * Height of a point whose tile is not mapped yet, from getLoadedElevation()
+     */
+    public static final double NOT_LOADED = -Double.MAX_VALUE;
+
+    /*
+     * Tiles kept mapped. Enough for a look ahead across a tile corner.
+     */
+    private static final int MAX_TILES = 6;
+
+    /*
+     * Do not look for a missing tile again for this long
+     */
+    private static final long MISSING_RETRY_MS = 60 * 1000;
+    private static final int MAX_MISSING = 32;
+
+    private Preferences mPref;
+    private double mZoom;
+    private String mExtension;
+
+    private DemTile mTiles[];
+    private long mMissing[];
+    private long mMissingTime[];
+    private int mMissingNext;
+    // changes on reload, a tile mapped from before it is not kept
+    private int mGeneration;
+
+    /**
+     * @param ctx
+     */
+    public TerrainService(Context ctx) {
+        mPref = new Preferences(ctx);
+        int index = Integer.valueOf(Tile.ELEVATION_INDEX);
+        mZoom = Integer.valueOf(ctx.getResources().getStringArray(R.array.ChartMaxZooms)[index]);
+        mExtension = ctx.getResources().getStringArray(R.array.ChartFileExtesion)[index];
+        mTiles = new DemTile[MAX_TILES];
+        mMissing = new long[MAX_MISSING];
+        mMissingTime = new long[MAX_MISSING];
+        mMissingNext = 0;
+    }
+
+    /**
+     * Forget all tiles, like after a download
+     */
+    public synchronized void forceReload() {
+        for(int i = 0; i < MAX_TILES; i++) {
+            mTiles[i] = null;
+        }
+        for(int i = 0; i < MAX_MISSING; i++) {
+            mMissingTime[i] = 0;
+        }
+        mGeneration++;
+    }
+
+    /**
+     * Height of terrain, mapping or making its tile if needed
+     * @param lon
+     * @param lat
+     * @return Height in feet, NO_DATA if not known
+     */
+    public double getElevation(double lon, double lat) {
+        double h = sample(lon, lat);
+        if(NOT_LOADED == h) {
+            prefetch(lon, lat);
+            h = sample(lon, lat);
+        }
+        return NOT_LOADED == h ? NO_DATA : h;
+    }
+
+    /**
+     * Height of terrain from tiles already mapped. Never maps or makes a tile, so it is quick.
+     * @param lon
+     * @param lat
+     * @return Height in feet, NO_DATA if not known, NOT_LOADED if its tile is not mapped yet
+     */
+    public double getLoadedElevation(double lon, double lat) {
+        return sample(lon, lat);
+    }
+
+    /**
+     * Height of terrain at many points
+     * @param lon
+     * @param lat
+     * @param num number of points
+     * @param out Heights in feet, NO_DATA if not known
+     */
+    public void getElevations(double lon[], double lat[], int num, double out[]) {
+        for(int i = 0; i < num; i++) {
+            out[i] = getElevation(lon[i], lat[i]);
+        }
+    }
+
+    /**
+     * Map tiles under points, making them from elevation chart tiles if needed.
+     * Slow when a tile is made, call on TaskExecutor.TERRAIN.
+     * @param lon
+     * @param lat
+     * @param num number of points
+     */
+    public void prefetch(double lon[], double lat[], int num) {
+        for(int i = 0; i < num; i++) {
+            prefetch(lon[i], lat[i]);
+        }
+    }
+
+    /**
+     * Height of terrain at equally spaced points from one location to another, both included
+     * @param lon0
+     * @param lat0
+     * @param lon1
+     * @param lat1
+     * @param num number of points, at least 2
+     * @param out Heights in feet, NO_DATA if not known
+     * @return Highest known height, NO_DATA if none known
+     */
+    public double getProfile(double lon0, double lat0, double lon1, double lat1, int num, double out[]) {
+        double max = NO_DATA;
+        double dlon = (lon1 - lon0) / (num - 1);
+        double dlat = (lat1 - lat0) / (num - 1);
+        for(int i = 0; i < num; i++) {
+            double h = getElevation(lon0 + dlon * i, lat0 + dlat * i);
+            out[i] = h;
+            if(h != NO_DATA && (max == NO_DATA || h > max)) {
+                max = h;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Map the tile of a point if it is not mapped or known missing. Tile is made and mapped without the lock.
+     * @param lon
+     * @param lat
+     */
+    private void prefetch(double lon, double lat) {
+        if(!Helper.isLongitudeSane(lon) || !Helper.isLatitudeSane(lat)) {
+            return;
+        }
+        int tx = Epsg900913.xPixelsToTile(Epsg900913.xMetersToPixels(mZoom, Epsg900913.lonToMeters(lon)));
+        int ty = Epsg900913.yPixelsToTile(Epsg900913.yMetersToPixels(mZoom, Epsg900913.latToMeters(lat)));
+        int generation;
+        synchronized(this) {
+            if(null != getTile(tx, ty) || isMissing(tx, ty)) {
+                return;
+            }
+            generation = mGeneration;
+        }
+        DemTile t = load(tx, ty);
+        synchronized(this) {
+            if(generation == mGeneration && null == getTile(tx, ty)) {
+                keep(tx, ty, t);
+            }
+        }
+    }
+
+    /**
+     * @param lon
+     * @param lat
+     * @return Height, NOT_LOADED if tile is not mapped
+     */
+    private synchronized double sample(double lon, double lat) {
+        if(!Helper.isLongitudeSane(lon) || !Helper.isLatitudeSane(lat)) {
+            return NO_DATA;
+        }
+
+        double px = Epsg900913.xMetersToPixels(mZoom, Epsg900913.lonToMeters(lon));
+        double py = Epsg900913.yMetersToPixels(mZoom, Epsg900913.latToMeters(lat));
+        int tx = Epsg900913.xPixelsToTile(px);
+        int ty = Epsg900913.yPixelsToTile(py);
+
+        DemTile t = getTile(tx, ty);
+        if(null == t) {
+            return isMissing(tx, ty) ? NO_DATA : NOT_LOADED;
+        }
+
+        /*
+         * Pixel in tile, from top left. Samples are at pixel centers.
+         */
+        double x = (px - (double)tx * BitmapHolder.WIDTH) * t.getWidth() / BitmapHolder.WIDTH - 0.5;
+        double y = ((double)(ty + 1) * BitmapHolder.HEIGHT - py) * t.getHeight() / BitmapHolder.HEIGHT - 0.5;
+        return t.sample(x, y);
+    }
+
+    /**
+     * @param tx
+     * @param ty
+     * @return Mapped tile, null if not mapped
+     */
+    private DemTile getTile(int tx, int ty) {
+        for(int i = 0; i < MAX_TILES; i++) {
+            DemTile t = mTiles[i];
+            if(null != t && t.getTx() == tx && t.getTy() == ty) {
+                t.setLastUsed(SystemClock.elapsedRealtime());
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Do not keep looking for a tile that is not there
+     * @param tx
+     * @param ty
+     * @return true if tile was found missing not long ago
+     */
+    private boolean isMissing(int tx, int ty) {
+        long now = SystemClock.elapsedRealtime();
+        long key = (((long)tx) << 32) | (ty & 0xFFFFFFFFL);
+        for(int i = 0; i < MAX_MISSING; i++) {
+            if(mMissing[i] == key && mMissingTime[i] != 0 && (now - mMissingTime[i]) < MISSING_RETRY_MS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keep a tile mapped in place of the least used one, or note it missing
+     * @param tx
+     * @param ty
+     * @param t null if missing
+     */
+    private void keep(int tx, int ty, DemTile t) {
+        long now = SystemClock.elapsedRealtime();
+        if(null == t) {
+            mMissing[mMissingNext] = (((long)tx) << 32) | (ty & 0xFFFFFFFFL);
+            mMissingTime[mMissingNext] = now;
+            mMissingNext = (mMissingNext + 1) % MAX_MISSING;
+            return;
+        }
+        int oldest = 0;
+        for(int i = 0; i < MAX_TILES; i++) {
+            if(null == mTiles[i]) {
+                oldest = i;
+                break;
+            }
+            if(mTiles[i].getLastUsed() < mTiles[oldest].getLastUsed()) {
+                oldest = i;
+            }
+        }
+        t.setLastUsed(now);
+        mTiles[oldest] = t;
+    }
+
+    /**
+     * Map DEM tile, making it from elevation chart tile if needed
+     * @param tx
+     * @param ty
+     * @return
+     */
+    private DemTile load(int tx, int ty) {
+        // form /tiles/type/zoom/col/row, same as chart tiles
+        String name = mPref.mapsFolder() + "/tiles/" + Tile.ELEVATION_INDEX + "/" + (int)mZoom + "/" + tx + "/" + ty;
+        File dem = new File(name + DemTile.EXTENSION);
+        File png = new File(name + mExtension);
+
+        if(png.exists() && (!dem.exists() || dem.lastModified() < png.lastModified())) {
+            DemTile.convert(png, dem);
+        }
+        if(!dem.exists()) {
+            return null;
+        }
+        return DemTile.map(dem, tx, ty);
+    }
+}
@@ -21,8 +21,8 @@ import com.ds.avare.R;
 import com.ds.avare.StorageService;
 import com.ds.avare.gps.GpsParams;
 import com.ds.avare.place.Destination;
+import com.ds.avare.position.GeoPoints;
 import com.ds.avare.position.Origin;
-import com.ds.avare.position.Projection;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.storage.StringPreference;
 import com.ds.avare.utils.Helper;
@@ -51,6 +51,9 @@ public class UDWMgr {
 	float			mPix;
 	float 			m2Pix;
 	float 			m15Pix;
+	GeoPoints		mGeo;		// Trig terms of points, for distance and bearing from here
+	double			mDistances[];
+	double			mBearings[];
     public static String UDWDESCRIPTION;
 
 	/***
@@ -61,6 +64,9 @@ public class UDWMgr {
 	public UDWMgr(StorageService service, Context context) {
 		mService = service;
 		mContext = context;
+		mGeo = new GeoPoints(MAXUDW);
+		mDistances = new double[MAXUDW];
+		mBearings = new double[MAXUDW];
 		
 		// Time to load all the points in
 		forceReload();
@@ -194,31 +200,36 @@ public class UDWMgr {
         mPaint.setTextSize(m15Pix);
         mPaint.setShadowLayer(2, 3, 3, Color.BLACK );
 
+		// Distance and bearing to all points from our current location in one go.
+		// Trig terms of points are only found again when a point moves
+		GpsParams here = mService.getGpsParams();
+		int num = mPoints.size();
+		mGeo.setSize(num);
+		for(int i = 0; i < num; i++) {
+			Waypoint p = mPoints.get(i);
+			mGeo.set(i, p.mLon, p.mLat);
+		}
+		if(null != here) {
+			mGeo.getDistances(here.getLongitude(), here.getLatitude(), mDistances);
+			mGeo.getBearings(here.getLongitude(), here.getLatitude(), mBearings);
+		}
+
 		// Loop through every point that we have and draw them if its set visible
-		for (Waypoint p : mPoints) {
+		for(int i = 0; i < num; i++) {
+			Waypoint p = mPoints.get(i);
 			if(true == p.getVisible()) {
-				p.draw(canvas, origin, trackUp, gpsParams, mPaint, mService, whereAndHowFar(p), m2Pix);
+				p.draw(canvas, origin, trackUp, gpsParams, mPaint, mService,
+						null == here ? "" : whereAndHowFar(mDistances[i], mBearings[i], here), m2Pix);
 			}
 		}
 	}
 
-    // Calculate the distance and bearing to the point from our current location
+    // Format the distance and bearing to the point from our current location
     //
-    String whereAndHowFar(Waypoint p) {
-    	GpsParams gpsParams = mService.getGpsParams();
-    	if(null == gpsParams) {
-    		return "";
-    	}
-    	
-    	// Heading from current location
-    	double hdg = Projection.getStaticBearing(gpsParams.getLongitude(), gpsParams.getLatitude(), p.mLon, p.mLat);
-
+    String whereAndHowFar(double dst, double hdg, GpsParams gpsParams) {
     	// Adjust heading for declination
     	hdg = Helper.getMagneticHeading(hdg, gpsParams.getDeclinition());
     	
-    	// distance from current location
-    	double dst = Projection.getStaticDistance(gpsParams.getLongitude(), gpsParams.getLatitude(), p.mLon, p.mLat);
-    	
     	// return  a formatted string
     	return String.format("%03d %03d", (int) dst, (int) hdg);
     }
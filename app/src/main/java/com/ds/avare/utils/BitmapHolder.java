@@ -15,13 +15,16 @@ package com.ds.avare.utils;
 import java.io.File;
 
 import com.ds.avare.position.Origin;
+import com.ds.avare.shapes.RawTile;
 import com.ds.avare.storage.Preferences;
 
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.ColorFilter;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 
 /**
  * @author zkhan
@@ -174,12 +177,29 @@ public class BitmapHolder {
         opt.inPreferredConfig = Bitmap.Config.RGB_565;
         opt.inSampleSize = sampleSize;
 
-        if(!(new File(pref.mapsFolder() + "/" + name)).exists()) {
+        File file = new File(pref.mapsFolder() + "/" + name);
+        long start = System.nanoTime();
+        if(1 == sampleSize && pref.useRawTiles()) {
+            /*
+             * Raw tile if converted, no image decode
+             */
+            mBitmap = RawTile.decode(RawTile.getFile(file));
+            if(null != mBitmap) {
+                RawTile.record(true, System.nanoTime() - start);
+                mWidth = mBitmap.getWidth();
+                mHeight = mBitmap.getHeight();
+                mName = name;
+                return;
+            }
+        }
+
+        if(!file.exists()) {
             mName = null;
             return;
         }
         try {
-            mBitmap = BitmapFactory.decodeFile(pref.mapsFolder() + "/" + name, opt);
+            mBitmap = BitmapFactory.decodeFile(file.getPath(), opt);
+            RawTile.record(false, System.nanoTime() - start);
         }
         catch(OutOfMemoryError e) {
         }
@@ -245,6 +265,40 @@ public class BitmapHolder {
         }
     }
 
+    /**
+     * A copy of a bitmap drawn through a color filter, so the filter is not needed on every draw
+     * @param src
+     * @param filter
+     * @param name is the name to store
+     */
+    public BitmapHolder(BitmapHolder src, ColorFilter filter, String name) {
+        Bitmap b = src.getBitmap();
+        if(null == b) {
+            return;
+        }
+        try {
+            mBitmap = Bitmap.createBitmap(b.getWidth(), b.getHeight(), Bitmap.Config.RGB_565);
+            Paint p = new Paint();
+            p.setColorFilter(filter);
+            new Canvas(mBitmap).drawBitmap(b, 0, 0, p);
+        }
+        catch(OutOfMemoryError e) {
+            mBitmap = null;
+            return;
+        }
+        catch(RuntimeException e) {
+            // source recycled while drawing
+            if(null != mBitmap) {
+                mBitmap.recycle();
+            }
+            mBitmap = null;
+            return;
+        }
+        mWidth = mBitmap.getWidth();
+        mHeight = mBitmap.getHeight();
+        mName = name;
+    }
+
     // Create a bitmapholder from an already loaded bitmap
     public BitmapHolder(Bitmap bitMap) {
         mBitmap = bitMap;
@@ -0,0 +1,304 @@
+/*
+Copyright (c) 2012, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.utils;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Debug;
+
+import com.ds.avare.views.MemView;
+
+import java.io.FileWriter;
+
+/**
+ * Time and allocations of each layer of a frame.
+ * Keeps a histogram of times over a window of frames, then writes the window to a file and starts again.
+ * When disabled, every call is one check of a flag.
+ *
+ * Call from the drawing thread only.
+ */
+public class FrameProfiler {
+
+    /**
+     * Frames in a window
+     */
+    public static final int WINDOW = 300;
+
+    /**
+     * Frame time budget, ns
+     */
+    public static final long BUDGET_NS = 16666667;
+
+    /*
+     * Histogram bucket n has times from 2^(n - 1) to 2^n microseconds, last one has the rest
+     */
+    private static final int BUCKETS = 16;
+
+    private boolean mEnabled;
+    private String mNames[];
+    private int mNum;
+    private String mFile;
+
+    /*
+     * Per layer, last entry is whole frame
+     */
+    private long mStart[];
+    private int mAllocStart[];
+    private long mLast[];
+    private long mTotal[];
+    private long mMax[];
+    private int mAllocLast[];
+    private long mAllocTotal[];
+    private int mAllocFrames[];
+    private int mHistogram[][];
+    private int mFrames;
+
+    private StringBuilder mText;
+
+    /**
+     * @param names Name of each layer, layer id is index
+     * @param file where windows are written
+     */
+    public FrameProfiler(String names[], String file) {
+        mNames = names;
+        mNum = names.length;
+        mFile = file;
+        mEnabled = false;
+        mStart = new long[mNum + 1];
+        mAllocStart = new int[mNum + 1];
+        mLast = new long[mNum + 1];
+        mTotal = new long[mNum + 1];
+        mMax = new long[mNum + 1];
+        mAllocLast = new int[mNum + 1];
+        mAllocTotal = new long[mNum + 1];
+        mAllocFrames = new int[mNum + 1];
+        mHistogram = new int[mNum + 1][BUCKETS];
+        mText = new StringBuilder(64);
+    }
+
+    /**
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        if(enabled == mEnabled) {
+            return;
+        }
+        mEnabled = enabled;
+        if(enabled) {
+            reset();
+            startAllocCounting();
+        }
+        else {
+            stopAllocCounting();
+        }
+    }
+
+    /**
+     * @return
+     */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Frame starts
+     */
+    public void startFrame() {
+        if(!mEnabled) {
+            return;
+        }
+        start(mNum);
+    }
+
+    /**
+     * Frame ends
+     */
+    public void endFrame() {
+        if(!mEnabled) {
+            return;
+        }
+        end(mNum);
+        mFrames++;
+        if(mFrames >= WINDOW) {
+            dump();
+            reset();
+        }
+    }
+
+    /**
+     * Layer starts
+     * @param layer
+     */
+    public void start(int layer) {
+        if(!mEnabled) {
+            return;
+        }
+        mAllocStart[layer] = getThreadAllocCount();
+        mStart[layer] = System.nanoTime();
+    }
+
+    /**
+     * Layer ends
+     * @param layer
+     */
+    public void end(int layer) {
+        if(!mEnabled) {
+            return;
+        }
+        long t = System.nanoTime() - mStart[layer];
+        int allocs = getThreadAllocCount() - mAllocStart[layer];
+        mLast[layer] = t;
+        mTotal[layer] += t;
+        if(t > mMax[layer]) {
+            mMax[layer] = t;
+        }
+        mAllocLast[layer] = allocs;
+        mAllocTotal[layer] += allocs;
+        if(allocs > 0) {
+            mAllocFrames[layer]++;
+        }
+        long us = t / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(us);
+        if(bucket >= BUCKETS) {
+            bucket = BUCKETS - 1;
+        }
+        mHistogram[layer][bucket]++;
+    }
+
+    /*
+     * Debug alloc counting is deprecated, but it is the only count of allocations by one thread
+     * there is on every API level we run on. It is on only while frame profile is on.
+     */
+    @SuppressWarnings("deprecation")
+    private static void startAllocCounting() {
+        Debug.startAllocCounting();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void stopAllocCounting() {
+        Debug.stopAllocCounting();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int getThreadAllocCount() {
+        return Debug.getThreadAllocCount();
+    }
+
+    /**
+     * Start a new window
+     */
+    private void reset() {
+        mFrames = 0;
+        for(int i = 0; i <= mNum; i++) {
+            mLast[i] = 0;
+            mTotal[i] = 0;
+            mMax[i] = 0;
+            mAllocLast[i] = 0;
+            mAllocTotal[i] = 0;
+            mAllocFrames[i] = 0;
+            for(int b = 0; b < BUCKETS; b++) {
+                mHistogram[i][b] = 0;
+            }
+        }
+    }
+
+    /**
+     * @param layer
+     * @return
+     */
+    private String getName(int layer) {
+        return layer == mNum ? "Frame" : mNames[layer];
+    }
+
+    /**
+     * Write this window to file in background, one line per layer:
+     * time, layer, frames, average ns, max ns, average allocations, frames that allocated, histogram counts.
+     * Once warmed up, frames that allocated should be 0 for every layer.
+     */
+    private void dump() {
+        if(null == mFile) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        long now = System.currentTimeMillis();
+        for(int i = 0; i <= mNum; i++) {
+            sb.append(now).append(',').append(getName(i)).append(',').append(mFrames).append(',')
+                    .append(mTotal[i] / mFrames).append(',').append(mMax[i]).append(',')
+                    .append((double)mAllocTotal[i] / mFrames).append(',').append(mAllocFrames[i]);
+            for(int b = 0; b < BUCKETS; b++) {
+                sb.append(',').append(mHistogram[i][b]);
+            }
+            sb.append('\n');
+        }
+        final String data = sb.toString();
+        final String file = mFile;
+        Scheduler.getInstance().schedule("Frame profile", Scheduler.PRIORITY_LOW, 0, new Runnable() {
+            @Override
+            public void run() {
+                FileWriter fw = null;
+                try {
+                    fw = new FileWriter(file, true);
+                    fw.write(data);
+                }
+                catch (Exception e) {
+                }
+                finally {
+                    try {
+                        if(null != fw) {
+                            fw.close();
+                        }
+                    }
+                    catch (Exception e) {
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Draw a line per layer with a bar of its share of the frame budget.
+     * Draw after endFrame.
+     * @param canvas
+     * @param paint
+     * @param x left
+     * @param y top
+     * @param width of bar
+     */
+    public void draw(Canvas canvas, Paint paint, float x, float y, float width) {
+        if(!mEnabled || mFrames == 0) {
+            return;
+        }
+        float h = paint.getTextSize();
+        Paint.Style style = paint.getStyle();
+        int color = paint.getColor();
+        Paint.Align align = paint.getTextAlign();
+        paint.setTextAlign(Paint.Align.LEFT);
+        for(int i = 0; i <= mNum; i++) {
+            float top = y + i * h * 1.2f;
+            long avg = mTotal[i] / mFrames;
+            MemView.drawBar(canvas, paint, x, top, width, h, (float)avg / BUDGET_NS);
+
+            // layer avg us / max us / allocations last frame
+            mText.setLength(0);
+            mText.append(getName(i)).append(' ').append(avg / 1000).append('/').append(mMax[i] / 1000)
+                    .append("us ").append(mAllocLast[i]);
+            paint.setStyle(Paint.Style.FILL);
+            paint.setColor(Color.WHITE);
+            canvas.drawText(mText, 0, mText.length(), x + width + h / 2, top + h, paint);
+        }
+        paint.setStyle(style);
+        paint.setColor(color);
+        paint.setTextAlign(align);
+    }
+}
@@ -17,6 +17,7 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.graphics.Bitmap;
+import android.graphics.ColorFilter;
 import android.graphics.ColorMatrix;
 import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Matrix;
@@ -40,7 +41,6 @@ import java.io.InputStreamReader;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.LinkedList;
 import java.util.Locale;
 import java.util.TimeZone;
@@ -225,15 +225,27 @@ public class Helper {
      * @param paint
      */
     public static void invertCanvasColors(Paint paint) {
-       float mx [] = {
+       paint.setColorFilter(INVERT_FILTER);
+    }
+
+    /**
+     * @return Filter that inverts colors
+     */
+    public static ColorFilter getInvertFilter() {
+        return INVERT_FILTER;
+    }
+
+    /*
+     * Filters are set per tile per frame, so make them once
+     */
+    private static final ColorMatrixColorFilter INVERT_FILTER = new ColorMatrixColorFilter(new ColorMatrix(new float[] {
                 -1.0f,  0.0f,  0.0f,  1.0f,  0.0f,
                 0.0f,  -1.0f,  0.0f,  1.0f,  0.0f,
                 0.0f,  0.0f,  -1.0f,  1.0f,  0.0f,
-                1.0f,  1.0f,  1.0f,  1.0f,  0.0f 
-       };
-       ColorMatrix cm = new ColorMatrix(mx);
-       paint.setColorFilter(new ColorMatrixColorFilter(cm));
-    }
+                1.0f,  1.0f,  1.0f,  1.0f,  0.0f
+    }));
+    private static ColorMatrixColorFilter sThresholdFilter;
+    private static float sThreshold;
 
     /**
      * See the explanation in the function setThreshold. 
@@ -279,6 +291,14 @@ public class Helper {
      * @param paint
      */
     public static void setThreshold(Paint paint, float threshold) {
+        paint.setColorFilter(getThresholdFilter(threshold));
+    }
+
+    /**
+     * @param threshold
+     * @return Filter for elevation tiles, see below
+     */
+    public static ColorFilter getThresholdFilter(float threshold) {
         /*
          * Elevation matrix. This will threshold the elevation with GPS altitude.
          * The factor is used to increase the brightness for a given elevation map.
@@ -299,6 +319,9 @@ public class Helper {
          * threshold = altitude / 3 (meters per foot) / 50
          * Give 2 levels margin of safety
          */
+        if(null != sThresholdFilter && sThreshold == threshold) {
+            return sThresholdFilter;
+        }
         float factor = 4.f;
         float mx [] = {
                 factor, 0,             0,             0,  -(factor) * (threshold - 5) * 2.0f,
@@ -307,7 +330,9 @@ public class Helper {
                 0     , 0,             0,             1,  0
        };
        ColorMatrix cm = new ColorMatrix(mx);
-       paint.setColorFilter(new ColorMatrixColorFilter(cm));
+       sThresholdFilter = new ColorMatrixColorFilter(cm);
+       sThreshold = threshold;
+       return sThresholdFilter;
     }
 
     /**
@@ -711,15 +736,25 @@ public class Helper {
         return df.format(millis) + "_UTC";
     }
     
+    /*
+     * Time zone for getMillisGMT, looked up again once a minute in case it changes
+     */
+    private static TimeZone sTimeZone;
+    private static long sTimeZoneTime;
+
     /**
-     * 
+     * Called per frame for each shape and traffic, so does not allocate
      * @return
      */
     public static long getMillisGMT() {
-        Calendar calendar = new GregorianCalendar();
-        TimeZone mTimeZone = calendar.getTimeZone();
-        int offset = mTimeZone.getOffset(System.currentTimeMillis());  
-        return System.currentTimeMillis() - offset;
+        long now = System.currentTimeMillis();
+        TimeZone tz = sTimeZone;
+        if(null == tz || Math.abs(now - sTimeZoneTime) > 60 * 1000) {
+            tz = TimeZone.getDefault();
+            sTimeZone = tz;
+            sTimeZoneTime = now;
+        }
+        return now - tz.getOffset(now);
     }
 
     /**
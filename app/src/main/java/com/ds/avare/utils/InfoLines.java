@@ -23,10 +23,11 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
+import android.os.SystemClock;
 
 import com.ds.avare.R;
 import com.ds.avare.StorageService;
-import com.ds.avare.instruments.CDI;
+import com.ds.avare.gps.NavState;
 import com.ds.avare.instruments.Odometer;
 import com.ds.avare.place.Destination;
 import com.ds.avare.storage.Preferences;
@@ -77,6 +78,20 @@ public class InfoLines {
     private float mElev;
     private float mThreshold;
 
+    // Text of shown fields, made again only when what they show may have changed
+    private String mValues[][];
+    private String mTitles[][];
+    private int mTitleX[][];
+    private int mLayoutVersion;
+    private int mTextLayout;
+    private long mTextSecond;
+    private Object mTextParams;
+    private Object mTextDestination;
+    private float mTextElev;
+    private float mTextThreshold;
+    private float mTextSize;
+    private int mTextStartLine;
+
     private Context mContext;
     private Preferences mPref;
     private StorageService mService;
@@ -242,6 +257,7 @@ public class InfoLines {
                 // re-calc a few things
                 if (mOptionList[idx].contentEquals(option) == true) {
                     mFieldLines[infoLineFieldLoc.mRowIdx][infoLineFieldLoc.mFieldIdx] = idx;
+                    mLayoutVersion++;
                     mPref.setRowFormats(buildConfigString()); // Save to storage
                     setRowCount(); // A row may have been totally turned off
                     return;
@@ -293,6 +309,7 @@ public class InfoLines {
         if (infoLineFieldLoc == null) {
             return;
         }
+        mLayoutVersion++; // timers may have changed
 
         // Each field processes the gesture differently.
         switch (mFieldLines[infoLineFieldLoc.mRowIdx][infoLineFieldLoc.mFieldIdx]) {
@@ -473,23 +490,15 @@ public class InfoLines {
 
         // The top row can be either the priority message or
         // the configured display values
+        refreshTexts(aPaint, nStartLine, dataY, titleY);
         if (priorityMessage != null) {
             canvas.drawText(priorityMessage, 0, lineY - 1, aPaint);
         } else {
             for (int idx = 0, max = mFieldPosX.length; idx < max; idx++) {
-                canvas.drawText(
-                        getDisplayFieldValue(mFieldLines[nStartLine][idx],
-                                false), mFieldPosX[idx], lineY - 1, aPaint);
+                canvas.drawText(mValues[0][idx], mFieldPosX[idx], lineY - 1, aPaint);
 
                 aPaint.setTextSize(titleY);
-                String title = getDisplayFieldValue(
-                        mFieldLines[nStartLine][idx], true);
-                canvas.drawText(
-                        title,
-                        mFieldPosX[idx]
-                                + (mFieldWidth - mCharWidth - (int) aPaint
-                                        .measureText(title)) / 2, lineY - dataY
-                                + 2, aPaint);
+                canvas.drawText(mTitles[0][idx], mTitleX[0][idx], lineY - dataY + 2, aPaint);
                 aPaint.setTextSize(dataY);
             }
         }
@@ -502,24 +511,69 @@ public class InfoLines {
             canvas.drawText(errorMessage, mDisplayWidth, lineY * 2 - 1, aPaint);
         } else {
             for (int idx = 0, max = mFieldPosX.length; idx < max; idx++) {
-                canvas.drawText(
-                        getDisplayFieldValue(mFieldLines[nStartLine + 1][idx],
-                                false), mFieldPosX[idx], lineY * 2 - 1, aPaint);
+                canvas.drawText(mValues[1][idx], mFieldPosX[idx], lineY * 2 - 1, aPaint);
 
                 aPaint.setTextSize(titleY);
-                String title = getDisplayFieldValue(
-                        mFieldLines[nStartLine + 1][idx], true);
-                canvas.drawText(
-                        title,
-                        mFieldPosX[idx]
-                                + (mFieldWidth - mCharWidth - (int) aPaint
-                                        .measureText(title)) / 2, lineY * 2
-                                - dataY + 2, aPaint);
+                canvas.drawText(mTitles[1][idx], mTitleX[1][idx], lineY * 2 - dataY + 2, aPaint);
                 aPaint.setTextSize(dataY);
             }
         }
     }
 
+    /***
+     * Make text of the shown fields again only when what they show may have
+     * changed: a new fix or destination, new elevation, fields or size
+     * changed, or a second passed for clocks and timers. Not every frame.
+     * 
+     * @param aPaint
+     * @param nStartLine
+     *            first line of this orientation
+     * @param dataY
+     *            text size of values
+     * @param titleY
+     *            text size of titles
+     */
+    private void refreshTexts(Paint aPaint, int nStartLine, float dataY, float titleY) {
+        long second = SystemClock.elapsedRealtime() / 1000;
+        Object params = mService.getGpsParams();
+        Object destination = mService.getDestination();
+        int max = mFieldPosX.length;
+        if (mValues != null && mValues[0].length == max
+                && mTextLayout == mLayoutVersion && mTextSecond == second
+                && mTextParams == params && mTextDestination == destination
+                && mTextElev == mElev && mTextThreshold == mThreshold
+                && mTextSize == dataY && mTextStartLine == nStartLine) {
+            return;
+        }
+        mTextLayout = mLayoutVersion;
+        mTextSecond = second;
+        mTextParams = params;
+        mTextDestination = destination;
+        mTextElev = mElev;
+        mTextThreshold = mThreshold;
+        mTextSize = dataY;
+        mTextStartLine = nStartLine;
+
+        if (mValues == null || mValues[0].length != max) {
+            mValues = new String[2][max];
+            mTitles = new String[2][max];
+            mTitleX = new int[2][max];
+        }
+
+        aPaint.setTextSize(titleY);
+        for (int row = 0; row < 2; row++) {
+            for (int idx = 0; idx < max; idx++) {
+                int field = mFieldLines[nStartLine + row][idx];
+                mValues[row][idx] = getDisplayFieldValue(field, false);
+                String title = getDisplayFieldValue(field, true);
+                mTitles[row][idx] = title;
+                mTitleX[row][idx] = mFieldPosX[idx]
+                        + (mFieldWidth - mCharWidth - (int) aPaint.measureText(title)) / 2;
+            }
+        }
+        aPaint.setTextSize(dataY);
+    }
+
     /***
      * Calculate the quantity and size of that we can display with the given
      * display width and paint.
@@ -534,6 +588,7 @@ public class InfoLines {
 
         // Set our copy of what the display width is.
         mDisplayWidth = aDisplayWidth;
+        mLayoutVersion++;
 
         // In what direction is the display used  ?
     	mDisplayOrientation = (aDisplayWidth > aDisplayHeight)
@@ -629,8 +684,9 @@ public class InfoLines {
         switch (aField) {
         case ID_FLD_VSI: {
             if (mService != null) {
-            	if (mService.getVSI() != null) {
-            		double vsi = mService.getVSI().getValue();
+            	NavState state = mService.getNavState();
+            	if (state != null) {
+            		double vsi = state.getVsi();
             		return String.format(Locale.getDefault(), "%+05.0f", vsi);
             	}
             }
@@ -805,9 +861,9 @@ public class InfoLines {
         case ID_FLD_CDI: {
             if (mService != null) {
                 if (mService.getDestination() != null) {
-                    CDI cdi = mService.getCDI();
-                    if (cdi != null) {
-                        double value = cdi.getDeviation();
+                    NavState state = mService.getNavState();
+                    if (state != null) {
+                        double value = state.getDeviation();
                         return String.format(Locale.getDefault(),
                                 getFmtString(value), value);
                     }
@@ -0,0 +1,292 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Pre drawn labels in one bitmap. Labels are found by text and paint.
+ * Space is in shelves (rows). A label goes in a shelf of its height. When full, the least recently used shelf
+ * is emptied for new labels.
+ *
+ * Call from the drawing thread only.
+ */
+public class LabelAtlas {
+
+    private static final int SIZE = 1024;
+
+    /*
+     * Shelf heights are rounded to this, so labels of nearly the same height share shelves
+     */
+    private static final int SHELF_ROUND = 8;
+
+    /*
+     * Labels taller than this are not kept
+     */
+    private static final int MAX_HEIGHT = SIZE / 8;
+
+    private static final int MAX_STYLES = 32;
+
+    /**
+     * A label in the atlas
+     */
+    public static class Entry {
+        /**
+         * Where it is in atlas
+         */
+        public final Rect src = new Rect();
+        /**
+         * Top left of label from where it is drawn
+         */
+        public int dx;
+        public int dy;
+        /**
+         * Text bounds, as from Paint.getTextBounds
+         */
+        public final Rect bounds = new Rect();
+
+        private String mText;
+        private Style mStyle;
+        private Shelf mShelf;
+    }
+
+    /*
+     * Paint settings that change how a label looks
+     */
+    private static class Style {
+        int color;
+        float size;
+        Typeface typeface;
+        int flags;
+        Paint.Align align;
+        Paint.Style style;
+        int shadowColor;
+        HashMap<String, Entry> entries = new HashMap<String, Entry>();
+
+        boolean matches(Paint paint, int shadow) {
+            return color == paint.getColor() && size == paint.getTextSize() && typeface == paint.getTypeface()
+                    && flags == paint.getFlags() && align == paint.getTextAlign() && style == paint.getStyle()
+                    && shadowColor == shadow;
+        }
+    }
+
+    private static class Shelf {
+        int y;
+        int height;
+        int x;
+        long lastUsed;
+        ArrayList<Entry> entries = new ArrayList<Entry>();
+    }
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private boolean mFailed;
+    private ArrayList<Style> mStyles;
+    private ArrayList<Shelf> mShelves;
+    private int mNextY;
+    private long mTick;
+
+    public LabelAtlas() {
+        mStyles = new ArrayList<Style>();
+        mShelves = new ArrayList<Shelf>();
+        mNextY = 0;
+        mTick = 0;
+        mFailed = false;
+    }
+
+    /**
+     * @return Atlas bitmap, null if none
+     */
+    public Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    /**
+     * @return Canvas to draw a new label in its src rect
+     */
+    public Canvas getCanvas() {
+        return mCanvas;
+    }
+
+    /**
+     * Find a label drawn before. Marks it used.
+     * @param paint
+     * @param text
+     * @param shadowColor
+     * @return null if not in atlas
+     */
+    public Entry find(Paint paint, String text, int shadowColor) {
+        Style s = findStyle(paint, shadowColor);
+        if(null == s) {
+            return null;
+        }
+        Entry e = s.entries.get(text);
+        if(null != e) {
+            e.mShelf.lastUsed = ++mTick;
+        }
+        return e;
+    }
+
+    /**
+     * Make space for a new label. Caller then draws the label in the entry src rect.
+     * @param paint
+     * @param text
+     * @param shadowColor
+     * @param width
+     * @param height
+     * @return null if no space or label too big
+     */
+    public Entry add(Paint paint, String text, int shadowColor, int width, int height) {
+        if(width > SIZE || height > MAX_HEIGHT || width <= 0 || height <= 0) {
+            return null;
+        }
+        if(!allocate()) {
+            return null;
+        }
+
+        Shelf shelf = findShelf(width, height);
+        if(null == shelf) {
+            return null;
+        }
+
+        Style s = findStyle(paint, shadowColor);
+        if(null == s) {
+            if(mStyles.size() >= MAX_STYLES) {
+                clear();
+                shelf = findShelf(width, height);
+            }
+            s = new Style();
+            s.color = paint.getColor();
+            s.size = paint.getTextSize();
+            s.typeface = paint.getTypeface();
+            s.flags = paint.getFlags();
+            s.align = paint.getTextAlign();
+            s.style = paint.getStyle();
+            s.shadowColor = shadowColor;
+            mStyles.add(s);
+        }
+
+        Entry e = new Entry();
+        e.mText = text;
+        e.mStyle = s;
+        e.mShelf = shelf;
+        e.src.set(shelf.x, shelf.y, shelf.x + width, shelf.y + height);
+        shelf.x += width;
+        shelf.lastUsed = ++mTick;
+        shelf.entries.add(e);
+        s.entries.put(text, e);
+        return e;
+    }
+
+    /**
+     * Forget all labels
+     */
+    public void clear() {
+        mStyles.clear();
+        mShelves.clear();
+        mNextY = 0;
+    }
+
+    /**
+     * @param paint
+     * @param shadowColor
+     * @return
+     */
+    private Style findStyle(Paint paint, int shadowColor) {
+        for(int i = 0; i < mStyles.size(); i++) {
+            Style s = mStyles.get(i);
+            if(s.matches(paint, shadowColor)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Shelf with room for a label, new one, or least recently used one emptied
+     * @param width
+     * @param height
+     * @return
+     */
+    private Shelf findShelf(int width, int height) {
+        int h = ((height + SHELF_ROUND - 1) / SHELF_ROUND) * SHELF_ROUND;
+        for(int i = 0; i < mShelves.size(); i++) {
+            Shelf shelf = mShelves.get(i);
+            if(shelf.height == h && shelf.x + width <= SIZE) {
+                return shelf;
+            }
+        }
+
+        if(mNextY + h <= SIZE) {
+            Shelf shelf = new Shelf();
+            shelf.y = mNextY;
+            shelf.height = h;
+            shelf.x = 0;
+            mNextY += h;
+            mShelves.add(shelf);
+            return shelf;
+        }
+
+        /*
+         * Full. Empty least recently used shelf that is tall enough, but not wastefully tall.
+         */
+        Shelf lru = null;
+        for(int i = 0; i < mShelves.size(); i++) {
+            Shelf shelf = mShelves.get(i);
+            if(shelf.height >= h && shelf.height <= h * 2 && (null == lru || shelf.lastUsed < lru.lastUsed)) {
+                lru = shelf;
+            }
+        }
+        if(null == lru) {
+            clear();
+            return findShelf(width, height);
+        }
+        for(int i = 0; i < lru.entries.size(); i++) {
+            Entry e = lru.entries.get(i);
+            e.mStyle.entries.remove(e.mText);
+        }
+        lru.entries.clear();
+        lru.x = 0;
+        return lru;
+    }
+
+    /**
+     * Make bitmap on first use
+     * @return
+     */
+    private boolean allocate() {
+        if(null != mBitmap) {
+            return true;
+        }
+        if(mFailed) {
+            return false;
+        }
+        try {
+            mBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+        }
+        catch (OutOfMemoryError e) {
+            mBitmap = null;
+            mFailed = true;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.utils;
+
+import java.io.IOException;
+
+/**
+ * LZ4 block format compressor / decompressor.
+ * Compression is the simple greedy one, decompression is what matters as it runs on every tile load.
+ */
+public class Lz4 {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 14;
+    private static final int RUN_MASK = 15;
+
+    /**
+     * @param length of uncompressed data
+     * @return Most bytes compress() can write for this length
+     */
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * @param src
+     * @param srcLen
+     * @param dst at least maxCompressedLength(srcLen) long
+     * @return compressed length
+     */
+    public static int compress(byte src[], int srcLen, byte dst[]) {
+        int table[] = new int[1 << HASH_LOG];
+        int anchor = 0;
+        int ip = 0;
+        int op = 0;
+
+        if(srcLen > MF_LIMIT) {
+            int limit = srcLen - MF_LIMIT;
+            int matchLimit = srcLen - LAST_LITERALS;
+            while(ip < limit) {
+                int seq = readInt(src, ip);
+                int h = (seq * -1640531535) >>> (32 - HASH_LOG);
+                // positions stored + 1 so 0 means empty
+                int ref = table[h] - 1;
+                table[h] = ip + 1;
+                if(ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                    ip++;
+                    continue;
+                }
+
+                while(ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int len = MIN_MATCH;
+                while(ip + len < matchLimit && src[ref + len] == src[ip + len]) {
+                    len++;
+                }
+
+                op = writeLiterals(src, anchor, ip - anchor, len - MIN_MATCH, dst, op);
+                dst[op++] = (byte)(ip - ref);
+                dst[op++] = (byte)((ip - ref) >>> 8);
+                if(len - MIN_MATCH >= RUN_MASK) {
+                    op = writeLength(len - MIN_MATCH - RUN_MASK, dst, op);
+                }
+                ip += len;
+                anchor = ip;
+            }
+        }
+
+        return writeLiterals(src, anchor, srcLen - anchor, 0, dst, op);
+    }
+
+    /**
+     * @param src
+     * @param srcLen
+     * @param dst
+     * @param dstLen expected uncompressed length
+     * @return uncompressed length
+     * @throws IOException on corrupt data
+     */
+    public static int decompress(byte src[], int srcLen, byte dst[], int dstLen) throws IOException {
+        int ip = 0;
+        int op = 0;
+        try {
+            while(ip < srcLen) {
+                int token = src[ip++] & 0xFF;
+
+                int len = token >>> 4;
+                if(len == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        len += b;
+                    } while(b == 255);
+                }
+                if(ip + len > srcLen || op + len > dstLen) {
+                    throw new IOException("lz4 literals overrun");
+                }
+                System.arraycopy(src, ip, dst, op, len);
+                ip += len;
+                op += len;
+                if(ip >= srcLen) {
+                    // last sequence has literals only
+                    break;
+                }
+
+                int offset = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+                ip += 2;
+                len = token & RUN_MASK;
+                if(len == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        len += b;
+                    } while(b == 255);
+                }
+                len += MIN_MATCH;
+                int ref = op - offset;
+                if(offset == 0 || ref < 0 || op + len > dstLen) {
+                    throw new IOException("lz4 match overrun");
+                }
+                if(offset >= len) {
+                    System.arraycopy(dst, ref, dst, op, len);
+                    op += len;
+                }
+                else {
+                    // overlapping match repeats the last offset bytes
+                    for(int i = 0; i < len; i++) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        }
+        catch(ArrayIndexOutOfBoundsException e) {
+            throw new IOException("lz4 data truncated");
+        }
+        if(op != dstLen) {
+            throw new IOException("lz4 length mismatch");
+        }
+        return op;
+    }
+
+    /**
+     * Token, literal length, literals
+     */
+    private static int writeLiterals(byte src[], int start, int len, int matchLen, byte dst[], int op) {
+        int token = (Math.min(len, RUN_MASK) << 4) | Math.min(matchLen, RUN_MASK);
+        dst[op++] = (byte)token;
+        if(len >= RUN_MASK) {
+            op = writeLength(len - RUN_MASK, dst, op);
+        }
+        System.arraycopy(src, start, dst, op, len);
+        return op + len;
+    }
+
+    private static int writeLength(int len, byte dst[], int op) {
+        while(len >= 255) {
+            dst[op++] = (byte)255;
+            len -= 255;
+        }
+        dst[op++] = (byte)len;
+        return op;
+    }
+
+    private static int readInt(byte b[], int i) {
+        return (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8) | ((b[i + 2] & 0xFF) << 16) | ((b[i + 3] & 0xFF) << 24);
+    }
+}
@@ -0,0 +1,254 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.utils;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+
+/**
+ * One memory budget for all bitmap caches: tiles, layers, NEXRAD, plates, overlay.
+ * Caches register with a priority and report their size. When bitmaps go over budget, heap runs low,
+ * or the system asks to trim memory, lower priority caches are trimmed first.
+ * Caches are trimmed on the main thread, so register caches that are used on the main thread.
+ */
+public class MemoryGovernor {
+
+    /*
+     * Trimmed last to first
+     */
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
+    /*
+     * Bitmaps may take this percent of max heap, and are trimmed to LOW_WATER percent of it when over
+     */
+    private static final int BUDGET_PERCENT = 60;
+    private static final int LOW_WATER_PERCENT = 75;
+
+    /*
+     * When heap in use goes over this percent of max, bitmaps are trimmed to bring it to HEAP_LOW
+     */
+    private static final int HEAP_HIGH_PERCENT = 85;
+    private static final int HEAP_LOW_PERCENT = 70;
+
+    private static final long MB = 1024 * 1024;
+
+    /**
+     * A cache that can give back memory
+     */
+    public interface Cache {
+        /**
+         * @return bytes held
+         */
+        long getBytes();
+
+        /**
+         * Free memory, least needed first. Called on main thread.
+         * @param bytes wanted freed
+         * @return bytes freed
+         */
+        long trim(long bytes);
+    }
+
+    private static class Client {
+        String name;
+        int priority;
+        Cache cache;
+        long trimmed;
+    }
+
+    private static MemoryGovernor sInstance;
+
+    private ArrayList<Client> mClients;
+    private Handler mHandler;
+    private boolean mPending;
+    private long mBudget;
+    private long mTrims;
+
+    /**
+     * @return The governor for whole app
+     */
+    public static synchronized MemoryGovernor getInstance() {
+        if(null == sInstance) {
+            sInstance = new MemoryGovernor();
+        }
+        return sInstance;
+    }
+
+    private MemoryGovernor() {
+        mClients = new ArrayList<Client>();
+        mHandler = new Handler(Looper.getMainLooper());
+        mPending = false;
+        mBudget = Runtime.getRuntime().maxMemory() / 100 * BUDGET_PERCENT;
+        mTrims = 0;
+    }
+
+    /**
+     * @param name shown in stats
+     * @param priority PRIORITY_HIGH, PRIORITY_NORMAL, or PRIORITY_LOW
+     * @param cache
+     */
+    public synchronized void register(String name, int priority, Cache cache) {
+        Client c = new Client();
+        c.name = name;
+        c.priority = priority;
+        c.cache = cache;
+        mClients.add(c);
+    }
+
+    /**
+     * @param cache
+     */
+    public synchronized void unregister(Cache cache) {
+        for(int i = mClients.size() - 1; i >= 0; i--) {
+            if(mClients.get(i).cache == cache) {
+                mClients.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Call after a cache grows. Check is done later on main thread, once for many calls.
+     */
+    public void check() {
+        synchronized(this) {
+            if(mPending) {
+                return;
+            }
+            mPending = true;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                synchronized(MemoryGovernor.this) {
+                    mPending = false;
+                }
+                enforce();
+            }
+        });
+    }
+
+    /**
+     * From onTrimMemory() of a component. Call on main thread.
+     * @param level
+     */
+    public void onTrimMemory(int level) {
+        long total = getBytes();
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            // next to be killed, keep nothing
+            trim(total, PRIORITY_HIGH);
+        }
+        else if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            // not showing, or about to fail; keep only what is on screen
+            trim(total, PRIORITY_NORMAL);
+        }
+        else if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trim(total / 2, PRIORITY_NORMAL);
+        }
+        else if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            trim(total / 4, PRIORITY_LOW);
+        }
+    }
+
+    /**
+     * From onLowMemory() of a component. Call on main thread.
+     */
+    public void onLowMemory() {
+        trim(getBytes(), PRIORITY_HIGH);
+    }
+
+    /**
+     * Keep bitmaps in budget, and heap under high water
+     */
+    private void enforce() {
+        long total = getBytes();
+        if(total > mBudget) {
+            trim(total - mBudget / 100 * LOW_WATER_PERCENT, PRIORITY_HIGH);
+            return;
+        }
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory();
+        long max = rt.maxMemory();
+        if(used > max / 100 * HEAP_HIGH_PERCENT) {
+            trim(used - max / 100 * HEAP_LOW_PERCENT, PRIORITY_NORMAL);
+        }
+    }
+
+    /**
+     * Trim lowest priority caches first
+     * @param bytes to free
+     * @param highest do not trim caches of higher priority than this
+     */
+    private void trim(long bytes, int highest) {
+        Client clients[];
+        synchronized(this) {
+            clients = mClients.toArray(new Client[mClients.size()]);
+            mTrims++;
+        }
+        for(int priority = PRIORITY_LOW; priority >= highest && bytes > 0; priority--) {
+            for(int i = 0; i < clients.length && bytes > 0; i++) {
+                if(clients[i].priority != priority) {
+                    continue;
+                }
+                long freed = clients[i].cache.trim(bytes);
+                clients[i].trimmed += freed;
+                bytes -= freed;
+            }
+        }
+    }
+
+    /**
+     * @return bytes held by all caches
+     */
+    public synchronized long getBytes() {
+        long total = 0;
+        for(int i = 0; i < mClients.size(); i++) {
+            total += mClients.get(i).cache.getBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Per cache: name, MB held, MB trimmed so far, then total and budget
+     * @return
+     */
+    public synchronized String getStats() {
+        StringBuilder sb = new StringBuilder();
+        long total = 0;
+        for(int i = 0; i < mClients.size(); i++) {
+            Client c = mClients.get(i);
+            long bytes = c.cache.getBytes();
+            total += bytes;
+            sb.append(c.name).append(' ').append(bytes / MB).append("MB (")
+                    .append(c.trimmed / MB).append("MB trimmed)\n");
+        }
+        sb.append("Bitmaps ").append(total / MB).append("MB/").append(mBudget / MB).append("MB, trims ").append(mTrims);
+        return sb.toString();
+    }
+
+    /**
+     * @param b
+     * @return bytes of pixels of a bitmap
+     */
+    public static long getBytes(Bitmap b) {
+        if(null == b || b.isRecycled()) {
+            return 0;
+        }
+        return (long)b.getRowBytes() * b.getHeight();
+    }
+}
@@ -12,15 +12,11 @@ Redistribution and use in source and binary forms, with or without modification,
 
 package com.ds.avare.utils;
 
-import android.os.AsyncTask;
-
 import com.ds.avare.StorageService;
 import com.ds.avare.position.Coordinate;
 import com.ds.avare.weather.Metar;
 
 import java.util.LinkedList;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Created by zkhan on 12/15/15.
@@ -28,7 +24,7 @@ import java.util.TimerTask;
 public class RateLimitedBackgroundQueue {
 
     private LinkedList<Object> mQueue;
-    private AsyncTask<Void, Void, Void> mProcessTask;
+    private Scheduler.Task mTask;
 
     // Fire every few seconds
     private static final long RUN_TIME = 30 * 1000;
@@ -37,44 +33,34 @@ public class RateLimitedBackgroundQueue {
 
         mQueue = new LinkedList<Object>();
 
-        TimerTask timer= new TimerTask() {
+        // Do something, run in background, low priority
+        mTask = Scheduler.getInstance().scheduleAtFixedRate("Background Queue", Scheduler.PRIORITY_LOW,
+                0, RUN_TIME, new Runnable() {
             @Override
             public void run() {
-                if(mQueue.size() == 0) {
-                    return;
-                }
-                if(mProcessTask != null && mProcessTask.getStatus() == AsyncTask.Status.RUNNING) {
-                    return;
-                }
-
-                // Do something, run in background
-                mProcessTask = new AsyncTask<Void, Void, Void>() {
-
-                    @Override
-                    protected Void doInBackground(Void... vals) {
-                        while (mQueue.size() > 0) {
-                            Object o = mQueue.removeFirst();
-                            // find what to do based on object type
-                            if(o instanceof Metar) {
-                                // Calculate metar map in background by finding lon/lat of airport
-
-                                Metar m = (Metar)o;
-                                Coordinate c = service.getDBResource().findLonLatMetar(m.stationId);
-                                if(null != c) {
-                                    // update lon/lat in object, catch parse exception (airport not found)
-                                    m.lon = c.getLongitude();
-                                    m.lat = c.getLatitude();
-                                }
-                            }
+                while(true) {
+                    Object o;
+                    synchronized(mQueue) {
+                        if(mQueue.size() == 0) {
+                            return;
                         }
-                        return null;
+                        o = mQueue.removeFirst();
                     }
-                };
-                mProcessTask.execute(null, null, null);
+                    // find what to do based on object type
+                    if(o instanceof Metar) {
+                        // Calculate metar map in background by finding lon/lat of airport
+
+                        Metar m = (Metar)o;
+                        Coordinate c = service.getDBResource().findLonLatMetar(m.stationId);
+                        if(null != c) {
+                            // update lon/lat in object, catch parse exception (airport not found)
+                            m.lon = c.getLongitude();
+                            m.lat = c.getLatitude();
+                        }
+                    }
+                }
             }
-        };
-        Timer t = new Timer();
-        t.scheduleAtFixedRate(timer, 0, RUN_TIME);
+        });
     }
 
     /**
@@ -82,6 +68,15 @@ public class RateLimitedBackgroundQueue {
      * @param obj
      */
     public void insertInQueue(Object obj) {
-        mQueue.add(obj);
+        synchronized(mQueue) {
+            mQueue.add(obj);
+        }
+    }
+
+    /**
+     * Stop processing
+     */
+    public void cancel() {
+        mTask.cancel();
     }
 }
@@ -0,0 +1,309 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.utils;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+
+/**
+ * One place to run periodic and one shot background tasks, on a few threads, instead of a Timer per task.
+ * Of tasks that are due, higher priority ones run first. A task never runs on two threads at once.
+ * Waking up a task that is already due or running only makes it run once more.
+ * Keeps run time and lateness of each task.
+ */
+public class Scheduler {
+
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
+    private static final int THREADS = 2;
+
+    /*
+     * Due time of a task not scheduled, that runs only on wakeup
+     */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private static Scheduler sInstance;
+
+    /**
+     * A scheduled task
+     */
+    public class Task {
+        private String mName;
+        private int mPriority;
+        private Runnable mRunnable;
+        private long mPeriod;
+        private long mDue;
+        private boolean mRunning;
+        private boolean mAgain;
+        private boolean mCancelled;
+
+        /*
+         * Stats, ms
+         */
+        private long mRuns;
+        private long mRunTotal;
+        private long mRunMax;
+        private long mLateTotal;
+        private long mLateMax;
+
+        /**
+         * Stop it, it will not run again
+         */
+        public void cancel() {
+            synchronized(Scheduler.this) {
+                mCancelled = true;
+                mTasks.remove(this);
+            }
+        }
+
+        /**
+         * Run it now. If due or running, it runs only once more.
+         */
+        public void wakeup() {
+            synchronized(Scheduler.this) {
+                if(mCancelled) {
+                    return;
+                }
+                if(mRunning) {
+                    mAgain = true;
+                    return;
+                }
+                long now = SystemClock.elapsedRealtime();
+                if(mDue > now) {
+                    mDue = now;
+                    Scheduler.this.notifyAll();
+                }
+            }
+        }
+
+        public String getName() {
+            return mName;
+        }
+    }
+
+    private ArrayList<Task> mTasks;
+    private Thread mThreads[];
+    private boolean mShutdown;
+
+    /**
+     * @return The scheduler for whole app
+     */
+    public static synchronized Scheduler getInstance() {
+        if(null == sInstance) {
+            sInstance = new Scheduler();
+        }
+        return sInstance;
+    }
+
+    private Scheduler() {
+        mTasks = new ArrayList<Task>();
+        mShutdown = false;
+        mThreads = new Thread[THREADS];
+        for(int i = 0; i < THREADS; i++) {
+            mThreads[i] = new Thread() {
+                @Override
+                public void run() {
+                    work();
+                }
+            };
+            mThreads[i].setName("Scheduler " + i);
+            mThreads[i].setDaemon(true);
+            mThreads[i].start();
+        }
+    }
+
+    /**
+     * Run once after a delay
+     * @param name
+     * @param priority
+     * @param delay ms
+     * @param runnable
+     * @return
+     */
+    public Task schedule(String name, int priority, long delay, Runnable runnable) {
+        return add(name, priority, SystemClock.elapsedRealtime() + delay, 0, runnable);
+    }
+
+    /**
+     * Run every period after a delay. Runs missed while busy are not made up.
+     * @param name
+     * @param priority
+     * @param delay ms
+     * @param period ms
+     * @param runnable
+     * @return
+     */
+    public Task scheduleAtFixedRate(String name, int priority, long delay, long period, Runnable runnable) {
+        return add(name, priority, SystemClock.elapsedRealtime() + delay, period, runnable);
+    }
+
+    /**
+     * Run only when woken up with Task.wakeup()
+     * @param name
+     * @param priority
+     * @param runnable
+     * @return
+     */
+    public Task scheduleOnWakeup(String name, int priority, Runnable runnable) {
+        return add(name, priority, NEVER, -1, runnable);
+    }
+
+    /**
+     * Stop all threads, and drop all tasks
+     */
+    public static synchronized void shutdown() {
+        if(null == sInstance) {
+            return;
+        }
+        synchronized(sInstance) {
+            sInstance.mShutdown = true;
+            sInstance.mTasks.clear();
+            sInstance.notifyAll();
+        }
+        sInstance = null;
+    }
+
+    /**
+     * Per task: runs, average / max run ms, average / max late ms
+     * @return
+     */
+    public synchronized String getStats() {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < mTasks.size(); i++) {
+            Task t = mTasks.get(i);
+            sb.append(t.mName).append(',').append(t.mRuns).append(',');
+            if(t.mRuns > 0) {
+                sb.append(t.mRunTotal / t.mRuns).append(',').append(t.mRunMax).append(',')
+                        .append(t.mLateTotal / t.mRuns).append(',').append(t.mLateMax);
+            }
+            else {
+                sb.append(",,,");
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param name
+     * @param priority
+     * @param due
+     * @param period
+     * @param runnable
+     * @return
+     */
+    private synchronized Task add(String name, int priority, long due, long period, Runnable runnable) {
+        Task t = new Task();
+        t.mName = name;
+        t.mPriority = priority;
+        t.mRunnable = runnable;
+        t.mDue = due;
+        t.mPeriod = period;
+        if(!mShutdown) {
+            mTasks.add(t);
+            notifyAll();
+        }
+        return t;
+    }
+
+    /**
+     * Thread loop, take the most urgent due task and run it
+     */
+    private void work() {
+        while(true) {
+            Task task = null;
+            long late;
+            synchronized(this) {
+                while(true) {
+                    if(mShutdown) {
+                        return;
+                    }
+                    long now = SystemClock.elapsedRealtime();
+                    long next = NEVER;
+                    for(int i = 0; i < mTasks.size(); i++) {
+                        Task t = mTasks.get(i);
+                        if(t.mRunning) {
+                            continue;
+                        }
+                        if(t.mDue <= now) {
+                            if(null == task || t.mPriority < task.mPriority
+                                    || (t.mPriority == task.mPriority && t.mDue < task.mDue)) {
+                                task = t;
+                            }
+                        }
+                        else if(t.mDue < next) {
+                            next = t.mDue;
+                        }
+                    }
+                    if(null != task) {
+                        task.mRunning = true;
+                        late = now - task.mDue;
+                        break;
+                    }
+                    try {
+                        if(NEVER == next) {
+                            wait();
+                        }
+                        else {
+                            wait(next - now);
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+
+            long start = SystemClock.elapsedRealtime();
+            try {
+                task.mRunnable.run();
+            }
+            catch (Exception e) {
+                // a bad task should not stop others
+            }
+            long end = SystemClock.elapsedRealtime();
+
+            synchronized(this) {
+                long run = end - start;
+                task.mRuns++;
+                task.mRunTotal += run;
+                task.mRunMax = Math.max(task.mRunMax, run);
+                task.mLateTotal += late;
+                task.mLateMax = Math.max(task.mLateMax, late);
+                task.mRunning = false;
+
+                if(task.mAgain) {
+                    task.mAgain = false;
+                    task.mDue = end;
+                }
+                else if(task.mPeriod > 0) {
+                    task.mDue += task.mPeriod;
+                    if(task.mDue <= end) {
+                        // fell behind, skip missed runs
+                        task.mDue = end + task.mPeriod - (end - task.mDue) % task.mPeriod;
+                    }
+                }
+                else if(task.mPeriod < 0) {
+                    task.mDue = NEVER;
+                }
+                else {
+                    mTasks.remove(task);
+                }
+                notifyAll();
+            }
+        }
+    }
+}
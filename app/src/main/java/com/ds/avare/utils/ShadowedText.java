@@ -14,7 +14,9 @@ package com.ds.avare.utils;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.PorterDuff;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Typeface;
@@ -24,6 +26,7 @@ import android.graphics.Paint.Style;
 // with a rectangular shadow curved at the corners
 // All object allocation occurs during construction so that the paint 
 // process is as quick as possible
+// Labels are drawn once into an atlas, then copied from there every frame
 public class ShadowedText {
 
     private Rect mTextSize;
@@ -34,6 +37,9 @@ public class ShadowedText {
     private int YMARGIN;
     private int SHADOWRECTRADIUS;
 
+    private LabelAtlas mAtlas;
+    private RectF mDst;
+
     // Build the shadowText object. This means allocating the paint
     // and required rectangle objects that we use during the draw
     // phase
@@ -52,6 +58,9 @@ public class ShadowedText {
         XMARGIN = (int) (5 * mDipToPix);
         YMARGIN = (int) (5 * mDipToPix);
         SHADOWRECTRADIUS = (int) (5 * mDipToPix);
+
+        mAtlas = new LabelAtlas();
+        mDst = new RectF();
 	}
 	
     /**
@@ -70,7 +79,15 @@ public class ShadowedText {
     	if((null == text) || 0 == text.length()) {
     		return;
     	}
-    	
+
+        // Copy from atlas if drawn before, or draw it there now
+        LabelAtlas.Entry e = getLabel(paint, text, shadowColor);
+        if(null != e) {
+            mDst.set(x + e.dx, y + e.dy, x + e.dx + e.src.width(), y + e.dy + e.src.height());
+            canvas.drawBitmap(mAtlas.getBitmap(), e.src, mDst, null);
+            return;
+        }
+
     	// How big is the text we are about to draw
         paint.getTextBounds(text, 0, text.length(), mTextSize);
         
@@ -91,6 +108,49 @@ public class ShadowedText {
         canvas.drawText(text,  x - (mTextSize.right / 2), y - (mTextSize.top / 2), paint);
     }
 
+    /**
+     * Find label in atlas, drawing it there if not found.
+     * Label is drawn same as without atlas, with (0, 0) where x, y would be.
+     * @param paint
+     * @param text
+     * @param shadowColor
+     * @return null if it could not be put in atlas
+     */
+    private LabelAtlas.Entry getLabel(Paint paint, String text, int shadowColor) {
+        LabelAtlas.Entry e = mAtlas.find(paint, text, shadowColor);
+        if(null != e) {
+            return e;
+        }
+
+        paint.getTextBounds(text, 0, text.length(), mTextSize);
+        int left   = mTextSize.left   - XMARGIN - (mTextSize.right / 2);
+        int right  = mTextSize.right  + XMARGIN - (mTextSize.right / 2);
+        int top    = mTextSize.top    - YMARGIN - (mTextSize.top / 2);
+        int bottom = mTextSize.bottom + YMARGIN - (mTextSize.top / 2);
+
+        // 1 pixel around for anti aliasing
+        e = mAtlas.add(paint, text, shadowColor, right - left + 2, bottom - top + 2);
+        if(null == e) {
+            return null;
+        }
+        e.dx = left - 1;
+        e.dy = top - 1;
+        e.bounds.set(mTextSize);
+
+        Canvas c = mAtlas.getCanvas();
+        c.save();
+        c.clipRect(e.src);
+        c.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        c.translate(e.src.left - e.dx, e.src.top - e.dy);
+        mShadowBox.set(left, top, right, bottom);
+        mShadowPaint.setColor(shadowColor);
+        mShadowPaint.setAlpha(0x80);
+        c.drawRoundRect(mShadowBox, SHADOWRECTRADIUS, SHADOWRECTRADIUS, mShadowPaint);
+        c.drawText(text, -(mTextSize.right / 2), -(mTextSize.top / 2), paint);
+        c.restore();
+        return e;
+    }
+
     // Ordinals to lay out where we want the text to display relative to the provided point
     public static final int ABOVE = 0x01;
     public static final int RIGHT = 0x02;
@@ -123,7 +183,13 @@ public class ShadowedText {
     	// Only do this work if we need to re-calc based on a new sector
     	if(0 != sector) {
 	    	// Find out how much room this text will take
-	        paint.getTextBounds(text, 0, text.length(), mTextSize);
+            LabelAtlas.Entry e = getLabel(paint, text, shadowColor);
+            if(null != e) {
+                mTextSize.set(e.bounds);
+            }
+            else {
+                paint.getTextBounds(text, 0, text.length(), mTextSize);
+            }
 	        
 	        // Now calculate the offsets to handle the relative position
 	        int xText = mTextSize.right - mTextSize.left;
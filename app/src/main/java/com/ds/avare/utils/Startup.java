@@ -0,0 +1,353 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.utils;
+
+import android.os.SystemClock;
+
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts components of the app in order of what they need.
+ * Components on main run in start(), in the order added. Background components run on a small pool as soon as
+ * what they need is done. A component not done yet when first used is run, or waited for, by await().
+ * Keeps a trace of when each component started and how long it took, plus events like first tile drawn.
+ * The trace is written to a file when all components are done, and first tile drawn after that is added to it.
+ */
+public class Startup {
+
+    private static final int THREADS = 2;
+    private static final long IDLE_SECONDS = 5;
+
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+
+    /*
+     * Trace is written when these events are marked
+     */
+    public static final String FIRST_TILE = "First tile";
+    public static final String STARTED = "Started";
+
+    private class Component {
+        String name;
+        String after[];
+        Runnable task;
+        boolean background;
+        boolean queued;
+        int state;
+        long start;
+        long end;
+        String thread;
+    }
+
+    private ArrayList<Component> mComponents;
+    private StringBuilder mEvents;
+    private ExecutorService mPool;
+    private long mCreated;
+    private String mFile;
+    private boolean mStarted;
+    private boolean mWritten;
+    private int mEventsWritten;
+    private StringBuilder mPending;
+    private Object mWriteLock;
+
+    /**
+     * @param file where trace is written
+     */
+    public Startup(String file) {
+        mCreated = SystemClock.elapsedRealtime();
+        mComponents = new ArrayList<Component>();
+        mEvents = new StringBuilder();
+        mFile = file;
+        mStarted = false;
+        mWritten = false;
+        mEventsWritten = 0;
+        mPending = new StringBuilder();
+        mWriteLock = new Object();
+    }
+
+    /**
+     * Add a component. Call before start().
+     * @param name
+     * @param background true to run off main thread
+     * @param task
+     * @param after names of components this needs done first
+     */
+    public void add(String name, boolean background, Runnable task, String... after) {
+        Component c = new Component();
+        c.name = name;
+        c.after = after;
+        c.task = task;
+        c.background = background;
+        c.state = WAITING;
+        mComponents.add(c);
+    }
+
+    /**
+     * Run main components now, background ones in pool. Call from main thread.
+     */
+    public void start() {
+        // threads end when idle, so nothing to shut down
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        pool.allowCoreThreadTimeOut(true);
+        mPool = pool;
+        schedule();
+        for(int i = 0; i < mComponents.size(); i++) {
+            Component c = mComponents.get(i);
+            if(!c.background) {
+                // main ones are added after what they need
+                for(String name : c.after) {
+                    await(name);
+                }
+                run(c);
+            }
+        }
+    }
+
+    /**
+     * Wait for a component, run it here if it has not started
+     * @param name
+     */
+    public void await(String name) {
+        Component c = find(name);
+        if(null == c) {
+            return;
+        }
+        synchronized(this) {
+            if(c.state == DONE) {
+                return;
+            }
+        }
+        for(String a : c.after) {
+            await(a);
+        }
+        run(c);
+        synchronized(this) {
+            while(c.state != DONE) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name
+     * @return true if the component is done, or there is no such component. Does not wait.
+     */
+    public synchronized boolean isDone(String name) {
+        Component c = find(name);
+        return null == c || c.state == DONE;
+    }
+
+    /**
+     * Note an event, like first tile drawn
+     * @param event
+     */
+    public void mark(String event) {
+        boolean write;
+        synchronized(this) {
+            mEvents.append(event).append(',').append(SystemClock.elapsedRealtime() - mCreated).append('\n');
+            // until all are done, a first tile goes out with the rest of the trace
+            write = STARTED.equals(event) || (FIRST_TILE.equals(event) && mStarted);
+        }
+        if(write) {
+            write();
+        }
+    }
+
+    /**
+     * One line per component: name, thread, start ms, duration ms from creation. Then events.
+     * @return
+     */
+    public synchronized String getTrace() {
+        StringBuilder sb = new StringBuilder();
+        appendComponents(sb);
+        sb.append(mEvents);
+        return sb.toString();
+    }
+
+    /**
+     * @param sb one line per component added to
+     */
+    private void appendComponents(StringBuilder sb) {
+        for(int i = 0; i < mComponents.size(); i++) {
+            Component c = mComponents.get(i);
+            sb.append(c.name).append(',').append(c.thread).append(',');
+            if(c.state == DONE) {
+                sb.append(c.start - mCreated).append(',').append(c.end - c.start);
+            }
+            else {
+                sb.append(",");
+            }
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * @param name
+     * @return
+     */
+    private Component find(String name) {
+        for(int i = 0; i < mComponents.size(); i++) {
+            Component c = mComponents.get(i);
+            if(c.name.equals(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Run a component if no one else has started it
+     * @param c
+     */
+    private void run(Component c) {
+        synchronized(this) {
+            if(c.state != WAITING) {
+                return;
+            }
+            c.state = RUNNING;
+        }
+        long start = SystemClock.elapsedRealtime();
+        try {
+            c.task.run();
+        }
+        finally {
+            synchronized(this) {
+                c.start = start;
+                c.end = SystemClock.elapsedRealtime();
+                c.thread = Thread.currentThread().getName();
+                c.state = DONE;
+                notifyAll();
+            }
+            schedule();
+            if(isStarted()) {
+                mark(STARTED);
+            }
+        }
+    }
+
+    /**
+     * @return true once, when all components are done
+     */
+    private synchronized boolean isStarted() {
+        if(mStarted) {
+            return false;
+        }
+        for(int i = 0; i < mComponents.size(); i++) {
+            if(mComponents.get(i).state != DONE) {
+                return false;
+            }
+        }
+        mStarted = true;
+        return true;
+    }
+
+    /**
+     * Put background components whose needs are done in pool
+     */
+    private void schedule() {
+        if(null == mPool) {
+            return;
+        }
+        ArrayList<Component> ready = new ArrayList<Component>();
+        synchronized(this) {
+            for(int i = 0; i < mComponents.size(); i++) {
+                final Component c = mComponents.get(i);
+                if(!c.background || c.state != WAITING || c.queued) {
+                    continue;
+                }
+                boolean can = true;
+                for(String name : c.after) {
+                    Component a = find(name);
+                    if(null != a && a.state != DONE) {
+                        can = false;
+                        break;
+                    }
+                }
+                if(can) {
+                    c.queued = true;
+                    ready.add(c);
+                }
+            }
+        }
+        for(final Component c : ready) {
+            mPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Startup.this.run(c);
+                }
+            });
+        }
+    }
+
+    /**
+     * Trace to file in background. First write has components and events so far, later ones only new events.
+     */
+    private void write() {
+        if(null == mFile) {
+            return;
+        }
+        synchronized(this) {
+            if(!mWritten) {
+                mWritten = true;
+                mPending.append("Launch,").append(System.currentTimeMillis()).append('\n');
+                appendComponents(mPending);
+            }
+            mPending.append(mEvents, mEventsWritten, mEvents.length());
+            mEventsWritten = mEvents.length();
+        }
+        Scheduler.getInstance().schedule("Startup trace", Scheduler.PRIORITY_LOW, 0, new Runnable() {
+            @Override
+            public void run() {
+                // writes drain pending in order, so two runs at once cannot swap records
+                synchronized(mWriteLock) {
+                    String data;
+                    synchronized(Startup.this) {
+                        data = mPending.toString();
+                        mPending.setLength(0);
+                    }
+                    if(data.length() == 0) {
+                        return;
+                    }
+                    FileWriter fw = null;
+                    try {
+                        fw = new FileWriter(mFile, true);
+                        fw.write(data);
+                    }
+                    catch (Exception e) {
+                    }
+                    finally {
+                        try {
+                            if(null != fw) {
+                                fw.close();
+                            }
+                        }
+                        catch (Exception e) {
+                        }
+                    }
+                }
+            }
+        });
+    }
+}
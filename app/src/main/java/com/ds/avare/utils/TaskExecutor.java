@@ -0,0 +1,231 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.utils;
+
+import android.annotation.TargetApi;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs AsyncTasks in priority classes, each with its own threads, so a slow shape file or plate load
+ * never holds up tiles or a nearest airport search behind it on the default serial executor.
+ * A task given a key cancels the previous task with the same key, which is then not run if still queued.
+ * A keyed task is forgotten when it is done, so it does not hold on to what it references.
+ * Keeps queueing delay of each class.
+ */
+public class TaskExecutor {
+
+    /*
+     * Priority classes
+     */
+    public static final int RENDER = 0;
+    public static final int INTERACTIVE = 1;
+    public static final int BACKGROUND = 2;
+    public static final int BULK = 3;
+    public static final int TERRAIN = 4;
+    public static final int NETWORK = 5;
+
+    /*
+     * One render thread, as a tile load fills the tile map in place.
+     * Terrain has its own thread so DEM conversion and obstacle loads never wait behind bulk work.
+     * Network threads mostly wait on sockets, one per download connection allowed at a time.
+     */
+    private static final String NAMES[] = {"Render", "Interactive", "Background", "Bulk", "Terrain", "Network"};
+    private static final int THREADS[] = {1, 2, 1, 1, 1, 4};
+    private static final int PRIORITIES[] = {
+            Thread.NORM_PRIORITY, Thread.NORM_PRIORITY, Thread.MIN_PRIORITY + 1, Thread.MIN_PRIORITY,
+            Thread.MIN_PRIORITY + 1, Thread.MIN_PRIORITY + 1};
+
+    private static final long KEEP_ALIVE_S = 10;
+
+    private static Lane sLanes[];
+    private static HashMap<String, AsyncTask<?, ?, ?>> sKeyed = new HashMap<String, AsyncTask<?, ?, ?>>();
+
+    /**
+     * Threads of one class, with stats, ms
+     */
+    private static class Lane implements Executor {
+        private ThreadPoolExecutor mPool;
+        private long mRuns;
+        private long mDelayTotal;
+        private long mDelayMax;
+
+        Lane(final int cls) {
+            mPool = new ThreadPoolExecutor(THREADS[cls], THREADS[cls], KEEP_ALIVE_S, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private int mCount = 0;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Task " + NAMES[cls] + " " + (mCount++));
+                    t.setPriority(PRIORITIES[cls]);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            mPool.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(final Runnable r) {
+            final long queued = SystemClock.elapsedRealtime();
+            mPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long delay = SystemClock.elapsedRealtime() - queued;
+                    synchronized(Lane.this) {
+                        mRuns++;
+                        mDelayTotal += delay;
+                        if(delay > mDelayMax) {
+                            mDelayMax = delay;
+                        }
+                    }
+                    r.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Lane that forgets a keyed task once it has run
+     */
+    private static class Forget implements Executor {
+        private Executor mLane;
+        private String mKey;
+        private AsyncTask<?, ?, ?> mTask;
+
+        Forget(Executor lane, String key, AsyncTask<?, ?, ?> task) {
+            mLane = lane;
+            mKey = key;
+            mTask = task;
+        }
+
+        @Override
+        public void execute(final Runnable r) {
+            mLane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        r.run();
+                    }
+                    finally {
+                        synchronized(sKeyed) {
+                            // a newer task may have this key now
+                            if(sKeyed.get(mKey) == mTask) {
+                                sKeyed.remove(mKey);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private static synchronized Lane getLane(int cls) {
+        if(null == sLanes) {
+            sLanes = new Lane[NAMES.length];
+        }
+        if(null == sLanes[cls]) {
+            sLanes[cls] = new Lane(cls);
+        }
+        return sLanes[cls];
+    }
+
+    /**
+     * Run a task in a class.
+     * @param task
+     * @param cls RENDER, INTERACTIVE, BACKGROUND, BULK, TERRAIN, or NETWORK
+     * @param key if not null, previous task with this key is cancelled
+     * @param params
+     * @return task
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    public static <Params, Progress, Result> AsyncTask<Params, Progress, Result> execute(
+            AsyncTask<Params, Progress, Result> task, int cls, String key, Params... params) {
+        if(null != key) {
+            AsyncTask<?, ?, ?> last;
+            synchronized(sKeyed) {
+                last = sKeyed.put(key, task);
+            }
+            if(null != last && last != task && last.getStatus() != AsyncTask.Status.FINISHED) {
+                last.cancel(true);
+            }
+        }
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            Executor lane = getLane(cls);
+            if(null != key) {
+                lane = new Forget(lane, key, task);
+            }
+            return task.executeOnExecutor(lane, params);
+        }
+        return task.execute(params);
+    }
+
+    /**
+     * Run a plain runnable in a class, for work with no result on main.
+     * @param runnable
+     * @param cls RENDER, INTERACTIVE, BACKGROUND, BULK, TERRAIN, or NETWORK
+     */
+    public static void execute(Runnable runnable, int cls) {
+        getLane(cls).execute(runnable);
+    }
+
+    /**
+     * Cancel the task with this key, if any
+     * @param key
+     */
+    public static void cancel(String key) {
+        AsyncTask<?, ?, ?> last;
+        synchronized(sKeyed) {
+            last = sKeyed.remove(key);
+        }
+        if(null != last) {
+            last.cancel(true);
+        }
+    }
+
+    /**
+     * Per class: threads, queued, runs, average / max queueing delay ms
+     * @return
+     */
+    public static synchronized String getStats() {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < NAMES.length; i++) {
+            sb.append(NAMES[i]).append(',').append(THREADS[i]).append(',');
+            Lane l = null == sLanes ? null : sLanes[i];
+            if(null == l) {
+                sb.append("0,0,,\n");
+                continue;
+            }
+            synchronized(l) {
+                sb.append(l.mPool.getQueue().size()).append(',').append(l.mRuns).append(',');
+                if(l.mRuns > 0) {
+                    sb.append(l.mDelayTotal / l.mRuns).append(',').append(l.mDelayMax);
+                }
+                else {
+                    sb.append(',');
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
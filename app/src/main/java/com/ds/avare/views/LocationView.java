@@ -47,6 +47,8 @@ import com.ds.avare.position.Scale;
 import com.ds.avare.shapes.DrawingContext;
 import com.ds.avare.shapes.Layer;
 import com.ds.avare.shapes.MetShape;
+import com.ds.avare.shapes.OverlayCache;
+import com.ds.avare.shapes.Shape;
 import com.ds.avare.shapes.ShapeFileShape;
 import com.ds.avare.shapes.TFRShape;
 import com.ds.avare.shapes.Tile;
@@ -54,14 +56,20 @@ import com.ds.avare.shapes.TileMap;
 import com.ds.avare.shapes.TrackShape;
 import com.ds.avare.storage.DataSource;
 import com.ds.avare.storage.Preferences;
+import com.ds.avare.terrain.LookAhead;
+import com.ds.avare.terrain.TerrainService;
 import com.ds.avare.touch.GestureInterface;
 import com.ds.avare.touch.LongTouchDestination;
 import com.ds.avare.utils.BitmapHolder;
 import com.ds.avare.utils.DisplayIcon;
+import com.ds.avare.utils.FrameProfiler;
 import com.ds.avare.utils.GenericCallback;
 import com.ds.avare.utils.Helper;
 import com.ds.avare.utils.InfoLines.InfoLineFieldLoc;
+import com.ds.avare.utils.MemoryGovernor;
 import com.ds.avare.utils.NavComments;
+import com.ds.avare.utils.Scheduler;
+import com.ds.avare.utils.TaskExecutor;
 import com.ds.avare.utils.WeatherHelper;
 import com.ds.avare.weather.AdsbWeatherCache;
 import com.ds.avare.weather.AirSigMet;
@@ -137,7 +145,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
      * Task that would draw obstacles
      */
     private ElevationTask               mElevationTask; 
-    private Thread                      mElevationThread;
+    private Scheduler.Task              mElevationThread;
     private long                        mElevationLastRun;
 
     /**
@@ -225,6 +233,53 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     
     private static final int MAX_SCALE = 4;
     
+    /*
+     * Elevation and obstacles are found this often, or when woken up on move
+     */
+    private static final long ELEVATION_PERIOD_MS = 1000 * 3600;
+
+    /*
+     * Layers of a frame, for frame profile
+     */
+    private static final int LAYER_TILES = 0;
+    private static final int LAYER_LAYERS = 1;
+    private static final int LAYER_DRAWING = 2;
+    private static final int LAYER_CAPGRIDS = 3;
+    private static final int LAYER_TRAFFIC = 4;
+    private static final int LAYER_TFR = 5;
+    private static final int LAYER_SHAPES = 6;
+    private static final int LAYER_AIRSIGMET = 7;
+    private static final int LAYER_TRACKS = 8;
+    private static final int LAYER_TRACK = 9;
+    private static final int LAYER_OBSTACLES = 10;
+    private static final int LAYER_RUNWAYS = 11;
+    private static final int LAYER_AIRCRAFT = 12;
+    private static final int LAYER_USERDEFINEDWAYPOINTS = 13;
+    private static final int LAYER_DISTANCERINGS = 14;
+    private static final int LAYER_CDI = 15;
+    private static final int LAYER_VASI = 16;
+    private static final int LAYER_STATUSLINES = 17;
+    private static final int LAYER_EDGEMARKERS = 18;
+    private static final int LAYER_NAVCOMMENTS = 19;
+    private static final int LAYER_OVERLAY = 20;
+    private static final String LAYER_NAMES[] = {
+            "Tiles", "Layers", "Drawing", "CAP", "Traffic", "TFR", "Shapes", "AirSigMet", "Tracks", "Track",
+            "Obstacles", "Runways", "Aircraft", "UDW", "Rings", "CDI", "VASI", "Status", "Edge", "NavComments",
+            "Overlay"
+    };
+
+    private FrameProfiler mProfiler;
+
+    /*
+     * Vector layers that only change with data, drawn from a bitmap
+     */
+    private OverlayCache mOverlay;
+
+    /*
+     * Filled every frame, not made
+     */
+    private DrawingContext mDrawingContext;
+
     /*
      * dip to pix scaling factor
      */
@@ -286,9 +341,15 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
 
         
         mElevationTask = new ElevationTask();
-        mElevationThread = new Thread(mElevationTask);
+        mElevationThread = Scheduler.getInstance().scheduleAtFixedRate("Elevation", Scheduler.PRIORITY_NORMAL,
+                ELEVATION_PERIOD_MS, ELEVATION_PERIOD_MS, new Runnable() {
+            @Override
+            public void run() {
+                // DEM conversion and obstacle loads block, so not on the shared scheduler threads
+                mElevationTask.request();
+            }
+        });
         mElevationLastRun = System.currentTimeMillis();
-        mElevationThread.start();
 
         setOnTouchListener(this);
         mAirplaneBitmap = DisplayIcon.getDisplayIcon(context, mPref);
@@ -308,6 +369,18 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         mDoCallbackWhenDone = false;
              
         mDipToPix = Helper.getDpiToPix(context);
+
+        mProfiler = new FrameProfiler(LAYER_NAMES, mPref.mapsFolder() + "/frameprofile.csv");
+
+        mDrawingContext = new DrawingContext();
+
+        mOverlay = new OverlayCache(new OverlayCache.Painter() {
+            @Override
+            public void paint(DrawingContext ctx) {
+                drawOverlay(ctx);
+            }
+        });
+        MemoryGovernor.getInstance().register("Overlay", MemoryGovernor.PRIORITY_LOW, mOverlay);
     }
     
     /**
@@ -349,7 +422,11 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
      */
     @Override
     public void onDraw(Canvas canvas) {
+        mProfiler.setEnabled(mPref.shouldProfileFrames());
+        mProfiler.startFrame();
         drawMap(canvas);
+        mProfiler.endFrame();
+        mProfiler.draw(canvas, mMsgPaint, 0, getHeight() / 4, getWidth() / 8);
     }
        
     /**
@@ -636,13 +713,13 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             return;                
         }
 
-        // Do run run onbstacle task more frequenct than 10 seconds
-        if(((System.currentTimeMillis() - mElevationLastRun) > 1000 * 10) || force) {
+        // Do not run obstacle task more frequent than 2 seconds. Obstacles and terrain are in memory.
+        if(((System.currentTimeMillis() - mElevationLastRun) > 1000 * 2) || force) {
             mElevationLastRun = System.currentTimeMillis();
 	        mElevationTask.lat = mGpsParams.getLatitude();
 	        mElevationTask.lon = mGpsParams.getLongitude();
 	        mElevationTask.alt = mGpsParams.getAltitude();
-	        mElevationThread.interrupt();
+	        mElevationTask.request();
         }
 
         /*
@@ -873,7 +950,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             mPaint.setStrokeWidth(6 * mDipToPix);
             mPaint.setStyle(Paint.Style.FILL);
 
-            mService.getKMLRecorder().getShape().drawShape(canvas, mOrigin, mScale, mMovement, mPaint, mPref.isNightMode(), true);
+            mService.getKMLRecorder().getShape().drawShape(canvas, ctx.origin, mScale, mMovement, mPaint, mPref.isNightMode(), true);
         }
     }
 
@@ -887,7 +964,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         	if(mPref.getShowCDI()) {
 	        	Destination dest = mService.getDestination();
 	        	if(dest != null) {
-	        		mService.getCDI().drawCDI(canvas, getWidth(), getHeight());
+	        		mService.getCDI().drawCDI(canvas, getWidth(), getHeight(), mService.getNavState());
 	        	}
         	}
         }
@@ -904,13 +981,73 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         	if(mPref.getShowCDI()) {
 	        	Destination dest = mService.getDestination();
 	        	if(dest != null) {
-	        		mService.getVNAV().drawVNAV(canvas, getWidth(), getHeight(), dest);
+	        		mService.getVNAV().drawVNAV(canvas, getWidth(), getHeight(), mService.getNavState());
 	        	}
         	}
         }
     	
     }
 
+    /**
+     * Vector layers that do not move with the aircraft, in the order they stack.
+     * Drawn in the overlay cache, or direct on a rotated screen.
+     * @param ctx
+     */
+    private void drawOverlay(DrawingContext ctx) {
+        mProfiler.start(LAYER_CAPGRIDS);
+        drawCapGrids(ctx.canvas, ctx);
+        mProfiler.end(LAYER_CAPGRIDS);
+        mProfiler.start(LAYER_TFR);
+        drawTFR(ctx.canvas, ctx);
+        mProfiler.end(LAYER_TFR);
+        mProfiler.start(LAYER_SHAPES);
+        drawShapes(ctx.canvas, ctx);
+        mProfiler.end(LAYER_SHAPES);
+        mProfiler.start(LAYER_AIRSIGMET);
+        drawAirSigMet(ctx.canvas, ctx);
+        mProfiler.end(LAYER_AIRSIGMET);
+        mProfiler.start(LAYER_TRACKS);
+        drawTracks(ctx.canvas, ctx);
+        mProfiler.end(LAYER_TRACKS);
+    }
+
+    /**
+     * Changes when anything drawn in overlay changes, so the cache is drawn again
+     * @return
+     */
+    private long getOverlayVersion() {
+        long version = 1;
+        version = version * 31 + (null == mPointProjection ? 1 : 0);
+        version = version * 31 + (mPref.isNightMode() ? 1 : 0);
+        version = version * 31 + (mPref.showCAPGrids() ? 1 : 0);
+        version = version * 31 + (mPref.showGameTFRs() ? 1 : 0);
+        version = version * 31 + (mPref.useAdsbWeather() ? 1 : 0);
+        version = version * 31 + (mPref.shouldDrawTracks() ? 1 : 0);
+        version = version * 31 + mPref.getAirSigMetType().hashCode();
+        version = version * 31 + mPref.getExpiryTime();
+        // shapes expire with time
+        version = version * 31 + System.currentTimeMillis() / 60000;
+
+        // Lists are replaced when new data comes
+        LinkedList<TFRShape> tfrs = mService.getTFRShapes();
+        version = version * 31 + System.identityHashCode(tfrs);
+        version = version * 31 + System.identityHashCode(mService.getShapeShapes());
+
+        // Met shapes are made after the list is published
+        LinkedList<AirSigMet> mets = mService.getInternetWeatherCache().getAirSigMet();
+        version = version * 31 + System.identityHashCode(mets);
+        if(null != mets) {
+            for(AirSigMet met : mets) {
+                version = version * 31 + System.identityHashCode(met.shape);
+            }
+        }
+
+        Shape track = mService.getKMLRecorder().getShape();
+        version = version * 31 + System.identityHashCode(track);
+        version = version * 31 + track.getNumCoords();
+        return version;
+    }
+
     /***
      * Draw the edge distance markers if configured to do so
      * @param canvas what to draw them on
@@ -929,7 +1066,8 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     
     // Display all of the user defined waypoints if configured to do so
     private void drawUserDefinedWaypoints(Canvas canvas, DrawingContext ctx) {
-        if(mPointProjection == null) {
+        // not until parsed, as waiting for it here would hold up drawing
+        if(mPointProjection == null && mService.isUDWLoaded()) {
         	mService.getUDWMgr().draw(canvas, mPref.isTrackUp(), mGpsParams, mFace, mOrigin);
         }
     }
@@ -937,7 +1075,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     // Display cap grids
     private void drawCapGrids(Canvas canvas, DrawingContext ctx) {
         if(mPointProjection == null && mPref.showCAPGrids()) {
-        	mService.getCap().draw(canvas, mOrigin, mScale);
+        	mService.getCap().draw(canvas, ctx.origin, mScale);
         }
     }
 
@@ -980,7 +1118,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             canvas.rotate(-(int)mGpsParams.getBearing(), x, y);
         }
 
-        DrawingContext ctx = new DrawingContext();
+        DrawingContext ctx = mDrawingContext;
         ctx.service = mService;
         ctx.canvas = canvas;
         ctx.context = mContext;
@@ -997,20 +1135,42 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
 
         // Call the draw routines for the items that rotate with
         // the chart
+        mProfiler.start(LAYER_TILES);
         drawTiles(canvas, ctx);
+        mProfiler.end(LAYER_TILES);
+        mProfiler.start(LAYER_LAYERS);
         drawLayers(canvas, ctx);
+        mProfiler.end(LAYER_LAYERS);
+        mProfiler.start(LAYER_DRAWING);
         drawDrawing(canvas, ctx);
-        drawCapGrids(canvas, ctx);
+        mProfiler.end(LAYER_DRAWING);
+        mProfiler.start(LAYER_OVERLAY);
+        if(bRotated) {
+            // rotated screen is not covered by cache
+            drawOverlay(ctx);
+        }
+        else {
+            mOverlay.draw(ctx, getOverlayVersion());
+        }
+        mProfiler.end(LAYER_OVERLAY);
+        mProfiler.start(LAYER_TRAFFIC);
         drawTraffic(canvas, ctx);
-        drawTFR(canvas, ctx);
-        drawShapes(canvas, ctx);
-        drawAirSigMet(canvas, ctx);
-        drawTracks(canvas, ctx);
+        mProfiler.end(LAYER_TRAFFIC);
+        mProfiler.start(LAYER_TRACK);
         drawTrack(canvas, ctx);
+        mProfiler.end(LAYER_TRACK);
+        mProfiler.start(LAYER_OBSTACLES);
         drawObstacles(canvas, ctx);
+        mProfiler.end(LAYER_OBSTACLES);
+        mProfiler.start(LAYER_RUNWAYS);
         drawRunways(canvas, ctx);
+        mProfiler.end(LAYER_RUNWAYS);
+        mProfiler.start(LAYER_AIRCRAFT);
         drawAircraft(canvas, ctx);
+        mProfiler.end(LAYER_AIRCRAFT);
+        mProfiler.start(LAYER_USERDEFINEDWAYPOINTS);
       	drawUserDefinedWaypoints(canvas, ctx);
+        mProfiler.end(LAYER_USERDEFINEDWAYPOINTS);
         
       	// Restore the canvas to be upright again
         if(true == bRotated) {
@@ -1018,12 +1178,24 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         }
         
         // Now draw the items that do NOT rotate with the chart
+        mProfiler.start(LAYER_DISTANCERINGS);
         drawDistanceRings(canvas);
+        mProfiler.end(LAYER_DISTANCERINGS);
+        mProfiler.start(LAYER_CDI);
         drawCDI(canvas);
+        mProfiler.end(LAYER_CDI);
+        mProfiler.start(LAYER_VASI);
         drawVASI(canvas);
+        mProfiler.end(LAYER_VASI);
+        mProfiler.start(LAYER_STATUSLINES);
         drawStatusLines(canvas);
+        mProfiler.end(LAYER_STATUSLINES);
+        mProfiler.start(LAYER_EDGEMARKERS);
       	drawEdgeMarkers(canvas); // Must be after the infolines
+        mProfiler.end(LAYER_EDGEMARKERS);
+        mProfiler.start(LAYER_NAVCOMMENTS);
       	drawNavComments(canvas);
+        mProfiler.end(LAYER_NAVCOMMENTS);
     }    
 
     /**
@@ -1168,16 +1340,27 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
                         TileMap.TileUpdate t = (TileMap.TileUpdate)tu;
                         ((TileMap)map).flip();
 
+                        if(!t.loading) {
+                            int index = Integer.parseInt(mPref.getChartType());
+                            String type = getResources().getStringArray(R.array.ChartType)[index];
+                            mOnChart = type + "\n" + t.chart;
+                        }
+
+                        if(t.shown) {
+                            /*
+                             * Shown while loading, only tiles changed
+                             */
+                            invalidate();
+                            return null;
+                        }
+                        t.shown = true;
+
                         /*
-                         * Set move with pan after new tiles are finally loaded
+                         * Set move with pan after new tiles are shown
                          */
                         mPan.setMove((float)(mPan.getMoveX() * t.factor), (float)(mPan.getMoveY() * t.factor));
 
-                        int index = Integer.parseInt(mPref.getChartType());
-                        String type = getResources().getStringArray(R.array.ChartType)[index];
-
                         mGpsTile = t.gpsTile;
-                        mOnChart = type + "\n" + t.chart;
                         /*
                          * And pan
                          */
@@ -1463,80 +1646,64 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
      */
     
     private class ElevationTask implements Runnable {
-        public boolean running = true;
-        private boolean runAgain = false;
-        public double lon;
-        public double lat;
-        public double alt;
+        public volatile double lon;
+        public volatile double lat;
+        public volatile double alt;
+        private boolean mQueued;
+
+        /**
+         * Run on the terrain lane. Asking again before it starts runs it once.
+         */
+        public void request() {
+            synchronized(this) {
+                if(mQueued) {
+                    return;
+                }
+                mQueued = true;
+            }
+            TaskExecutor.execute(this, TaskExecutor.TERRAIN);
+        }
 
         /* (non-Javadoc)
-         * @see android.os.AsyncTask#doInBackground(Params[])
+         * @see java.lang.Runnable#run()
          */
         @Override
         public void run() {
+            synchronized(this) {
+                mQueued = false;
+            }
             
-            Thread.currentThread().setName("Elevation");
-
-            while(running) {
-                
-                if(!runAgain) {
-                    try {
-                        Thread.sleep(1000 * 3600);
-                    }
-                    catch(Exception e) {
-                        
-                    }
-                }
-                runAgain = false;
-                
-                if(null == mService) {
-                    continue;
-                }
-                
-                if(mImageDataSource == null) {
-                    continue;
-                }
-                
-                /*
-                 * Find obstacles in background as well
-                 */
-                LinkedList<Obstacle> obs = null;
-                if(mPref.shouldShowObstacles()) {
-                    obs = mImageDataSource.findObstacles(lon, lat, (int)alt);
-                }
+            if(null == mService) {
+                return;
+            }
+            
+            if(mImageDataSource == null) {
+                return;
+            }
+            
+            /*
+             * Find obstacles in background as well
+             */
+            LinkedList<Obstacle> obs = null;
+            if(mPref.shouldShowObstacles()) {
+                obs = mImageDataSource.findObstacles(lon, lat, (int)alt);
+            }
 
-                /*
-                 * Elevation tile to find AGL and ground proximity warning
-                 */
-                Tile t = new Tile(mContext, mPref, lon, lat);
-
-                mService.setElevationTile(t);
-                BitmapHolder elevBitmap = mService.getElevationBitmap();
-                double elev = -1;
-                // Load only if needed.
-                if(null != elevBitmap) {
-                    int x = (int)Math.round(t.getOffsetX(lon)) + elevBitmap.getWidth() / 2;
-                    int y = (int)Math.round(t.getOffsetY(lat)) + elevBitmap.getHeight() / 2;
-                    if(elevBitmap.getBitmap() != null) {
-                    
-                        if(x < elevBitmap.getBitmap().getWidth()
-                            && y < elevBitmap.getBitmap().getHeight()
-                            && x >= 0 && y >= 0) {
-                        
-                            int px = elevBitmap.getBitmap().getPixel(x, y);
-                            elev = Helper.findElevationFromPixel(px);
-                        }
-                    }
-                }
+            /*
+             * Terrain height to find AGL and ground proximity warning
+             */
+            double elev = mService.getTerrain().getElevation(lon, lat);
+            if(TerrainService.NO_DATA == elev) {
+                elev = -1;
+            }
 
-                ElevationUpdate ou = new ElevationUpdate();
-                ou.elev = elev;
-                ou.obs = obs;
+            ElevationUpdate ou = new ElevationUpdate();
+            ou.elev = elev;
+            ou.obs = obs;
 
-                Message m = mHandler.obtainMessage();
-                m.obj = ou;
-                mHandler.sendMessage(m);
-            }
+            Message m = mHandler.obtainMessage();
+            m.obj = ou;
+            mHandler.sendMessage(m);
         }
     }
         
@@ -1678,7 +1845,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
             lon2 = mOrigin.getLongitudeOf(x);
             lat2 = mOrigin.getLatitudeOf(y);
         }
-        mClosestTask.execute(lon2, lat2);
+        TaskExecutor.execute(mClosestTask, TaskExecutor.INTERACTIVE, "closest", lon2, lat2);
     }
 
 
@@ -1718,6 +1885,22 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
                     mPointProjection.getBearing(), mGpsParams.getDeclinition());
         	return priorityMessage;
         }
+
+        /*
+         * Terrain / obstacle ahead
+         */
+        if(null == mService) {
+            return null;
+        }
+        LookAhead lookAhead = mService.getLookAhead();
+        if(null == lookAhead) {
+            return null;
+        }
+        LookAhead.Result ahead = lookAhead.getResult();
+        if(null != ahead && ahead.conflict) {
+            return mContext.getString(ahead.conflictObstacle ? R.string.ObstacleAhead : R.string.TerrainAhead)
+                    + " " + ahead.conflictSeconds + "s";
+        }
         return null;
     }
 
@@ -1725,8 +1908,9 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
      * 
      */
     public void cleanup() {
-        mElevationTask.running = false;
-        mElevationThread.interrupt();
+        mElevationThread.cancel();
+        MemoryGovernor.getInstance().unregister(mOverlay);
+        mOverlay.recycle();
     }
 
 
@@ -92,14 +92,27 @@ public class MemView extends View {
     @Override
     public void onDraw(Canvas canvas) {
 
-        /*
-         * Now draw the target cross hair
-         */
-        mPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-        mPaint.setColor(Color.GREEN);
-        canvas.drawRect(0, 0, getWidth(), getHeight(), mPaint);
-        mPaint.setColor(Color.RED);
-        canvas.drawRect(0, 0, (float)getWidth() * mFraction, getHeight(), mPaint);
+        drawBar(canvas, mPaint, 0, 0, getWidth(), getHeight(), mFraction);
+    }
 
+    /**
+     * Bar of used fraction, red on green. Also used by frame profile.
+     * @param canvas
+     * @param paint
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @param fraction
+     */
+    public static void drawBar(Canvas canvas, Paint paint, float x, float y, float width, float height, float fraction) {
+        if(fraction > 1) {
+            fraction = 1;
+        }
+        paint.setStyle(Paint.Style.FILL_AND_STROKE);
+        paint.setColor(Color.GREEN);
+        canvas.drawRect(x, y, x + width, y + height, paint);
+        paint.setColor(Color.RED);
+        canvas.drawRect(x, y, x + width * fraction, y + height, paint);
     }
 }
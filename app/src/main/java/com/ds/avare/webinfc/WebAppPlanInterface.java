@@ -27,6 +27,7 @@ import com.ds.avare.R;
 import com.ds.avare.StorageService;
 import com.ds.avare.externalFlightPlan.ExternalFlightPlan;
 import com.ds.avare.place.Airway;
+import com.ds.avare.place.AirwayRouter;
 import com.ds.avare.place.Destination;
 import com.ds.avare.place.Plan;
 import com.ds.avare.position.Projection;
@@ -35,6 +36,7 @@ import com.ds.avare.storage.StringPreference;
 import com.ds.avare.utils.GenericCallback;
 import com.ds.avare.utils.Helper;
 import com.ds.avare.utils.NetworkHelper;
+import com.ds.avare.utils.TaskExecutor;
 import com.ds.avare.utils.WeatherHelper;
 
 import android.annotation.SuppressLint;
@@ -672,7 +674,7 @@ public class WebAppPlanInterface implements Observer {
 
     	mHandler.sendEmptyMessage(MSG_BUSY);
         mSearchTask = new SearchTask();
-        mSearchTask.execute(value);
+        TaskExecutor.execute(mSearchTask, TaskExecutor.INTERACTIVE, "plan.search", value);
     }
 
     /** 
@@ -814,6 +816,21 @@ public class WebAppPlanInterface implements Observer {
 	            	continue;
 	            }
 
+	            /*
+	             * Route on airways between the points before and after
+	             */
+	            if(srch[num].equals(AirwayRouter.KEYWORD)) {
+	            	if(num > 0 && num < (srch.length - 1)) {
+	            		LinkedList<String> ret = AirwayRouter.find(mService, srch[num - 1], srch[num + 1],
+	            				mPref.getAircraftTAS(), mService.getPlan().getAltitude());
+	            		if(ret != null) {
+	            			// Found route, insert. Route is always a sequence of GPS points.
+	            			selection.addAll(ret);
+	            		}
+	            	}
+	            	continue;
+	            }
+
 	            /*
 	             * Search from database. Make this a simple one off search
 	             */
@@ -0,0 +1,390 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * SegmentedDownload against a local HTTP server that can leave out ranges, throttle, and drop connections
+ */
+public class SegmentedDownloadTest {
+
+    /**
+     * Serves one file. Each connection is a request, closed after the reply.
+     */
+    private static class Server implements Runnable {
+        private ServerSocket mSocket;
+        private byte mData[];
+        private boolean mRanges;
+        private boolean mLength;
+        private int mDrops;
+        private int mDropAfter;
+        private long mDelayMs;
+        private List<String> mRequested = Collections.synchronizedList(new ArrayList<String>());
+
+        Server(byte data[], boolean ranges, boolean length) throws IOException {
+            mData = data;
+            mRanges = ranges;
+            mLength = length;
+            mSocket = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+            Thread t = new Thread(this, "Test HTTP");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        /**
+         * @param drops connections to cut short
+         * @param after bytes of body before a cut
+         */
+        void drop(int drops, int after) {
+            mDrops = drops;
+            mDropAfter = after;
+        }
+
+        /**
+         * @param ms wait between 16 KB writes
+         */
+        void throttle(long ms) {
+            mDelayMs = ms;
+        }
+
+        URL getUrl() throws IOException {
+            return new URL("http://127.0.0.1:" + mSocket.getLocalPort() + "/chart.zip");
+        }
+
+        /**
+         * @return Range header of each request, "" when none
+         */
+        List<String> getRequested() {
+            synchronized(mRequested) {
+                return new ArrayList<String>(mRequested);
+            }
+        }
+
+        void close() {
+            try {
+                mSocket.close();
+            }
+            catch(IOException e) {
+            }
+        }
+
+        @Override
+        public void run() {
+            while(true) {
+                final Socket s;
+                try {
+                    s = mSocket.accept();
+                }
+                catch(IOException e) {
+                    return;
+                }
+                Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            serve(s);
+                        }
+                        catch(IOException e) {
+                        }
+                        finally {
+                            try {
+                                s.close();
+                            }
+                            catch(IOException e) {
+                            }
+                        }
+                    }
+                });
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+
+        private void serve(Socket s) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), "US-ASCII"));
+            String line = in.readLine();
+            if(null == line) {
+                return;
+            }
+            String range = "";
+            while(null != (line = in.readLine()) && line.length() > 0) {
+                if(line.toLowerCase().startsWith("range:")) {
+                    range = line.substring(6).trim();
+                }
+            }
+            mRequested.add(range);
+
+            int from = 0;
+            int to = mData.length - 1;
+            StringBuilder head = new StringBuilder();
+            if(mRanges && range.startsWith("bytes=")) {
+                String ends[] = range.substring(6).split("-");
+                from = Integer.parseInt(ends[0]);
+                to = Math.min(to, Integer.parseInt(ends[1]));
+                head.append("HTTP/1.1 206 Partial Content\r\n");
+                head.append("Content-Range: bytes ").append(from).append('-').append(to).append('/')
+                        .append(mData.length).append("\r\n");
+                head.append("ETag: \"cycle\"\r\n");
+            }
+            else {
+                head.append("HTTP/1.1 200 OK\r\n");
+            }
+            if(mLength) {
+                head.append("Content-Length: ").append(to + 1 - from).append("\r\n");
+            }
+            head.append("Connection: close\r\n\r\n");
+
+            OutputStream out = s.getOutputStream();
+            out.write(head.toString().getBytes("US-ASCII"));
+            int end = to + 1;
+            boolean cut = false;
+            // the probe is never cut
+            if(!range.equals("bytes=0-0")) {
+                synchronized(this) {
+                    if(mDrops > 0) {
+                        mDrops--;
+                        cut = true;
+                    }
+                }
+            }
+            if(cut) {
+                end = Math.min(end, from + mDropAfter);
+            }
+            for(int i = from; i < end; i += 16384) {
+                out.write(mData, i, Math.min(16384, end - i));
+                out.flush();
+                if(mDelayMs > 0) {
+                    try {
+                        Thread.sleep(mDelayMs);
+                    }
+                    catch(InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            out.flush();
+        }
+    }
+
+    private File mFile;
+    private Server mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("download", ".zip");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        if(null != mServer) {
+            mServer.close();
+        }
+        mFile.delete();
+        new File(mFile.getPath() + ".state").delete();
+    }
+
+    private static byte[] makeData(int size) {
+        byte data[] = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private byte[] readFile() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(mFile, "r");
+        try {
+            byte b[] = new byte[(int)raf.length()];
+            raf.readFully(b);
+            return b;
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    private void download() throws IOException {
+        SegmentedDownload d = new SegmentedDownload(mServer.getUrl(), mFile);
+        d.start();
+        d.join();
+        d.finish();
+    }
+
+    @Test(timeout = 60000)
+    public void rangesInSegments() throws IOException {
+        byte data[] = makeData(3 * 1024 * 1024 + 17);
+        mServer = new Server(data, true, true);
+        download();
+        assertArrayEquals(data, readFile());
+        assertFalse(new File(mFile.getPath() + ".state").exists());
+        // probe, then one request per segment
+        List<String> requested = mServer.getRequested();
+        assertEquals("bytes=0-0", requested.get(0));
+        assertEquals(4, requested.size());
+    }
+
+    @Test(timeout = 60000)
+    public void rangesResumeAfterDrops() throws IOException {
+        byte data[] = makeData(2 * 1024 * 1024 + 5);
+        mServer = new Server(data, true, true);
+        mServer.drop(3, 300000);
+        download();
+        assertArrayEquals(data, readFile());
+        // a retry asks for the rest of its segment only
+        boolean resumed = false;
+        for(String range : mServer.getRequested()) {
+            resumed |= range.startsWith("bytes=" + 300000 + "-");
+        }
+        assertTrue(resumed);
+    }
+
+    @Test(timeout = 60000)
+    public void resumeAcrossRuns() throws Exception {
+        byte data[] = makeData(1024 * 1024 + 99);
+        mServer = new Server(data, true, true);
+        mServer.throttle(20);
+        SegmentedDownload d = new SegmentedDownload(mServer.getUrl(), mFile);
+        d.start();
+        while(d.getDownloaded() < 200000) {
+            Thread.sleep(10);
+        }
+        d.cancel();
+        try {
+            d.join();
+            fail("cancelled download joined");
+        }
+        catch(IOException e) {
+        }
+        assertTrue(new File(mFile.getPath() + ".state").exists());
+
+        mServer.throttle(0);
+        download();
+        assertArrayEquals(data, readFile());
+        List<String> requested = mServer.getRequested();
+        // picks up where the first run stopped
+        assertFalse(requested.get(requested.size() - 1).startsWith("bytes=0-"));
+    }
+
+    @Test(timeout = 60000)
+    public void noRangesWithLength() throws IOException {
+        byte data[] = makeData(3 * 1024 * 1024 + 1);
+        mServer = new Server(data, false, true);
+        download();
+        assertArrayEquals(data, readFile());
+        List<String> requested = mServer.getRequested();
+        assertEquals(2, requested.size());
+        // only the probe asks for a range
+        assertEquals("", requested.get(1));
+        assertFalse(new File(mFile.getPath() + ".state").exists());
+    }
+
+    @Test(timeout = 60000)
+    public void noRangesStartsOverAfterDrop() throws IOException {
+        byte data[] = makeData(1024 * 1024 + 3);
+        mServer = new Server(data, false, true);
+        mServer.drop(2, 400000);
+        download();
+        assertArrayEquals(data, readFile());
+        for(String range : mServer.getRequested().subList(1, 4)) {
+            assertEquals("", range);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void noRangesKeepsFailing() throws IOException {
+        byte data[] = makeData(200000);
+        mServer = new Server(data, false, true);
+        // every connection cut, bytes that come each time must not count as progress
+        mServer.drop(1000, 1000);
+        SegmentedDownload d = new SegmentedDownload(mServer.getUrl(), mFile);
+        d.start();
+        try {
+            d.join();
+            fail("download of cut connections joined");
+        }
+        catch(IOException e) {
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void noRangesNoLength() throws IOException {
+        byte data[] = makeData(500000);
+        mServer = new Server(data, false, false);
+        SegmentedDownload d = new SegmentedDownload(mServer.getUrl(), mFile);
+        d.start();
+        assertEquals(-1, d.getLength());
+        d.join();
+        d.finish();
+        assertEquals(data.length, d.getLength());
+        assertArrayEquals(data, readFile());
+    }
+
+    @Test(timeout = 60000)
+    public void streamReadsInOrderAsItComes() throws IOException {
+        byte data[] = makeData(3 * 1024 * 1024 + 11);
+        mServer = new Server(data, true, true);
+        mServer.throttle(2);
+        mServer.drop(2, 500000);
+        SegmentedDownload d = new SegmentedDownload(mServer.getUrl(), mFile);
+        d.start();
+        InputStream in = d.openStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte b[] = new byte[10000];
+        int n;
+        while((n = in.read(b, 0, b.length)) >= 0) {
+            out.write(b, 0, n);
+        }
+        in.close();
+        d.join();
+        d.finish();
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test(timeout = 60000)
+    public void serverErrorFailsStart() throws IOException {
+        mServer = new Server(new byte[0], true, true);
+        mServer.close();
+        SegmentedDownload d = new SegmentedDownload(mServer.getUrl(), mFile);
+        try {
+            d.start();
+            fail("started with no server");
+        }
+        catch(IOException e) {
+        }
+    }
+}
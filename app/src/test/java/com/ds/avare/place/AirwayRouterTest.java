@@ -0,0 +1,280 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.place;
+
+import com.ds.avare.position.Projection;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AirwayRouter on small made up airway graphs, against a plain Dijkstra over the same graph
+ */
+public class AirwayRouterTest {
+
+    /*
+     * Two east west airways a degree of latitude apart, joined by a north south airway in the middle
+     */
+    private static AirwayGraph makeLadder() {
+        AirwayGraph graph = new AirwayGraph();
+        for(int lon = -100; lon <= -90; lon++) {
+            graph.add("V1", lon, 40);
+        }
+        for(int lon = -100; lon <= -90; lon++) {
+            graph.add("V2", lon, 41);
+        }
+        graph.add("V3", -95, 40);
+        graph.add("V3", -95, 41);
+        graph.build();
+        return graph;
+    }
+
+    /*
+     * Cost of a leg, same as the router: distance, or hours with a wind
+     */
+    private static double cost(double lon0, double lat0, double lon1, double lat1, double distance,
+                               double speed, double windSpeed, double windDirection) {
+        if(speed <= 0) {
+            return distance;
+        }
+        double hd = Projection.getStaticBearing(lon0, lat0, lon1, lat1);
+        double a = Math.toRadians(hd - windDirection);
+        double gs = Math.sqrt(windSpeed * windSpeed + speed * speed - 2 * windSpeed * speed * Math.cos(a));
+        return distance / gs;
+    }
+
+    /*
+     * Least cost from departure to destination by Dijkstra without heap or heuristic
+     */
+    private static double bruteForce(AirwayGraph graph, double lon0, double lat0, double lon1, double lat1,
+                                     double speed, double windSpeed, double windDirection) {
+        int num = graph.getNumPoints();
+        double best[] = new double[num];
+        boolean done[] = new boolean[num];
+        for(int p = 0; p < num; p++) {
+            best[p] = Double.MAX_VALUE;
+            double d = Projection.getStaticDistance(lon0, lat0, graph.getLongitude(p), graph.getLatitude(p));
+            if(d <= AirwayRouter.MAX_ENTRY_DISTANCE) {
+                best[p] = cost(lon0, lat0, graph.getLongitude(p), graph.getLatitude(p), d,
+                        speed, windSpeed, windDirection);
+            }
+        }
+        double ret = Double.MAX_VALUE;
+        while(true) {
+            int p = -1;
+            for(int q = 0; q < num; q++) {
+                if(!done[q] && best[q] < Double.MAX_VALUE && (p < 0 || best[q] < best[p])) {
+                    p = q;
+                }
+            }
+            if(p < 0) {
+                return ret;
+            }
+            done[p] = true;
+            double lon = graph.getLongitude(p);
+            double lat = graph.getLatitude(p);
+            double d = Projection.getStaticDistance(lon, lat, lon1, lat1);
+            if(d <= AirwayRouter.MAX_ENTRY_DISTANCE) {
+                ret = Math.min(ret, best[p] + cost(lon, lat, lon1, lat1, d, speed, windSpeed, windDirection));
+            }
+            for(int e = graph.getEdgeStart(p); e < graph.getEdgeEnd(p); e++) {
+                float ed = graph.getEdgeDistance(e);
+                if(ed == Float.MAX_VALUE) {
+                    continue;
+                }
+                int q = graph.getEdgePoint(e);
+                double c = best[p] + cost(lon, lat, graph.getLongitude(q), graph.getLatitude(q), ed,
+                        speed, windSpeed, windDirection);
+                if(c < best[q]) {
+                    best[q] = c;
+                }
+            }
+        }
+    }
+
+    /*
+     * Cost of a route the router found, with legs as the router costs them
+     */
+    private static double routeCost(AirwayGraph graph, int route[], double lon0, double lat0, double lon1, double lat1,
+                                    double speed, double windSpeed, double windDirection) {
+        double total = 0;
+        double lon = lon0;
+        double lat = lat0;
+        int last = -1;
+        for(int p : route) {
+            double d = -1;
+            if(last >= 0) {
+                for(int e = graph.getEdgeStart(last); e < graph.getEdgeEnd(last); e++) {
+                    if(graph.getEdgePoint(e) == p) {
+                        d = graph.getEdgeDistance(e);
+                    }
+                }
+                assertTrue("route points must be joined by an airway", d >= 0 && d < Float.MAX_VALUE);
+            }
+            else {
+                d = Projection.getStaticDistance(lon, lat, graph.getLongitude(p), graph.getLatitude(p));
+                assertTrue(d <= AirwayRouter.MAX_ENTRY_DISTANCE);
+            }
+            total += cost(lon, lat, graph.getLongitude(p), graph.getLatitude(p), d, speed, windSpeed, windDirection);
+            lon = graph.getLongitude(p);
+            lat = graph.getLatitude(p);
+            last = p;
+        }
+        double d = Projection.getStaticDistance(lon, lat, lon1, lat1);
+        assertTrue(d <= AirwayRouter.MAX_ENTRY_DISTANCE);
+        return total + cost(lon, lat, lon1, lat1, d, speed, windSpeed, windDirection);
+    }
+
+    @Test
+    public void graphInternsSharedPoints() {
+        AirwayGraph graph = makeLadder();
+        assertTrue(graph.isValid());
+        assertEquals(3, graph.getNumAirways());
+        // V3 ends are points of V1 and V2
+        assertEquals(22, graph.getNumPoints());
+        int v1 = graph.getAirway("V1");
+        int v3 = graph.getAirway("V3");
+        int p = graph.findIntersection(v1, v3);
+        assertEquals(-95, graph.getLongitude(p), 0);
+        assertEquals(40, graph.getLatitude(p), 0);
+    }
+
+    @Test
+    public void staysOnOneAirway() {
+        AirwayGraph graph = makeLadder();
+        AirwayRouter router = new AirwayRouter(graph);
+        int route[] = router.findRoute(-100.1, 39.9, -89.9, 39.9);
+        assertNotNull(route);
+        assertEquals(11, route.length);
+        for(int i = 0; i < route.length; i++) {
+            assertEquals(-100 + i, graph.getLongitude(route[i]), 0);
+            assertEquals(40, graph.getLatitude(route[i]), 0);
+        }
+    }
+
+    @Test
+    public void changesAirwayAtIntersection() {
+        AirwayGraph graph = makeLadder();
+        AirwayRouter router = new AirwayRouter(graph);
+        int route[] = router.findRoute(-100.1, 39.9, -89.9, 41.1);
+        assertNotNull(route);
+        int v1 = graph.getAirway("V1");
+        int v2 = graph.getAirway("V2");
+        int v3 = graph.getAirway("V3");
+        boolean onV3 = false;
+        for(int i = 1; i < route.length; i++) {
+            int airway = router.getAirwayTo(route[i]);
+            assertTrue(airway == v1 || airway == v2 || airway == v3);
+            onV3 |= airway == v3;
+        }
+        assertTrue(onV3);
+        assertEquals(bruteForce(graph, -100.1, 39.9, -89.9, 41.1, 0, 0, 0),
+                routeCost(graph, route, -100.1, 39.9, -89.9, 41.1, 0, 0, 0), 1e-6);
+    }
+
+    @Test
+    public void noRouteWhenFarFromAirways() {
+        AirwayGraph graph = makeLadder();
+        AirwayRouter router = new AirwayRouter(graph);
+        assertNull(router.findRoute(-100, 40, -80, 40));
+        assertNull(router.findRoute(-120, 40, -90, 40));
+    }
+
+    @Test
+    public void longSegmentIsNotUsed() {
+        AirwayGraph graph = new AirwayGraph();
+        graph.add("V1", -100, 40);
+        graph.add("V1", -99, 40);
+        // over MAX_SEGMENT_LENGTH
+        graph.add("V1", -80, 40);
+        graph.build();
+        AirwayRouter router = new AirwayRouter(graph);
+        assertNotNull(router.findRoute(-100, 40.1, -99, 40.1));
+        assertNull(router.findRoute(-100, 40.1, -80, 40.1));
+    }
+
+    @Test
+    public void shortestMatchesDijkstraOnRandomGraphs() {
+        Random random = new Random(30);
+        for(int g = 0; g < 20; g++) {
+            AirwayGraph graph = makeRandom(random);
+            AirwayRouter router = new AirwayRouter(graph);
+            for(int k = 0; k < 20; k++) {
+                double lon0 = -100 + random.nextDouble() * 10;
+                double lat0 = 35 + random.nextDouble() * 8;
+                double lon1 = -100 + random.nextDouble() * 10;
+                double lat1 = 35 + random.nextDouble() * 8;
+                double expected = bruteForce(graph, lon0, lat0, lon1, lat1, 0, 0, 0);
+                int route[] = router.findRoute(lon0, lat0, lon1, lat1);
+                if(expected == Double.MAX_VALUE) {
+                    assertNull(route);
+                    continue;
+                }
+                assertNotNull(route);
+                assertEquals(expected, routeCost(graph, route, lon0, lat0, lon1, lat1, 0, 0, 0), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void quickestMatchesDijkstraWithWind() {
+        Random random = new Random(31);
+        for(int g = 0; g < 20; g++) {
+            AirwayGraph graph = makeRandom(random);
+            AirwayRouter router = new AirwayRouter(graph);
+            for(int k = 0; k < 20; k++) {
+                double lon0 = -100 + random.nextDouble() * 10;
+                double lat0 = 35 + random.nextDouble() * 8;
+                double lon1 = -100 + random.nextDouble() * 10;
+                double lat1 = 35 + random.nextDouble() * 8;
+                double windDirection = random.nextDouble() * 360;
+                double expected = bruteForce(graph, lon0, lat0, lon1, lat1, 120, 60, windDirection);
+                int route[] = router.findRoute(lon0, lat0, lon1, lat1, 120, 60, windDirection);
+                if(expected == Double.MAX_VALUE) {
+                    assertNull(route);
+                    continue;
+                }
+                assertNotNull(route);
+                assertEquals(expected, routeCost(graph, route, lon0, lat0, lon1, lat1, 120, 60, windDirection), 1e-6);
+            }
+        }
+    }
+
+    /*
+     * A few airways wandering over a 10 by 8 degree area, crossing at shared points
+     */
+    private static AirwayGraph makeRandom(Random random) {
+        float lons[] = new float[60];
+        float lats[] = new float[60];
+        for(int i = 0; i < lons.length; i++) {
+            lons[i] = -100 + random.nextInt(100) / 10f;
+            lats[i] = 35 + random.nextInt(80) / 10f;
+        }
+        AirwayGraph graph = new AirwayGraph();
+        for(int aw = 0; aw < 12; aw++) {
+            int len = 2 + random.nextInt(8);
+            for(int i = 0; i < len; i++) {
+                int p = random.nextInt(lons.length);
+                graph.add("V" + aw, lons[p], lats[p]);
+            }
+        }
+        graph.build();
+        return graph;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.position;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * GeoPoints against Projection, which it replaces on hot paths
+ */
+public class GeoPointsTest {
+
+    private static final int NUM = 500;
+
+    // nm, and degrees
+    private static final double DISTANCE_ERROR = 1e-6;
+    private static final double BEARING_ERROR = 1e-6;
+
+    private GeoPoints mPoints;
+    private Random mRandom;
+
+    @Before
+    public void setUp() {
+        mRandom = new Random(27);
+        mPoints = new GeoPoints(4);
+        for(int i = 0; i < NUM; i++) {
+            mPoints.add(lon(), lat(85));
+        }
+    }
+
+    private double lon() {
+        return mRandom.nextDouble() * 360 - 180;
+    }
+
+    private double lat(double max) {
+        return mRandom.nextDouble() * 2 * max - max;
+    }
+
+    /*
+     * Smallest angle between two bearings
+     */
+    private static double angle(double a, double b) {
+        double d = Math.abs(a - b) % 360;
+        return d > 180 ? 360 - d : d;
+    }
+
+    @Test
+    public void growsAndKeepsPoints() {
+        assertEquals(NUM, mPoints.size());
+        mRandom = new Random(27);
+        for(int i = 0; i < NUM; i++) {
+            assertEquals(lon(), mPoints.getLongitude(i), 0);
+            assertEquals(lat(85), mPoints.getLatitude(i), 0);
+        }
+    }
+
+    @Test
+    public void distanceBetweenPointsMatchesProjection() {
+        for(int i = 0; i < NUM; i++) {
+            int j = (i * 7 + 3) % NUM;
+            double expected = Projection.getStaticDistance(mPoints.getLongitude(i), mPoints.getLatitude(i),
+                    mPoints.getLongitude(j), mPoints.getLatitude(j));
+            assertEquals(expected, mPoints.getDistance(i, j), DISTANCE_ERROR);
+        }
+    }
+
+    @Test
+    public void bearingBetweenPointsMatchesProjection() {
+        for(int i = 0; i < NUM; i++) {
+            int j = (i * 7 + 3) % NUM;
+            double expected = Projection.getStaticBearing(mPoints.getLongitude(i), mPoints.getLatitude(i),
+                    mPoints.getLongitude(j), mPoints.getLatitude(j));
+            assertEquals(0, angle(expected, mPoints.getBearing(i, j)), BEARING_ERROR);
+        }
+    }
+
+    @Test
+    public void batchFromLocationMatchesProjection() {
+        double distances[] = new double[NUM];
+        double bearings[] = new double[NUM];
+        for(int k = 0; k < 20; k++) {
+            double lon = lon();
+            double lat = lat(85);
+            mPoints.getDistances(lon, lat, distances);
+            mPoints.getBearings(lon, lat, bearings);
+            for(int i = 0; i < NUM; i++) {
+                Projection p = new Projection(lon, lat, mPoints.getLongitude(i), mPoints.getLatitude(i));
+                assertEquals(p.getDistance(), distances[i], DISTANCE_ERROR);
+                assertEquals(0, angle(p.getBearing(), bearings[i]), BEARING_ERROR);
+            }
+        }
+    }
+
+    @Test
+    public void shortDistancesKeepPrecision() {
+        GeoPoints points = new GeoPoints(1);
+        points.add(-71.005, 42.3656);
+        double distances[] = new double[1];
+        // about 6 ft
+        points.getDistances(-71.005, 42.36561667, distances);
+        double expected = Projection.getStaticDistance(-71.005, 42.36561667, -71.005, 42.3656);
+        assertEquals(expected, distances[0], 1e-9);
+        assertTrue(distances[0] > 0);
+    }
+
+    @Test
+    public void movedPointIsFoundAgain() {
+        assertTrue(mPoints.set(0, 10, 20));
+        assertFalse(mPoints.set(0, 10, 20));
+        mPoints.set(1, 11, 21);
+        assertEquals(Projection.getStaticDistance(10, 20, 11, 21), mPoints.getDistance(0, 1), DISTANCE_ERROR);
+    }
+
+    @Test
+    public void fastDistanceIsInBound() {
+        GeoPoints points = new GeoPoints(NUM);
+        double lon = -98;
+        double lat = 39;
+        for(int i = 0; i < NUM; i++) {
+            // up to about 500 nm away, below 60 degrees
+            points.add(lon + lat(9), lat + lat(8));
+        }
+        double fast[] = new double[NUM];
+        points.getDistancesFast(lon, lat, fast);
+        for(int i = 0; i < NUM; i++) {
+            double exact = Projection.getStaticDistance(lon, lat, points.getLongitude(i), points.getLatitude(i));
+            if(exact > 500) {
+                continue;
+            }
+            assertEquals(exact, fast[i], exact * GeoPoints.FAST_MAX_ERROR + 1e-9);
+        }
+    }
+
+    @Test
+    public void fastDistanceWrapsDateLine() {
+        GeoPoints points = new GeoPoints(1);
+        points.add(179.5, 10);
+        double fast[] = new double[1];
+        points.getDistancesFast(-179.5, 10, fast);
+        double exact = Projection.getStaticDistance(-179.5, 10, 179.5, 10);
+        assertEquals(exact, fast[0], exact * GeoPoints.FAST_MAX_ERROR);
+    }
+
+    @Test
+    public void closestMatchesProjection() {
+        for(int k = 0; k < 50; k++) {
+            double lon = lon();
+            double lat = lat(85);
+            int expected = -1;
+            double min = Double.MAX_VALUE;
+            for(int i = 0; i < NUM; i++) {
+                double d = Projection.getStaticDistance(lon, lat, mPoints.getLongitude(i), mPoints.getLatitude(i));
+                if(d < min) {
+                    min = d;
+                    expected = i;
+                }
+            }
+            assertEquals(expected, mPoints.findClosest(lon, lat));
+        }
+        assertEquals(-1, new GeoPoints(1).findClosest(0, 0));
+    }
+}
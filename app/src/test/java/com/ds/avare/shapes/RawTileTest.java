@@ -0,0 +1,142 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.shapes;
+
+import com.ds.avare.utils.Lz4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * RawTile rejects bad files before making a bitmap
+ */
+public class RawTileTest {
+
+    private static final int MAGIC = 0x52353635;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("tile", RawTile.EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private void write(int magic, int version, int width, int height, int length, byte body[]) throws IOException {
+        byte header[] = new byte[20];
+        int values[] = {magic, version, width, height, length};
+        for(int i = 0; i < values.length; i++) {
+            header[i * 4] = (byte)(values[i] >>> 24);
+            header[i * 4 + 1] = (byte)(values[i] >>> 16);
+            header[i * 4 + 2] = (byte)(values[i] >>> 8);
+            header[i * 4 + 3] = (byte)values[i];
+        }
+        OutputStream out = new FileOutputStream(mFile);
+        try {
+            out.write(header);
+            out.write(body);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /*
+     * Pixels of a small tile, compressed
+     */
+    private static byte[] pixels(int width, int height) {
+        byte src[] = new byte[width * height * 2];
+        byte dst[] = new byte[Lz4.maxCompressedLength(src.length)];
+        int length = Lz4.compress(src, src.length, dst);
+        byte ret[] = new byte[length];
+        System.arraycopy(dst, 0, ret, 0, length);
+        return ret;
+    }
+
+    @Test
+    public void fileName() {
+        assertEquals("/a/0_0.jpg" + RawTile.EXTENSION, RawTile.getFile(new File("/a/0_0.jpg")).getPath());
+    }
+
+    @Test
+    public void missingFile() {
+        mFile.delete();
+        assertNull(RawTile.decode(mFile));
+    }
+
+    @Test
+    public void emptyOrShortHeader() throws IOException {
+        assertNull(RawTile.decode(mFile));
+        OutputStream out = new FileOutputStream(mFile);
+        out.write(new byte[] {0x52, 0x35, 0x36, 0x35, 0, 0, 0});
+        out.close();
+        assertNull(RawTile.decode(mFile));
+    }
+
+    @Test
+    public void badMagic() throws IOException {
+        byte body[] = pixels(16, 16);
+        write(0x89504E47, 1, 16, 16, body.length, body);
+        assertNull(RawTile.decode(mFile));
+    }
+
+    @Test
+    public void badVersion() throws IOException {
+        byte body[] = pixels(16, 16);
+        write(MAGIC, 2, 16, 16, body.length, body);
+        assertNull(RawTile.decode(mFile));
+        write(MAGIC, 0, 16, 16, body.length, body);
+        assertNull(RawTile.decode(mFile));
+    }
+
+    @Test
+    public void badSizes() throws IOException {
+        byte body[] = pixels(16, 16);
+        write(MAGIC, 1, 0, 16, body.length, body);
+        assertNull(RawTile.decode(mFile));
+        write(MAGIC, 1, 16, -16, body.length, body);
+        assertNull(RawTile.decode(mFile));
+        write(MAGIC, 1, 8192, 16, body.length, body);
+        assertNull(RawTile.decode(mFile));
+        write(MAGIC, 1, 16, 16, 0, body);
+        assertNull(RawTile.decode(mFile));
+        // more compressed bytes than 16 x 16 pixels could ever need
+        write(MAGIC, 1, 16, 16, Lz4.maxCompressedLength(16 * 16 * 2) + 1, body);
+        assertNull(RawTile.decode(mFile));
+    }
+
+    @Test
+    public void truncatedOrCorruptBody() throws IOException {
+        byte body[] = pixels(16, 16);
+        byte shorter[] = new byte[body.length - 1];
+        System.arraycopy(body, 0, shorter, 0, shorter.length);
+        write(MAGIC, 1, 16, 16, body.length, shorter);
+        assertNull(RawTile.decode(mFile));
+        // pixels of a smaller tile than the header says
+        write(MAGIC, 1, 32, 32, body.length, body);
+        assertNull(RawTile.decode(mFile));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+Copyright (c) 2015, Apps4Av Inc. (apps4av.com)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Lz4 round trips, hand made blocks, and corrupt input
+ */
+public class Lz4Test {
+
+    private static byte[] roundTrip(byte src[]) throws IOException {
+        byte packed[] = new byte[Lz4.maxCompressedLength(src.length)];
+        int length = Lz4.compress(src, src.length, packed);
+        assertTrue(length <= packed.length);
+        byte out[] = new byte[src.length];
+        assertEquals(src.length, Lz4.decompress(Arrays.copyOf(packed, length), length, out, out.length));
+        assertArrayEquals(src, out);
+        return Arrays.copyOf(packed, length);
+    }
+
+    private static void assertCorrupt(byte src[], int dstLen) {
+        try {
+            Lz4.decompress(src, src.length, new byte[dstLen], dstLen);
+            fail("corrupt block decoded");
+        }
+        catch(IOException e) {
+        }
+    }
+
+    @Test
+    public void emptyAndShort() throws IOException {
+        roundTrip(new byte[0]);
+        roundTrip(new byte[] {1});
+        roundTrip("short text".getBytes());
+    }
+
+    @Test
+    public void randomDoesNotGrowPastBound() throws IOException {
+        Random random = new Random(49);
+        for(int size : new int[] {13, 100, 255, 270, 4096, 65536 + 100}) {
+            byte src[] = new byte[size];
+            random.nextBytes(src);
+            roundTrip(src);
+        }
+    }
+
+    @Test
+    public void runsCompress() throws IOException {
+        // one byte repeated is a match at offset 1 overlapping itself
+        byte zeros[] = new byte[256 * 256 * 2];
+        assertTrue(roundTrip(zeros).length < zeros.length / 100);
+
+        // like a tile, RGB565 rows of a few colors
+        Random random = new Random(50);
+        byte tile[] = new byte[256 * 256 * 2];
+        for(int i = 0; i < tile.length; i += 2) {
+            int color = random.nextInt(20) == 0 ? random.nextInt(4) : 0;
+            tile[i] = (byte)color;
+            tile[i + 1] = (byte)(color * 7);
+        }
+        roundTrip(tile);
+    }
+
+    @Test
+    public void longLiteralsAndMatches() throws IOException {
+        // literal and match lengths over 15 and 255 need extra length bytes
+        Random random = new Random(51);
+        byte src[] = new byte[5000];
+        random.nextBytes(src);
+        byte block[] = Arrays.copyOf(src, 300);
+        for(int i = 300; i < 1000; i++) {
+            src[i] = block[i % 300];
+        }
+        for(int i = 1000; i < 1300; i++) {
+            src[i] = 9;
+        }
+        roundTrip(src);
+    }
+
+    @Test
+    public void matchesBeyondMaxOffsetAreNotUsed() throws IOException {
+        Random random = new Random(52);
+        byte block[] = new byte[1000];
+        random.nextBytes(block);
+        byte src[] = new byte[70000 + block.length];
+        random.nextBytes(src);
+        System.arraycopy(block, 0, src, 0, block.length);
+        System.arraycopy(block, 0, src, 70000, block.length);
+        roundTrip(src);
+    }
+
+    @Test
+    public void overlappingMatch() throws IOException {
+        // "ab", then 6 bytes copied from 2 back, then literal "c"
+        byte src[] = {0x22, 'a', 'b', 2, 0, 0x10, 'c'};
+        byte out[] = new byte[9];
+        assertEquals(9, Lz4.decompress(src, src.length, out, out.length));
+        assertArrayEquals("ababababc".getBytes(), out);
+
+        // "x", then 4 + 15 + 2 bytes copied from 1 back
+        src = new byte[] {0x1F, 'x', 1, 0, 2, 0x10, 'y'};
+        out = new byte[23];
+        Lz4.decompress(src, src.length, out, out.length);
+        for(int i = 0; i < 22; i++) {
+            assertEquals('x', out[i]);
+        }
+        assertEquals('y', out[22]);
+    }
+
+    @Test
+    public void truncatedInputFails() throws IOException {
+        Random random = new Random(53);
+        byte src[] = new byte[2000];
+        for(int i = 0; i < src.length; i++) {
+            src[i] = (byte)random.nextInt(6);
+        }
+        byte packed[] = roundTrip(src);
+        for(int len = 0; len < packed.length; len++) {
+            assertCorrupt(Arrays.copyOf(packed, len), src.length);
+            // also with the rest of the buffer still there past srcLen
+            try {
+                Lz4.decompress(packed, len, new byte[src.length], src.length);
+                fail("truncated block decoded at " + len);
+            }
+            catch(IOException e) {
+            }
+        }
+    }
+
+    @Test
+    public void badOffsetsAndLengthsFail() {
+        // offset 0
+        assertCorrupt(new byte[] {0x10, 'a', 0, 0, 0x10, 'b'}, 10);
+        // offset before start of output
+        assertCorrupt(new byte[] {0x10, 'a', 2, 0, 0x10, 'b'}, 10);
+        // match runs past expected length
+        assertCorrupt(new byte[] {0x1F, 'a', 1, 0, (byte)200, 0x10, 'b'}, 10);
+        // literals run past input
+        assertCorrupt(new byte[] {(byte)0x50, 'a', 'b'}, 5);
+        // decodes fine but to a different length
+        assertCorrupt(new byte[] {0x30, 'a', 'b', 'c'}, 4);
+        assertCorrupt(new byte[] {0x30, 'a', 'b', 'c'}, 2);
+    }
+
+    @Test
+    public void randomGarbageNeverThrowsOtherExceptions() {
+        Random random = new Random(54);
+        for(int i = 0; i < 2000; i++) {
+            byte src[] = new byte[1 + random.nextInt(64)];
+            random.nextBytes(src);
+            int dstLen = random.nextInt(256);
+            try {
+                Lz4.decompress(src, src.length, new byte[dstLen], dstLen);
+            }
+            catch(IOException e) {
+            }
+        }
+    }
+}